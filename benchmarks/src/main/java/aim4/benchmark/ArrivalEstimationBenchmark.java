@@ -0,0 +1,60 @@
+package aim4.benchmark;
+
+import aim4.driver.coordinator.ArrivalEstimationException;
+import aim4.driver.coordinator.ArrivalEstimationResult;
+import aim4.driver.coordinator.VelocityFirstArrivalEstimation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The arrival estimations of the vehicles approaching the intersection, with
+ * the parameters their coordinators use. Only the estimations that have a
+ * solution are run, so a failure is not measured as the cost of an exception.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class ArrivalEstimationBenchmark {
+
+    private double[][] parameters;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<double[]> feasible = new ArrayList<double[]>();
+        for (double[] p : IntersectionFixture.get().getArrivalEstimations()) {
+            try {
+                VelocityFirstArrivalEstimation.estimate(p[0], p[1], p[2], p[3], p[4], p[5], p[6]);
+                feasible.add(p);
+            } catch (ArrivalEstimationException e) {
+                // not measured
+            }
+        }
+        if (feasible.isEmpty()) {
+            throw new IllegalStateException("None of the arrival estimations of the fixture has a solution");
+        }
+        parameters = feasible.toArray(new double[feasible.size()][]);
+    }
+
+    @Benchmark
+    public ArrivalEstimationResult estimate() throws ArrivalEstimationException {
+        int i = next;
+        next = (i + 1 == parameters.length ? 0 : i + 1);
+        double[] p = parameters[i];
+        return VelocityFirstArrivalEstimation.estimate(p[0], p[1], p[2], p[3], p[4], p[5], p[6]);
+    }
+}
@@ -0,0 +1,49 @@
+package aim4.benchmark;
+
+import aim4.config.SimConfig;
+import aim4.vehicle.BasicAutoVehicle;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A time step of the vehicles of the fixture. The vehicles moved are copied
+ * again at every iteration, so that they do not drive off the map over the
+ * run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class BasicVehicleBenchmark {
+
+    private BasicAutoVehicle[] vehicles;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        List<BasicAutoVehicle> copies = IntersectionFixture.get().copyVehicles();
+        vehicles = copies.toArray(new BasicAutoVehicle[copies.size()]);
+    }
+
+    @Benchmark
+    public BasicAutoVehicle move() {
+        int i = next;
+        next = (i + 1 == vehicles.length ? 0 : i + 1);
+        BasicAutoVehicle vehicle = vehicles[i];
+        vehicle.move(SimConfig.TIME_STEP);
+        return vehicle;
+    }
+}
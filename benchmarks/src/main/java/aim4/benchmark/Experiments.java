@@ -0,0 +1,91 @@
+package aim4.benchmark;
+
+import aim4.config.SimConfig;
+import aim4.driver.pilot.V2IPilot;
+import aim4.sim.Simulator;
+import aim4.sim.setup.BasicSimSetup;
+import expr.trb.DesignatedLanesExpr;
+import expr.trb.TrafficSignalExpr;
+import java.io.File;
+
+/**
+ * The settings of the turn count and intersection file experiment, shared by
+ * the benchmarks that run a simulation.
+ */
+final class Experiments {
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+
+    /**
+     * The system property giving the directory of the input files, "exp" by
+     * default.
+     */
+    static final String EXP_DIR_PROPERTY = "aim4.benchmark.exp";
+    /**
+     * The seed and the safety buffers of the experiment, the ones of the
+     * README example.
+     */
+    static final int SEED = -1069075740;
+    static final double SAFETY_BUFFER_SECONDS = 0.1;
+    static final double EXIT_TILE_SAFETY_BUFFER_SECONDS = 0.3;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+
+    private Experiments() {
+    }
+
+    /////////////////////////////////
+    // CLASS METHODS
+    /////////////////////////////////
+
+    /**
+     * @return the directory of the input files
+     */
+    static File getExpDir() {
+        return new File(System.getProperty(EXP_DIR_PROPERTY, "exp"));
+    }
+
+    /**
+     * Set up the experiment as the command line does, with actuation and
+     * adaptive timing and no dropped messages.
+     *
+     * @param seed the seed of the random number generator of the simulation
+     * @param ratioAV the share of autonomous vehicles, the rest being human
+     * driven
+     * @return the basic setup of the simulation, to build the traffic signal
+     * setup on
+     */
+    static BasicSimSetup configure(int seed, double ratioAV) {
+        SimConfig.ALLOW_ACTUATION = true;
+        SimConfig.USE_ADAPTIVE_TIMING = true;
+        SimConfig.signalType = SimConfig.SIGNAL_TYPE.FULLY_ACTUATED;
+        SimConfig.TOTAL_SIMULATION_TIME = 0;
+        DesignatedLanesExpr.SEED = seed;
+        DesignatedLanesExpr.ratioAV = ratioAV;
+        DesignatedLanesExpr.ratioCC = 0;
+        DesignatedLanesExpr.ratioACC = 0;
+        DesignatedLanesExpr.SAFETY_BUFFER_SECONDS = SAFETY_BUFFER_SECONDS;
+        DesignatedLanesExpr.EXIT_TILE_SAFETY_BUFFER_SECONDS = EXIT_TILE_SAFETY_BUFFER_SECONDS;
+        TrafficSignalExpr.dropMessageProb = 0;
+        TrafficSignalExpr.droppedTimeToDetect = 0;
+        DesignatedLanesExpr.initWithArchAndTurnCounts();
+        V2IPilot.DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION = 1.0;
+
+        return new BasicSimSetup(1, 1, 4, DesignatedLanesExpr.SPEED_LIMIT,
+                DesignatedLanesExpr.NUMBER_OF_LANES, 1, 250, 0, 1.0, null);
+    }
+
+    /**
+     * Advance a simulation by a time step, as the command line does.
+     *
+     * @param sim the simulation
+     */
+    static void step(Simulator sim) {
+        sim.step(SimConfig.TIME_STEP);
+        SimConfig.TOTAL_SIMULATION_TIME = sim.getSimulationTime();
+    }
+}
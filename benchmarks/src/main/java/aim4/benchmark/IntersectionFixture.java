@@ -0,0 +1,385 @@
+package aim4.benchmark;
+
+import aim4.config.Constants.TurnDirection;
+import aim4.config.SimConfig;
+import aim4.config.SimConfig.VEHICLE_TYPE;
+import aim4.config.ringbarrier.RingAndBarrier;
+import aim4.driver.AutoDriver;
+import aim4.driver.DriverUtil;
+import aim4.im.IntersectionManager;
+import aim4.im.v2i.V2IManager;
+import aim4.im.v2i.reservation.ReservationArray;
+import aim4.im.v2i.reservation.ReservationGridManager;
+import aim4.map.Road;
+import aim4.map.actionmapping.ActionMappingFactory;
+import aim4.map.lane.Lane;
+import aim4.map.trafficbyturns.TrafficFlowReaderFactory;
+import aim4.msg.v2i.Request;
+import aim4.msg.v2i.V2IMessage;
+import aim4.sim.Simulator;
+import aim4.sim.setup.ApproxNPhasesTrafficSignalSimSetup;
+import aim4.sim.setup.BasicSimSetup;
+import aim4.vehicle.AutoVehicleSimView;
+import aim4.vehicle.BasicAutoVehicle;
+import aim4.vehicle.VehicleSimView;
+import aim4.vehicle.VehicleUtil;
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A simulation of the intersection of exp/intersection.xml under the signal
+ * plan of exp/signal.xml and the counts of exp/turnmovements.csv, run past its
+ * start, and the inputs of the engine hot paths captured from it: the
+ * proposals the vehicles sent, the plans the reservation grid gives them, the
+ * shapes of the vehicles in the intersection, and so on. Everything is set up
+ * as the command line experiment does, so the benchmarks see the same
+ * intersection, signal and traffic as a real run.
+ * <p>
+ * The fixture is built once per JVM, on the first call to {@link #get()}. The
+ * captured inputs are rebased to the time the fixture stops at, so that a
+ * proposal keeps how far ahead of the vehicle it was.
+ */
+public final class IntersectionFixture {
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+
+    /**
+     * The system property giving the directory of the input files, "exp" by
+     * default.
+     */
+    public static final String EXP_DIR_PROPERTY = Experiments.EXP_DIR_PROPERTY;
+    /**
+     * The simulation time run before capturing, in seconds.
+     */
+    private static final double WARM_UP_TIME = 300.0;
+    /**
+     * The simulation time during which inputs are captured, in seconds.
+     */
+    private static final double CAPTURE_TIME = 300.0;
+    /**
+     * The largest number of inputs of each kind captured.
+     */
+    private static final int MAX_SAMPLES = 512;
+    /**
+     * The largest number of proposals captured. The plans of human drivers
+     * hold tens of thousands of time tiles, so fewer are kept.
+     */
+    private static final int MAX_QUERIES = 128;
+    /**
+     * The AV ratio of the experiment, the one of the README example.
+     */
+    private static final double RATIO_AV = 0.5;
+    /**
+     * The slack taken off the accelerations of the arrival estimation, as the
+     * coordinators do.
+     */
+    private static final double ARRIVAL_ESTIMATE_ACCEL_SLACK = 1.0;
+
+    private static IntersectionFixture instance;
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+
+    private final Simulator sim;
+    private final double currentTime;
+    private final V2IManager im;
+    private final RingAndBarrier rb;
+    private final Area intersectionArea;
+    private final List<BasicAutoVehicle> vehicles = new ArrayList<BasicAutoVehicle>();
+    private final List<Double> vehicleTargetVelocities = new ArrayList<Double>();
+    private final List<ReservationGridManager.Query> queries = new ArrayList<ReservationGridManager.Query>();
+    private final List<VEHICLE_TYPE> queryVehicleTypes = new ArrayList<VEHICLE_TYPE>();
+    private final List<List<? extends ReservationArray.TimeTile>> workingLists = new ArrayList<List<? extends ReservationArray.TimeTile>>();
+    private final List<Shape> shapes = new ArrayList<Shape>();
+    private final List<double[]> arrivalEstimations = new ArrayList<double[]>();
+    private final List<Road> signalRoads = new ArrayList<Road>();
+    private final List<Set<TurnDirection>> signalTurnDirections = new ArrayList<Set<TurnDirection>>();
+    private final List<Double> signalTimes = new ArrayList<Double>();
+
+    /////////////////////////////////
+    // CLASS METHODS
+    /////////////////////////////////
+
+    /**
+     * Get the fixture, building it on the first call.
+     *
+     * @return the fixture
+     */
+    public static synchronized IntersectionFixture get() {
+        if (instance == null) {
+            instance = new IntersectionFixture(Experiments.getExpDir());
+        }
+        return instance;
+    }
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+
+    private IntersectionFixture(File expDir) {
+        BasicSimSetup basicSimSetup = Experiments.configure(Experiments.SEED, RATIO_AV);
+        ApproxNPhasesTrafficSignalSimSetup setup = new ApproxNPhasesTrafficSignalSimSetup(basicSimSetup,
+                new File(expDir, "signal.xml").getPath(),
+                TrafficFlowReaderFactory.getMovementsFromFile(new File(expDir, "turnmovements.csv"),
+                        ActionMappingFactory.getUDOTActionMapping()),
+                new File(expDir, "intersection.xml"));
+        setup.setTrafficLevel(0);
+        sim = setup.getSimulator();
+
+        IntersectionManager firstIm = sim.getMap().getIntersectionManagers().get(0);
+        im = (V2IManager) firstIm;
+        rb = firstIm.getRingAndBarrier();
+        intersectionArea = firstIm.getIntersection().getArea();
+
+        while (sim.getSimulationTime() < WARM_UP_TIME) {
+            Experiments.step(sim);
+        }
+        List<Double> captureTimes = new ArrayList<Double>();
+        Set<List<Integer>> seenProposals = new HashSet<List<Integer>>();
+        while (sim.getSimulationTime() < WARM_UP_TIME + CAPTURE_TIME) {
+            Experiments.step(sim);
+            capture(sim.getSimulationTime(), captureTimes, seenProposals);
+        }
+        currentTime = sim.getSimulationTime();
+
+        // rebase the captured inputs to the current time
+        for (int i = 0; i < queries.size(); ++i) {
+            ReservationGridManager.Query q = queries.get(i);
+            queries.set(i, new ReservationGridManager.Query(q.getVin(),
+                    currentTime + q.getArrivalTime() - captureTimes.get(i), q.getArrivalVelocity(),
+                    q.getArrivalLaneId(), q.getDepartureLaneId(), q.getSpec(), q.getMaxTurnVelocity(),
+                    q.isAccelerating()));
+        }
+        for (double[] parameters : arrivalEstimations) {
+            parameters[0] = currentTime;
+        }
+        // the plans of the proposals the grid would accept now, and the
+        // signals the signal controllers check the proposals against
+        ReservationGridManager gridManager = im.getReservationGridManager();
+        for (int i = 0; i < queries.size(); ++i) {
+            ReservationGridManager.Query q = queries.get(i);
+            ReservationGridManager.Plan plan = gridManager.query(q, queryVehicleTypes.get(i));
+            if (plan != null) {
+                workingLists.add(plan.getWorkingList());
+            }
+            Lane arrivalLane = sim.getMap().getLaneRegistry().get(q.getArrivalLaneId());
+            signalRoads.add(arrivalLane.getContainingRoad());
+            signalTurnDirections.add(arrivalLane.getLaneIM().validActionsFromLane(firstIm, VEHICLE_TYPE.HUMAN));
+            signalTimes.add(q.getArrivalTime());
+        }
+
+        if (queries.isEmpty() || workingLists.isEmpty() || shapes.isEmpty()
+                || arrivalEstimations.isEmpty() || vehicles.isEmpty()) {
+            throw new IllegalStateException("The simulation of " + expDir
+                    + " has too little traffic to benchmark: " + queries.size() + " proposals, "
+                    + workingLists.size() + " plans, " + shapes.size() + " shapes, "
+                    + arrivalEstimations.size() + " arrival estimations, "
+                    + vehicles.size() + " vehicles");
+        }
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+
+    /**
+     * @return the simulation time the fixture stopped at
+     */
+    public double getCurrentTime() {
+        return currentTime;
+    }
+
+    /**
+     * @return the intersection manager of the intersection
+     */
+    public V2IManager getIntersectionManager() {
+        return im;
+    }
+
+    /**
+     * @return the reservation grid manager of the intersection, holding the
+     * reservations of the vehicles at the current time
+     */
+    public ReservationGridManager getReservationGridManager() {
+        return im.getReservationGridManager();
+    }
+
+    /**
+     * @return the ring and barrier of the intersection
+     */
+    public RingAndBarrier getRingAndBarrier() {
+        return rb;
+    }
+
+    /**
+     * @return the area of the intersection
+     */
+    public Area getIntersectionArea() {
+        return intersectionArea;
+    }
+
+    /**
+     * @return copies of the vehicles in the simulation, taken every second
+     * while capturing
+     */
+    public List<BasicAutoVehicle> getVehicles() {
+        return Collections.unmodifiableList(vehicles);
+    }
+
+    /**
+     * @return the proposals sent by the vehicles, as reservation grid queries
+     */
+    public List<ReservationGridManager.Query> getQueries() {
+        return Collections.unmodifiableList(queries);
+    }
+
+    /**
+     * @return the types of the vehicles of the queries
+     */
+    public List<VEHICLE_TYPE> getQueryVehicleTypes() {
+        return Collections.unmodifiableList(queryVehicleTypes);
+    }
+
+    /**
+     * @return the time tiles of the queries the reservation grid would accept
+     * at the current time, none of which conflicts with the reservations held
+     */
+    public List<List<? extends ReservationArray.TimeTile>> getWorkingLists() {
+        return Collections.unmodifiableList(workingLists);
+    }
+
+    /**
+     * @return the shapes of vehicles in the intersection
+     */
+    public List<Shape> getShapes() {
+        return Collections.unmodifiableList(shapes);
+    }
+
+    /**
+     * @return the parameters of arrival estimations of approaching vehicles,
+     * in the order of the parameters of
+     * {@link aim4.driver.coordinator.VelocityFirstArrivalEstimation#estimate}
+     */
+    public List<double[]> getArrivalEstimations() {
+        return Collections.unmodifiableList(arrivalEstimations);
+    }
+
+    /**
+     * @return the roads of the signal queries
+     */
+    public List<Road> getSignalRoads() {
+        return Collections.unmodifiableList(signalRoads);
+    }
+
+    /**
+     * @return the turn directions of the signal queries
+     */
+    public List<Set<TurnDirection>> getSignalTurnDirections() {
+        return Collections.unmodifiableList(signalTurnDirections);
+    }
+
+    /**
+     * @return the times of the signal queries, the arrival times of the
+     * proposals
+     */
+    public List<Double> getSignalTimes() {
+        return Collections.unmodifiableList(signalTimes);
+    }
+
+    /**
+     * Copy the vehicles of {@link #getVehicles()} again, as they were taken.
+     *
+     * @return the new copies
+     */
+    public List<BasicAutoVehicle> copyVehicles() {
+        List<BasicAutoVehicle> copies = new ArrayList<BasicAutoVehicle>(vehicles.size());
+        for (int i = 0; i < vehicles.size(); ++i) {
+            copies.add(copy(vehicles.get(i), vehicleTargetVelocities.get(i)));
+        }
+        return copies;
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+
+    /**
+     * Capture the inputs of the vehicles at a time step.
+     *
+     * @param time the time
+     * @param captureTimes the times the queries were captured at
+     * @param seenProposals the VINs, arrival lanes and departure lanes of the
+     * proposals captured, as a vehicle sends the same proposal again and again
+     * while it waits
+     */
+    private void capture(double time, List<Double> captureTimes, Set<List<Integer>> seenProposals) {
+        boolean isCopyingVehicles = (Math.floor(time) != Math.floor(time - SimConfig.TIME_STEP));
+        for (VehicleSimView vehicle : sim.getActiveVehicles()) {
+            if (isCopyingVehicles && vehicles.size() < MAX_SAMPLES) {
+                // the copies head for the speed limit of the lane
+                double targetVelocity = (vehicle.getDriver() != null && vehicle.getDriver().getCurrentLane() != null
+                        ? vehicle.getDriver().getCurrentLane().getSpeedLimit()
+                        : vehicle.getVelocity());
+                vehicles.add(copy(vehicle, targetVelocity));
+                vehicleTargetVelocities.add(targetVelocity);
+            }
+            if (vehicle instanceof AutoVehicleSimView && queries.size() < MAX_QUERIES) {
+                V2IMessage msg = ((AutoVehicleSimView) vehicle).getLastV2IMessage();
+                if (msg instanceof Request) {
+                    Request request = (Request) msg;
+                    for (Request.Proposal proposal : request.getProposals()) {
+                        if (proposal.getArrivalTime() > time && queries.size() < MAX_QUERIES
+                                && seenProposals.add(Arrays.asList(request.getVin(),
+                                        proposal.getArrivalLaneID(), proposal.getDepartureLaneID()))) {
+                            queries.add(new ReservationGridManager.Query(request.getVin(),
+                                    proposal.getArrivalTime(), proposal.getArrivalVelocity(),
+                                    proposal.getArrivalLaneID(), proposal.getDepartureLaneID(),
+                                    request.getSpec(), proposal.getMaximumTurnVelocity(), true));
+                            queryVehicleTypes.add(vehicle.getVehicleType());
+                            captureTimes.add(time);
+                        }
+                    }
+                }
+            }
+            if (shapes.size() < MAX_SAMPLES && VehicleUtil.intersects(vehicle, intersectionArea)) {
+                shapes.add(vehicle.getShape());
+            }
+            if (vehicle.getDriver() instanceof AutoDriver && arrivalEstimations.size() < MAX_SAMPLES) {
+                double dTotal = ((AutoDriver) vehicle.getDriver()).distanceToNextIntersection();
+                if (dTotal > 0.0 && dTotal < Double.MAX_VALUE) {
+                    double vTop = DriverUtil.calculateMaxFeasibleVelocity(vehicle);
+                    double v1 = Math.min(Math.max(vehicle.getVelocity(), 0.0), vTop);
+                    double accel = Math.max(vehicle.getSpec().getMaxAcceleration() - ARRIVAL_ESTIMATE_ACCEL_SLACK, 0.0);
+                    double decel = Math.min(vehicle.getSpec().getMaxDeceleration() + ARRIVAL_ESTIMATE_ACCEL_SLACK, 0.0);
+                    if (accel > 0.0 && decel < 0.0) {
+                        arrivalEstimations.add(new double[]{time, v1, dTotal, vTop, vTop, accel, decel});
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the spec, the pose and the motion of a vehicle into a vehicle
+     * without a driver.
+     *
+     * @param vehicle the vehicle
+     * @param targetVelocity the target velocity of the copy
+     * @return the copy
+     */
+    private static BasicAutoVehicle copy(VehicleSimView vehicle, double targetVelocity) {
+        return new BasicAutoVehicle(vehicle.getSpec(), vehicle.getPosition(), vehicle.getHeading(),
+                0.0, vehicle.getVelocity(), targetVelocity, vehicle.getAcceleration(),
+                vehicle.gaugeTime(), vehicle.getVehicleType());
+    }
+}
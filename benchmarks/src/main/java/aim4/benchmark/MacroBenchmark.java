@@ -0,0 +1,519 @@
+package aim4.benchmark;
+
+import aim4.config.SimConfig;
+import aim4.config.SimConfig.VEHICLE_TYPE;
+import aim4.map.trafficbyturns.SyntheticDemand;
+import aim4.sim.AutoDriverOnlySimulator;
+import aim4.sim.setup.ApproxNPhasesTrafficSignalSimSetup;
+import aim4.sim.setup.BasicSimSetup;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An end to end benchmark of the simulator. The simulation of the intersection
+ * of exp/intersection.xml under exp/signal.xml is run headless on a fixed seed
+ * for every point of a sweep of demand, from light to saturated, and of AV
+ * ratio, from 0 to 1. The demand is a Poisson synthetic demand, so that it
+ * scales without turn movement files. Each point runs in its own JVM, so that
+ * the static state of the simulator and the heap of one point do not leak into
+ * the next.
+ * <p>
+ * Each point is run for a warm up time, then measured for a time split into
+ * windows. For each point and window it reports the simulated seconds per wall
+ * second, the time steps per second, the allocation rate, the heap and the
+ * active vehicle count, as CSV files ready to chart throughput against the
+ * vehicle count. Given a baseline CSV of an earlier run, it fails when the
+ * throughput of a point dropped by more than a threshold.
+ * <p>
+ * Run it from the root of the repository, where the exp folder is:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar aim4.benchmark.MacroBenchmark -o macro.csv
+ * </pre>
+ */
+public final class MacroBenchmark {
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+
+    /**
+     * The prefixes of the result lines a point writes to its output, among
+     * the output of the simulator.
+     */
+    private static final String POINT_PREFIX = "#point,";
+    private static final String WINDOW_PREFIX = "#window,";
+    /**
+     * The columns of the CSV files.
+     */
+    private static final String POINT_HEADER = "vehiclesPerHourPerLane,ratioAV,seed,simulatedSeconds,wallSeconds,"
+            + "simSecondsPerWallSecond,stepsPerSecond,allocatedMBPerSecond,allocatedKBPerStep,"
+            + "peakHeapMB,retainedHeapMB,meanActiveVehicles,maxActiveVehicles,completedVehicles";
+    private static final String WINDOW_HEADER = "vehiclesPerHourPerLane,ratioAV,seed,windowStart,"
+            + "simSecondsPerWallSecond,stepsPerSecond,allocatedMBPerSecond,heapUsedMB,"
+            + "meanActiveVehicles,maxActiveVehicles";
+    /**
+     * The column compared with the baseline.
+     */
+    private static final String THROUGHPUT_COLUMN = "simSecondsPerWallSecond";
+    private static final double MB = 1024.0 * 1024.0;
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+
+    /**
+     * The options of a run.
+     */
+    private static final class Options {
+
+        double[] demands = {150, 300, 450, 600, 750, 900};
+        double[] ratiosAV = {0, 0.25, 0.5, 0.75, 1};
+        int[] seeds = {Experiments.SEED};
+        double warmUpTime = 300;
+        double measureTime = 600;
+        double windowLength = 60;
+        String output = "macro.csv";
+        String windowOutput = null;
+        String baseline = null;
+        double threshold = 0.10;
+        List<String> jvmArgs = new ArrayList<String>(Arrays.asList("-Xmx3g"));
+    }
+
+    /**
+     * The measures taken over a stretch of time steps.
+     */
+    private static final class Measure {
+
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private long steps;
+        private long startNanos;
+        private long startAllocatedBytes;
+        private long activeVehiclesSum;
+        private int maxActiveVehicles;
+
+        void start() {
+            steps = 0;
+            activeVehiclesSum = 0;
+            maxActiveVehicles = 0;
+            startAllocatedBytes = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        void step(int activeVehicles) {
+            ++steps;
+            activeVehiclesSum += activeVehicles;
+            maxActiveVehicles = Math.max(maxActiveVehicles, activeVehicles);
+        }
+
+        long getSteps() {
+            return steps;
+        }
+
+        double wallSeconds() {
+            return (System.nanoTime() - startNanos) / 1e9;
+        }
+
+        /**
+         * @return the bytes allocated since the start, or NaN if the JVM does
+         * not count them
+         */
+        double allocated() {
+            long bytes = allocatedBytes();
+            return (bytes < 0 ? Double.NaN : bytes - startAllocatedBytes);
+        }
+
+        double meanActiveVehicles() {
+            return (steps == 0 ? 0 : (double) activeVehiclesSum / steps);
+        }
+
+        int maxActiveVehicles() {
+            return maxActiveVehicles;
+        }
+
+        /**
+         * @return the bytes allocated by the live threads, the simulation
+         * thread and the intersection manager pool, or -1 if the JVM does not
+         * count them
+         */
+        private long allocatedBytes() {
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+                return -1;
+            }
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            if (!counter.isThreadAllocatedMemorySupported() || !counter.isThreadAllocatedMemoryEnabled()) {
+                return -1;
+            }
+            long sum = 0;
+            for (long bytes : counter.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                if (bytes > 0) {
+                    sum += bytes;
+                }
+            }
+            return sum;
+        }
+    }
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+
+    private MacroBenchmark() {
+    }
+
+    /////////////////////////////////
+    // MAIN
+    /////////////////////////////////
+
+    /**
+     * Run the sweep, or a single point of it when called with -point.
+     *
+     * @param args the options, see {@link #usage()}
+     * @throws Exception if a point fails or the files cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        double[] point = null;
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (arg.equals("-h") || arg.equals("--help")) {
+                usage();
+                return;
+            } else if (i + 1 >= args.length) {
+                usage();
+                System.exit(2);
+            }
+            String value = args[++i];
+            if (arg.equals("-demand")) {
+                options.demands = parseList(value);
+            } else if (arg.equals("-av")) {
+                options.ratiosAV = parseList(value);
+            } else if (arg.equals("-seed")) {
+                double[] seeds = parseList(value);
+                options.seeds = new int[seeds.length];
+                for (int j = 0; j < seeds.length; ++j) {
+                    options.seeds[j] = (int) seeds[j];
+                }
+            } else if (arg.equals("-warmup")) {
+                options.warmUpTime = Double.parseDouble(value);
+            } else if (arg.equals("-time")) {
+                options.measureTime = Double.parseDouble(value);
+            } else if (arg.equals("-window")) {
+                options.windowLength = Double.parseDouble(value);
+            } else if (arg.equals("-o")) {
+                options.output = value;
+            } else if (arg.equals("-w")) {
+                options.windowOutput = value;
+            } else if (arg.equals("-baseline")) {
+                options.baseline = value;
+            } else if (arg.equals("-t")) {
+                options.threshold = Double.parseDouble(value);
+            } else if (arg.equals("-jvm")) {
+                options.jvmArgs = new ArrayList<String>(Arrays.asList(value.trim().split("\\s+")));
+            } else if (arg.equals("-point")) {
+                point = parseList(value);
+            } else {
+                usage();
+                System.exit(2);
+            }
+        }
+
+        if (point != null) {
+            runPoint(point[0], point[1], (int) point[2], options);
+            return;
+        }
+        List<String> pointRows = new ArrayList<String>();
+        List<String> windowRows = new ArrayList<String>();
+        for (int seed : options.seeds) {
+            for (double ratioAV : options.ratiosAV) {
+                for (double demand : options.demands) {
+                    forkPoint(demand, ratioAV, seed, options, pointRows, windowRows);
+                    // keep what was measured so far, a sweep takes hours
+                    write(options.output, POINT_HEADER, pointRows);
+                    if (options.windowOutput != null) {
+                        write(options.windowOutput, WINDOW_HEADER, windowRows);
+                    }
+                }
+            }
+        }
+        if (options.baseline != null) {
+            int regressions = compare(readCsv(options.baseline), readCsv(options.output), options.threshold);
+            if (regressions > 0) {
+                System.out.println(regressions + " point(s) regressed by more than "
+                        + format(100 * options.threshold) + "%");
+                System.exit(1);
+            }
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+
+    private static void usage() {
+        System.out.println("java aim4.benchmark.MacroBenchmark [options]");
+        System.out.println("  -demand 150,300,...  the vehicles per hour per lane of the points");
+        System.out.println("  -av 0,0.25,...       the AV ratios of the points");
+        System.out.println("  -seed " + Experiments.SEED + "     the seeds of the points");
+        System.out.println("  -warmup 300          the simulated seconds run before measuring");
+        System.out.println("  -time 600            the simulated seconds measured");
+        System.out.println("  -window 60           the simulated seconds of a window");
+        System.out.println("  -o macro.csv         the CSV file of the points");
+        System.out.println("  -w windows.csv       the CSV file of the windows, none by default");
+        System.out.println("  -baseline base.csv   the CSV file of the points of an earlier run");
+        System.out.println("  -t 0.1               the throughput drop failing against the baseline");
+        System.out.println("  -jvm \"-Xmx3g\"        the options of the JVM of the points");
+    }
+
+    /**
+     * Run a point in its own JVM and collect the rows it writes.
+     */
+    private static void forkPoint(double demand, double ratioAV, int seed, Options options,
+            List<String> pointRows, List<String> windowRows) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(options.jvmArgs);
+        command.add("-D" + Experiments.EXP_DIR_PROPERTY + "=" + Experiments.getExpDir().getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(MacroBenchmark.class.getName());
+        command.addAll(Arrays.asList("-point", format(demand) + "," + format(ratioAV) + "," + seed,
+                "-warmup", format(options.warmUpTime), "-time", format(options.measureTime),
+                "-window", format(options.windowLength)));
+
+        System.out.println("Running " + format(demand) + " vehicles/hour/lane, AV ratio "
+                + format(ratioAV) + ", seed " + seed);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String pointRow = null;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(POINT_PREFIX)) {
+                    pointRow = line.substring(POINT_PREFIX.length());
+                } else if (line.startsWith(WINDOW_PREFIX)) {
+                    windowRows.add(line.substring(WINDOW_PREFIX.length()));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        int exitValue = process.waitFor();
+        if (exitValue != 0 || pointRow == null) {
+            throw new IllegalStateException("The point " + format(demand) + ", " + format(ratioAV)
+                    + ", " + seed + " failed with exit value " + exitValue);
+        }
+        pointRows.add(pointRow);
+        System.out.println(POINT_HEADER);
+        System.out.println(pointRow);
+    }
+
+    /**
+     * Run a point and write its rows to the standard output.
+     */
+    private static void runPoint(double demand, double ratioAV, int seed, Options options) {
+        BasicSimSetup basicSimSetup = Experiments.configure(seed, ratioAV);
+        // the demand covers the whole run, so the traffic does not drain
+        // while measuring
+        SyntheticDemand syntheticDemand = new SyntheticDemand(SyntheticDemand.ArrivalProcess.POISSON, demand,
+                basicSimSetup.getLanesPerRoad(), options.warmUpTime + options.measureTime + options.windowLength);
+        Map<VEHICLE_TYPE, Double> mix = new EnumMap<VEHICLE_TYPE, Double>(VEHICLE_TYPE.class);
+        mix.put(VEHICLE_TYPE.AUTO, ratioAV);
+        mix.put(VEHICLE_TYPE.HUMAN, 1 - ratioAV);
+        syntheticDemand.setVehicleTypeMix(mix);
+        syntheticDemand.setSeed(seed);
+        File expDir = Experiments.getExpDir();
+        ApproxNPhasesTrafficSignalSimSetup setup = new ApproxNPhasesTrafficSignalSimSetup(basicSimSetup,
+                new File(expDir, "signal.xml").getPath(), syntheticDemand, new File(expDir, "intersection.xml"));
+        setup.setTrafficLevel(0);
+        AutoDriverOnlySimulator sim = (AutoDriverOnlySimulator) setup.getSimulator();
+
+        while (sim.getSimulationTime() < options.warmUpTime) {
+            Experiments.step(sim);
+        }
+        List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+        System.gc();
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+
+        Measure total = new Measure();
+        Measure window = new Measure();
+        int completedAtStart = sim.getNumCompletedVehicles();
+        double endTime = sim.getSimulationTime() + options.measureTime;
+        double windowStart = sim.getSimulationTime();
+        total.start();
+        window.start();
+        while (sim.getSimulationTime() < endTime) {
+            Experiments.step(sim);
+            int activeVehicles = sim.vinToVehicles.size();
+            total.step(activeVehicles);
+            window.step(activeVehicles);
+            if (sim.getSimulationTime() >= windowStart + options.windowLength
+                    || sim.getSimulationTime() >= endTime) {
+                double wallSeconds = window.wallSeconds();
+                double heapUsed = 0;
+                for (MemoryPoolMXBean pool : heapPools) {
+                    heapUsed += pool.getUsage().getUsed();
+                }
+                System.out.println(WINDOW_PREFIX + row(demand, ratioAV, seed, format(windowStart),
+                        format(window.getSteps() * SimConfig.TIME_STEP / wallSeconds),
+                        format(window.getSteps() / wallSeconds),
+                        format(window.allocated() / MB / wallSeconds),
+                        format(heapUsed / MB),
+                        format(window.meanActiveVehicles()),
+                        Integer.toString(window.maxActiveVehicles())));
+                windowStart = sim.getSimulationTime();
+                window.start();
+            }
+        }
+        double wallSeconds = total.wallSeconds();
+        double allocated = total.allocated();
+        double peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        System.gc();
+        double retainedHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            retainedHeap += pool.getUsage().getUsed();
+        }
+        double simulatedSeconds = total.getSteps() * SimConfig.TIME_STEP;
+        System.out.println(POINT_PREFIX + row(demand, ratioAV, seed, format(simulatedSeconds),
+                format(wallSeconds),
+                format(simulatedSeconds / wallSeconds),
+                format(total.getSteps() / wallSeconds),
+                format(allocated / MB / wallSeconds),
+                format(allocated / 1024 / total.getSteps()),
+                format(peakHeap / MB),
+                format(retainedHeap / MB),
+                format(total.meanActiveVehicles()),
+                Integer.toString(total.maxActiveVehicles()),
+                Integer.toString(sim.getNumCompletedVehicles() - completedAtStart)));
+        System.out.flush();
+    }
+
+    /**
+     * Compare the throughput of the points with the one of a baseline.
+     *
+     * @return the number of points whose throughput dropped by more than the
+     * threshold
+     */
+    private static int compare(Map<String, Map<String, String>> baseline,
+            Map<String, Map<String, String>> current, double threshold) {
+        int regressions = 0;
+        for (Map.Entry<String, Map<String, String>> entry : current.entrySet()) {
+            double score = Double.parseDouble(entry.getValue().get(THROUGHPUT_COLUMN));
+            Map<String, String> baselineRow = baseline.get(entry.getKey());
+            if (baselineRow == null) {
+                System.out.println(String.format(Locale.ROOT, "%-24s %10.2f new", entry.getKey(), score));
+                continue;
+            }
+            double baselineScore = Double.parseDouble(baselineRow.get(THROUGHPUT_COLUMN));
+            double change = (baselineScore != 0 ? (score - baselineScore) / baselineScore : 0);
+            String status = "";
+            if (-change > threshold) {
+                status = "REGRESSION";
+                ++regressions;
+            } else if (change > threshold) {
+                status = "improvement";
+            }
+            System.out.println(String.format(Locale.ROOT, "%-24s %10.2f -> %10.2f %+7.1f%% %s",
+                    entry.getKey(), baselineScore, score, 100 * change, status));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println(String.format(Locale.ROOT, "%-24s missing", key));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Read a CSV file of points.
+     *
+     * @return the rows, by column, by demand, AV ratio and seed
+     */
+    private static Map<String, Map<String, String>> readCsv(String fileName) throws IOException {
+        Map<String, Map<String, String>> rows = new LinkedHashMap<String, Map<String, String>>();
+        BufferedReader reader = new BufferedReader(new FileReader(fileName));
+        try {
+            String[] header = reader.readLine().split(",");
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] values = line.split(",");
+                Map<String, String> row = new LinkedHashMap<String, String>();
+                for (int i = 0; i < header.length && i < values.length; ++i) {
+                    row.put(header[i], values[i]);
+                }
+                rows.put(row.get("vehiclesPerHourPerLane") + "," + row.get("ratioAV") + "," + row.get("seed"), row);
+            }
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    private static void write(String fileName, String header, List<String> rows) throws IOException {
+        PrintWriter writer = new PrintWriter(fileName);
+        try {
+            writer.println(header);
+            for (String row : rows) {
+                writer.println(row);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String row(double demand, double ratioAV, int seed, String... values) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(format(demand)).append(',').append(format(ratioAV)).append(',').append(seed);
+        for (String value : values) {
+            sb.append(',').append(value);
+        }
+        return sb.toString();
+    }
+
+    private static double[] parseList(String list) {
+        String[] items = list.split(",");
+        double[] values = new double[items.length];
+        for (int i = 0; i < items.length; ++i) {
+            values[i] = Double.parseDouble(items[i].trim());
+        }
+        return values;
+    }
+
+    /**
+     * Format a number without trailing zeros, so that the demands and ratios
+     * of the rows match the ones of a baseline.
+     */
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.4f", value).replaceAll("\\.?0+$", "");
+    }
+}
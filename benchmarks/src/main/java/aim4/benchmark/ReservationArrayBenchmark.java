@@ -0,0 +1,152 @@
+package aim4.benchmark;
+
+import aim4.im.v2i.reservation.ReservationArray;
+import aim4.im.v2i.reservation.ReservationGrid;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The bookkeeping of the reservations of the intersection. The plans reserved
+ * are the ones the grid of the fixture gives to the proposals of its vehicles.
+ * <p>
+ * {@link #reserveAndCancel()} reserves a plan among the reservations the
+ * vehicles hold and cancels it again, leaving the grid as it was.
+ * {@link #reserveAndCleanUp(RollingGrid)} runs time steps of a grid of its
+ * own: a plan is reserved every {@link RollingGrid#stepsPerReservation} steps,
+ * as far ahead of the step as it was of the fixture, and the time before the
+ * step is cleaned up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class ReservationArrayBenchmark {
+
+    /**
+     * The reservation ID of the plans reserved among the ones of the vehicles,
+     * which is not a VIN.
+     */
+    private static final int BENCHMARK_RID = Integer.MAX_VALUE;
+
+    private ReservationGrid grid;
+    private int currentDiscreteTime;
+    private List<List<? extends ReservationArray.TimeTile>> workingLists;
+    /**
+     * The plans for the rolling grid, with the discrete times of their tiles
+     * moved to the step before each reservation.
+     */
+    private List<List<MovableTimeTile>> movableWorkingLists;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        IntersectionFixture fixture = IntersectionFixture.get();
+        grid = fixture.getReservationGridManager().getReservationGrid();
+        currentDiscreteTime = grid.calcDiscreteTime(fixture.getCurrentTime());
+        workingLists = fixture.getWorkingLists();
+        movableWorkingLists = new ArrayList<List<MovableTimeTile>>(workingLists.size());
+        for (List<? extends ReservationArray.TimeTile> workingList : workingLists) {
+            List<MovableTimeTile> movable = new ArrayList<MovableTimeTile>(workingList.size());
+            for (ReservationArray.TimeTile tt : workingList) {
+                movable.add(new MovableTimeTile(tt.getDiscreteTime() - currentDiscreteTime, tt.getTileId()));
+            }
+            movableWorkingLists.add(movable);
+        }
+    }
+
+    @Benchmark
+    public boolean reserveAndCancel() {
+        int i = next;
+        next = (i + 1 == workingLists.size() ? 0 : i + 1);
+        boolean isReserved = grid.reserve(BENCHMARK_RID, workingLists.get(i), currentDiscreteTime);
+        grid.cancel(BENCHMARK_RID);
+        return isReserved;
+    }
+
+    @Benchmark
+    public boolean reserveAndCleanUp(RollingGrid rolling) {
+        int time = ++rolling.time;
+        boolean isReserved = false;
+        if (time % rolling.stepsPerReservation == 0) {
+            int i = rolling.next;
+            rolling.next = (i + 1 == movableWorkingLists.size() ? 0 : i + 1);
+            List<MovableTimeTile> workingList = movableWorkingLists.get(i);
+            for (MovableTimeTile tt : workingList) {
+                tt.moveTo(time);
+            }
+            isReserved = rolling.grid.reserve(time, workingList, time);
+        }
+        rolling.grid.cleanUp(time);
+        return isReserved;
+    }
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+
+    /**
+     * The grid of {@link #reserveAndCleanUp(RollingGrid)}, a state of its own
+     * so that only that benchmark runs for every number of steps between two
+     * reservations.
+     */
+    @State(Scope.Thread)
+    public static class RollingGrid {
+
+        /**
+         * The time steps between two reservations of the rolling grid.
+         */
+        @Param({"10", "100"})
+        public int stepsPerReservation;
+
+        private ReservationArray grid;
+        private int time;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            grid = new ReservationArray(IntersectionFixture.get()
+                    .getReservationGridManager().getReservationGrid().getNumberOfTiles());
+            time = 0;
+        }
+    }
+
+    /**
+     * A time tile at a fixed offset from a time that can be moved, so a plan
+     * can be reserved at every step without allocating its tiles again.
+     */
+    private static class MovableTimeTile extends ReservationArray.TimeTile {
+
+        private final int offset;
+        private int dt;
+
+        MovableTimeTile(int offset, int tid) {
+            super(offset, tid);
+            this.offset = offset;
+            this.dt = offset;
+        }
+
+        void moveTo(int time) {
+            dt = time + offset;
+        }
+
+        @Override
+        public int getDiscreteTime() {
+            return dt;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package aim4.benchmark;
+
+import aim4.config.SimConfig.VEHICLE_TYPE;
+import aim4.im.v2i.reservation.ReservationGridManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The internal simulation of a proposal through the intersection, against the
+ * reservations held by the grid. The proposals are the ones the vehicles of
+ * the fixture sent, in turn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class ReservationGridManagerBenchmark {
+
+    private ReservationGridManager gridManager;
+    private List<ReservationGridManager.Query> queries;
+    private List<VEHICLE_TYPE> vehicleTypes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        IntersectionFixture fixture = IntersectionFixture.get();
+        gridManager = fixture.getReservationGridManager();
+        queries = fixture.getQueries();
+        vehicleTypes = fixture.getQueryVehicleTypes();
+    }
+
+    @Benchmark
+    public ReservationGridManager.Plan query() {
+        int i = next;
+        next = (i + 1 == queries.size() ? 0 : i + 1);
+        return gridManager.query(queries.get(i), vehicleTypes.get(i));
+    }
+}
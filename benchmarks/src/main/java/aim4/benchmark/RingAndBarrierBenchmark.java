@@ -0,0 +1,61 @@
+package aim4.benchmark;
+
+import aim4.config.Constants.TurnDirection;
+import aim4.config.TrafficSignal;
+import aim4.config.ringbarrier.RingAndBarrier;
+import aim4.map.Road;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The future signals of the arrival lanes of the proposals of the fixture, at
+ * their arrival times, as the signal controllers ask them while checking the
+ * proposals. The current time stays the same, as it does for all the
+ * proposals of a time step.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class RingAndBarrierBenchmark {
+
+    private RingAndBarrier rb;
+    private double currentTime;
+    private List<Road> roads;
+    private List<Set<TurnDirection>> turnDirections;
+    private double[] times;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        IntersectionFixture fixture = IntersectionFixture.get();
+        rb = fixture.getRingAndBarrier();
+        currentTime = fixture.getCurrentTime();
+        roads = fixture.getSignalRoads();
+        turnDirections = fixture.getSignalTurnDirections();
+        times = new double[fixture.getSignalTimes().size()];
+        for (int i = 0; i < times.length; ++i) {
+            times[i] = fixture.getSignalTimes().get(i);
+        }
+    }
+
+    @Benchmark
+    public Set<TrafficSignal> getSignalForLaneInFuture() {
+        int i = next;
+        next = (i + 1 == times.length ? 0 : i + 1);
+        return rb.getSignalForLaneInFuture(currentTime, times[i], roads.get(i), turnDirections.get(i));
+    }
+}
@@ -0,0 +1,47 @@
+package aim4.benchmark;
+
+import aim4.util.TiledArea;
+import java.awt.Shape;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The tiles of the intersection occupied by the vehicles in it, the check the
+ * internal simulation of a proposal makes at every one of its steps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class TiledAreaBenchmark {
+
+    private TiledArea tiledArea;
+    private List<Shape> shapes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        IntersectionFixture fixture = IntersectionFixture.get();
+        tiledArea = fixture.getReservationGridManager().getTiledArea();
+        shapes = fixture.getShapes();
+    }
+
+    @Benchmark
+    public List<TiledArea.Tile> findOccupiedTiles() {
+        int i = next;
+        next = (i + 1 == shapes.size() ? 0 : i + 1);
+        return tiledArea.findOccupiedTiles(shapes.get(i));
+    }
+}
@@ -0,0 +1,48 @@
+package aim4.benchmark;
+
+import aim4.vehicle.BasicAutoVehicle;
+import aim4.vehicle.VehicleUtil;
+import java.awt.geom.Area;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whether the vehicles of the fixture are in the intersection, most of them
+ * being on the roads around it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class VehicleUtilBenchmark {
+
+    private Area intersectionArea;
+    private List<BasicAutoVehicle> vehicles;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        IntersectionFixture fixture = IntersectionFixture.get();
+        intersectionArea = fixture.getIntersectionArea();
+        vehicles = fixture.getVehicles();
+    }
+
+    @Benchmark
+    public boolean intersects() {
+        int i = next;
+        next = (i + 1 == vehicles.size() ? 0 : i + 1);
+        return VehicleUtil.intersects(vehicles.get(i), intersectionArea);
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * This package contains the JMH benchmarks of the hot paths of the engine,
+ * and the fixture they share: a simulation of the intersection of the exp
+ * folder, run past its start, and the inputs captured from it. It also
+ * contains an end to end benchmark sweeping the demand and the AV ratio of
+ * the whole simulation.
+ */
+package aim4.benchmark;
@@ -198,6 +198,61 @@ public class SimConfig {
      */
     public static boolean USE_ADAPTIVE_TIMING = true;
     
+    /**
+     * If the gap extension and maximum green tables used by adaptive timing should interpolate between their entries instead of using the closest entry
+     */
+    public static boolean INTERPOLATE_SIGNAL_TIMING_TABLES = false;
+    
+    /**
+     * The number of threads the intersection managers act on during a time step. Only maps with several intersections, each with its own intersection manager, act on more than one thread, and the results are the same for any number of threads, so raise it only where the extra threads pay for their hand-offs.
+     */
+    public static int IM_THREADS = 1;
+    
+    /**
+     * If turn movements files should be read while the simulation reaches their time slots instead of all at once before it starts. Meant for count files spanning many days.
+     */
+    public static boolean STREAM_TURN_MOVEMENTS = false;
+    
+    /**
+     * If vehicles spawned from turn movements files should only be spawned at the spawn points with a spawn due, kept in a single queue ordered by spawn time, instead of checking every spawn point in every time step. Spawns blocked by a vehicle in the way are retried with a growing delay.
+     */
+    public static boolean SCHEDULE_SPAWNS = false;
+    
+    /**
+     * The directory the lane conflicts of intersections are cached in across runs, or null to compute them in every run. Runs of a sweep sharing the directory only compute the conflicts of an intersection once.
+     */
+    public static String SCENARIO_CACHE_DIR = null;
+    
+    /**
+     * The file the outcome of every completed vehicle is logged to, or null to keep the outcomes in memory until the end of the run.
+     */
+    public static String RESULT_LOG_FILE = null;
+    
+    /**
+     * Whether the phases of every step of the simulator should be timed, and the profile published through JMX.
+     */
+    public static boolean PROFILE_STEPS = false;
+    
+    /**
+     * Whether the step profiler should also count the bytes every phase of a step allocates on the simulation thread. Only read when PROFILE_STEPS is set.
+     */
+    public static boolean PROFILE_ALLOCATIONS = false;
+    
+    /**
+     * The file the vehicle poses and traffic signals of every step are recorded to for replay in the viewer, or null to record nothing.
+     */
+    public static String TRAJECTORY_FILE = null;
+    
+    /**
+     * The seconds of signal history the signal visualization of an intersection keeps and shows.
+     */
+    public static double SIGNAL_HISTORY_WINDOW = 30;
+    
+    /**
+     * The file the phase segments leaving the history of the signal visualization are appended to, or null to drop them.
+     */
+    public static String SIGNAL_HISTORY_FILE = null;
+    
     /**
      * Flag for if explicit mappings should be used for which lanes should turn right on red (also called with traffic turns), or if the simulator should try to figure out what's allowed
      */
@@ -2,11 +2,10 @@ package aim4.config.ringbarrier;
 
 import aim4.config.Constants;
 import aim4.map.Road;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.PriorityQueue;
 import java.util.Set;
 
 /**
@@ -15,12 +14,191 @@ import java.util.Set;
  */
 public class ActuationTracker {
 
-    private HashMap<Road, EnumMap<Constants.TurnDirection, PriorityQueue<ActuationExitPair>>> actuationsAndExits;
+    /**
+     * A read only, time sorted view of the actuations and exits returned by a
+     * lookup. The view is reused by the tracker, so it is only valid until the
+     * next lookup.
+     */
+    public static class View {
+
+        private double[] sortTimes;
+        private double[] otherTimes;
+        private int from;
+        private int to;
+        private boolean sortedByActuation;
+        //scratch space for lookups spanning multiple turn directions
+        private double[] mergedSortTimes = new double[16];
+        private double[] mergedOtherTimes = new double[16];
+
+        private View() {
+        }
+
+        public int size() {
+            return to - from;
+        }
+
+        public boolean isEmpty() {
+            return to == from;
+        }
+
+        /**
+         * @param i index in the view, in time order
+         * @return the time the actuation occurs
+         */
+        public double getActuationTime(int i) {
+            return (sortedByActuation ? sortTimes : otherTimes)[from + i];
+        }
+
+        /**
+         * @param i index in the view, in time order
+         * @return the time at which the vehicle triggering the actuation will
+         * clear the intersection
+         */
+        public double getExitTimeForActuation(int i) {
+            return (sortedByActuation ? otherTimes : sortTimes)[from + i];
+        }
+
+        private void clear(boolean sortedByActuation) {
+            this.sortedByActuation = sortedByActuation;
+            sortTimes = mergedSortTimes;
+            otherTimes = mergedOtherTimes;
+            from = 0;
+            to = 0;
+        }
+
+        private void wrap(double[] sortTimes, double[] otherTimes, int from, int to) {
+            this.sortTimes = sortTimes;
+            this.otherTimes = otherTimes;
+            this.from = from;
+            this.to = to;
+        }
+
+        //merges the given range into the scratch space, keeping it time sorted
+        private void merge(double[] addSort, double[] addOther, int addFrom, int addTo) {
+            int n = to;
+            int m = addTo - addFrom;
+            if (n + m > mergedSortTimes.length) {
+                int capacity = Math.max(mergedSortTimes.length * 2, n + m);
+                mergedSortTimes = Arrays.copyOf(mergedSortTimes, capacity);
+                mergedOtherTimes = Arrays.copyOf(mergedOtherTimes, capacity);
+                sortTimes = mergedSortTimes;
+                otherTimes = mergedOtherTimes;
+            }
+            //merge from the back so the merge can happen in place
+            int i = n - 1;
+            int j = addTo - 1;
+            for (int k = n + m - 1; j >= addFrom; --k) {
+                if (i >= 0 && mergedSortTimes[i] > addSort[j]) {
+                    mergedSortTimes[k] = mergedSortTimes[i];
+                    mergedOtherTimes[k] = mergedOtherTimes[i];
+                    --i;
+                } else {
+                    mergedSortTimes[k] = addSort[j];
+                    mergedOtherTimes[k] = addOther[j];
+                    --j;
+                }
+            }
+            to = n + m;
+        }
+    }
+
+    /**
+     * The actuations of a single road and turn direction, kept in two time
+     * sorted orders: by actuation time and by exit time.
+     */
+    private static class MovementLog {
+
+        private final TimeSortedPairs byActuation = new TimeSortedPairs();
+        private final TimeSortedPairs byExit = new TimeSortedPairs();
+
+        private void add(double actuationTime, double exitTime) {
+            byActuation.add(actuationTime, exitTime);
+            byExit.add(exitTime, actuationTime);
+        }
+
+        private void prune(double time) {
+            byActuation.prune(time);
+            byExit.prune(time);
+        }
+    }
+
+    /**
+     * Pairs of times sorted by the first time of each pair, stored in
+     * primitive arrays.
+     */
+    private static class TimeSortedPairs {
+
+        private double[] sortTimes = new double[8];
+        private double[] otherTimes = new double[8];
+        private int head = 0;
+        private int tail = 0;
+
+        private void add(double sortTime, double otherTime) {
+            if (tail == sortTimes.length) {
+                int size = tail - head;
+                if (size * 2 > sortTimes.length) {
+                    //grow
+                    sortTimes = Arrays.copyOf(sortTimes, sortTimes.length * 2);
+                    otherTimes = Arrays.copyOf(otherTimes, otherTimes.length * 2);
+                }
+                //compact the pruned space away
+                System.arraycopy(sortTimes, head, sortTimes, 0, size);
+                System.arraycopy(otherTimes, head, otherTimes, 0, size);
+                head = 0;
+                tail = size;
+            }
+            //insert after any equal times to keep the logging order for ties
+            int index = upperBound(sortTime);
+            System.arraycopy(sortTimes, index, sortTimes, index + 1, tail - index);
+            System.arraycopy(otherTimes, index, otherTimes, index + 1, tail - index);
+            sortTimes[index] = sortTime;
+            otherTimes[index] = otherTime;
+            ++tail;
+        }
+
+        //drops the leading pairs which occur before the given time
+        private void prune(double time) {
+            head = lowerBound(time);
+        }
+
+        //first index with a time >= the given time
+        private int lowerBound(double time) {
+            int low = head;
+            int high = tail;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortTimes[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        //first index with a time > the given time
+        private int upperBound(double time) {
+            int low = head;
+            int high = tail;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortTimes[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private HashMap<Road, EnumMap<Constants.TurnDirection, MovementLog>> actuationsAndExits;
     private double currentTime = 0;
     private final double timeToClearOld = 0;
+    private final View view = new View();
 
     public ActuationTracker() {
-        actuationsAndExits = new HashMap<Road, EnumMap<Constants.TurnDirection, PriorityQueue<ActuationExitPair>>>();
+        actuationsAndExits = new HashMap<Road, EnumMap<Constants.TurnDirection, MovementLog>>();
     }
 
     public void logActuation(double currentSimTime, double actuationTime, double exitTime, Road rd, Set<Constants.TurnDirection> tds) {
@@ -30,48 +208,42 @@ public class ActuationTracker {
 
         if (actuationTime >= currentTime) {
             //check if inner map exists for the actuation, if not, create it.
-            EnumMap<Constants.TurnDirection, PriorityQueue<ActuationExitPair>> innerMap = actuationsAndExits.get(rd);
+            EnumMap<Constants.TurnDirection, MovementLog> innerMap = actuationsAndExits.get(rd);
             if (innerMap == null) {
-                innerMap = new EnumMap<Constants.TurnDirection, PriorityQueue<ActuationExitPair>>(Constants.TurnDirection.class);
+                innerMap = new EnumMap<Constants.TurnDirection, MovementLog>(Constants.TurnDirection.class);
                 actuationsAndExits.put(rd, innerMap);
             }
 
             if (realTds != null) {
                 for (Constants.TurnDirection td : realTds) {
-                    //check if list exists for the road and turn direction, if not, create it.
-                    PriorityQueue<ActuationExitPair> queue = innerMap.get(td);
-                    if (queue == null) {
-                        innerMap.put(td, new PriorityQueue<ActuationExitPair>());
-                        queue = innerMap.get(td);
+                    //check if log exists for the road and turn direction, if not, create it.
+                    MovementLog log = innerMap.get(td);
+                    if (log == null) {
+                        log = new MovementLog();
+                        innerMap.put(td, log);
                     } else {
                         pruneList(rd, td);
                     }
 
-                    queue.add(new ActuationExitPair(actuationTime, exitTime));
+                    log.add(actuationTime, exitTime);
                 }
             }
         }
     }
 
-    //removes leading elements in the list that occur before currentTime
+    //removes leading elements in the list that occur before currentTime. Lookups never reach before currentTime, so these can't be returned anymore.
     public void pruneList(Road rd, Constants.TurnDirection td) {
-        EnumMap<Constants.TurnDirection, PriorityQueue<ActuationExitPair>> innerMap = actuationsAndExits.get(rd);
+        EnumMap<Constants.TurnDirection, MovementLog> innerMap = actuationsAndExits.get(rd);
         if (innerMap == null) {
             return;
         }
 
-        PriorityQueue<ActuationExitPair> queue = innerMap.get(td);
-        if (queue == null || queue.isEmpty()) {
+        MovementLog log = innerMap.get(td);
+        if (log == null) {
             return;
         }
 
-        while (!queue.isEmpty()) {
-            if (queue.peek().getActuationTime() + timeToClearOld < currentTime && queue.peek().getExitTimeForActuation() + timeToClearOld < currentTime) {
-                queue.poll();
-            } else {
-                return;
-            }
-        }
+        log.prune(currentTime - timeToClearOld);
     }
 
     /**
@@ -82,9 +254,10 @@ public class ActuationTracker {
      * @param endTime end time inclusive
      * @param rd
      * @param tds
-     * @return
+     * @return the actuations sorted by actuation time, valid until the next
+     * lookup
      */
-    public PriorityQueue<ActuationExitPair> getActuations(double startTime, double endTime, Road rd, Set<Constants.TurnDirection> tds) {
+    public View getActuations(double startTime, double endTime, Road rd, Set<Constants.TurnDirection> tds) {
         return getActuationsOrExits(startTime, endTime, rd, tds, true);
     }
 
@@ -96,53 +269,116 @@ public class ActuationTracker {
      * @param endTime end time inclusive
      * @param rd
      * @param tds
-     * @return
+     * @return the actuations sorted by exit time, valid until the next lookup
      */
-    public PriorityQueue<ActuationExitPair> getExits(double startTime, double endTime, Road rd, Set<Constants.TurnDirection> tds) {
+    public View getExits(double startTime, double endTime, Road rd, Set<Constants.TurnDirection> tds) {
         return getActuationsOrExits(startTime, endTime, rd, tds, false);
     }
 
-    //todo: may need to optimize this, the merging of queues isn't time/operation effecient
+    /**
+     * Count of actuations that occurred for a specific road for specific
+     * turning directions for a specific timeframe.
+     *
+     * @param startTime begin time inclusive
+     * @param endTime end time inclusive
+     * @param rd
+     * @param tds
+     * @return
+     */
+    public int countActuations(double startTime, double endTime, Road rd, Set<Constants.TurnDirection> tds) {
+        return countActuationsOrExits(startTime, endTime, rd, tds, true);
+    }
+
+    /**
+     * Count of exits that occurred for a specific road for specific turning
+     * directions for a specific timeframe.
+     *
+     * @param startTime begin time inclusive
+     * @param endTime end time inclusive
+     * @param rd
+     * @param tds
+     * @return
+     */
+    public int countExits(double startTime, double endTime, Road rd, Set<Constants.TurnDirection> tds) {
+        return countActuationsOrExits(startTime, endTime, rd, tds, false);
+    }
+
     /**
      * Lookup of actuations or exits that occurred for a specific road for
-     * specific turning directions for a specific timeframe.
+     * specific turning directions for a specific timeframe. Each range is
+     * found by binary search, and ranges of multiple turning directions are
+     * merged into the shared view.
      *
      * startTime start begin time inclusive
      *
      * @param endTime end time inclusive
      * @param rd
      * @param tds
-     * @param keyIfTrue compare keys of pairs if true (actuation times),
-     * otherwise compare values (exit times)
+     * @param keyIfTrue compare actuation times if true, otherwise compare exit
+     * times
      * @return
      */
-    private PriorityQueue<ActuationExitPair> getActuationsOrExits(double startTime, double endTime, Road rd, Set<Constants.TurnDirection> tds, boolean keyIfTrue) {
+    private View getActuationsOrExits(double startTime, double endTime, Road rd, Set<Constants.TurnDirection> tds, boolean keyIfTrue) {
         double actualStart = Math.max(startTime, currentTime);
-        PriorityQueue<ActuationExitPair> returnQueue = new PriorityQueue<ActuationExitPair>();
+        view.clear(keyIfTrue);
 
-        EnumMap<Constants.TurnDirection, PriorityQueue<ActuationExitPair>> innerMap = actuationsAndExits.get(rd);
+        EnumMap<Constants.TurnDirection, MovementLog> innerMap = actuationsAndExits.get(rd);
         if (innerMap == null) {
-            return returnQueue; //return empty list
+            return view; //return empty view
         }
 
+        boolean wrapped = false;
         for (Constants.TurnDirection td : tds) {
-            PriorityQueue<ActuationExitPair> queue = innerMap.get(td);
-            if (queue == null || queue.isEmpty()) {
+            MovementLog log = innerMap.get(td);
+            if (log == null) {
                 continue; //hop over this iteration of the loop
             }
 
-            Iterator<ActuationExitPair> it = queue.iterator();
-            while (it.hasNext()) {
-                ActuationExitPair item = it.next();
-                double timeToCompare = (keyIfTrue ? item.getActuationTime() : item.getExitTimeForActuation());
-                if (timeToCompare > endTime) {
-                    break;
-                } else if (timeToCompare >= actualStart) {
-                    returnQueue.add(item);
+            TimeSortedPairs pairs = (keyIfTrue ? log.byActuation : log.byExit);
+            int from = pairs.lowerBound(actualStart);
+            int to = pairs.upperBound(endTime);
+            if (from >= to) {
+                continue;
+            }
+
+            if (view.isEmpty()) {
+                //a single range can be viewed directly without copying
+                view.wrap(pairs.sortTimes, pairs.otherTimes, from, to);
+                wrapped = true;
+            } else {
+                if (wrapped) {
+                    //move the directly viewed range into the scratch space before merging
+                    double[] sortTimes = view.sortTimes;
+                    double[] otherTimes = view.otherTimes;
+                    int wrappedFrom = view.from;
+                    int wrappedTo = view.to;
+                    view.clear(keyIfTrue);
+                    view.merge(sortTimes, otherTimes, wrappedFrom, wrappedTo);
+                    wrapped = false;
                 }
+                view.merge(pairs.sortTimes, pairs.otherTimes, from, to);
             }
         }
 
-        return returnQueue;
+        return view;
+    }
+
+    private int countActuationsOrExits(double startTime, double endTime, Road rd, Set<Constants.TurnDirection> tds, boolean keyIfTrue) {
+        double actualStart = Math.max(startTime, currentTime);
+        EnumMap<Constants.TurnDirection, MovementLog> innerMap = actuationsAndExits.get(rd);
+        if (innerMap == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (Constants.TurnDirection td : tds) {
+            MovementLog log = innerMap.get(td);
+            if (log == null) {
+                continue;
+            }
+            TimeSortedPairs pairs = (keyIfTrue ? log.byActuation : log.byExit);
+            count += Math.max(0, pairs.upperBound(endTime) - pairs.lowerBound(actualStart));
+        }
+        return count;
     }
 }
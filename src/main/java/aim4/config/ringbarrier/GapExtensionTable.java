@@ -1,6 +1,6 @@
 package aim4.config.ringbarrier;
 
-import java.util.Map.Entry;
+import aim4.config.SimConfig;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 
@@ -9,98 +9,23 @@ public class GapExtensionTable {
     //table of maximum allowable headway by detection zone length (meters) by avg speed in m/s length to gap extension time
     private static NavigableMap<Double, NavigableMap<Double, NavigableMap<Double, Double>>> table = null;
 
-    public static Double getMaximumGapExtensionInSecondsClosestToProvidedKeys(double maximumAllowableHeadwayInSeconds, double detectionLengthInMeters, double avgApproachSpeedInMetersPerSecond) {
-        initializeTableIfNeeded();
-        Entry<Double, NavigableMap<Double, NavigableMap<Double, Double>>> preferredOuterEntry = getPreferredOuterEntry(maximumAllowableHeadwayInSeconds, table.floorEntry(maximumAllowableHeadwayInSeconds), table.ceilingEntry(maximumAllowableHeadwayInSeconds));
-        if (preferredOuterEntry.getValue() != null) {
-            //clipping potentially infinite values so distance from key calculations are safe
-            double realDetectionLength = Math.max(Double.MIN_VALUE, Math.min(detectionLengthInMeters, Double.MAX_VALUE)); 
-            Entry<Double, NavigableMap<Double, Double>> preferredMidEntry = getPreferredMidEntry(detectionLengthInMeters, preferredOuterEntry.getValue().floorEntry(detectionLengthInMeters), preferredOuterEntry.getValue().ceilingEntry(detectionLengthInMeters));
-            if (preferredMidEntry.getValue() != null) {
-                Double val = getPreferredInnerEntry(avgApproachSpeedInMetersPerSecond, preferredMidEntry.getValue().floorEntry(avgApproachSpeedInMetersPerSecond), preferredMidEntry.getValue().ceilingEntry(avgApproachSpeedInMetersPerSecond)).getValue();
-                if (val == null) {
-                    throw new RuntimeException("Inner result is null. This is not allowed.");
-                }
-                return val;
-            } else {
-                throw new RuntimeException("Mid map is null. This is not allowed.");
-            }
-        } else {
-            throw new RuntimeException("Outer map is null. This is not allowed.");
-        }
+    //the table compiled into a grid on the first lookup; the JVM initializes the
+    //holder class once, even with the intersection managers acting concurrently
+    private static class GridHolder {
+        static final TimingTableGrid GRID = compileGrid();
     }
 
-    private static Entry<Double, NavigableMap<Double, NavigableMap<Double, Double>>> getPreferredOuterEntry(double keyval, Entry<Double, NavigableMap<Double, NavigableMap<Double, Double>>> entry1, Entry<Double, NavigableMap<Double, NavigableMap<Double, Double>>> entry2) {
-        if (entry1 == null || entry2 == null) {
-            if (entry1 == null && entry2 != null) {
-                return entry2;
-            } else if (entry1 != null && entry2 == null) {
-                return entry1;
-            } else if (entry1 == null && entry2 == null) {
-                throw new RuntimeException("Both entries are null. This is not allowed.");
-            }
-        }
-
-        if (entry1.getKey() == null) {
-            throw new RuntimeException("Entry1's key is null. This is not allowed.");
-        } else if (entry2.getKey() == null) {
-            throw new RuntimeException("Entry2's key is null. This is not allowed.");
-        }
-
-        if (Math.abs(entry1.getKey() - keyval) <= Math.abs(entry2.getKey() - keyval)) {
-            return entry1;
-        } else { // (Math.abs(entry1.getKey() - keyval) > Math.abs(entry2.getKey() - keyval)) {
-            return entry2;
-        }
-    }
-
-    private static Entry<Double, NavigableMap<Double, Double>> getPreferredMidEntry(double keyval, Entry<Double, NavigableMap<Double, Double>> entry1, Entry<Double, NavigableMap<Double, Double>> entry2) {
-        if (entry1 == null || entry2 == null) {
-            if (entry1 == null && entry2 != null) {
-                return entry2;
-            } else if (entry1 != null && entry2 == null) {
-
-                return entry1;
-            } else if (entry1 == null && entry2 == null) {
-                throw new RuntimeException("Both entries are null. This is not allowed.");
-            }
-        }
-
-        if (entry1.getKey() == null) {
-            throw new RuntimeException("Entry1's key is null. This is not allowed.");
-        } else if (entry2.getKey() == null) {
-            throw new RuntimeException("Entry2's key is null. This is not allowed.");
-        }
-
-        if (Math.abs(entry1.getKey() - keyval) <= Math.abs(entry2.getKey() - keyval)) {
-            return entry1;
-        } else { // (Math.abs(entry1.getKey() - keyval) > Math.abs(entry2.getKey() - keyval)) {
-            return entry2;
+    public static Double getMaximumGapExtensionInSecondsClosestToProvidedKeys(double maximumAllowableHeadwayInSeconds, double detectionLengthInMeters, double avgApproachSpeedInMetersPerSecond) {
+        TimingTableGrid grid = GridHolder.GRID;
+        if (SimConfig.INTERPOLATE_SIGNAL_TIMING_TABLES) {
+            return grid.interpolate(maximumAllowableHeadwayInSeconds, detectionLengthInMeters, avgApproachSpeedInMetersPerSecond);
         }
+        return grid.nearest(maximumAllowableHeadwayInSeconds, detectionLengthInMeters, avgApproachSpeedInMetersPerSecond);
     }
 
-    private static Entry<Double, Double> getPreferredInnerEntry(double keyval, Entry<Double, Double> entry1, Entry<Double, Double> entry2) {
-        if (entry1 == null || entry2 == null) {
-            if (entry1 == null && entry2 != null) {
-                return entry2;
-            } else if (entry1 != null && entry2 == null) {
-                return entry1;
-            } else if (entry1 == null && entry2 == null) {
-                throw new RuntimeException("Both entries are null. This is not allowed.");
-            }
-        }
-
-        if (entry1.getKey() == null) {
-            throw new RuntimeException("Entry1's key is null. This is not allowed.");
-        } else if (entry2.getKey() == null) {
-            throw new RuntimeException("Entry2's key is null. This is not allowed.");
-        }
-
-        if (Math.abs(entry1.getKey() - keyval) <= Math.abs(entry2.getKey() - keyval)) {
-            return entry1;
-        } else { // (Math.abs(entry1.getKey() - keyval) > Math.abs(entry2.getKey() - keyval)) {
-            return entry2;
-        }
+    private static TimingTableGrid compileGrid() {
+        initializeTableIfNeeded();
+        return TimingTableGrid.compile3(table);
     }
 
     private static void initializeTableIfNeeded() {
@@ -1,6 +1,6 @@
 package aim4.config.ringbarrier;
 
-import java.util.Map.Entry;
+import aim4.config.SimConfig;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 
@@ -9,68 +9,23 @@ public class MaximumGreenTable {
     //table of volume per lane per hour per phase (veh/hr/ln) by cycle length to maximum, green time
     private static NavigableMap<Double, NavigableMap<Double, Double>> table = null;
 
-    public static Double getMaximumGreenTimeInSecondsClosestToProvidedKeys(double phaseVolumePerHourPerLane, double cycleLength) {
-        initializeTableIfNeeded();
-        Entry<Double, NavigableMap<Double, Double>> preferredOuterEntry = getPreferredOuterEntry(phaseVolumePerHourPerLane, table.floorEntry(phaseVolumePerHourPerLane), table.ceilingEntry(phaseVolumePerHourPerLane));
-        if (preferredOuterEntry.getValue() != null) {
-            Double val = getPreferredInnerEntry(cycleLength, preferredOuterEntry.getValue().floorEntry(cycleLength), preferredOuterEntry.getValue().ceilingEntry(cycleLength)).getValue();
-            if (val == null) {
-                throw new RuntimeException("Inner result is null. This is not allowed.");
-            }
-            return val;
-        } else {
-            throw new RuntimeException("Outer map is null. This is not allowed.");
-        }
+    //the table compiled into a grid on the first lookup; the JVM initializes the
+    //holder class once, even with the intersection managers acting concurrently
+    private static class GridHolder {
+        static final TimingTableGrid GRID = compileGrid();
     }
 
-    private static Entry<Double, NavigableMap<Double, Double>> getPreferredOuterEntry(double keyval, Entry<Double, NavigableMap<Double, Double>> entry1, Entry<Double, NavigableMap<Double, Double>> entry2) {
-        if (entry1 == null || entry2 == null) {
-            if (entry1 == null && entry2 != null) {
-                return entry2;
-            } else if (entry1 != null && entry2 == null) {
-
-                return entry1;
-            } else if (entry1 == null && entry2 == null) {
-                throw new RuntimeException("Both entries are null. This is not allowed.");
-            }
-        }
-
-        if (entry1.getKey() == null) {
-            throw new RuntimeException("Entry1's key is null. This is not allowed.");
-        } else if (entry2.getKey() == null) {
-            throw new RuntimeException("Entry2's key is null. This is not allowed.");
-        }
-
-        if (Math.abs(entry1.getKey() - keyval) <= Math.abs(entry2.getKey() - keyval)) {
-            return entry1;
-        } else { // (Math.abs(entry1.getKey() - keyval) > Math.abs(entry2.getKey() - keyval)) {
-            return entry2;
+    public static Double getMaximumGreenTimeInSecondsClosestToProvidedKeys(double phaseVolumePerHourPerLane, double cycleLength) {
+        TimingTableGrid grid = GridHolder.GRID;
+        if (SimConfig.INTERPOLATE_SIGNAL_TIMING_TABLES) {
+            return grid.interpolate(phaseVolumePerHourPerLane, cycleLength);
         }
+        return grid.nearest(phaseVolumePerHourPerLane, cycleLength);
     }
 
-    private static Entry<Double, Double> getPreferredInnerEntry(double keyval, Entry<Double, Double> entry1, Entry<Double, Double> entry2) {
-        if (entry1 == null || entry2 == null) {
-            if (entry1 == null && entry2 != null) {
-                return entry2;
-            } else if (entry1 != null && entry2 == null) {
-
-                return entry1;
-            } else if (entry1 == null && entry2 == null) {
-                throw new RuntimeException("Both entries are null. This is not allowed.");
-            }
-        }
-
-        if (entry1.getKey() == null) {
-            throw new RuntimeException("Entry1's key is null. This is not allowed.");
-        } else if (entry2.getKey() == null) {
-            throw new RuntimeException("Entry2's key is null. This is not allowed.");
-        }
-
-        if (Math.abs(entry1.getKey() - keyval) <= Math.abs(entry2.getKey() - keyval)) {
-            return entry1;
-        } else { // (Math.abs(entry1.getKey() - keyval) > Math.abs(entry2.getKey() - keyval)) {
-            return entry2;
-        }
+    private static TimingTableGrid compileGrid() {
+        initializeTableIfNeeded();
+        return TimingTableGrid.compile(table);
     }
 
     private static void initializeTableIfNeeded() {
@@ -1,7 +1,6 @@
 package aim4.config.ringbarrier;
 
 import aim4.config.Constants;
-import aim4.config.Resources;
 import aim4.config.SimConfig;
 import aim4.config.TrafficSignal;
 import aim4.im.IntersectionManager;
@@ -13,6 +12,7 @@ import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RBPhaseSegment {
 
@@ -26,7 +26,7 @@ public class RBPhaseSegment {
     private TrafficSignal color;
     private boolean legacyIsPlaceholder;
     //Long.MIN_VALUE isn't a valid ID
-    private static long nextId = Long.MIN_VALUE + 1;
+    private static final AtomicLong nextId = new AtomicLong(Long.MIN_VALUE + 1);
     private long id;
     private IntersectionManager im;
     private Set<Lane> lanesAffectedByPhaseSegment;
@@ -52,10 +52,10 @@ public class RBPhaseSegment {
     }
 
     public RBPhaseSegment(RBPhaseSegment phaseToCopy) {
-        if (nextId > 0 && nextId + 1 < 0) {
+        this.id = nextId.getAndIncrement();
+        if (id > 0 && id + 1 < 0) {
             throw new RuntimeException("The number of RBPhaseSegments that was created exceeded the maximum allowed number. This caused an overflow in IDs. As IDs are currently implemented as a simple long, this is not allowed in order to prevent identical IDs from being assigned to multiple RBPhaseSegments. Note, copying an RBPhaseSegment takes a new ID as well.");
         }
-        this.id = nextId++;
         road = phaseToCopy.road;
         gapTime = phaseToCopy.gapTime;
         minTime = phaseToCopy.minTime;
@@ -88,10 +88,10 @@ public class RBPhaseSegment {
     }
 
     public RBPhaseSegment(Road road, double gapTime, double minTime, double maxTime, TrafficSignal color, boolean crossTurn, boolean through, boolean flowTurn, boolean holdForOtherPhase, boolean otherPhasesAreHolding, boolean useAdjustableSegmentTiming) {
-        if (nextId > 0 && nextId + 1 < 0) {
+        this.id = nextId.getAndIncrement();
+        if (id > 0 && id + 1 < 0) {
             throw new RuntimeException("The number of RBPhaseSegments that was created exceeded the maximum allowed number. This caused an overflow in IDs. As IDs are currently implemented as a simple long, this is not allowed inorder to prevent identical IDs from being assigned to multiple RBPhaseSegments. Note, copying an RBPhaseSegment takes a new ID as well.");
         }
-        this.id = nextId++;
         this.road = road;
         this.gapTime = gapTime;
 
@@ -366,7 +366,7 @@ public class RBPhaseSegment {
                 if (vehicleCount > 0) {
                     maxTime = getMaxTimeBasedOnArrivalDataForAllPhasesInRingWithoutLocking();
                 } else {
-                    maxTime = MaximumGreenTable.getMaximumGreenTimeInSecondsClosestToProvidedKeys(vehicleCount / lanes.size(), Resources.ringAndBarrier.getAvgCycleLength());
+                    maxTime = MaximumGreenTable.getMaximumGreenTimeInSecondsClosestToProvidedKeys(vehicleCount / lanes.size(), im.getRingAndBarrier().getAvgCycleLength());
                 }
                 maxTime = Math.max(maxTime, getMinTime());
                 if (segmentToHoldOn == null && holdForOtherSegment) {
@@ -426,7 +426,7 @@ public class RBPhaseSegment {
 
                 //vhl.set(i, vhl.get(i) + vehicleCount / lanes.size());
                 vhl.set(i, vhl.get(i) + vehicleCount / numLanes);
-                double timeToAdd = MaximumGreenTable.getMaximumGreenTimeInSecondsClosestToProvidedKeys(vehicleCount / lanes.size(), Resources.ringAndBarrier.getAvgCycleLength());
+                double timeToAdd = MaximumGreenTable.getMaximumGreenTimeInSecondsClosestToProvidedKeys(vehicleCount / lanes.size(), im.getRingAndBarrier().getAvgCycleLength());
 
                 //double timeToAdd = MaximumGreenTable.getMaximumGreenTimeInSecondsClosestToProvidedKeys(arrivalsForIntersection / numberOfActiveLanes, Resources.ringAndBarrier.getAvgCycleLength());
                 maxTimeEstimateForRing.set(i, maxTimeEstimateForRing.get(i) + timeToAdd);
@@ -14,12 +14,12 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RBRing implements Comparable<RBRing> {
 
-    private static int nextRingId = 0;
+    private static final AtomicInteger nextRingId = new AtomicInteger();
 
     private final LinkedList<RBPhaseSegment> phaseSegments;
     private LinkedList<RBPhaseSegment> representativeSegmentsForPhases;
@@ -62,7 +62,7 @@ public class RBRing implements Comparable<RBRing> {
 //            currentSegmentTimingInformation = new HistoricalRBSegmentInformation(currentSegment.getSegmentId(), 0, currentSegment.getMinTime(), currentSegment.getMaxTime(), currentSegment.getMinTime(), 0, this.earlyGapoutsPermitted, currentSegment.getColor(), currentSegment.areGapExtensionsAllowed());
 //        }
 
-        ringId = nextRingId++;
+        ringId = nextRingId.getAndIncrement();
         if (ringId < 0) {
             throw new RuntimeException("More rings have been created than are representable by the positive numbers in [0, " + Integer.MIN_VALUE + "]. IDs for rings have overflowed.");
         }
@@ -250,7 +250,8 @@ public class RBRing implements Comparable<RBRing> {
     }
 
     public static int getNumberOfTotalRingsCreated() {
-        return (nextRingId < 0 ? Integer.MAX_VALUE : nextRingId);
+        int created = nextRingId.get();
+        return (created < 0 ? Integer.MAX_VALUE : created);
     }
 
     /**
@@ -323,16 +324,15 @@ public class RBRing implements Comparable<RBRing> {
         double maxEndTime = currentSegmentTimingInformation.getSimTimeWhenMaxTimeExpires();
 
         if (currentSegmentTimingInformation.areGapExtensionsAllowed()) {
-            PriorityQueue<ActuationExitPair> actuationsAndExits = at.getActuations(beginTime, maxEndTime, currentSegment.getRoad(), currentSegment.getTurnDirectionsForPhaseSegment());
+            ActuationTracker.View actuationsAndExits = at.getActuations(beginTime, maxEndTime, currentSegment.getRoad(), currentSegment.getTurnDirectionsForPhaseSegment());
 
             Double time = null;
             if (!actuationsAndExits.isEmpty()) {
                 time = currentSegmentTimingInformation.getSimTimeWhenExpectedEndTimeExpires();
             }
 
-            while (!actuationsAndExits.isEmpty() && currentSegmentTimingInformation.getSimTimeWhenExpectedEndTimeExpires() != maxEndTime) { //check to see if enough actuations have been logged to guarantee a transition to the next phase
-                ActuationExitPair aePair = actuationsAndExits.poll();
-                double actuation = aePair.getActuationTime();
+            for (int i = 0; i < actuationsAndExits.size() && currentSegmentTimingInformation.getSimTimeWhenExpectedEndTimeExpires() != maxEndTime; ++i) { //check to see if enough actuations have been logged to guarantee a transition to the next phase
+                double actuation = actuationsAndExits.getActuationTime(i);
 
                 if (actuation < currentSegmentTimingInformation.getEpoch()) {
                     continue;
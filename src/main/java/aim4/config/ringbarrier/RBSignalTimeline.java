@@ -0,0 +1,493 @@
+package aim4.config.ringbarrier;
+
+import aim4.config.Constants.TurnDirection;
+import aim4.config.SimConfig;
+import aim4.config.TrafficSignal;
+import aim4.map.Road;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The future phase segments of the rings of a ring and barrier object,
+ * materialized for a single time step. The timeline simulates the rings
+ * forward once, using the earliest and the latest end time of every segment,
+ * and records the end times of the segments in sorted arrays, so that the
+ * range of segments which may be active at a future time is found with a
+ * binary search. The segments are simulated lazily one barrier to barrier
+ * epoch at a time, so exactly the segments a direct look ahead would have
+ * reached get locked. A timeline is only valid as long as the state of the
+ * rings does not change. The sets and lists handed out are shared, so that a
+ * query allocates nothing once its range has been seen in the time step.
+ */
+class RBSignalTimeline {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * The end times of the segments of every ring, choosing either the
+     * earliest or the latest end time of each segment.
+     */
+    private static class Trajectory {
+
+        /**
+         * Whether the earliest end times are used.
+         */
+        private final boolean chooseEarly;
+        /**
+         * The rings.
+         */
+        private final RBRing[] rings;
+        /**
+         * The last simulated segment of each ring.
+         */
+        private final RBPhaseSegment[] segments;
+        /**
+         * The timing information of the last simulated segment of each ring.
+         */
+        private final HistoricalRBSegmentInformation[] infos;
+        /**
+         * The end times of the simulated segments of each ring, by index
+         * relative to the current segment. The last segment before a barrier
+         * ends when every ring is able to cross the barrier.
+         */
+        private final double[][] ends;
+        /**
+         * The number of simulated segments of each ring.
+         */
+        private final int[] counts;
+        /**
+         * The time at which the rings cross the last simulated barrier.
+         */
+        private double horizon;
+
+        /**
+         * Create a trajectory and simulate the epoch of the current segments.
+         *
+         * @param rings the rings
+         * @param chooseEarly whether the earliest end times are used
+         */
+        private Trajectory(RBRing[] rings, boolean chooseEarly) {
+            this.chooseEarly = chooseEarly;
+            this.rings = rings;
+            segments = new RBPhaseSegment[rings.length];
+            infos = new HistoricalRBSegmentInformation[rings.length];
+            ends = new double[rings.length][];
+            counts = new int[rings.length];
+            for (int i = 0; i < rings.length; i++) {
+                segments[i] = rings[i].getCurrentPhaseSegment();
+                infos[i] = rings[i].getCurrentSegmentTimingInformationCopy();
+                ends[i] = new double[8];
+                append(i, endTime(infos[i]));
+            }
+            finishEpoch();
+        }
+
+        /**
+         * Get the index of the segment of a ring which contains a future time.
+         *
+         * @param ring the index of the ring
+         * @param time the future time
+         * @return the index of the first segment ending at or after the time,
+         * relative to the current segment
+         */
+        private int indexAt(int ring, double time) {
+            while (horizon < time) {
+                crossBarrier();
+                finishEpoch();
+            }
+            double[] a = ends[ring];
+            int low = 0;
+            int high = counts[ring] - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (a[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Simulate every ring up to the last segment before the next barrier
+         * and extend those segments to the time all the rings reach it.
+         */
+        private void finishEpoch() {
+            double latestTime = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < rings.length; i++) {
+                while (!segments[i].getNextPhaseSegment().isBarrier()) {
+                    advance(i, endTime(infos[i]));
+                }
+                latestTime = Math.max(latestTime, endTime(infos[i]));
+            }
+            for (int i = 0; i < rings.length; i++) {
+                ends[i][counts[i] - 1] = latestTime;
+            }
+            horizon = latestTime;
+        }
+
+        /**
+         * Move every ring into the barrier.
+         */
+        private void crossBarrier() {
+            for (int i = 0; i < rings.length; i++) {
+                advance(i, horizon);
+            }
+        }
+
+        /**
+         * Move a ring to its next segment.
+         *
+         * @param ring the index of the ring
+         * @param time the time the next segment starts
+         */
+        private void advance(int ring, double time) {
+            RBPhaseSegment seg = segments[ring].getNextPhaseSegment();
+            segments[ring] = seg;
+            infos[ring] = new HistoricalRBSegmentInformation(rings[ring], seg.getSegmentId(), time, seg.getMinTime(), seg.getMaxTimeAndLock(), (chooseEarly ? seg.getMinTime() : seg.getMaxTimeAndLock()) + time, time, infos[ring].isEarlyGapoutAllowed(), seg.getColor(), seg.areGapExtensionsAllowed());
+            append(ring, endTime(infos[ring]));
+        }
+
+        /**
+         * Record the end time of the next segment of a ring.
+         *
+         * @param ring the index of the ring
+         * @param end the end time
+         */
+        private void append(int ring, double end) {
+            if (counts[ring] == ends[ring].length) {
+                ends[ring] = Arrays.copyOf(ends[ring], counts[ring] * 2);
+            }
+            ends[ring][counts[ring]++] = end;
+        }
+
+        /**
+         * @param info the timing information of a segment
+         * @return the end time of the segment for this trajectory
+         */
+        private double endTime(HistoricalRBSegmentInformation info) {
+            return (chooseEarly ? info.getEarliestKnownEndTime() : info.getLatestKnownEndTime());
+        }
+    }
+
+    /**
+     * The ring handling each movement, a road and a turn direction, of a ring
+     * and barrier object. The phase segments of the rings never change, so
+     * the index is built once and shared by the timelines of every step.
+     */
+    static class MovementIndex {
+
+        /**
+         * The value for a movement no ring handles.
+         */
+        static final int NO_RING = -1;
+        /**
+         * The value for a movement several rings handle.
+         */
+        static final int SEVERAL_RINGS = -2;
+        /**
+         * The index of the ring handling each turn direction, by ordinal, of
+         * the roads.
+         */
+        private final Map<Road, int[]> ringsByRoad = new HashMap<Road, int[]>();
+
+        /**
+         * Create the index of the non-barrier segments of the rings.
+         *
+         * @param rings the rings, sorted by ring ID
+         */
+        MovementIndex(RBRing[] rings) {
+            for (int i = 0; i < rings.length; i++) {
+                for (RBPhaseSegment seg : rings[i].getPhaseSegments()) {
+                    if (seg.isBarrier()) {
+                        continue;
+                    }
+                    int[] byTurn = ringsByRoad.get(seg.getRoad());
+                    if (byTurn == null) {
+                        byTurn = new int[TurnDirection.values().length];
+                        Arrays.fill(byTurn, NO_RING);
+                        ringsByRoad.put(seg.getRoad(), byTurn);
+                    }
+                    for (TurnDirection td : seg.getTurnDirectionsForPhaseSegment()) {
+                        int ring = byTurn[td.ordinal()];
+                        byTurn[td.ordinal()] = (ring == NO_RING || ring == i ? i : SEVERAL_RINGS);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param road the road
+         * @param td the turn direction
+         * @return the index of the ring handling the movement, NO_RING or
+         * SEVERAL_RINGS
+         */
+        int getRing(Road road, TurnDirection td) {
+            int[] byTurn = ringsByRoad.get(road);
+            return (byTurn == null ? NO_RING : byTurn[td.ordinal()]);
+        }
+    }
+
+    /**
+     * A range of segments of a ring, relative to its current segment.
+     */
+    private static class Range {
+
+        /**
+         * The first index of the range, inclusive.
+         */
+        private final int start;
+        /**
+         * The last index of the range, exclusive when actuation is allowed and
+         * inclusive otherwise.
+         */
+        private final int end;
+        /**
+         * The segments of the range.
+         */
+        private final LinkedHashSet<RBSegmentReadOnlyNoLockingView> segments;
+        /**
+         * The road of each segment of the range, in order.
+         */
+        private final Road[] roads;
+        /**
+         * The turn directions of each segment of the range, as a bit mask of
+         * their ordinals.
+         */
+        private final int[] turnDirections;
+        /**
+         * The color of each segment of the range.
+         */
+        private final TrafficSignal[] colors;
+        /**
+         * Whether each segment of the range is a barrier.
+         */
+        private final boolean[] barriers;
+
+        private Range(int start, int end, LinkedHashSet<RBSegmentReadOnlyNoLockingView> segments) {
+            this.start = start;
+            this.end = end;
+            this.segments = segments;
+            roads = new Road[segments.size()];
+            turnDirections = new int[segments.size()];
+            colors = new TrafficSignal[segments.size()];
+            barriers = new boolean[segments.size()];
+            int i = 0;
+            for (RBSegmentReadOnlyNoLockingView segment : segments) {
+                roads[i] = segment.getRoad();
+                for (TurnDirection td : segment.getTurnDirectionsForPhaseSegment()) {
+                    turnDirections[i] |= 1 << td.ordinal();
+                }
+                colors[i] = segment.getColor();
+                barriers[i] = segment.isBarrier();
+                i++;
+            }
+        }
+    }
+
+    /////////////////////////////////
+    // PACKAGE FIELDS
+    /////////////////////////////////
+    /**
+     * The value of getSignalsAtTime for a movement no segment handles.
+     */
+    static final int NOT_HANDLED = -1;
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The time the timeline was built at.
+     */
+    private final double currentTime;
+    /**
+     * The rings, sorted by ring ID.
+     */
+    private final RBRing[] rings;
+    /**
+     * The ring handling each movement.
+     */
+    private final MovementIndex movements;
+    /**
+     * The current segment of every ring, created on first use.
+     */
+    private List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> currentSegments;
+    /**
+     * The trajectory using the latest end times, created on first use.
+     */
+    private Trajectory late;
+    /**
+     * The trajectory using the earliest end times, created on first use. Only
+     * used when actuation is allowed.
+     */
+    private Trajectory early;
+    /**
+     * The segment ranges handed out so far, by ring.
+     */
+    private final List<List<Range>> ranges;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a timeline for the current state of the rings.
+     *
+     * @param currentTime the current time
+     * @param rings the rings, sorted by ring ID
+     * @param movements the ring handling each movement
+     */
+    RBSignalTimeline(double currentTime, RBRing[] rings, MovementIndex movements) {
+        this.currentTime = currentTime;
+        this.rings = rings;
+        this.movements = movements;
+        ranges = new ArrayList<List<Range>>(rings.length);
+        for (int i = 0; i < rings.length; i++) {
+            ranges.add(new ArrayList<Range>(4));
+        }
+    }
+
+    /////////////////////////////////
+    // PACKAGE METHODS
+    /////////////////////////////////
+    /**
+     * @return the time the timeline was built at
+     */
+    double getCurrentTime() {
+        return currentTime;
+    }
+
+    /**
+     * @return the number of rings
+     */
+    int getNumberOfRings() {
+        return rings.length;
+    }
+
+    /**
+     * @param ring the index of the ring
+     * @return the ring
+     */
+    RBRing getRing(int ring) {
+        return rings[ring];
+    }
+
+    /**
+     * @param road the road
+     * @param td the turn direction
+     * @return the index of the ring handling the movement,
+     * MovementIndex.NO_RING or MovementIndex.SEVERAL_RINGS
+     */
+    int getRingHandling(Road road, TurnDirection td) {
+        return movements.getRing(road, td);
+    }
+
+    /**
+     * Get the current segment of every ring, sorted by ring ID. The returned
+     * list and sets are shared and must not be modified.
+     *
+     * @return the current segments
+     */
+    List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> getCurrentSegments() {
+        if (currentSegments == null) {
+            List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> segments = new ArrayList<LinkedHashSet<RBSegmentReadOnlyNoLockingView>>(rings.length);
+            for (RBRing ring : rings) {
+                LinkedHashSet<RBSegmentReadOnlyNoLockingView> set = new LinkedHashSet<RBSegmentReadOnlyNoLockingView>(2);
+                set.add(new RBSegmentReadOnlyNoLockingView(ring.getCurrentPhaseSegment()));
+                segments.add(set);
+            }
+            currentSegments = Collections.unmodifiableList(segments);
+        }
+        return currentSegments;
+    }
+
+    /**
+     * Get the segments of a ring which may be active at a future time, from
+     * the segment ending the latest to the segment ending the earliest. The
+     * returned set is shared and must not be modified.
+     *
+     * @param ring the index of the ring
+     * @param futureTime the future time
+     * @return the segments which may be active
+     */
+    LinkedHashSet<RBSegmentReadOnlyNoLockingView> getSegmentsAtTime(int ring, double futureTime) {
+        return getRange(ring, futureTime).segments;
+    }
+
+    /**
+     * Get the signals a movement may have at a future time, from the segments
+     * of a ring which may be active then. Segments for the road and turn
+     * direction give their color, and segments for other roads give red.
+     *
+     * @param ring the index of the ring
+     * @param futureTime the future time
+     * @param road the road
+     * @param td the turn direction
+     * @return the bit mask of the ordinals of the signals, or NOT_HANDLED if
+     * no segment other than a barrier handles the road and turn direction
+     */
+    int getSignalsAtTime(int ring, double futureTime, Road road, TurnDirection td) {
+        Range range = getRange(ring, futureTime);
+        int turnDirection = 1 << td.ordinal();
+        boolean handled = false;
+        int signals = 0;
+        for (int i = 0; i < range.roads.length; i++) {
+            if (range.roads[i] == road) {
+                if ((range.turnDirections[i] & turnDirection) != 0) {
+                    signals |= 1 << range.colors[i].ordinal();
+                    handled |= !range.barriers[i];
+                }
+            } else {
+                signals |= 1 << TrafficSignal.RED.ordinal();
+            }
+        }
+        return (handled ? signals : NOT_HANDLED);
+    }
+
+    /**
+     * Get the range of segments of a ring which may be active at a future
+     * time, creating it the first time the range is reached in the step.
+     *
+     * @param ring the index of the ring
+     * @param futureTime the future time
+     * @return the range
+     */
+    private Range getRange(int ring, double futureTime) {
+        int start;
+        int end;
+        if (SimConfig.ALLOW_ACTUATION) {
+            // simulate the early trajectory first, as a direct look ahead does
+            if (early == null) {
+                early = new Trajectory(rings, true);
+            }
+            end = early.indexAt(ring, futureTime) + 1;
+            if (late == null) {
+                late = new Trajectory(rings, false);
+            }
+            start = late.indexAt(ring, futureTime);
+        } else {
+            if (late == null) {
+                late = new Trajectory(rings, false);
+            }
+            start = late.indexAt(ring, futureTime);
+            end = start;
+        }
+
+        List<Range> ringRanges = ranges.get(ring);
+        for (int i = 0; i < ringRanges.size(); i++) {
+            Range range = ringRanges.get(i);
+            if (range.start == start && range.end == end) {
+                return range;
+            }
+        }
+        Range range = new Range(start, end, rings[ring].getSegmentsByRelativeIndexRangeFromCurrentPhaseSegment(start, end));
+        ringRanges.add(range);
+        return range;
+    }
+}
@@ -9,6 +9,8 @@ import aim4.im.IntersectionManager;
 import aim4.im.v2i.RequestHandler.ApproxNPhasesTrafficSignalRequestHandler;
 import aim4.map.Road;
 import aim4.map.lane.Lane;
+import aim4.sim.jfr.FlightEvents;
+import aim4.sim.jfr.SignalDecisionEvent;
 import aim4.util.Util;
 import aim4.vehicle.VehicleSimView;
 import java.util.ArrayList;
@@ -30,6 +32,30 @@ import java.util.Set;
 public class RingAndBarrier {
 
     private static final short CYCLE_MOVING_AVERAGE_WINDOW_SIZE = 3; //dropoutQueue only works if this is small
+    /**
+     * The read-only sets of signals, by the bit mask of the ordinals of their
+     * signals, so that future signal lookups hand out shared sets.
+     */
+    private static final List<Set<TrafficSignal>> SIGNAL_SETS;
+
+    static {
+        TrafficSignal[] signals = TrafficSignal.values();
+        List<Set<TrafficSignal>> sets = new ArrayList<Set<TrafficSignal>>(1 << signals.length);
+        for (int mask = 0; mask < (1 << signals.length); ++mask) {
+            Set<TrafficSignal> set = EnumSet.noneOf(TrafficSignal.class);
+            for (TrafficSignal signal : signals) {
+                if ((mask & (1 << signal.ordinal())) != 0) {
+                    set.add(signal);
+                }
+            }
+            sets.add(Collections.unmodifiableSet(set));
+        }
+        SIGNAL_SETS = sets;
+    }
+    /**
+     * The turn directions, kept since values() copies them on every call.
+     */
+    private static final TurnDirection[] TURN_DIRECTIONS = TurnDirection.values();
 
     private boolean fromLegacy;
     private Double LEAGACY_redOverride;
@@ -45,6 +71,9 @@ public class RingAndBarrier {
     private Queue<Double> dropoutQueue; //this only works if CYCLE_MOVING_AVERAGE_WINDOW_SIZE is small
     private short movingAverageStartupCount;
     private double cycleEpoch;
+    private RBSignalTimeline timeline; //future segments for the current step, dropped whenever the rings change
+    private RBRing[] sortedRings; //the rings by ring ID, created with the first timeline
+    private RBSignalTimeline.MovementIndex movements; //the ring handling each road and turn direction, created with the first timeline
 
     public RingAndBarrier(boolean fromLegacy, List<RBRing> rings) {
         this.fromLegacy = fromLegacy;
@@ -95,6 +124,10 @@ public class RingAndBarrier {
         return getSegmentTimingInfoSortedByRingId(true);
     }
 
+    public IntersectionManager getIM() {
+        return im;
+    }
+
     public void registerIM(IntersectionManager im) {
         if (this.im == null) {
             this.im = im;
@@ -209,14 +242,61 @@ public class RingAndBarrier {
         return null;
     }
 
+    /**
+     * This is used for vehicles to look ahead to see if a reservation can be
+     * approved. The segments are looked up in the timeline of the current step
+     * for the one ring handling the road and turn direction, so the lookup
+     * allocates nothing once the range of segments has been seen in the step.
+     * Turn direction sets other than a single one, and movements several rings
+     * handle, are checked against every ring instead. The returned set is
+     * shared and must not be modified.
+     *
+     * @param currentTime
+     * @param time
+     * @param roadContainingLane
+     * @param tds
+     * @return
+     */
     public Set<TrafficSignal> getSignalForLaneInFuture(double currentTime, double time, Road roadContainingLane, Set<TurnDirection> tds) {
-        return getSignalForLaneInFuture(currentTime, time, roadContainingLane, tds, new ArrayList<Set<RBSegmentReadOnlyNoLockingView>>(getSegmentsByRangeAtTime(time, currentTime).values()));
+        RBSignalTimeline tl = getTimeline(currentTime);
+        TurnDirection td = getOnlyTurnDirection(tds);
+        int ring = (td == null ? RBSignalTimeline.MovementIndex.SEVERAL_RINGS : tl.getRingHandling(roadContainingLane, td));
+        if (ring == RBSignalTimeline.MovementIndex.SEVERAL_RINGS) {
+            List<Set<RBSegmentReadOnlyNoLockingView>> rangeOfSegments = new ArrayList<Set<RBSegmentReadOnlyNoLockingView>>(tl.getNumberOfRings());
+            for (int i = 0; i < tl.getNumberOfRings(); ++i) {
+                rangeOfSegments.add(tl.getSegmentsAtTime(i, time));
+            }
+            return getSignalForLaneInFuture(currentTime, time, roadContainingLane, tds, rangeOfSegments);
+        } else if (ring == RBSignalTimeline.MovementIndex.NO_RING) {
+            //look ahead anyway, as looking ahead locks the segments it reaches
+            tl.getSegmentsAtTime(0, time);
+            return SIGNAL_SETS.get(1 << TrafficSignal.UNKNOWN.ordinal());
+        }
+        int signals = tl.getSignalsAtTime(ring, time, roadContainingLane, td);
+        return SIGNAL_SETS.get(signals == RBSignalTimeline.NOT_HANDLED ? 1 << TrafficSignal.UNKNOWN.ordinal() : signals);
+    }
+
+    /**
+     * @param tds the turn directions
+     * @return the turn direction if there is exactly one, else null
+     */
+    private static TurnDirection getOnlyTurnDirection(Set<TurnDirection> tds) {
+        if (tds == null || tds.size() != 1) {
+            return null;
+        }
+        for (TurnDirection td : TURN_DIRECTIONS) {
+            if (tds.contains(td)) {
+                return td;
+            }
+        }
+        return null;
     }
 
     /**
      * This is used for vehicles to look ahead to see if a reservation can be
      * approved. Note, the check to see if the allowed turning movements and the
-     * desired turning movements
+     * desired turning movements. The returned set is shared and must not be
+     * modified.
      *
      * @param currentTime
      * @param time
@@ -226,57 +306,67 @@ public class RingAndBarrier {
      * @return
      */
     public Set<TrafficSignal> getSignalForLaneInFuture(double currentTime, double time, Road roadContainingLane, Set<TurnDirection> tds, List<Set<RBSegmentReadOnlyNoLockingView>> rangeOfSegments) {
-        HashMap<Integer, Set<TrafficSignal>> retMap = new HashMap<Integer, Set<TrafficSignal>>();
         List<Set<RBSegmentReadOnlyNoLockingView>> ringsForSignalAtTimeBroadRange = rangeOfSegments;
 
         if (tds == null) {
-            return EnumSet.of(TrafficSignal.UNKNOWN);
+            return SIGNAL_SETS.get(1 << TrafficSignal.UNKNOWN.ordinal());
         } else if (tds.size() != 1) {
             throw new UnsupportedOperationException("Multiple turn directions are currently not supported in future lane lookup. To add this functionality, you must handle vehicle requests (which should always be 1 turn direction) differently than when this function is called for the reason you're calling it.");
         }
 
-        Integer correctRingListIndex = null;
+        int correctRingListIndex = -1;
 
-        //todo, optimize this with a map or something....
+        //find the ring handling the turn direction first, so only its signals need to be collected
         for (int ring = 0; ring < ringsForSignalAtTimeBroadRange.size(); ++ring) {
             Set<RBSegmentReadOnlyNoLockingView> segmentSet = ringsForSignalAtTimeBroadRange.get(ring);
             if (segmentSet == null || segmentSet.isEmpty()) {
                 throw new RuntimeException("Got no future segments for a ring. This should never occur.");
-            } else {
-                if (!retMap.containsKey(ring)) {
-                    retMap.put(ring, EnumSet.noneOf(TrafficSignal.class));
-                }
-                Iterator<RBSegmentReadOnlyNoLockingView> segmentViews = segmentSet.iterator();
-
-                while (segmentViews.hasNext()) {
-                    RBSegmentReadOnlyNoLockingView segmentView = segmentViews.next();
-                    //System.out.print("\t" + segmentView.getRoad().getName() + ", " + segmentView.getTurnDirectionsForPhaseSegment() + ", " + segmentView.getColor() + "\n");
-                    if (segmentView != null) {
-                        if (segmentView.getRoad() == roadContainingLane) {
-                            //an empty check isn't needed here so long as an only one turn direction check is permitted (as is done using the exception above in this function that states "Multiple turn directions are currently not supported in future...")
-                            if (!Collections.disjoint(segmentView.getTurnDirectionsForPhaseSegment(), tds)) {
-                                retMap.get(ring).add(segmentView.getColor());
-                                //barriers "handle" all turn directions, so they shouldn't be considered in this check
-                                if (!segmentView.isBarrier()) {
-                                    if (correctRingListIndex != null && ring != correctRingListIndex) {
-                                        throw new RuntimeException("When looking at future signals, multiple rings could be the correct ring for the turn direction provided.");
-                                    }
-                                    correctRingListIndex = ring;
-                                }
-                            }
-                        } else {
-                            retMap.get(ring).add(TrafficSignal.RED);
-                        }
+            }
+            for (RBSegmentReadOnlyNoLockingView segmentView : segmentSet) {
+                //barriers "handle" all turn directions, so they shouldn't be considered in this check
+                //an empty check isn't needed here so long as an only one turn direction check is permitted (as is done using the exception above in this function that states "Multiple turn directions are currently not supported in future...")
+                if (segmentView != null && segmentView.getRoad() == roadContainingLane && !segmentView.isBarrier()
+                        && !Collections.disjoint(segmentView.getTurnDirectionsForPhaseSegment(), tds)) {
+                    if (correctRingListIndex != -1 && ring != correctRingListIndex) {
+                        throw new RuntimeException("When looking at future signals, multiple rings could be the correct ring for the turn direction provided.");
                     }
+                    correctRingListIndex = ring;
                 }
             }
         }
 
-        if (correctRingListIndex != null) {
-            return retMap.get(correctRingListIndex);
-        } else {
-            return EnumSet.of(TrafficSignal.UNKNOWN);
+        if (correctRingListIndex == -1) {
+            return SIGNAL_SETS.get(1 << TrafficSignal.UNKNOWN.ordinal());
+        }
+        return getSignalsForRing(ringsForSignalAtTimeBroadRange.get(correctRingListIndex), roadContainingLane, tds);
+    }
+
+    /**
+     * Get the signals of the segments of the ring handling a road and turn
+     * direction which may be active at a future time.
+     *
+     * @param segmentSet the segments of the ring which may be active
+     * @param roadContainingLane
+     * @param tds the turn direction
+     * @return the shared set of signals, or UNKNOWN if no segment other than a
+     * barrier handles the road and turn direction
+     */
+    private static Set<TrafficSignal> getSignalsForRing(Set<RBSegmentReadOnlyNoLockingView> segmentSet, Road roadContainingLane, Set<TurnDirection> tds) {
+        boolean handled = false;
+        int signals = 0;
+        for (RBSegmentReadOnlyNoLockingView segmentView : segmentSet) {
+            if (segmentView != null) {
+                if (segmentView.getRoad() == roadContainingLane) {
+                    if (!Collections.disjoint(segmentView.getTurnDirectionsForPhaseSegment(), tds)) {
+                        signals |= 1 << segmentView.getColor().ordinal();
+                        handled |= !segmentView.isBarrier();
+                    }
+                } else {
+                    signals |= 1 << TrafficSignal.RED.ordinal();
+                }
+            }
         }
+        return SIGNAL_SETS.get(handled ? signals : 1 << TrafficSignal.UNKNOWN.ordinal());
     }
 
     public ArrayList<LinkedList<Set<Constants.TurnDirection>>> getTurnDirectionsByRingSeparatedByPhaseSortedByRingId() {
@@ -369,6 +459,7 @@ public class RingAndBarrier {
     }
 
     private void checkForPhaseTransitionAndAdvance(double currentTime) {
+        timeline = null;
         PriorityQueue<RBRing> tempQueue = new PriorityQueue<RBRing>();
         HashSet<RBRing> ringsReadyToCrossIntoBarrier = new HashSet<RBRing>();
         double latestTime = Double.NEGATIVE_INFINITY;
@@ -397,6 +488,9 @@ public class RingAndBarrier {
                 } else {
                     //here, we've already transitioned to the next segment
                     //ring.updateUpdateTimeOfSegmentTimingInformation(currentTime); //not needed, as the advance segment does this for us
+                    if (isSignalDecisionRecorded()) {
+                        SignalDecisionEvent.emit(getImId(), ring, SignalDecisionEvent.PHASE_CHANGE, rbsi, currentTime);
+                    }
                     ringsNotTouched.remove(ring);
                     nextUpdate.add(ring);
                     if (!aboutToLoop && allRingsLoopedTime != null) {
@@ -421,7 +515,12 @@ public class RingAndBarrier {
             nextUpdate.addAll(tempQueue);
         } else if (ringsReadyToCrossIntoBarrier.size() == rings.size()) { //every ring is ready to cross the barrier
             for (RBRing ring : ringsReadyToCrossIntoBarrier) {
+                boolean recorded = isSignalDecisionRecorded();
+                HistoricalRBSegmentInformation rbsi = (recorded ? ring.getCurrentSegmentTimingInformationCopy() : null);
                 ring.forceAdvanceSegment(currentTime, false, actTrack, latestTime);
+                if (recorded) {
+                    SignalDecisionEvent.emit(getImId(), ring, SignalDecisionEvent.PHASE_CHANGE, rbsi, currentTime);
+                }
             }
         }
 
@@ -454,6 +553,7 @@ public class RingAndBarrier {
         if (!SimConfig.SIM_ALLOWS_EARLY_GAPOUT) {
             return;
         }
+        timeline = null;
         Set<TurnDirection> incomingLaneTds = incomingLane.getLaneIM().getMappedTurnDirectionsForAllVehicleTypes(im);
 
         for (RBRing ring : rings.values()) {
@@ -489,7 +589,9 @@ public class RingAndBarrier {
             }
 
             if (!anyVehicleMayArriveInTime) {
-                ring.flagEarlyGapout(im.getCurrentTime());
+                if (ring.flagEarlyGapout(im.getCurrentTime()) && isSignalDecisionRecorded()) {
+                    SignalDecisionEvent.emit(getImId(), ring, SignalDecisionEvent.GAP_OUT, null, im.getCurrentTime());
+                }
             }
         }
     }
@@ -501,6 +603,7 @@ public class RingAndBarrier {
                     && ring.getCurrentPhaseSegment().getRoad() == arrivalLane.getContainingRoad()
                     && (arrivalLaneTds == Collections.EMPTY_SET || ring.getCurrentPhaseSegment().getTurnDirectionsForPhaseSegment() == Collections.EMPTY_SET || !Collections.disjoint(arrivalLaneTds, ring.getCurrentPhaseSegment().getTurnDirectionsForPhaseSegment()))) {
                 ring.resetCurrentEarlyGapoutTimerForPhaseHistorical(arrivalTime);
+                timeline = null;
             }
         }
     }
@@ -529,14 +632,35 @@ public class RingAndBarrier {
         //Set<TurnDirection> turnActs = lane.getLaneIM().getMappedTurnDirectionsForAllVehicleTypes(im); //use this instead if the vehicle type can't be intuited (in real life) based on whether the sensor actuation and vehicle intersection entrance is meeting a reservation or not. If it lines up with a reservation, it's an AV. If not, it's an HV.
         Set<TurnDirection> turnActs = lane.getLaneIM().validActionsFromLane(im, vType);
         actTrack.logActuation(currentTime, actuationTime, exitTime, lane.getContainingRoad(), turnActs);
+        timeline = null;
         for (RBRing ring : rings.values()) {
             ring.updateUpdateTimeOfSegmentTimingInformation(currentTime);
             if (lane.getContainingRoad() == ring.getCurrentPhaseSegment().getRoad() && turnActs != null && (!Collections.disjoint(ring.getCurrentPhaseSegment().getTurnDirectionsForPhaseSegment(), turnActs) || turnActs.equals(Collections.EMPTY_SET))) {
+                double previousEnd = ring.getCurrentSegmentExpectedEnd();
                 ring.logActuation(currentTime, actTrack);
+                if (isSignalDecisionRecorded() && ring.getCurrentSegmentExpectedEnd() > previousEnd) {
+                    SignalDecisionEvent.emit(getImId(), ring, SignalDecisionEvent.EXTENSION, null, currentTime);
+                }
             }
         }
     }
 
+    /**
+     * @return the ID of the intersection manager of the controller, or -1 if
+     * none is registered
+     */
+    private int getImId() {
+        return (im == null ? -1 : im.getId());
+    }
+
+    /**
+     * @return whether the signal decisions are being recorded, so that their
+     * events and the timing copies they need are only built then
+     */
+    private static boolean isSignalDecisionRecorded() {
+        return FlightEvents.AVAILABLE && SignalDecisionEvent.isTypeEnabled();
+    }
+
     public int getNumberOfRings() {
         return rings.size();
     }
@@ -630,179 +754,60 @@ public class RingAndBarrier {
         LEAGACY_redOverride = redPhaseTime;
     }
 
-    public List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> getSegmentsByRangeAtTimeAsList(double futureTime, double currentTime) {
-        HashMap<RBRing, LinkedHashSet<RBSegmentReadOnlyNoLockingView>> results = getSegmentsByRangeAtTime(futureTime, currentTime);
-        ArrayList<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> returnVals = new ArrayList<LinkedHashSet<RBSegmentReadOnlyNoLockingView>>();
-        for (int ri : sortedRingIds) {
-            RBRing ring = rings.get(ri);
-            if (results.keySet().contains(ring) && !results.get(ring).isEmpty()) {
-                returnVals.add(results.get(ring));
-            }
-        }
-        return returnVals;
+    /**
+     * Gets the current segment of every ring, sorted by ring ID, from the
+     * timeline of the current step. The returned list and sets are shared and
+     * must not be modified.
+     *
+     * @param currentTime
+     * @return
+     */
+    public List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> getCurrentSegmentViews(double currentTime) {
+        return getTimeline(currentTime).getCurrentSegments();
     }
 
     /**
      * This function looks ahead to see what segments may occur at the future
      * time provided. This is gives a broad window, using the earliest and
      * latest segment end times possible, not considering state such as
-     * currently known actuations.
+     * currently known actuations. The segments of the rings with any are put,
+     * sorted by ring ID, in a list supplied by the caller, so that the list can
+     * be reused. The sets are shared and must not be modified.
      *
      * @param futureTime
      * @param currentTime
-     * @return
+     * @param segments the list to fill, cleared first
      */
-    public HashMap<RBRing, LinkedHashSet<RBSegmentReadOnlyNoLockingView>> getSegmentsByRangeAtTime(double futureTime, double currentTime) {
-        int r = rings.size();
-        HashMap<RBRing, SignalRangeCheckDTO> earlyTimes = new HashMap<RBRing, SignalRangeCheckDTO>();
-        HashMap<RBRing, SignalRangeCheckDTO> lateTimes = new HashMap<RBRing, SignalRangeCheckDTO>();
-        HashMap<RBRing, LinkedHashSet<RBSegmentReadOnlyNoLockingView>> results = new HashMap<RBRing, LinkedHashSet<RBSegmentReadOnlyNoLockingView>>();
-
-        for (int ri : sortedRingIds) {
-            RBRing ring = rings.get(ri);
-            earlyTimes.put(ring, new SignalRangeCheckDTO(currentTime, ring.getCurrentSegmentTimingInformationCopy(), ring.getCurrentPhaseSegment(), 0, ring));
-            lateTimes.put(ring, new SignalRangeCheckDTO(currentTime, ring.getCurrentSegmentTimingInformationCopy(), ring.getCurrentPhaseSegment(), 0, ring));
-        }
-        //System.out.println(currentTime + " " + futureTime);
-        //these mutate earlyTimes and lateTimes in place.
-        getSegmentRangeBySingleTimeHelper(earlyTimes, futureTime, (SimConfig.ALLOW_ACTUATION ? true : false));
-        getSegmentRangeBySingleTimeHelper(lateTimes, futureTime, false);
-
-        for (int ri : sortedRingIds) {
-            RBRing ring = rings.get(ri);
-            results.put(ring, ring.getSegmentsByRelativeIndexRangeFromCurrentPhaseSegment(lateTimes.get(ring).index, earlyTimes.get(ring).index));
+    public void getSegmentsByRangeAtTime(double futureTime, double currentTime, List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> segments) {
+        RBSignalTimeline tl = getTimeline(currentTime);
+        segments.clear();
+        for (int ring = 0; ring < tl.getNumberOfRings(); ++ring) {
+            LinkedHashSet<RBSegmentReadOnlyNoLockingView> ringSegments = tl.getSegmentsAtTime(ring, futureTime);
+            if (!ringSegments.isEmpty()) {
+                segments.add(ringSegments);
+            }
         }
-        return results;
     }
 
     /**
-     * Mutates timeTuples in place to get desired result showing where the
-     * earliest or farthest (depending on chooseEarly) segments are in the phase
-     * segment sequence. Note, RBRing should protect against rings with 0
-     * minimum or maximum time by checking that the minimum time is
+     * Gets the timeline of the future segments for the current step, building
+     * it if the rings changed since it was last built.
      *
-     * @param timeTuples
-     * @param futureTime
-     * @param chooseEarly
+     * @param currentTime
+     * @return
      */
-    private void getSegmentRangeBySingleTimeHelper(HashMap<RBRing, SignalRangeCheckDTO> timeTuples, double futureTime, boolean chooseEarly) {
-        int r = timeTuples.size();
-        //max priority queue
-        PriorityQueue<SignalRangeCheckComparablePair> waitingOnBarrier = new PriorityQueue<SignalRangeCheckComparablePair>(r, Collections.reverseOrder());
-        PriorityQueue<SignalRangeCheckComparablePair> nextBarrierTimes = new PriorityQueue<SignalRangeCheckComparablePair>(r, Collections.reverseOrder());
-        Set<RBRing> ringsInNextBarrierTimes = new HashSet<RBRing>();
-        HashMap<RBRing, Boolean> done = new HashMap<RBRing, Boolean>();
-        int doneCount = 0;
-
-        //System.out.println("Start.++++++++++++++++++++++++++++++++++++++\nChooseEarly: " + chooseEarly +", future time:" + futureTime + ", current time: " + timeTuples.values().iterator().next().time);
-        while (doneCount < r) {
-            //System.out.println("ITERATION===============================");
-            for (SignalRangeCheckDTO srcDTO : timeTuples.values()) {
-                if (!done.containsKey(srcDTO.ring)) {
-                    done.put(srcDTO.ring, false);
-//                    System.out.println("Added key " + srcDTO.ring.getRingId());
-//                    System.out.println("Acts for key: " + srcDTO.segment.getTurnDirectionsForPhaseSegment());
-//                    System.out.println("Color for key " + srcDTO.segment.getColor().name());
-//                    System.out.println("Max: " + srcDTO.segmentInfo.getSimTimeWhenMaxTimeExpires());
-//                    System.out.println("Min: " + srcDTO.segmentInfo.getSimTimeWhenMinTimeExpires());
-//                    System.out.println("Update: " + srcDTO.segmentInfo.getSimTimeWhenUpdated());
-//                    System.out.println("Latest end: " + srcDTO.segmentInfo.getLatestKnownEndTime());
-//                    System.out.println("Earliest end: " + srcDTO.segmentInfo.getEarliestKnownEndTime());
-//                    System.out.println("Expected end: " + srcDTO.segmentInfo.getSimTimeWhenExpectedEndTimeExpires());
-//                    System.out.println("Road: " + srcDTO.segment.getRoad().getName());
-                } else if (done.get(srcDTO.ring)) {
-                    if (ringsInNextBarrierTimes.contains(srcDTO.ring)) {
-                        throw new RuntimeException("This never should have happened. A ring for which the simulation has been completed has been submitted for processing.");
-                    }
-                    SignalRangeCheckDTO copyOfSrcDTO = new SignalRangeCheckDTO(srcDTO);
-                    getTimeOfNextBarrierAndMutateSrcDtoInPlace(copyOfSrcDTO, chooseEarly);
-                    nextBarrierTimes.add(new SignalRangeCheckComparablePair((chooseEarly ? copyOfSrcDTO.segmentInfo.getEarliestKnownEndTime() : copyOfSrcDTO.segmentInfo.getLatestKnownEndTime()), srcDTO.ring));
-                    ringsInNextBarrierTimes.add(srcDTO.ring);
-                    //System.out.println("Finding next barrier for done in block1: " + (chooseEarly ? copyOfSrcDTO.segmentInfo.getEarliestKnownEndTime() : copyOfSrcDTO.segmentInfo.getLatestKnownEndTime()) + " " + srcDTO.ring.getRingId());
-                    continue;
-                }
-
-                //System.out.println("Segment end time for ring(start) " + srcDTO.ring.getRingId() + ": " + (chooseEarly ? srcDTO.segmentInfo.getEarliestKnownEndTime() : srcDTO.segmentInfo.getLatestKnownEndTime()));
-                while ((chooseEarly ? srcDTO.segmentInfo.getEarliestKnownEndTime() : srcDTO.segmentInfo.getLatestKnownEndTime()) < futureTime && !srcDTO.segment.nextPhaseSegment.isBarrier()) {
-                    srcDTO.time = (chooseEarly ? srcDTO.segmentInfo.getEarliestKnownEndTime() : srcDTO.segmentInfo.getLatestKnownEndTime());
-                    srcDTO.index++;
-                    srcDTO.segment = srcDTO.segment.getNextPhaseSegment();
-                    RBPhaseSegment seg = srcDTO.segment;
-                    //System.out.println("Sim forward for " + srcDTO.ring.getRingId() + " " + srcDTO.time + " " + srcDTO.index);
-                    srcDTO.segmentInfo = new HistoricalRBSegmentInformation(srcDTO.ring, seg.getSegmentId(), srcDTO.time, seg.getMinTime(), seg.getMaxTimeAndLock(), (chooseEarly ? seg.getMinTime() : seg.getMaxTimeAndLock()) + srcDTO.time, srcDTO.time, srcDTO.segmentInfo.isEarlyGapoutAllowed(), seg.getColor(), seg.areGapExtensionsAllowed());
-                    //System.out.println("Segment end time for ring(step) " + srcDTO.ring.getRingId() + ": " + (chooseEarly ? srcDTO.segmentInfo.getEarliestKnownEndTime() : srcDTO.segmentInfo.getLatestKnownEndTime()));
-                }
-
-                if ((chooseEarly ? srcDTO.segmentInfo.getEarliestKnownEndTime() : srcDTO.segmentInfo.getLatestKnownEndTime()) >= futureTime) {
-                    done.replace(srcDTO.ring, true);
-                    doneCount++;
-                    // System.out.println("Ring done: " + srcDTO.ring.getRingId() + " " + srcDTO.index);
-                    if (chooseEarly) {
-                        srcDTO.index++;
-                        //System.out.println("Stepped final index forward for " + srcDTO.ring.getRingId() + " " + srcDTO.index);
-                    }
-
-                    SignalRangeCheckDTO copyOfSrcDTO = new SignalRangeCheckDTO(srcDTO);
-                    getTimeOfNextBarrierAndMutateSrcDtoInPlace(copyOfSrcDTO, chooseEarly);
-                    nextBarrierTimes.add(new SignalRangeCheckComparablePair((chooseEarly ? copyOfSrcDTO.segmentInfo.getEarliestKnownEndTime() : copyOfSrcDTO.segmentInfo.getLatestKnownEndTime()), srcDTO.ring));
-                    //System.out.println("Finding next barrier for done in block2: " + (chooseEarly ? copyOfSrcDTO.segmentInfo.getEarliestKnownEndTime() : copyOfSrcDTO.segmentInfo.getLatestKnownEndTime()) + " " + srcDTO.ring.getRingId());
-                    ringsInNextBarrierTimes.add(srcDTO.ring);
-                } else {
-                    waitingOnBarrier.add(new SignalRangeCheckComparablePair((chooseEarly ? srcDTO.segmentInfo.getEarliestKnownEndTime() : srcDTO.segmentInfo.getLatestKnownEndTime()), srcDTO.ring));
-                    nextBarrierTimes.add(new SignalRangeCheckComparablePair((chooseEarly ? srcDTO.segmentInfo.getEarliestKnownEndTime() : srcDTO.segmentInfo.getLatestKnownEndTime()), srcDTO.ring));
-                    //System.out.println("Ring waiting for barrier " + srcDTO.ring.getRingId() + " " + srcDTO.time + " " + srcDTO.index);
-                    ringsInNextBarrierTimes.add(srcDTO.ring);
-                }
-            }
-
-            if (!waitingOnBarrier.isEmpty()) {
-                //double latestTime = waitingOnBarrier.peek().getKey();
-                double latestTime = nextBarrierTimes.peek().getKey();
-
-                if (nextBarrierTimes.size() != r) {
-                    throw new RuntimeException("Not all times to next barrier were found for all rings.");
-                }
-
-                //while (!nextBarrierTimes.isEmpty()) System.out.println(nextBarrierTimes.poll());
-                nextBarrierTimes.clear();
-                ringsInNextBarrierTimes.clear();
-                //handle case where all rings need to advance into a barrier
-                if (waitingOnBarrier.size() == r) {
-                    while (!waitingOnBarrier.isEmpty()) {
-                        SignalRangeCheckComparablePair pair = waitingOnBarrier.poll();
-                        SignalRangeCheckDTO srcDTO = timeTuples.get(pair.getValue());
-                        srcDTO.time = latestTime;
-                        srcDTO.index++;
-                        //System.out.println("Step past barrier for " + srcDTO.ring.getRingId() + " " + srcDTO.time + " " + srcDTO.index);
-                        srcDTO.segment = srcDTO.segment.getNextPhaseSegment();
-                        RBPhaseSegment seg = srcDTO.segment;
-                        srcDTO.segmentInfo = new HistoricalRBSegmentInformation(srcDTO.ring, seg.getSegmentId(), srcDTO.time, seg.getMinTime(), seg.getMaxTimeAndLock(), srcDTO.time + (chooseEarly ? seg.getMinTime() : seg.getMaxTimeAndLock()), srcDTO.time, srcDTO.segmentInfo.isEarlyGapoutAllowed(), seg.getColor(), seg.areGapExtensionsAllowed());
-                    }
-                } else if (waitingOnBarrier.size() > r) {
-                    throw new RuntimeException("More rings waiting for barrier than there are rings.");
-                } else {
-                    //<r which is the case where one ring completed without progressing into the barrier, which means the other rings should have been extended to the same time, too
-                    if (latestTime >= futureTime) {
-                        while (!waitingOnBarrier.isEmpty()) {
-                            SignalRangeCheckComparablePair pair = waitingOnBarrier.poll();
-                            SignalRangeCheckDTO srcDTO = timeTuples.get(pair.getValue());
-                            //srcDTO.segmentInfo.setSimTimeWhenExpectedEndTimeExpires(???, ??); //didn't bother here, as this information about when the segment ends isn't needed any longer
-                            done.replace(srcDTO.ring, true);
-                            doneCount++;
-                            //System.out.println("Ring done when extending due to barrier: " + srcDTO.ring.getRingId() + " " + srcDTO.index);
-                            if (chooseEarly) {
-                                srcDTO.index++;
-                                //System.out.println("Stepped final index forward when extending due to barrier for " + srcDTO.ring.getRingId() + " " + srcDTO.index);
-                            }
-                            //we also should be totally done at this point which means that there is no need to do the copying and lookahead for the next barrier at this point
-                        }
-                    } else {
-                        throw new RuntimeException("Segment containing future time found, but the latest time to progress through the barrier isn't past the desired future time. This shouldn't occur.");
-                    }
+    private RBSignalTimeline getTimeline(double currentTime) {
+        if (timeline == null || timeline.getCurrentTime() != currentTime) {
+            if (sortedRings == null) {
+                sortedRings = new RBRing[sortedRingIds.size()];
+                for (int i = 0; i < sortedRings.length; ++i) {
+                    sortedRings[i] = rings.get(sortedRingIds.get(i));
                 }
+                movements = new RBSignalTimeline.MovementIndex(sortedRings);
             }
+            timeline = new RBSignalTimeline(currentTime, sortedRings, movements);
         }
-        //System.out.println("Done.------------------------------------");
+        return timeline;
     }
 
     private void getTimeOfNextBarrierAndMutateSrcDtoInPlace(SignalRangeCheckDTO copyOfSrcDTO, boolean chooseEarly) {
@@ -47,8 +47,23 @@ public class RingAndBarrierFactory {
     private static final String OTHER_PHASES_IN_SAME_INDEX_WAIT_ON_CHAR = "^";
 
     public static RingAndBarrier createRingAndBarrierFromFile(GridMap map, String filepath) {
+        return createRingAndBarrierFromFile(map, 0, 0, filepath);
+    }
 
-        HashMap<Character, Road> roadMapping = setupKeyMapping(map);
+    /**
+     * Create the ring and barrier of a single intersection of a map. The
+     * north, south, east and west bound roads named by the file are mapped to
+     * the roads crossing at the intersection in the given column and row.
+     *
+     * @param map the map
+     * @param column the column of the intersection
+     * @param row the row of the intersection
+     * @param filepath the signal file
+     * @return the ring and barrier, or null if the file couldn't be read
+     */
+    public static RingAndBarrier createRingAndBarrierFromFile(GridMap map, int column, int row, String filepath) {
+
+        HashMap<Character, Road> roadMapping = setupKeyMapping(map.getRoads(column, row));
 
         try {
             //open XML and read root tag
@@ -307,16 +322,16 @@ public class RingAndBarrierFactory {
         }
     }
 
-    private static HashMap<Character, Road> setupKeyMapping(GridMap map) {
+    private static HashMap<Character, Road> setupKeyMapping(List<Road> roadsAtIntersection) {
         HashMap<Character, Road> keyMapping = new HashMap<Character, Road>();
-        for (Road road : map.getRoads()) {
-            if (road.getName().equals("1st Avenue N")) {
+        for (Road road : roadsAtIntersection) {
+            if (road.getName().endsWith(" Avenue N")) {
                 keyMapping.put('N', road);
-            } else if (road.getName().equals("1st Avenue S")) {
+            } else if (road.getName().endsWith(" Avenue S")) {
                 keyMapping.put('S', road);
-            } else if (road.getName().equals("1st Street E")) {
+            } else if (road.getName().endsWith(" Street E")) {
                 keyMapping.put('E', road);
-            } else if (road.getName().equals("1st Street W")) {
+            } else if (road.getName().endsWith(" Street W")) {
                 keyMapping.put('W', road);
             }
         }
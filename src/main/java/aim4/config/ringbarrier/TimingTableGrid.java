@@ -0,0 +1,238 @@
+package aim4.config.ringbarrier;
+
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+
+/**
+ * A signal timing lookup table compiled into a dense grid of primitive
+ * values. Every axis keeps its keys in a sorted array, and values are found
+ * either at the nearest key of every axis (preferring the lower key on a
+ * tie, as the tables always have) or by interpolating linearly along every
+ * axis between the surrounding keys. Keys outside of an axis are clamped to
+ * its first or last key.
+ */
+final class TimingTableGrid {
+
+    /**
+     * The sorted keys of each axis.
+     */
+    private final double[][] axes;
+    /**
+     * The values of the grid, with the last axis varying fastest.
+     */
+    private final double[] values;
+
+    private TimingTableGrid(double[][] axes, double[] values) {
+        this.axes = axes;
+        this.values = values;
+    }
+
+    /**
+     * Compile a two level table. Every inner map must have the same keys.
+     *
+     * @param table the table
+     * @return the compiled grid
+     */
+    static TimingTableGrid compile(NavigableMap<Double, NavigableMap<Double, Double>> table) {
+        double[] outerKeys = toKeys(table);
+        double[] innerKeys = toKeys(table.firstEntry().getValue());
+        double[] values = new double[outerKeys.length * innerKeys.length];
+        int i = 0;
+        for (NavigableMap<Double, Double> inner : table.values()) {
+            i = copyRow(inner, innerKeys, values, i);
+        }
+        return new TimingTableGrid(new double[][]{outerKeys, innerKeys}, values);
+    }
+
+    /**
+     * Compile a three level table. Every map of the same level must have the
+     * same keys.
+     *
+     * @param table the table
+     * @return the compiled grid
+     */
+    static TimingTableGrid compile3(NavigableMap<Double, NavigableMap<Double, NavigableMap<Double, Double>>> table) {
+        double[] outerKeys = toKeys(table);
+        double[] midKeys = toKeys(table.firstEntry().getValue());
+        double[] innerKeys = toKeys(table.firstEntry().getValue().firstEntry().getValue());
+        double[] values = new double[outerKeys.length * midKeys.length * innerKeys.length];
+        int i = 0;
+        for (NavigableMap<Double, NavigableMap<Double, Double>> mid : table.values()) {
+            if (mid.size() != midKeys.length) {
+                throw new RuntimeException("Timing table is not a full grid. This is not allowed.");
+            }
+            int m = 0;
+            for (Entry<Double, NavigableMap<Double, Double>> entry : mid.entrySet()) {
+                if (entry.getKey() != midKeys[m++]) {
+                    throw new RuntimeException("Timing table is not a full grid. This is not allowed.");
+                }
+                i = copyRow(entry.getValue(), innerKeys, values, i);
+            }
+        }
+        return new TimingTableGrid(new double[][]{outerKeys, midKeys, innerKeys}, values);
+    }
+
+    /**
+     * Get the value at the keys of the grid closest to the given keys.
+     *
+     * @param x the key of the first axis
+     * @param y the key of the second axis
+     * @return the value
+     */
+    double nearest(double x, double y) {
+        return values[nearestIndex(axes[0], x) * axes[1].length + nearestIndex(axes[1], y)];
+    }
+
+    /**
+     * Get the value at the keys of the grid closest to the given keys.
+     *
+     * @param x the key of the first axis
+     * @param y the key of the second axis
+     * @param z the key of the third axis
+     * @return the value
+     */
+    double nearest(double x, double y, double z) {
+        return values[(nearestIndex(axes[0], x) * axes[1].length + nearestIndex(axes[1], y)) * axes[2].length + nearestIndex(axes[2], z)];
+    }
+
+    /**
+     * Get the value at the given keys, interpolated bilinearly between the
+     * surrounding keys of the grid.
+     *
+     * @param x the key of the first axis
+     * @param y the key of the second axis
+     * @return the value
+     */
+    double interpolate(double x, double y) {
+        double[] xs = axes[0];
+        double[] ys = axes[1];
+        int xi = lowerIndex(xs, x);
+        int yi = lowerIndex(ys, y);
+        double xt = weight(xs, xi, x);
+        double yt = weight(ys, yi, y);
+        int ny = ys.length;
+        int xj = Math.min(xi + 1, xs.length - 1);
+        int yj = Math.min(yi + 1, ny - 1);
+        double v0 = lerp(values[xi * ny + yi], values[xi * ny + yj], yt);
+        double v1 = lerp(values[xj * ny + yi], values[xj * ny + yj], yt);
+        return lerp(v0, v1, xt);
+    }
+
+    /**
+     * Get the value at the given keys, interpolated trilinearly between the
+     * surrounding keys of the grid.
+     *
+     * @param x the key of the first axis
+     * @param y the key of the second axis
+     * @param z the key of the third axis
+     * @return the value
+     */
+    double interpolate(double x, double y, double z) {
+        double[] xs = axes[0];
+        double[] ys = axes[1];
+        double[] zs = axes[2];
+        int xi = lowerIndex(xs, x);
+        int yi = lowerIndex(ys, y);
+        int zi = lowerIndex(zs, z);
+        double xt = weight(xs, xi, x);
+        double yt = weight(ys, yi, y);
+        double zt = weight(zs, zi, z);
+        int xj = Math.min(xi + 1, xs.length - 1);
+        int yj = Math.min(yi + 1, ys.length - 1);
+        int zj = Math.min(zi + 1, zs.length - 1);
+        double v0 = lerp(interpolateRow(xi, yi, zi, zj, zt), interpolateRow(xi, yj, zi, zj, zt), yt);
+        double v1 = lerp(interpolateRow(xj, yi, zi, zj, zt), interpolateRow(xj, yj, zi, zj, zt), yt);
+        return lerp(v0, v1, xt);
+    }
+
+    private double interpolateRow(int xi, int yi, int zi, int zj, double zt) {
+        int row = (xi * axes[1].length + yi) * axes[2].length;
+        return lerp(values[row + zi], values[row + zj], zt);
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return (t == 0 ? a : a + (b - a) * t);
+    }
+
+    /**
+     * @param keys the sorted keys of an axis
+     * @param i the index of the key at or below the given key
+     * @param key the key
+     * @return the weight of the key above index i, between 0 and 1
+     */
+    private static double weight(double[] keys, int i, double key) {
+        if (i + 1 >= keys.length || key <= keys[i]) {
+            return 0;
+        }
+        return Math.min(1, (key - keys[i]) / (keys[i + 1] - keys[i]));
+    }
+
+    /**
+     * @param keys the sorted keys of an axis
+     * @param key the key
+     * @return the index of the last key not above the given key, or 0 if
+     * there is none. NaN is sorted above every key, as in a sorted map.
+     */
+    private static int lowerIndex(double[] keys, double key) {
+        if (Double.isNaN(key)) {
+            return keys.length - 1;
+        }
+        int low = 0;
+        int high = keys.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (keys[mid] <= key) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param keys the sorted keys of an axis
+     * @param key the key
+     * @return the index of the closest key, preferring the lower key when
+     * both are as close
+     */
+    private static int nearestIndex(double[] keys, double key) {
+        int floor = lowerIndex(keys, key);
+        if (keys[floor] > key) {
+            //below the first key
+            return floor;
+        }
+        int ceiling = (keys[floor] == key || floor + 1 == keys.length ? floor : floor + 1);
+        if (Math.abs(keys[floor] - key) <= Math.abs(keys[ceiling] - key)) {
+            return floor;
+        } else {
+            return ceiling;
+        }
+    }
+
+    private static double[] toKeys(NavigableMap<Double, ?> map) {
+        if (map == null || map.isEmpty()) {
+            throw new RuntimeException("Timing table has an empty level. This is not allowed.");
+        }
+        double[] keys = new double[map.size()];
+        int i = 0;
+        for (Double key : map.keySet()) {
+            keys[i++] = key;
+        }
+        return keys;
+    }
+
+    private static int copyRow(NavigableMap<Double, Double> row, double[] keys, double[] values, int offset) {
+        if (row.size() != keys.length) {
+            throw new RuntimeException("Timing table is not a full grid. This is not allowed.");
+        }
+        int k = 0;
+        for (Entry<Double, Double> entry : row.entrySet()) {
+            if (entry.getKey() != keys[k++] || entry.getValue() == null) {
+                throw new RuntimeException("Timing table is not a full grid. This is not allowed.");
+            }
+            values[offset++] = entry.getValue();
+        }
+        return offset;
+    }
+}
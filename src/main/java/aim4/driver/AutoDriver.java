@@ -30,8 +30,11 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package aim4.driver;
 
+import java.awt.Shape;
 import java.awt.geom.Area;
 
+import aim4.config.Constants;
+import aim4.config.SimConfig;
 import aim4.driver.coordinator.NoIntersectionCoordinator;
 import aim4.driver.coordinator.V2ICoordinator;
 import aim4.driver.coordinator.Coordinator;
@@ -77,6 +80,32 @@ public class AutoDriver extends Driver
     private double delayPerTimeStepExcludingIntersections;
 
     private boolean stopped;
+    /**
+     * The time, in seconds, the vehicle has spent stopped so far.
+     */
+    private double timeStopped;
+    /**
+     * The time the vehicle entered its first intersection, or NaN if it has
+     * not entered an intersection yet.
+     */
+    private double intersectionEntryTime;
+    /**
+     * The time the vehicle left its last intersection, or NaN if it has not
+     * left an intersection yet.
+     */
+    private double intersectionExitTime;
+    /**
+     * The lane the vehicle entered its last intersection on.
+     */
+    private Lane lastEntryLane;
+    /**
+     * The lane the vehicle left its last intersection on.
+     */
+    private Lane exitLane;
+    /**
+     * The intersection manager of the last intersection the vehicle left.
+     */
+    private IntersectionManager exitIM;
     /**
      * The IntersectionManager with which the driver is currently interacting.
      */
@@ -109,6 +138,12 @@ public class AutoDriver extends Driver
         delayPerTimeStep = 0;
         delayPerTimeStepExcludingIntersections = 0;
         stopped = false;
+        timeStopped = 0;
+        intersectionEntryTime = Double.NaN;
+        intersectionExitTime = Double.NaN;
+        lastEntryLane = null;
+        exitLane = null;
+        exitIM = null;
         this.vehicle = vehicle;
         this.basicMap = basicMap;
         coordinator = null;
@@ -140,6 +175,7 @@ public class AutoDriver extends Driver
 
         if (Util.isDoubleZero(vehicle.gaugeVelocity())) {
             stopped = true;
+            timeStopped += SimConfig.TIME_STEP;
             if (getSpawnPoint().getPosition().distance(vehicle.gaugePosition()) < vehicle.gaugePointAtRear().distance(vehicle.gaugePointBetweenFrontWheels()) * 1.5) {
                 DesignatedLanesExpr.directionsOfVehiclesStoppedNearBorder.add(Util.getDirectionFromHeadingCardinal(currentLane.getInitialHeading()));
             }
@@ -306,6 +342,50 @@ public class AutoDriver extends Driver
         return stopped;
     }
 
+    /**
+     *
+     * @return the time, in seconds, the vehicle the driver is "in" has spent
+     * stopped so far
+     */
+    public double getTimeStopped() {
+        return timeStopped;
+    }
+
+    /**
+     *
+     * @return the time the vehicle entered its first intersection, or NaN if
+     * it has not entered an intersection yet
+     */
+    public double getIntersectionEntryTime() {
+        return intersectionEntryTime;
+    }
+
+    /**
+     *
+     * @return the time the vehicle left its last intersection, or NaN if it
+     * has not left an intersection yet
+     */
+    public double getIntersectionExitTime() {
+        return intersectionExitTime;
+    }
+
+    /**
+     *
+     * @return the turn the vehicle made at the last intersection it left, or
+     * null if it has not left an intersection yet or the roads of the
+     * intersection do not go in cardinal directions
+     */
+    public Constants.TurnDirection getLastTurnDirection() {
+        if (exitIM == null) {
+            return null;
+        }
+        try {
+            return Util.getTurnDirectionFromArrivalAndDepartureLanesForCardinalDirections(lastEntryLane, exitLane, exitIM);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /////////////////////////////////
     // PRIVATE METHODS
     /////////////////////////////////
@@ -324,10 +404,16 @@ public class AutoDriver extends Driver
         if (area.contains(v.gaugePosition()) || area.contains(v.gaugePointAtRear())) {
             return true;
         } else {
+            Shape vehicleShape = v.gaugeShape();
+            // The areas cannot intersect if their bounding boxes do not, as
+            // for most of the vehicles on the roads
+            if (!vehicleShape.getBounds2D().intersects(area.getBounds2D())) {
+                return false;
+            }
             // We actually have to check to see if the Area of the
             // Vehicle and the Area of the IntersectionManager have a nonempty
             // intersection
-            Area vehicleArea = new Area(v.gaugeShape());
+            Area vehicleArea = new Area(vehicleShape);
             // Important that it is in this order, as it is destructive to the caller
             vehicleArea.intersect(area);
             return !vehicleArea.isEmpty();
@@ -351,6 +437,15 @@ public class AutoDriver extends Driver
 
     @Override
     public void setEntryLane(Lane lane) {
+        // the entry lane is set while the vehicle traverses an intersection
+        if (lane != null && Double.isNaN(intersectionEntryTime)) {
+            intersectionEntryTime = vehicle.gaugeTime();
+        } else if (lane == null && entryLane != null) {
+            intersectionExitTime = vehicle.gaugeTime();
+            lastEntryLane = entryLane;
+            exitLane = getCurrentLane();
+            exitIM = currentIM;
+        }
         entryLane = lane;
     }
 
@@ -81,6 +81,21 @@ public class CrashTestDummy extends Driver {
   // PUBLIC METHODS
   /////////////////////////////////
 
+  /**
+   * Set the lanes of a new traversal of the intersection, so that the driver
+   * can pilot the simulated vehicle across it again.
+   *
+   * @param arrivalLane   the Lane in which the vehicle should enter the
+   *                      intersection
+   * @param departureLane the Lane in which the vehicle should depart the
+   *                      intersection
+   */
+  public void reset(Lane arrivalLane, Lane departureLane) {
+    setCurrentLane(arrivalLane);
+    entryLane=arrivalLane;
+    this.departureLane = departureLane;
+  }
+
   /**
    * Take steering actions to guide a test vehicle through a simulated
    * traversal of the intersection.
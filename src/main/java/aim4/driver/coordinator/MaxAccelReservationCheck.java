@@ -37,7 +37,6 @@ import java.util.List;
 import aim4.config.Constants;
 import aim4.util.Util;
 import aim4.vehicle.AccelSchedule;
-import aim4.vehicle.AccelSchedule.TimeAccel;
 
 /**
  * This class provides functions to solve the validation problem.
@@ -1006,7 +1005,6 @@ public class MaxAccelReservationCheck {
                                               AccelSchedule as) {
     assert as != null;
 
-    List<AccelSchedule.TimeAccel> list = as.getList();
     if (as.size() == 0 || as.size() > 4) {
       if (isDebugging) {
         System.err.printf("Error in isAccelScheduleValid(): " +
@@ -1016,8 +1014,9 @@ public class MaxAccelReservationCheck {
     }
     double v = v1;
     double d = 0.0;
-    TimeAccel ta1 = list.get(0);
-    if (!Util.isDoubleEqual(ta1.getTime(), time1)) {
+    double taTime1 = as.getTime(0);
+    double taAccel1 = as.getAcceleration(0);
+    if (!Util.isDoubleEqual(taTime1, time1)) {
       if (isDebugging) {
         System.err.printf("Error in isAccelScheduleValid(): " +
                           "Initial time is incorrect.\n");
@@ -1026,8 +1025,8 @@ public class MaxAccelReservationCheck {
     }
 
     for(int i=1; i<as.size(); i++) {
-      TimeAccel ta2 = list.get(i);
-      double t = ta2.getTime() - ta1.getTime();
+      double taTime2 = as.getTime(i);
+      double t = taTime2 - taTime1;
       if (t <= 0.0) {
         if (isDebugging) {
           System.err.printf("Error in isAccelScheduleValid(): " +
@@ -1035,7 +1034,7 @@ public class MaxAccelReservationCheck {
         }
         return false;
       }
-      double v2 = v + ta1.getAcceleration() * t;
+      double v2 = v + taAccel1 * t;
       if (Util
         .isDoubleNotEqual(v2, vTop, Constants.DOUBLE_EQUAL_WEAK_PRECISION)
         && v2 > vTop) {
@@ -1048,10 +1047,11 @@ public class MaxAccelReservationCheck {
       }
       d += t * (v + v2) / 2.0 ;
       v = v2;
-      ta1 = ta2;
+      taTime1 = taTime2;
+      taAccel1 = as.getAcceleration(i);
     }
 
-    if (Util.isDoubleNotEqual(ta1.getTime(), timeEnd)) {
+    if (Util.isDoubleNotEqual(taTime1, timeEnd)) {
       if (isDebugging) {
         System.err.printf("Error in isAccelScheduleValid(): " +
                           "The ending time is incorrect.\n");
@@ -32,6 +32,7 @@ import java.util.Queue;
 
 import aim4.config.Debug;
 import aim4.config.Resources;
+import aim4.config.ringbarrier.RingAndBarrier;
 import aim4.config.SimConfig;
 import aim4.config.Constants.TurnDirection;
 import aim4.config.SimConfig.VEHICLE_TYPE;
@@ -1670,9 +1671,6 @@ public class V2ICoordinator implements Coordinator {
                     = estimateArrival(driver.getCurrentLane().getSpeedLimit());
             if (Math.max(minArrivalTime, result.getArrivalTime()) < vehicle.gaugeTime() + getMaxFutureReservationTimeWithError(vehicle.getDriver().getCurrentIM(), vehicle.getDriver().getCurrentLane())) {
                 if (!hasArrivedWithinCommOrSensorRangeToAnIntersectionManager) {
-                    if (Resources.map.getImRegistry().getValues().size() != 1) {
-                        throw new RuntimeException("One and only one intersection is supported by the perform() function in V2ICoordinator.V2IPreparingReservationStateHandler at this time, but there are: " + Resources.map.getImRegistry().getValues().size());
-                    }
                     if (!vehicle.getDriver().getCurrentLane().getLaneIM().logArrivalOnLane(vehicle.getDriver().getCurrentIM(), vehicle)) {
                         throw new RuntimeException("Logging vehicle arrival at intersection was unsuccessful.");
                     }
@@ -1681,13 +1679,15 @@ public class V2ICoordinator implements Coordinator {
             }
 
             VehicleSimView veh2 = Resources.vinToVehicles.get(vehicle.getVIN());
-            if (Util.getMaxSpeedForVehicleIfNotBeyondIntersectionEntrance(Resources.im, veh2) >= 0) {
+            IntersectionManager signalIM = getSignalIntersectionManager();
+            if (Util.getMaxSpeedForVehicleIfNotBeyondIntersectionEntrance(signalIM, veh2) >= 0) {
                 Point2D carFrontPoint = vehicle.gaugePointAtMiddleFront(0);
                 Lane ln = veh2.getDriver().getEntryLane() == null ? veh2.getDriver().getCurrentLane() : veh2.getDriver().getEntryLane();
-                Point2D interEnterPoint = Resources.im.getIntersection().getEntryPoint(ln);
-                if (!actuated && carFrontPoint.distance(interEnterPoint) < 1.829 && Resources.ringAndBarrier.getSignalForLaneWithCurrentTime(veh2.gaugeTime(), ln.getContainingRoad(), ln.getLaneIM().validActionsFromLane(Resources.im, VEHICLE_TYPE.HUMAN)) == TrafficSignal.GREEN) {
+                Point2D interEnterPoint = signalIM.getIntersection().getEntryPoint(ln);
+                RingAndBarrier ringAndBarrier = getRingAndBarrier();
+                if (!actuated && carFrontPoint.distance(interEnterPoint) < 1.829 && ringAndBarrier.getSignalForLaneWithCurrentTime(veh2.gaugeTime(), ln.getContainingRoad(), ln.getLaneIM().validActionsFromLane(signalIM, VEHICLE_TYPE.HUMAN)) == TrafficSignal.GREEN) {
                     actuated = true;
-                    Resources.ringAndBarrier.logActuationOnLane(ln, veh2.gaugeTime(), veh2.gaugeTime(), 0, veh2.getVehicleType());
+                    ringAndBarrier.logActuationOnLane(ln, veh2.gaugeTime(), veh2.gaugeTime(), 0, veh2.getVehicleType());
                 }
             }
 
@@ -1923,9 +1923,10 @@ public class V2ICoordinator implements Coordinator {
                 if (driver.getEntryLane() == null) {
                     driver.setEntryLane(rparameter.arrivalLane);
                     //todo, this is a hack to get the actuated signal controller to see that a vehicle has left the intersection and should have actuated for a particular phase. This is equivalent to a real life intersection matching a vehicle to a reservation and tracking it all the way through the intersection, and retaining information about tis traversal
-                    if (Resources.ringAndBarrier != null) {
-                        Resources.ringAndBarrier.checkForEarlyGapoutDueToVehiclesNotApproaching(rparameter.arrivalLane);
-                        Resources.ringAndBarrier.notifySegmentIfNeededThatVehicleHasEnteredToResetEarlyGapoutCheckTimer(rparameter.arrivalTime, rparameter.arrivalLane);
+                    RingAndBarrier ringAndBarrier = getRingAndBarrier();
+                    if (ringAndBarrier != null) {
+                        ringAndBarrier.checkForEarlyGapoutDueToVehiclesNotApproaching(rparameter.arrivalLane);
+                        ringAndBarrier.notifySegmentIfNeededThatVehicleHasEnteredToResetEarlyGapoutCheckTimer(rparameter.arrivalTime, rparameter.arrivalLane);
                     }
                 }
                 pilot.takeSteeringActionForTraversing(rparameter);
@@ -1969,6 +1970,30 @@ public class V2ICoordinator implements Coordinator {
     /////////////////////////////////
     // PRIVATE METHODS
     /////////////////////////////////
+    // signals
+    /**
+     * Get the intersection manager whose signal the vehicle is approaching.
+     *
+     * @return the intersection manager the driver is dealing with, or the
+     * intersection manager of the simulation if there is none
+     */
+    private IntersectionManager getSignalIntersectionManager() {
+        IntersectionManager im = driver.getCurrentIM();
+        return (im == null ? Resources.im : im);
+    }
+
+    /**
+     * Get the ring and barrier of the signal the vehicle is approaching.
+     *
+     * @return the ring and barrier of the intersection manager the driver is
+     * dealing with, or the ring and barrier of the simulation if it has none
+     */
+    private RingAndBarrier getRingAndBarrier() {
+        IntersectionManager im = driver.getCurrentIM();
+        RingAndBarrier ringAndBarrier = (im == null ? null : im.getRingAndBarrier());
+        return (ringAndBarrier == null ? Resources.ringAndBarrier : ringAndBarrier);
+    }
+
     // messaging
     /**
      * Adds a Request message to the outgoing messages.
@@ -0,0 +1,339 @@
+package aim4.driver.navigator;
+
+import aim4.config.SimConfig;
+import aim4.im.IntersectionManager;
+import aim4.map.BasicMap;
+import aim4.map.Road;
+import aim4.util.Util;
+import aim4.vehicle.VehicleSpec;
+import aim4.vehicle.VehicleUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+
+/**
+ * A next-road table shared by all the navigators of a map. For a given
+ * destination road, vehicle specification and vehicle type, the table maps
+ * every (road, intersection manager) pair of the map to the road a vehicle
+ * should take out of that intersection in order to reach the destination as
+ * fast as possible. The table for a destination is filled lazily the first
+ * time any vehicle heads to it, using a single Dijkstra search backwards from
+ * the destination, and is discarded whenever the lane mappings of any
+ * intersection manager change.
+ */
+public final class RoutingTable {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * A move out of an intersection along a particular exit road.
+     */
+    private static class Edge {
+
+        /**
+         * The index of the state the move starts from.
+         */
+        private final int from;
+        /**
+         * The road taken out of the intersection.
+         */
+        private final Road exitRoad;
+        /**
+         * The time needed to cross the intersection and to reach the next
+         * intersection (or the end of the exit road if there is none).
+         */
+        private final double cost;
+
+        /**
+         * Create an edge.
+         *
+         * @param from the index of the state the move starts from
+         * @param exitRoad the road taken out of the intersection
+         * @param cost the travel time of the move
+         */
+        public Edge(int from, Road exitRoad, double cost) {
+            this.from = from;
+            this.exitRoad = exitRoad;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * An entry of the priority queue of the Dijkstra search.
+     */
+    private static class QueueEntry implements Comparable<QueueEntry> {
+
+        /**
+         * The index of the state.
+         */
+        private final int state;
+        /**
+         * The travel time from the state to the destination.
+         */
+        private final double measure;
+
+        /**
+         * Create a queue entry.
+         *
+         * @param state the index of the state
+         * @param measure the travel time from the state to the destination
+         */
+        public QueueEntry(int state, double measure) {
+            this.state = state;
+            this.measure = measure;
+        }
+
+        @Override
+        public int compareTo(QueueEntry e) {
+            return Double.compare(measure, e.measure);
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE STATIC FIELDS
+    /////////////////////////////////
+    /**
+     * The routing tables of the maps. A table references neither its map nor
+     * the roads of the map, which reference the map, so that the entry of a
+     * map can be collected along with the map.
+     */
+    private static final Map<BasicMap, RoutingTable> tables
+            = new WeakHashMap<BasicMap, RoutingTable>();
+
+    /////////////////////////////////
+    // PUBLIC STATIC METHODS
+    /////////////////////////////////
+    /**
+     * Get the routing table shared by all the navigators of a map.
+     *
+     * @param basicMap the map
+     * @return the routing table of the map
+     */
+    public static synchronized RoutingTable getInstance(BasicMap basicMap) {
+        RoutingTable table = tables.get(basicMap);
+        if (table == null) {
+            table = new RoutingTable();
+            tables.put(basicMap, table);
+        }
+        return table;
+    }
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The lane mapping revision of the intersection managers at the time the
+     * cached entries were computed.
+     */
+    private int laneMappingRevision;
+
+    /**
+     * The next road tables, by vehicle specification name, vehicle type and
+     * the ID of the index lane of the destination road. Each table maps the
+     * IDs of the index lane of the current road and of the intersection
+     * manager to the ID of the index lane of the road to take out of the
+     * intersection.
+     */
+    private final Map<String, EnumMap<SimConfig.VEHICLE_TYPE, Map<Integer, Map<List<Integer>, Integer>>>> nextRoads
+            = new HashMap<String, EnumMap<SimConfig.VEHICLE_TYPE, Map<Integer, Map<List<Integer>, Integer>>>>();
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create an empty routing table.
+     */
+    private RoutingTable() {
+        this.laneMappingRevision = IntersectionManager.getLaneMappingRevision();
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * Get the road to take out of an intersection in order to reach the
+     * destination road as fast as possible.
+     *
+     * @param basicMap the map of the table
+     * @param current the Road on which the vehicle is currently traveling
+     * @param im the IntersectionManager the vehicle is approaching
+     * @param destination the Road on which the vehicle would ultimately like to
+     * end up
+     * @param spec the vehicle's specification
+     * @param vType Type of vehicle for which to do the search.
+     * @return the road to take out of the intersection, or <code>null</code>
+     * if the destination cannot be reached
+     */
+    public synchronized Road nextRoad(BasicMap basicMap, Road current, IntersectionManager im,
+            Road destination, VehicleSpec spec, SimConfig.VEHICLE_TYPE vType) {
+        if (laneMappingRevision != IntersectionManager.getLaneMappingRevision()) {
+            invalidate();
+        }
+
+        EnumMap<SimConfig.VEHICLE_TYPE, Map<Integer, Map<List<Integer>, Integer>>> byType
+                = nextRoads.get(spec.getName());
+        if (byType == null) {
+            byType = new EnumMap<SimConfig.VEHICLE_TYPE, Map<Integer, Map<List<Integer>, Integer>>>(SimConfig.VEHICLE_TYPE.class);
+            nextRoads.put(spec.getName(), byType);
+        }
+        Map<Integer, Map<List<Integer>, Integer>> byDestination = byType.get(vType);
+        if (byDestination == null) {
+            byDestination = new HashMap<Integer, Map<List<Integer>, Integer>>();
+            byType.put(vType, byDestination);
+        }
+        int destinationId = destination.getIndexLane().getId();
+        Map<List<Integer>, Integer> table = byDestination.get(destinationId);
+        if (table == null) {
+            table = computeNextRoads(basicMap, destination, spec, vType);
+            byDestination.put(destinationId, table);
+        }
+
+        Integer nextLaneId = table.get(makeKey(current, im));
+        return nextLaneId == null ? null : basicMap.getRoad(nextLaneId);
+    }
+
+    /**
+     * Discard all the cached entries of the table. They will be recomputed on
+     * demand.
+     */
+    public synchronized void invalidate() {
+        nextRoads.clear();
+        laneMappingRevision = IntersectionManager.getLaneMappingRevision();
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Make the key of a state, i.e. a road approaching an intersection.
+     *
+     * @param road the road
+     * @param im the intersection manager the road is approaching
+     * @return the key of the state
+     */
+    private static List<Integer> makeKey(Road road, IntersectionManager im) {
+        List<Integer> key = new ArrayList<Integer>(2);
+        key.add(road.getIndexLane().getId());
+        key.add(im.getId());
+        return key;
+    }
+
+    /**
+     * Compute the next road of every state of the map for a destination road
+     * by running a Dijkstra search backwards from the destination.
+     *
+     * @param basicMap the map of the table
+     * @param destRoad the Road on which the vehicle would ultimately like to
+     * end up
+     * @param spec the vehicle's specification
+     * @param vType Type of vehicle for which to do the search.
+     * @return the map from the keys of the states to the IDs of the index
+     * lanes of the next roads
+     */
+    private Map<List<Integer>, Integer> computeNextRoads(BasicMap basicMap, Road destRoad,
+            VehicleSpec spec, SimConfig.VEHICLE_TYPE vType) {
+        // enumerate the states: every entry road of every intersection
+        List<Road> stateRoads = new ArrayList<Road>();
+        List<IntersectionManager> stateIMs = new ArrayList<IntersectionManager>();
+        Map<List<Integer>, Integer> stateIndices = new HashMap<List<Integer>, Integer>();
+        for (IntersectionManager im : basicMap.getIntersectionManagers()) {
+            for (Road r : im.getIntersection().getEntryRoads()) {
+                stateIndices.put(makeKey(r, im), stateRoads.size());
+                stateRoads.add(r);
+                stateIMs.add(im);
+            }
+        }
+
+        // build the reversed graph
+        List<List<Edge>> incoming = new ArrayList<List<Edge>>(stateRoads.size());
+        for (int i = 0; i < stateRoads.size(); i++) {
+            incoming.add(new ArrayList<Edge>());
+        }
+        List<Edge> finalEdges = new ArrayList<Edge>();
+        for (int i = 0; i < stateRoads.size(); i++) {
+            Road nodeRoad = stateRoads.get(i);
+            IntersectionManager nodeIM = stateIMs.get(i);
+            for (Road r : nodeIM.getIntersection().getExitRoads()) {
+                // Don't come out the way we went in, don't take a road out that
+                // can't be taken given current road
+                if (r == nodeRoad.getDual()
+                        || !nodeIM.canTakeRoadFromRoad(nodeRoad, r, vType)) {
+                    continue;
+                }
+                double maxTurnVelocity
+                        = VehicleUtil.maxTurnVelocity(spec,
+                                nodeRoad.getIndexLane(),
+                                r.getIndexLane(),
+                                nodeIM);
+                // If this is 0, then we can't take this turn
+                if (Util.isDoubleZero(maxTurnVelocity)) {
+                    continue;
+                }
+                double measure = nodeIM.traversalDistance(nodeRoad, r)
+                        / maxTurnVelocity;
+
+                IntersectionManager nextIM
+                        = r.getIndexLane().getLaneIM().nextIntersectionManager(nodeIM);
+                if (nextIM != null) {
+                    Integer next = stateIndices.get(makeKey(r, nextIM));
+                    if (next != null) {
+                        measure += r.getIndexLane().getLaneIM().
+                                timeToNextIntersectionManager(nodeIM,
+                                        spec.getMaxVelocity());
+                        incoming.get(next).add(new Edge(i, r, measure));
+                    }
+                } else if (r == destRoad) {
+                    measure += r.getIndexLane().getLaneIM().
+                            remainingDistanceFromLastIntersection()
+                            / Math.min(r.getRoadSpeedLimit(),
+                                    spec.getMaxVelocity());
+                    finalEdges.add(new Edge(i, r, measure));
+                }
+            }
+        }
+
+        // Dijkstra search from the destination
+        double[] measures = new double[stateRoads.size()];
+        Road[] next = new Road[stateRoads.size()];
+        boolean[] settled = new boolean[stateRoads.size()];
+        Arrays.fill(measures, Double.POSITIVE_INFINITY);
+        PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+        for (Edge e : finalEdges) {
+            if (e.cost < measures[e.from]) {
+                measures[e.from] = e.cost;
+                next[e.from] = e.exitRoad;
+                queue.add(new QueueEntry(e.from, e.cost));
+            }
+        }
+        while (!queue.isEmpty()) {
+            QueueEntry entry = queue.poll();
+            if (settled[entry.state]) {
+                continue;
+            }
+            settled[entry.state] = true;
+            for (Edge e : incoming.get(entry.state)) {
+                double measure = entry.measure + e.cost;
+                if (!settled[e.from] && measure < measures[e.from]) {
+                    measures[e.from] = measure;
+                    next[e.from] = e.exitRoad;
+                    queue.add(new QueueEntry(e.from, measure));
+                }
+            }
+        }
+
+        Map<List<Integer>, Integer> table = new HashMap<List<Integer>, Integer>();
+        for (int i = 0; i < stateRoads.size(); i++) {
+            if (next[i] != null) {
+                table.put(makeKey(stateRoads.get(i), stateIMs.get(i)),
+                        next[i].getIndexLane().getId());
+            }
+        }
+        return table;
+    }
+}
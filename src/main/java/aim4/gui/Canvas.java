@@ -52,14 +52,17 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Arc2D;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.imageio.ImageIO;
 import javax.swing.JPanel;
@@ -69,18 +72,10 @@ import aim4.config.Debug;
 import aim4.config.DebugPoint;
 import aim4.config.Resources;
 import aim4.config.SimConfig;
-import aim4.config.SimConfig.SIGNAL_TYPE;
 import aim4.config.SimConfig.VEHICLE_TYPE;
-import aim4.config.TrafficSignal;
-import aim4.driver.AutoDriver;
-import aim4.driver.coordinator.V2ICoordinator;
 import aim4.im.IntersectionManager;
-import aim4.im.v2i.RequestHandler.ApproxNPhasesTrafficSignalRequestHandler;
 import aim4.im.v2i.RequestHandler.FullyActuatedSignalController;
 import aim4.im.v2i.V2IManager;
-import aim4.im.v2i.RequestHandler.TrafficSignalRequestHandler;
-import aim4.im.v2i.policy.BasePolicy;
-import aim4.im.v2i.policy.Policy;
 import aim4.map.DataCollectionLine;
 import aim4.map.BasicMap;
 import aim4.map.Road;
@@ -90,16 +85,7 @@ import aim4.map.track.LineTrack;
 import aim4.map.track.PathTrack;
 import aim4.map.track.TrackPosition;
 import aim4.map.track.WayPoint;
-import aim4.msg.v2i.Request;
-import aim4.msg.v2i.V2IMessage;
-import aim4.sim.Simulator;
 import aim4.util.Util;
-import aim4.vehicle.AutoVehicleSimView;
-import aim4.vehicle.VehicleSimView;
-import static expr.trb.TrafficSignalExpr.AVtotal;
-import static expr.trb.TrafficSignalExpr.AVtotalTime;
-import static expr.trb.TrafficSignalExpr.Htotal;
-import static expr.trb.TrafficSignalExpr.HtotalTime;
 import java.awt.FontMetrics;
 import java.io.InputStream;
 
@@ -146,6 +132,29 @@ public class Canvas extends JPanel implements ComponentListener,
    * The margin of the view that must stay on screen.
    */
   private static final int VIEW_MARGIN = 50;
+  /**
+   * The margin around the view, in meters, within which the center of a
+   * vehicle must lie for the vehicle to be drawn.
+   */
+  private static final double CULLING_MARGIN = 10.0;
+  /**
+   * The length in pixels from which the exact shapes of the vehicles are
+   * drawn.
+   */
+  private static final double DETAILED_VEHICLE_PIXELS = 24.0;
+  /**
+   * The length in pixels from which the vehicles are drawn as sprites
+   * rather than as dots.
+   */
+  private static final double SPRITE_VEHICLE_PIXELS = 4.0;
+  /**
+   * The smallest size of the dot drawn for a vehicle, in pixels.
+   */
+  private static final int MIN_VEHICLE_DOT_PIXELS = 2;
+  /**
+   * The number of vehicle colors kept in the batches before they start over.
+   */
+  private static final int MAX_VEHICLE_BATCHES = 64;
   // Drawing elements for background
   /** The file name of the file containing the image to use for grass. */
   private static final String GRASS_TILE_FILE = "/images/grass128.png";
@@ -314,6 +323,35 @@ public class Canvas extends JPanel implements ComponentListener,
    * The graphic context in which we will use to draw to the displayImage.
    */
   private Graphics2D displayBuffer;
+  /**
+   * The image the next frame is drawn on before it replaces the
+   * displayImage.
+   */
+  private Image backImage;
+  /**
+   * The graphic context in which we will use to draw to the backImage.
+   */
+  private Graphics2D backBuffer;
+  /**
+   * The latest snapshot of the simulation, or null if there is none yet
+   */
+  private volatile FrameSnapshot frame;
+  /**
+   * Whether the canvas is already scheduled to be redrawn
+   */
+  private final AtomicBoolean isRedrawPending = new AtomicBoolean(false);
+  /**
+   * Redraw the canvas from the latest snapshot on the event dispatch thread
+   */
+  private final Runnable redrawTask = new Runnable() {
+    @Override
+    public void run() {
+      isRedrawPending.set(false);
+      if (canUpdateCanvas) {
+        updateCanvas();
+      }
+    }
+  };
   /**
    * the viewer
    */
@@ -335,6 +373,27 @@ public class Canvas extends JPanel implements ComponentListener,
    * debugging shapes.
    */
   private boolean isShowIMDebugShapes;
+  /**
+   * The sprites of the vehicles drawn at a middle zoom
+   */
+  private final VehicleSpriteCache spriteCache = new VehicleSpriteCache();
+  /**
+   * The indices of the vehicles to draw in each color, reused across frames
+   */
+  private final Map<Color, VehicleBatch> vehicleBatches =
+      new LinkedHashMap<Color, VehicleBatch>();
+  /**
+   * The shapes of the vehicles of a batch drawn in detail
+   */
+  private final Path2D.Float vehicleShapes = new Path2D.Float();
+  /**
+   * The indices of the vehicles in the view in the last frame drawn
+   */
+  private int[] visibleVehicles = new int[64];
+  /**
+   * The number of vehicles in the view in the last frame drawn
+   */
+  private int visibleVehicleCount;
 
   /////////////////////////////////
   // CLASS CONSTRUCTORS
@@ -369,6 +428,9 @@ public class Canvas extends JPanel implements ComponentListener,
     mapImageTable = null;
     displayImage = null;
     displayBuffer = null;
+    backImage = null;
+    backBuffer = null;
+    frame = null;
 
     canUpdateCanvas = false;
 
@@ -433,6 +495,7 @@ public class Canvas extends JPanel implements ComponentListener,
     mapImageTable[scaleIndex] =
         createMapImage(basicMap, scaleTable[scaleIndex]);
 
+    frame = null;
     canUpdateCanvas = true;
   }
 
@@ -444,6 +507,10 @@ public class Canvas extends JPanel implements ComponentListener,
     displayBuffer = (Graphics2D) displayImage.getGraphics();
     displayBuffer.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
         RenderingHints.VALUE_ANTIALIAS_ON);
+    backImage = createImage(getWidth(), getHeight());
+    backBuffer = (Graphics2D) backImage.getGraphics();
+    backBuffer.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+        RenderingHints.VALUE_ANTIALIAS_ON);
   }
 
   /**
@@ -465,12 +532,14 @@ public class Canvas extends JPanel implements ComponentListener,
 
   /**
    * Reset the affine transform.
+   *
+   * @param buffer  the buffer whose transform is reset
    */
-  private void resetAffineTransform() {
+  private void resetAffineTransform(Graphics2D buffer) {
     AffineTransform tf = new AffineTransform();
     tf.translate(posOfOriginX, posOfOriginY);
     tf.scale(scaleTable[scaleIndex], scaleTable[scaleIndex]);
-    displayBuffer.setTransform(tf);
+    buffer.setTransform(tf);
   }
 
   /**
@@ -783,67 +852,86 @@ public class Canvas extends JPanel implements ComponentListener,
     for (int i = 0; i < SCALE_NUM; i++) {
       mapImageTable[i] = null;
     }
+    spriteCache.clear();
     repaint();
   }
 
   /**
-   * Update the canvas to visualize the current state of simulation.
+   * Redraw the canvas from the latest snapshot of the simulation. The
+   * canvas is redrawn on the event dispatch thread; calls made while a
+   * redraw is pending are merged into it.
    */
   public void update() {
-    if (canUpdateCanvas) {
-      // TODO: think how to avoid multiple calls of update() are queued here
-      // by synchronized when the the canvas is resized, rescaled, or
-      // repositioned.
-      updateCanvas();
+    if (canUpdateCanvas && isRedrawPending.compareAndSet(false, true)) {
+      SwingUtilities.invokeLater(redrawTask);
     }
   }
 
   /**
-   * Update the canvas to visualize the current state of simulation.
+   * Update the canvas to visualize a new snapshot of the simulation. This
+   * returns at once, so the simulation thread never waits for drawing.
+   *
+   * @param frame  the snapshot of the simulation
+   */
+  public void update(FrameSnapshot frame) {
+    this.frame = frame;
+    update();
+  }
+
+  /**
+   * Draw the latest snapshot of the simulation on the back buffer and swap
+   * it with the display buffer.
    */
   private synchronized void updateCanvas() {
+    FrameSnapshot frame = this.frame;
     // reset the affine transform
-    resetAffineTransform();
+    resetAffineTransform(backBuffer);
     // Clear the screen
-    paintEntireBuffer(displayBuffer, BACKGROUND_COLOR);
+    paintEntireBuffer(backBuffer, BACKGROUND_COLOR);
     // draw the map
-    drawImageOnBuffer(displayBuffer, getMapImageTable(scaleIndex));
-    // Get the simulator
-    Simulator sim = viewer.getSimulator();
-    // if the simulator exists, draw the current view
-    if (sim != null) {
-      Collection<IntersectionManager> ims =
-          sim.getMap().getIntersectionManagers();
+    drawImageOnBuffer(backBuffer, getMapImageTable(scaleIndex));
+    // if there is a snapshot, draw it
+    if (frame != null) {
       // draw the intersection managers' debug shapes
       if (isShowIMDebugShapes) {
-        for (IntersectionManager im : ims) {
-          drawIMDebugShapes(displayBuffer, im);
+        for (IntersectionManager im : basicMap.getIntersectionManagers()) {
+          drawIMDebugShapes(backBuffer, im);
         }
       }
       // draw the vehicles
-      for (VehicleSimView v : sim.getActiveVehicles()) {
-        drawVehicle(displayBuffer, v, sim.getSimulationTime());
-      }
+      drawVehicles(backBuffer, frame);
       // if we need to guide human, draw the traffic lights
-      for (IntersectionManager im : ims) {
-        drawTrafficLights(displayBuffer, im);
-      }
+      drawTrafficLights(backBuffer, frame);
       // draw simulation time.
       if (isShowSimulationTime) {
-        drawSimulationTime(displayBuffer, sim.getSimulationTime());
+        drawSimulationTime(backBuffer, frame);
       }
       // draw the debug points
-      drawDebugPoints(displayBuffer, Debug.getLongTermDebugPoints());
-      drawDebugPoints(displayBuffer, Debug.getShortTermDebugPoints());
+      drawDebugPoints(backBuffer, Debug.getLongTermDebugPoints());
+      drawDebugPoints(backBuffer, Debug.getShortTermDebugPoints());
       // draw tracks
-      // drawTracks(displayBuffer);
+      // drawTracks(backBuffer);
       // lastly, draw the vehicles' information string
-      for (VehicleSimView v : sim.getActiveVehicles()) {
-        drawVehicleInfoString(displayBuffer, v, sim.getSimulationTime());
+      if (isShowVin || Debug.SHOW_ARRIVAL_TIME
+          || Debug.SHOW_REMAINING_ARRIVAL_TIME) {
+        double scale = scaleTable[scaleIndex];
+        for (int k = 0; k < visibleVehicleCount; k++) {
+          int i = visibleVehicles[k];
+          // too small to read next to a dot
+          if (frame.getLength(i) * scale >= SPRITE_VEHICLE_PIXELS) {
+            drawVehicleInfoString(backBuffer, frame, i);
+          }
+        }
       }
-      // Finally display the new image
-      repaint();
-    } // else no simulator no drawing
+    } // else no snapshot no drawing
+    // Finally display the new image
+    Image image = displayImage;
+    displayImage = backImage;
+    backImage = image;
+    Graphics2D buffer = displayBuffer;
+    displayBuffer = backBuffer;
+    backBuffer = buffer;
+    repaint();
   }
 
   /**
@@ -877,71 +965,181 @@ public class Canvas extends JPanel implements ComponentListener,
   }
 
   /**
-   * Draw an individual Vehicle, and any associated debug information, if this
-   * Vehicle is a debug Vehicle.
+   * Draw the vehicles in the view. The level of detail follows the length
+   * of each vehicle on screen: the exact shapes when it is long enough to
+   * show them, pre-rendered sprites at a middle zoom, and dots when it is
+   * a few pixels long. The vehicles are grouped by color so that the paint
+   * is set, and the shapes are filled, once per color. The selected vehicle
+   * is drawn last, in detail.
    *
-   * @param buffer       the display buffer
-   * @param vehicle      the Vehicle to draw now
-   * @param currentTime  the current simulated time
-   */
-  private void drawVehicle(Graphics2D buffer,
-                           VehicleSimView vehicle,
-                           double currentTime) {
-    // whether the vehicle is selected
-    boolean selectedVehicle = (Debug.getTargetVIN() == vehicle.getVIN());
-    // check to see if we use another color
-    
-  	// if it's human-driven vehicle, change color
-  	if (SimConfig.signalType != null && SimConfig.signalType != SimConfig.SIGNAL_TYPE.DEFAULT && vehicle.getVehicleType() != VEHICLE_TYPE.AUTO) {
-  		VEHICLE_TYPE type = vehicle.getVehicleType();
-  		
-  		if (type == VEHICLE_TYPE.HUMAN) {
-  			buffer.setPaint(HUMAN_DRIVEN_COLOR);
-  		}
-  		else if (type == VEHICLE_TYPE.CRUISE) {
-  			buffer.setPaint(CONSTANT_HUMAN_DRIVEN_COLOR);
-  		}
-  		else if (type == VEHICLE_TYPE.ADAPTIVE_CRUISE) {
-  			buffer.setPaint(ADAPTIVE_HUMAN_DRIVEN_COLOR);
-  		}
-  	} else if (selectedVehicle) {
-      buffer.setPaint(VEHICLE_SELECTED_COLOR);
-    } else if (vehicle.getVIN() == MARVIN_VEHICLE_VIN) {
-      buffer.setPaint(MARVIN_VEHICLE_COLOR);
-    } else if (Debug.getVehicleColor(vehicle.getVIN()) != null) {
-      buffer.setPaint(Debug.getVehicleColor(vehicle.getVIN()));
-    } else if (Debug.SHOW_VEHICLE_COLOR_BY_MSG_STATE) {
-      if (vehicle.getDriver() instanceof AutoDriver) {
-        AutoDriver autoDriver = (AutoDriver) vehicle.getDriver();
-        if (autoDriver.getCurrentCoordinator() instanceof V2ICoordinator) {
-          V2ICoordinator coordinator =
-              (V2ICoordinator) autoDriver.getCurrentCoordinator();
-          if (coordinator.isAwaitingResponse()) {
-            buffer.setPaint(VEHICLE_WAITING_FOR_RESPONSE_COLOR);
-          } else if (coordinator.getReservationParameter() != null) {
-            buffer.setPaint(VEHICLE_HAS_RESERVATION_COLOR);
-          } else {
-            buffer.setPaint(VEHICLE_COLOR);  // the default color
-          }
+   * @param buffer  the display buffer
+   * @param frame   the snapshot of the simulation
+   */
+  private void drawVehicles(Graphics2D buffer, FrameSnapshot frame) {
+    double scale = scaleTable[scaleIndex];
+    Rectangle2D view = getVisibleMapArea(CULLING_MARGIN);
+    int selectedVin = Debug.getTargetVIN();
+    int selected = -1;
+    // cull the vehicles and group them by color
+    if (vehicleBatches.size() > MAX_VEHICLE_BATCHES) {
+      vehicleBatches.clear();
+    }
+    for (VehicleBatch batch : vehicleBatches.values()) {
+      batch.size = 0;
+    }
+    visibleVehicleCount = 0;
+    for (int i = 0; i < frame.getVehicleCount(); i++) {
+      if (!view.contains(frame.getCenterX(i), frame.getCenterY(i))) {
+        continue;
+      }
+      if (visibleVehicleCount == visibleVehicles.length) {
+        visibleVehicles = Arrays.copyOf(visibleVehicles,
+                                        2 * visibleVehicles.length);
+      }
+      visibleVehicles[visibleVehicleCount++] = i;
+      if (frame.getVin(i) == selectedVin) {
+        selected = i;
+        continue;
+      }
+      Color color = getVehicleColor(frame, i);
+      VehicleBatch batch = vehicleBatches.get(color);
+      if (batch == null) {
+        batch = new VehicleBatch();
+        vehicleBatches.put(color, batch);
+      }
+      batch.add(i);
+    }
+    // draw the batches
+    AffineTransform tf = buffer.getTransform();
+    Object antialiasing =
+        buffer.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+    for (Map.Entry<Color, VehicleBatch> entry : vehicleBatches.entrySet()) {
+      VehicleBatch batch = entry.getValue();
+      if (batch.size == 0) {
+        continue;
+      }
+      Color color = entry.getKey();
+      buffer.setPaint(color);
+      // sprites and dots are drawn on whole pixels
+      buffer.setTransform(IDENTITY_TRANSFORM);
+      buffer.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                              RenderingHints.VALUE_ANTIALIAS_OFF);
+      vehicleShapes.reset();
+      for (int k = 0; k < batch.size; k++) {
+        int i = batch.indices[k];
+        double lengthPx = frame.getLength(i) * scale;
+        if (lengthPx >= DETAILED_VEHICLE_PIXELS) {
+          frame.appendVehicleShape(vehicleShapes, i);
+          continue;
+        }
+        double x = posOfOriginX + frame.getCenterX(i) * scale;
+        double y = posOfOriginY + frame.getCenterY(i) * scale;
+        double widthPx = frame.getWidth(i) * scale;
+        if (lengthPx >= SPRITE_VEHICLE_PIXELS) {
+          BufferedImage sprite = spriteCache.get(
+              buffer.getDeviceConfiguration(), color,
+              (int) Math.round(lengthPx),
+              Math.max(1, (int) Math.round(widthPx)),
+              frame.getHeading(i));
+          buffer.drawImage(sprite,
+                           (int) Math.round(x - sprite.getWidth() / 2.0),
+                           (int) Math.round(y - sprite.getHeight() / 2.0),
+                           null);
         } else {
-          buffer.setPaint(VEHICLE_COLOR);  // the default color
+          int size = Math.max(MIN_VEHICLE_DOT_PIXELS,
+                              (int) Math.round((lengthPx + widthPx) / 2));
+          buffer.fillRect((int) Math.round(x - size / 2.0),
+                          (int) Math.round(y - size / 2.0),
+                          size, size);
         }
+      }
+      buffer.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+      buffer.setTransform(tf);
+      if (vehicleShapes.getCurrentPoint() != null) {
+        buffer.setStroke(VEHICLE_STROKE);
+        buffer.fill(vehicleShapes);
+      }
+    }
+    if (selected >= 0) {
+      drawVehicle(buffer, frame, selected);
+    }
+  }
+
+  /**
+   * Get the area of the map in the view.
+   *
+   * @param margin  the margin around the view, in meters
+   * @return the area of the map in the view, widened by the margin
+   */
+  private Rectangle2D getVisibleMapArea(double margin) {
+    double scale = scaleTable[scaleIndex];
+    return new Rectangle2D.Double(-posOfOriginX / scale - margin,
+                                  -posOfOriginY / scale - margin,
+                                  getWidth() / scale + 2 * margin,
+                                  getHeight() / scale + 2 * margin);
+  }
+
+  /**
+   * Get the color of a vehicle.
+   *
+   * @param frame  the snapshot of the simulation
+   * @param i      the index of the vehicle in the snapshot
+   * @return the color of the vehicle
+   */
+  private Color getVehicleColor(FrameSnapshot frame, int i) {
+    int vin = frame.getVin(i);
+    // if it's human-driven vehicle, change color
+    if (SimConfig.signalType != null
+        && SimConfig.signalType != SimConfig.SIGNAL_TYPE.DEFAULT
+        && frame.getVehicleType(i) != VEHICLE_TYPE.AUTO) {
+      VEHICLE_TYPE type = frame.getVehicleType(i);
+      if (type == VEHICLE_TYPE.HUMAN) {
+        return HUMAN_DRIVEN_COLOR;
+      } else if (type == VEHICLE_TYPE.CRUISE) {
+        return CONSTANT_HUMAN_DRIVEN_COLOR;
+      } else if (type == VEHICLE_TYPE.ADAPTIVE_CRUISE) {
+        return ADAPTIVE_HUMAN_DRIVEN_COLOR;
       } else {
-        buffer.setPaint(VEHICLE_COLOR);  // the default color
+        return VEHICLE_COLOR;
+      }
+    } else if (Debug.getTargetVIN() == vin) {
+      return VEHICLE_SELECTED_COLOR;
+    } else if (vin == MARVIN_VEHICLE_VIN) {
+      return MARVIN_VEHICLE_COLOR;
+    } else if (frame.getDebugColor(i) != null) {
+      return frame.getDebugColor(i);
+    } else if (Debug.SHOW_VEHICLE_COLOR_BY_MSG_STATE) {
+      if (frame.getReservationState(i) == FrameSnapshot.AWAITING_RESPONSE) {
+        return VEHICLE_WAITING_FOR_RESPONSE_COLOR;
+      } else if (frame.getReservationState(i)
+                 == FrameSnapshot.HAS_RESERVATION) {
+        return VEHICLE_HAS_RESERVATION_COLOR;
       }
-    } else {
-      buffer.setPaint(VEHICLE_COLOR);  // the default color
     }
+    return VEHICLE_COLOR;  // the default color
+  }
 
-  	buffer.setStroke(VEHICLE_STROKE);
-  	
+  /**
+   * Draw an individual Vehicle, and any associated debug information, if this
+   * Vehicle is a debug Vehicle.
+   *
+   * @param buffer  the display buffer
+   * @param frame   the snapshot of the simulation
+   * @param i       the index of the vehicle to draw now in the snapshot
+   */
+  private void drawVehicle(Graphics2D buffer, FrameSnapshot frame, int i) {
+    int vin = frame.getVin(i);
+    // whether the vehicle is selected
+    boolean selectedVehicle = (Debug.getTargetVIN() == vin);
+    buffer.setPaint(getVehicleColor(frame, i));
+    buffer.setStroke(VEHICLE_STROKE);
     // Now draw the vehicle's shape
-    buffer.fill(vehicle.getShape());
+    buffer.fill(frame.getVehicleShape(i));
     // Draw wheels and stuff if needed
-    if (selectedVehicle) {
+    if (selectedVehicle && frame.getWheelShapes(vin) != null) {
       buffer.setPaint(TIRE_COLOR);
       buffer.setStroke(TIRE_STROKE);
-      for (Shape wheel : vehicle.getWheelShapes()) {
+      for (Shape wheel : frame.getWheelShapes(vin)) {
         buffer.fill(wheel);
       }
     }
@@ -950,130 +1148,105 @@ public class Canvas extends JPanel implements ComponentListener,
   /**
    * Draw the information string of the vehicle on screen
    *
-   * @param buffer       the display buffer
-   * @param vehicle      the vehicle
-   * @param currentTime  the current simulated time
+   * @param buffer  the display buffer
+   * @param frame   the snapshot of the simulation
+   * @param i       the index of the vehicle in the snapshot
    */
   private void drawVehicleInfoString(Graphics2D buffer,
-                                     VehicleSimView vehicle,
-                                     double currentTime) {
-    List<String> infos = new LinkedList<String>();
+                                     FrameSnapshot frame,
+                                     int i) {
+    StringBuilder info = new StringBuilder();
 
     // display the vin
     if (isShowVin) {
-      infos.add(Integer.toString(vehicle.getVIN()));
+      info.append(frame.getVin(i));
     }
 
-    if (vehicle instanceof AutoVehicleSimView
-        && vehicle.getDriver() instanceof AutoDriver) {
-      AutoDriver da = (AutoDriver) vehicle.getDriver();
-      if (da.getCurrentCoordinator() instanceof V2ICoordinator) {
-        V2ICoordinator coordinator =
-            (V2ICoordinator) da.getCurrentCoordinator();
-
-        // display the arrival time of the request (if any)
-        if (Debug.SHOW_ARRIVAL_TIME) {
-          if (coordinator.isAwaitingResponse()
-              || coordinator.getReservationParameter() != null) {
-            V2IMessage msg =
-                ((AutoVehicleSimView) vehicle).getLastV2IMessage();
-            if (msg instanceof Request) {
-              Request request = (Request) msg;
-              if (request.getProposals().size() > 0) {
-                // one arrival time is enough.
-                double arrival_time =
-                    request.getProposals().get(0).getArrivalTime();
-                infos.add(String.format("%.2f", arrival_time));
-              } else {
-                infos.add("No Proposals");
-              }
-            } // else ignore other types of messages
-          }
+    // the arrival time of the request (if any) of a vehicle awaiting a
+    // response or holding a reservation
+    double arrivalTime = frame.getArrivalTime(i);
+    if (!Double.isNaN(arrivalTime)) {
+      // display the arrival time of the request
+      if (Debug.SHOW_ARRIVAL_TIME) {
+        if (arrivalTime == FrameSnapshot.NO_PROPOSALS) {
+          appendInfo(info, "No Proposals");
+        } else {
+          appendInfo(info, String.format("%.2f", arrivalTime));
         }
+      }
 
-        if (Debug.SHOW_REMAINING_ARRIVAL_TIME) {
-          if (coordinator.isAwaitingResponse()
-              || coordinator.getReservationParameter() != null) {
-            V2IMessage msg =
-                ((AutoVehicleSimView) vehicle).getLastV2IMessage();
-            if (msg instanceof Request) {
-              Request request = (Request) msg;
-              if (request.getProposals().size() > 0) {
-                // one arrival time is enough.
-                double arrival_time =
-                    request.getProposals().get(0).getArrivalTime();
-                if (coordinator.getReservationParameter() == null
-                    || arrival_time - currentTime >= 0) {
-                  infos.add(String.format("%.2f", arrival_time - currentTime));
-                }
-              } else {
-                infos.add("No Proposals");
-              }
-            } // else ignore other types of messages
-          }
+      if (Debug.SHOW_REMAINING_ARRIVAL_TIME) {
+        if (arrivalTime == FrameSnapshot.NO_PROPOSALS) {
+          appendInfo(info, "No Proposals");
+        } else if (frame.getReservationState(i)
+                   != FrameSnapshot.HAS_RESERVATION
+                   || arrivalTime - frame.getSimulationTime() >= 0) {
+          appendInfo(info, String.format("%.2f",
+              arrivalTime - frame.getSimulationTime()));
         }
       }
     }
 
-    if (infos.size() > 0) {
-      Point2D centerPoint = vehicle.getCenterPoint();
+    if (info.length() > 0) {
       buffer.setColor(VEHICLE_INFO_STRING_COLOR);
       buffer.setFont(VEHICLE_INFO_STRING_FONT);
-      buffer.drawString(Util.concatenate(infos, ","),
-          (float) centerPoint.getX(),
-          (float) centerPoint.getY());
+      buffer.drawString(info.toString(),
+          frame.getCenterX(i),
+          frame.getCenterY(i));
     }
   }
 
   /**
-   * Draw the current state of the lights for all IntersectionManagers.
+   * Append an item to the information string of a vehicle.
+   *
+   * @param info  the information string so far
+   * @param item  the item
+   */
+  private static void appendInfo(StringBuilder info, String item) {
+    if (info.length() > 0) {
+      info.append(',');
+    }
+    info.append(item);
+  }
+
+  /**
+   * Draw the current state of the lights of all IntersectionManagers.
    *
    * @param buffer  the display buffer
-   * @param im      the intersection manager whose traffic lights to draw
+   * @param frame   the snapshot of the simulation
    */
-  private void drawTrafficLights(Graphics2D buffer, IntersectionManager im) {
-    if (im instanceof V2IManager) {
-      Policy policy = ((V2IManager) im).getPolicy();
-      if (policy instanceof BasePolicy) {
-        BasePolicy basePolicy = (BasePolicy) policy;
-        if (basePolicy.getRequestHandler() instanceof TrafficSignalRequestHandler) {
-          TrafficSignalRequestHandler requestHandler =
-              (TrafficSignalRequestHandler) basePolicy.getRequestHandler();
-          for (Lane entryLane : im.getIntersection().getEntryLanes()) {
-              //this is an inheritance sin, but, ¯\_(ツ)_/¯
-              TrafficSignal ts = (SimConfig.signalType == SIGNAL_TYPE.FULLY_ACTUATED ? ((ApproxNPhasesTrafficSignalRequestHandler)requestHandler).getSignalForGUI(entryLane.getId()) : requestHandler.getSignal(entryLane.getId()));
-            switch (ts) {
-            case GREEN:
-              buffer.setPaint(Color.GREEN);
-              break;
-            case YELLOW:
-              buffer.setPaint(Color.YELLOW);
-              break;
-            case RED:
-              buffer.setPaint(Color.RED);
-              break;
-            default:
-              throw new RuntimeException("Unknown traffic signals.\n");
-            }
-            // Now create the shape we will use to draw the light
-            // For some reason, Java's angles increase to the right instead of
-            // to the left
-            // TODO: cache it
-            Arc2D lightShape =
-                new Arc2D.Double(im.getIntersection().getEntryPoint(entryLane).getX()
-                - TRAFFIC_LIGHT_RADIUS, // x
-                im.getIntersection().getEntryPoint(entryLane).getY()
-                - TRAFFIC_LIGHT_RADIUS, // y
-                TRAFFIC_LIGHT_RADIUS * 2, // width
-                TRAFFIC_LIGHT_RADIUS * 2, // height
-                90 - // start
-                Math.toDegrees(im.getIntersection().getEntryHeading(entryLane)), 180.0, // extent
-                Arc2D.PIE); // type
-            // Now draw it!
-            buffer.fill(lightShape);
-          }
-        }
+  private void drawTrafficLights(Graphics2D buffer, FrameSnapshot frame) {
+    Rectangle2D view = getVisibleMapArea(TRAFFIC_LIGHT_RADIUS);
+    for (int i = 0; i < frame.getLightCount(); i++) {
+      if (!view.contains(frame.getLightX(i), frame.getLightY(i))) {
+        continue;
+      }
+      switch (frame.getLightSignal(i)) {
+      case GREEN:
+        buffer.setPaint(Color.GREEN);
+        break;
+      case YELLOW:
+        buffer.setPaint(Color.YELLOW);
+        break;
+      case RED:
+        buffer.setPaint(Color.RED);
+        break;
+      default:
+        throw new RuntimeException("Unknown traffic signals.\n");
       }
+      // Now create the shape we will use to draw the light
+      // For some reason, Java's angles increase to the right instead of
+      // to the left
+      Arc2D lightShape =
+          new Arc2D.Double(frame.getLightX(i) - TRAFFIC_LIGHT_RADIUS, // x
+          frame.getLightY(i) - TRAFFIC_LIGHT_RADIUS, // y
+          TRAFFIC_LIGHT_RADIUS * 2, // width
+          TRAFFIC_LIGHT_RADIUS * 2, // height
+          90 - // start
+          Math.toDegrees(frame.getLightHeading(i)), 180.0, // extent
+          Arc2D.PIE); // type
+      // Now draw it!
+      buffer.fill(lightShape);
     }
   }
 
@@ -1095,10 +1268,10 @@ public class Canvas extends JPanel implements ComponentListener,
   /**
    * Draw the simulation time.
    *
-   * @param buffer       the display buffer
-   * @param currentTime  the time
+   * @param buffer  the display buffer
+   * @param frame   the snapshot of the simulation
    */
-  private void drawSimulationTime(Graphics2D buffer, double currentTime) {
+  private void drawSimulationTime(Graphics2D buffer, FrameSnapshot frame) {
     // Save the current transform so we can restore it.
     AffineTransform tf = buffer.getTransform();
     // Set the identity transform
@@ -1106,13 +1279,15 @@ public class Canvas extends JPanel implements ComponentListener,
     // Draw the time
     buffer.setColor(SIMULATION_TIME_STRING_COLOR);
     buffer.setFont(SIMULATION_TIME_STRING_FONT);
-    buffer.drawString(String.format("%.2fs", currentTime),
+    buffer.drawString(String.format("%.2fs", frame.getSimulationTime()),
         SIMULATION_TIME_LOCATION_X,
         SIMULATION_TIME_LOCATION_Y);
-    buffer.drawString(String.format("H: %.2fs", HtotalTime / Htotal),
+    buffer.drawString(String.format("H: %.2fs",
+        frame.getHumanAverageTravelTime()),
         SIMULATION_TIME_LOCATION_X,
         SIMULATION_TIME_LOCATION_Y + 20);
-    buffer.drawString(String.format("AV: %.2fs", AVtotalTime / AVtotal),
+    buffer.drawString(String.format("AV: %.2fs",
+        frame.getAutoAverageTravelTime()),
         SIMULATION_TIME_LOCATION_X,
         SIMULATION_TIME_LOCATION_Y + 40);
     // Restore the original transform.
@@ -1390,11 +1565,15 @@ public class Canvas extends JPanel implements ComponentListener,
   }
 
   /**
-   * Save the screen to a file in PNG format.
+   * Save the screen to a file in PNG format. The latest snapshot is drawn
+   * first, so the file shows the frame the simulation last published.
    *
    * @param outFileName  the output file name
    */
-  public void saveScreenShot(String outFileName) {
+  public synchronized void saveScreenShot(String outFileName) {
+    if (canUpdateCanvas) {
+      updateCanvas();
+    }
     File outfile = new File(outFileName);
     try {
       if (!ImageIO.write((BufferedImage) displayImage, "png", outfile)) {
@@ -1429,16 +1608,42 @@ public class Canvas extends JPanel implements ComponentListener,
    *
    * @param vin  the VIN number of the vehicle
    */
-  public void highlightVehicle(int vin) {
-    Simulator sim = viewer.getSimulator();
-    if (sim != null) {
-      VehicleSimView vehicle = sim.getActiveVehicle(vin);
-      if (vehicle != null) {
+  public synchronized void highlightVehicle(int vin) {
+    FrameSnapshot frame = this.frame;
+    if (frame != null) {
+      int i = frame.indexOf(vin);
+      if (i >= 0) {
         displayBuffer.setPaint(HIGHLIGHTED_VEHICLE_COLOR);
         displayBuffer.setStroke(HIGHLIGHTED_VEHICLE_STROKE);
-        displayBuffer.fill(vehicle.getShape());
+        displayBuffer.fill(frame.getVehicleShape(i));
         repaint();
       }
     }
   }
+
+  /////////////////////////////////
+  // NESTED CLASSES
+  /////////////////////////////////
+
+  /**
+   * The indices of the vehicles drawn in a color.
+   */
+  private static class VehicleBatch {
+    /** The indices of the vehicles in the snapshot */
+    int[] indices = new int[16];
+    /** The number of vehicles */
+    int size;
+
+    /**
+     * Add a vehicle.
+     *
+     * @param i  the index of the vehicle in the snapshot
+     */
+    void add(int i) {
+      if (size == indices.length) {
+        indices = Arrays.copyOf(indices, 2 * size);
+      }
+      indices[size++] = i;
+    }
+  }
 }
@@ -0,0 +1,583 @@
+package aim4.gui;
+
+import aim4.config.Debug;
+import aim4.config.SimConfig;
+import aim4.config.SimConfig.SIGNAL_TYPE;
+import aim4.config.SimConfig.VEHICLE_TYPE;
+import aim4.config.TrafficSignal;
+import aim4.driver.AutoDriver;
+import aim4.driver.coordinator.V2ICoordinator;
+import aim4.im.IntersectionManager;
+import aim4.im.v2i.RequestHandler.ApproxNPhasesTrafficSignalRequestHandler;
+import aim4.im.v2i.RequestHandler.TrafficSignalRequestHandler;
+import aim4.im.v2i.V2IManager;
+import aim4.im.v2i.policy.BasePolicy;
+import aim4.im.v2i.policy.Policy;
+import aim4.map.lane.Lane;
+import aim4.msg.v2i.Request;
+import aim4.msg.v2i.V2IMessage;
+import aim4.sim.Simulator;
+import aim4.sim.replay.TrajectoryFrame;
+import aim4.vehicle.AutoVehicleSimView;
+import aim4.vehicle.VehicleSimView;
+import expr.trb.TrafficSignalExpr;
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable picture of the state of a simulation that the canvas draws
+ * from. The snapshot is taken on the simulation thread between steps, once
+ * per frame shown, and keeps the vehicle poses and the traffic signals in
+ * primitive arrays, so that drawing never touches the live simulation and
+ * never has to wait for a step to finish.
+ */
+public final class FrameSnapshot {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The vehicle has neither sent a request nor got a reservation. */
+  public static final byte NO_REQUEST = 0;
+  /** The vehicle waits for the response to its request. */
+  public static final byte AWAITING_RESPONSE = 1;
+  /** The vehicle has a reservation. */
+  public static final byte HAS_RESERVATION = 2;
+
+  /**
+   * The arrival time of a vehicle whose last request had no proposals.
+   */
+  public static final double NO_PROPOSALS = Double.NEGATIVE_INFINITY;
+
+  /** The number of coordinates of the corners of a vehicle. */
+  private static final int CORNER_COORDINATES = 8;
+
+  /** The vehicle types, indexed by ordinal. */
+  private static final VEHICLE_TYPE[] VEHICLE_TYPES = VEHICLE_TYPE.values();
+  /** The traffic signals, indexed by ordinal. */
+  private static final TrafficSignal[] TRAFFIC_SIGNALS =
+      TrafficSignal.values();
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The simulation time of the snapshot */
+  private final double simulationTime;
+  /** The average travel time of the completed human driven vehicles */
+  private final double humanAverageTravelTime;
+  /** The average travel time of the completed autonomous vehicles */
+  private final double autoAverageTravelTime;
+
+  /** The number of vehicles */
+  private final int vehicleCount;
+  /** The VINs of the vehicles */
+  private final int[] vins;
+  /** The ordinals of the types of the vehicles */
+  private final byte[] vehicleTypes;
+  /** The reservation states of the vehicles */
+  private final byte[] reservationStates;
+  /** The x and y coordinates of the four corners of each vehicle */
+  private final float[] corners;
+  /** The x and y coordinates of the center of each vehicle */
+  private final float[] centers;
+  /**
+   * The arrival time of the last request of each vehicle awaiting a
+   * response or holding a reservation, NaN otherwise
+   */
+  private final double[] arrivalTimes;
+  /** The debug colors of the vehicles as RGB values, or -1 */
+  private final int[] debugColors;
+  /** The VIN of the selected vehicle when the snapshot was taken */
+  private final int selectedVin;
+  /** The wheels of the selected vehicle, or null */
+  private final Shape[] selectedWheels;
+
+  /** The number of traffic lights */
+  private final int lightCount;
+  /** The x and y coordinates of each traffic light */
+  private final float[] lightPositions;
+  /** The heading of the entry lane of each traffic light */
+  private final float[] lightHeadings;
+  /** The ordinals of the signals of the traffic lights */
+  private final byte[] lightSignals;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Take a snapshot of a simulation. This must be called on the simulation
+   * thread, between steps.
+   *
+   * @param sim  the simulator
+   * @return the snapshot of the current state of the simulation
+   */
+  public static FrameSnapshot capture(Simulator sim) {
+    return new FrameSnapshot(sim);
+  }
+
+  /**
+   * Make a snapshot of a frame of a trajectory file. Recorded frames keep
+   * no reservation states, arrival times, debug colors or wheels.
+   *
+   * @param recorded  the frame
+   * @return the snapshot of the frame
+   */
+  public static FrameSnapshot replay(TrajectoryFrame recorded) {
+    return new FrameSnapshot(recorded);
+  }
+
+  /**
+   * Create a snapshot of a simulation.
+   *
+   * @param sim  the simulator
+   */
+  private FrameSnapshot(Simulator sim) {
+    simulationTime = sim.getSimulationTime();
+    humanAverageTravelTime =
+        TrafficSignalExpr.HtotalTime / TrafficSignalExpr.Htotal;
+    autoAverageTravelTime =
+        TrafficSignalExpr.AVtotalTime / TrafficSignalExpr.AVtotal;
+
+    Collection<VehicleSimView> vehicles = sim.getActiveVehicles();
+    vehicleCount = vehicles.size();
+    vins = new int[vehicleCount];
+    vehicleTypes = new byte[vehicleCount];
+    reservationStates = new byte[vehicleCount];
+    corners = new float[vehicleCount * CORNER_COORDINATES];
+    centers = new float[vehicleCount * 2];
+    arrivalTimes = new double[vehicleCount];
+    debugColors = new int[vehicleCount];
+    selectedVin = Debug.getTargetVIN();
+    Shape[] wheels = null;
+
+    int i = 0;
+    for (VehicleSimView vehicle : vehicles) {
+      vins[i] = vehicle.getVIN();
+      vehicleTypes[i] = (byte) vehicle.getVehicleType().ordinal();
+      Point2D[] cornerPoints = vehicle.getCornerPoints();
+      for (int c = 0; c < cornerPoints.length && c < 4; c++) {
+        corners[i * CORNER_COORDINATES + 2 * c] = (float) cornerPoints[c].getX();
+        corners[i * CORNER_COORDINATES + 2 * c + 1] =
+            (float) cornerPoints[c].getY();
+      }
+      Point2D center = vehicle.getCenterPoint();
+      centers[2 * i] = (float) center.getX();
+      centers[2 * i + 1] = (float) center.getY();
+      Color color = Debug.getVehicleColor(vins[i]);
+      debugColors[i] = (color == null ? -1 : color.getRGB() & 0xffffff);
+      captureReservation(i, vehicle);
+      if (vins[i] == selectedVin) {
+        wheels = vehicle.getWheelShapes();
+      }
+      i++;
+    }
+    selectedWheels = wheels;
+
+    List<float[]> lights = new ArrayList<float[]>();
+    List<TrafficSignal> signals = new ArrayList<TrafficSignal>();
+    for (IntersectionManager im : sim.getMap().getIntersectionManagers()) {
+      captureTrafficLights(im, lights, signals);
+    }
+    lightCount = lights.size();
+    lightPositions = new float[lightCount * 2];
+    lightHeadings = new float[lightCount];
+    lightSignals = new byte[lightCount];
+    for (int j = 0; j < lightCount; j++) {
+      float[] light = lights.get(j);
+      lightPositions[2 * j] = light[0];
+      lightPositions[2 * j + 1] = light[1];
+      lightHeadings[j] = light[2];
+      lightSignals[j] = (byte) signals.get(j).ordinal();
+    }
+  }
+
+  /**
+   * Create a snapshot of a frame of a trajectory file.
+   *
+   * @param recorded  the frame
+   */
+  private FrameSnapshot(TrajectoryFrame recorded) {
+    simulationTime = recorded.getTime();
+    humanAverageTravelTime = recorded.getHumanAverageTravelTime();
+    autoAverageTravelTime = recorded.getAutoAverageTravelTime();
+
+    vehicleCount = recorded.getVehicleCount();
+    vins = new int[vehicleCount];
+    vehicleTypes = new byte[vehicleCount];
+    reservationStates = new byte[vehicleCount];
+    corners = new float[vehicleCount * CORNER_COORDINATES];
+    centers = new float[vehicleCount * 2];
+    arrivalTimes = new double[vehicleCount];
+    debugColors = new int[vehicleCount];
+    selectedVin = Debug.getTargetVIN();
+    selectedWheels = null;
+    Arrays.fill(arrivalTimes, Double.NaN);
+    Arrays.fill(debugColors, -1);
+    for (int i = 0; i < vehicleCount; i++) {
+      vins[i] = recorded.getVin(i);
+      vehicleTypes[i] = (byte) recorded.getVehicleType(i).ordinal();
+      for (int c = 0; c < 4; c++) {
+        float x = recorded.getCornerX(i, c);
+        float y = recorded.getCornerY(i, c);
+        corners[i * CORNER_COORDINATES + 2 * c] = x;
+        corners[i * CORNER_COORDINATES + 2 * c + 1] = y;
+        centers[2 * i] += x / 4;
+        centers[2 * i + 1] += y / 4;
+      }
+    }
+
+    lightCount = recorded.getLightCount();
+    lightPositions = new float[lightCount * 2];
+    lightHeadings = new float[lightCount];
+    lightSignals = new byte[lightCount];
+    for (int j = 0; j < lightCount; j++) {
+      lightPositions[2 * j] = recorded.getLightX(j);
+      lightPositions[2 * j + 1] = recorded.getLightY(j);
+      lightHeadings[j] = recorded.getLightHeading(j);
+      lightSignals[j] = (byte) recorded.getLightSignal(j).ordinal();
+    }
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the simulation time.
+   *
+   * @return the simulation time of the snapshot
+   */
+  public double getSimulationTime() {
+    return simulationTime;
+  }
+
+  /**
+   * Get the average travel time of the completed human driven vehicles.
+   *
+   * @return the average travel time, or NaN if none has completed
+   */
+  public double getHumanAverageTravelTime() {
+    return humanAverageTravelTime;
+  }
+
+  /**
+   * Get the average travel time of the completed autonomous vehicles.
+   *
+   * @return the average travel time, or NaN if none has completed
+   */
+  public double getAutoAverageTravelTime() {
+    return autoAverageTravelTime;
+  }
+
+  /**
+   * Get the number of vehicles.
+   *
+   * @return the number of vehicles in the snapshot
+   */
+  public int getVehicleCount() {
+    return vehicleCount;
+  }
+
+  /**
+   * Get the VIN of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return the VIN of the vehicle
+   */
+  public int getVin(int i) {
+    return vins[i];
+  }
+
+  /**
+   * Get the index of a vehicle.
+   *
+   * @param vin  the VIN of the vehicle
+   * @return the index of the vehicle, or -1 if it is not in the snapshot
+   */
+  public int indexOf(int vin) {
+    for (int i = 0; i < vehicleCount; i++) {
+      if (vins[i] == vin) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get the type of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return the type of the vehicle
+   */
+  public VEHICLE_TYPE getVehicleType(int i) {
+    return VEHICLE_TYPES[vehicleTypes[i]];
+  }
+
+  /**
+   * Get the reservation state of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return {@link #NO_REQUEST}, {@link #AWAITING_RESPONSE} or
+   *         {@link #HAS_RESERVATION}
+   */
+  public byte getReservationState(int i) {
+    return reservationStates[i];
+  }
+
+  /**
+   * Get the arrival time of the last request of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return the arrival time of the first proposal, {@link #NO_PROPOSALS},
+   *         or NaN if the vehicle neither awaits a response nor holds a
+   *         reservation
+   */
+  public double getArrivalTime(int i) {
+    return arrivalTimes[i];
+  }
+
+  /**
+   * Get the debug color of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return the debug color of the vehicle, or null if there is none
+   */
+  public Color getDebugColor(int i) {
+    return (debugColors[i] < 0 ? null : new Color(debugColors[i]));
+  }
+
+  /**
+   * Get the shape of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return the shape of the vehicle
+   */
+  public Shape getVehicleShape(int i) {
+    int offset = i * CORNER_COORDINATES;
+    Path2D.Float shape = new Path2D.Float(Path2D.WIND_NON_ZERO, 4);
+    shape.moveTo(corners[offset], corners[offset + 1]);
+    for (int c = 2; c < CORNER_COORDINATES; c += 2) {
+      shape.lineTo(corners[offset + c], corners[offset + c + 1]);
+    }
+    shape.closePath();
+    return shape;
+  }
+
+  /**
+   * Append the shape of a vehicle to a path, so that many vehicles can be
+   * filled at once.
+   *
+   * @param path  the path
+   * @param i     the index of the vehicle
+   */
+  public void appendVehicleShape(Path2D path, int i) {
+    int offset = i * CORNER_COORDINATES;
+    path.moveTo(corners[offset], corners[offset + 1]);
+    for (int c = 2; c < CORNER_COORDINATES; c += 2) {
+      path.lineTo(corners[offset + c], corners[offset + c + 1]);
+    }
+    path.closePath();
+  }
+
+  /**
+   * Get the heading of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return the heading of the vehicle, from its rear to its front corners
+   */
+  public double getHeading(int i) {
+    int offset = i * CORNER_COORDINATES;
+    // the first corner is front left, the second rear left
+    return Math.atan2(corners[offset + 1] - corners[offset + 3],
+                      corners[offset] - corners[offset + 2]);
+  }
+
+  /**
+   * Get the length of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return the length of the vehicle
+   */
+  public double getLength(int i) {
+    int offset = i * CORNER_COORDINATES;
+    return Math.hypot(corners[offset] - corners[offset + 2],
+                      corners[offset + 1] - corners[offset + 3]);
+  }
+
+  /**
+   * Get the width of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return the width of the vehicle
+   */
+  public double getWidth(int i) {
+    int offset = i * CORNER_COORDINATES;
+    // the fourth corner is front right
+    return Math.hypot(corners[offset] - corners[offset + 6],
+                      corners[offset + 1] - corners[offset + 7]);
+  }
+
+  /**
+   * Get the x-coordinate of the center of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return the x-coordinate of the center of the vehicle
+   */
+  public float getCenterX(int i) {
+    return centers[2 * i];
+  }
+
+  /**
+   * Get the y-coordinate of the center of a vehicle.
+   *
+   * @param i  the index of the vehicle
+   * @return the y-coordinate of the center of the vehicle
+   */
+  public float getCenterY(int i) {
+    return centers[2 * i + 1];
+  }
+
+  /**
+   * Get the wheels of a vehicle. Only the wheels of the vehicle selected
+   * when the snapshot was taken are kept.
+   *
+   * @param vin  the VIN of the vehicle
+   * @return the wheels of the vehicle, or null if they were not kept
+   */
+  public Shape[] getWheelShapes(int vin) {
+    return (vin == selectedVin ? selectedWheels : null);
+  }
+
+  /**
+   * Get the number of traffic lights.
+   *
+   * @return the number of traffic lights in the snapshot
+   */
+  public int getLightCount() {
+    return lightCount;
+  }
+
+  /**
+   * Get the x-coordinate of a traffic light.
+   *
+   * @param i  the index of the traffic light
+   * @return the x-coordinate of the entry point of its lane
+   */
+  public float getLightX(int i) {
+    return lightPositions[2 * i];
+  }
+
+  /**
+   * Get the y-coordinate of a traffic light.
+   *
+   * @param i  the index of the traffic light
+   * @return the y-coordinate of the entry point of its lane
+   */
+  public float getLightY(int i) {
+    return lightPositions[2 * i + 1];
+  }
+
+  /**
+   * Get the heading of a traffic light.
+   *
+   * @param i  the index of the traffic light
+   * @return the heading of its lane at the entry point
+   */
+  public float getLightHeading(int i) {
+    return lightHeadings[i];
+  }
+
+  /**
+   * Get the signal of a traffic light.
+   *
+   * @param i  the index of the traffic light
+   * @return the signal of the traffic light
+   */
+  public TrafficSignal getLightSignal(int i) {
+    return TRAFFIC_SIGNALS[lightSignals[i]];
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Record the reservation state and the requested arrival time of a
+   * vehicle.
+   *
+   * @param i        the index of the vehicle
+   * @param vehicle  the vehicle
+   */
+  private void captureReservation(int i, VehicleSimView vehicle) {
+    reservationStates[i] = NO_REQUEST;
+    arrivalTimes[i] = Double.NaN;
+    if (!(vehicle.getDriver() instanceof AutoDriver)) {
+      return;
+    }
+    AutoDriver driver = (AutoDriver) vehicle.getDriver();
+    if (!(driver.getCurrentCoordinator() instanceof V2ICoordinator)) {
+      return;
+    }
+    V2ICoordinator coordinator =
+        (V2ICoordinator) driver.getCurrentCoordinator();
+    if (coordinator.isAwaitingResponse()) {
+      reservationStates[i] = AWAITING_RESPONSE;
+    } else if (coordinator.getReservationParameter() != null) {
+      reservationStates[i] = HAS_RESERVATION;
+    } else {
+      return;
+    }
+    if (vehicle instanceof AutoVehicleSimView) {
+      V2IMessage msg = ((AutoVehicleSimView) vehicle).getLastV2IMessage();
+      if (msg instanceof Request) {
+        Request request = (Request) msg;
+        arrivalTimes[i] = (request.getProposals().isEmpty()
+            ? NO_PROPOSALS
+            : request.getProposals().get(0).getArrivalTime());
+      }
+    }
+  }
+
+  /**
+   * Record the traffic lights of an intersection manager.
+   *
+   * @param im       the intersection manager
+   * @param lights   the positions and headings of the lights recorded so far
+   * @param signals  the signals of the lights recorded so far
+   */
+  private static void captureTrafficLights(IntersectionManager im,
+                                           List<float[]> lights,
+                                           List<TrafficSignal> signals) {
+    if (!(im instanceof V2IManager)) {
+      return;
+    }
+    Policy policy = ((V2IManager) im).getPolicy();
+    if (!(policy instanceof BasePolicy)
+        || !(((BasePolicy) policy).getRequestHandler()
+             instanceof TrafficSignalRequestHandler)) {
+      return;
+    }
+    TrafficSignalRequestHandler requestHandler =
+        (TrafficSignalRequestHandler) ((BasePolicy) policy).getRequestHandler();
+    for (Lane entryLane : im.getIntersection().getEntryLanes()) {
+      TrafficSignal ts = (SimConfig.signalType == SIGNAL_TYPE.FULLY_ACTUATED
+          ? ((ApproxNPhasesTrafficSignalRequestHandler) requestHandler)
+              .getSignalForGUI(entryLane.getId())
+          : requestHandler.getSignal(entryLane.getId()));
+      Point2D entryPoint = im.getIntersection().getEntryPoint(entryLane);
+      lights.add(new float[] {
+          (float) entryPoint.getX(),
+          (float) entryPoint.getY(),
+          (float) im.getIntersection().getEntryHeading(entryLane)});
+      signals.add(ts);
+    }
+  }
+}
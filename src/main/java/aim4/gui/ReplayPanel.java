@@ -0,0 +1,315 @@
+package aim4.gui;
+
+import aim4.sim.replay.TrajectoryFile;
+import aim4.sim.replay.TrajectoryFrame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import javax.swing.GroupLayout;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * The controls of the replay of a trajectory file: playing and pausing, the
+ * replay speed, and a slider to seek and scrub through the frames. The frames
+ * are read on the event dispatch thread straight from the file, so the replay
+ * can jump to any time without simulating up to it.
+ */
+public class ReplayPanel extends JPanel implements ActionListener,
+                                                   ChangeListener {
+
+  private static final long serialVersionUID = 1L;
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The replay speeds offered, in simulation seconds per second */
+  private static final double[] SPEEDS =
+      {0.5, 1.0, 2.0, 5.0, 10.0, 30.0, 100.0, 300.0, 1000.0};
+  /** The index of the replay speed when a file is opened */
+  private static final int DEFAULT_SPEED_INDEX = 1;
+  /** The time between the frames shown while playing, in milliseconds */
+  private static final int FRAME_INTERVAL = 40;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The canvas the frames are drawn on */
+  private final Canvas canvas;
+  /** The Play/Pause button */
+  private final JButton playButton;
+  /** The replay speeds */
+  private final JComboBox<String> speedComboBox;
+  /** The slider over the frames */
+  private final JSlider frameSlider;
+  /** The time of the frame shown */
+  private final JLabel timeLabel;
+  /** The timer advancing the replay while playing */
+  private final Timer timer;
+  /** The file being replayed, or null */
+  private TrajectoryFile trajectory;
+  /** The index of the frame shown, or -1 */
+  private int shownFrame;
+  /** The simulation time being replayed */
+  private double replayTime;
+  /** The value of System.nanoTime() when the replay last advanced */
+  private long lastTick;
+  /** Whether the slider is moved to the frame shown rather than by the user */
+  private boolean isMovingSlider;
+
+  /////////////////////////////////
+  // CLASS CONSTRUCTORS
+  /////////////////////////////////
+
+  /**
+   * Create a replay panel.
+   *
+   * @param canvas  the canvas the frames are drawn on
+   */
+  public ReplayPanel(Canvas canvas) {
+    this.canvas = canvas;
+    this.trajectory = null;
+    this.shownFrame = -1;
+    this.isMovingSlider = false;
+
+    playButton = new JButton("Play");
+    playButton.addActionListener(this);
+    String[] speedItems = new String[SPEEDS.length];
+    for (int i = 0; i < SPEEDS.length; i++) {
+      speedItems[i] = String.format("%sx", SPEEDS[i]);
+    }
+    speedComboBox = new JComboBox<String>(speedItems);
+    speedComboBox.setSelectedIndex(DEFAULT_SPEED_INDEX);
+    frameSlider = new JSlider(JSlider.HORIZONTAL, 0, 0, 0);
+    frameSlider.addChangeListener(this);
+    timeLabel = new JLabel();
+    timer = new Timer(FRAME_INTERVAL, this);
+
+    // layout
+    GroupLayout layout = new GroupLayout(this);
+    setLayout(layout);
+    layout.setAutoCreateGaps(true);
+    layout.setAutoCreateContainerGaps(true);
+    layout.setHorizontalGroup(layout.createSequentialGroup()
+      .addComponent(playButton)
+      .addComponent(speedComboBox, GroupLayout.PREFERRED_SIZE,
+                    GroupLayout.PREFERRED_SIZE, GroupLayout.PREFERRED_SIZE)
+      .addComponent(frameSlider)
+      .addComponent(timeLabel));
+    layout.setVerticalGroup(layout
+      .createParallelGroup(GroupLayout.Alignment.CENTER)
+      .addComponent(playButton)
+      .addComponent(speedComboBox, GroupLayout.PREFERRED_SIZE,
+                    GroupLayout.PREFERRED_SIZE, GroupLayout.PREFERRED_SIZE)
+      .addComponent(frameSlider)
+      .addComponent(timeLabel));
+  }
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Start replaying a file, paused at its first frame.
+   *
+   * @param trajectory  the file
+   */
+  public void open(TrajectoryFile trajectory) {
+    this.trajectory = trajectory;
+    shownFrame = -1;
+    replayTime = trajectory.getStartTime();
+    speedComboBox.setSelectedIndex(DEFAULT_SPEED_INDEX);
+    isMovingSlider = true;
+    frameSlider.setMaximum(Math.max(trajectory.getFrameCount() - 1, 0));
+    frameSlider.setValue(0);
+    isMovingSlider = false;
+    pause();
+    if (trajectory.getFrameCount() > 0) {
+      showFrame(0);
+    } else {
+      timeLabel.setText("No frames");
+    }
+  }
+
+  /**
+   * Stop replaying and close the file.
+   */
+  public void close() {
+    pause();
+    if (trajectory != null) {
+      try {
+        trajectory.close();
+      } catch (IOException e) {
+        // nothing to lose
+      }
+      trajectory = null;
+    }
+  }
+
+  /**
+   * Whether a file is being replayed.
+   *
+   * @return whether a file is being replayed
+   */
+  public boolean isOpen() {
+    return trajectory != null;
+  }
+
+  /**
+   * Play the replay if it is paused, pause it otherwise.
+   */
+  public void togglePlaying() {
+    if (trajectory == null) {
+      return;
+    }
+    if (timer.isRunning()) {
+      pause();
+    } else {
+      if (shownFrame == trajectory.getFrameCount() - 1) {
+        // start over at the end
+        replayTime = trajectory.getStartTime();
+      }
+      lastTick = System.nanoTime();
+      timer.start();
+      playButton.setText("Pause");
+    }
+  }
+
+  /**
+   * Pause the replay and move by a number of frames.
+   *
+   * @param frames  the number of frames, negative to move back
+   */
+  public void stepFrames(int frames) {
+    if (trajectory == null || trajectory.getFrameCount() == 0) {
+      return;
+    }
+    pause();
+    int index = Math.max(0, Math.min(trajectory.getFrameCount() - 1,
+                                     shownFrame + frames));
+    if (showFrame(index)) {
+      replayTime = currentTime();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void actionPerformed(ActionEvent e) {
+    if (e.getSource() == timer) {
+      advance();
+    } else if (e.getSource() == playButton) {
+      togglePlaying();
+      canvas.requestFocusInWindow();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void stateChanged(ChangeEvent e) {
+    if (e.getSource() == frameSlider && !isMovingSlider && trajectory != null
+        && trajectory.getFrameCount() > 0) {
+      if (showFrame(frameSlider.getValue())) {
+        replayTime = currentTime();
+        lastTick = System.nanoTime();
+      }
+    }
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Advance the replay by the time passed since it last advanced, at the
+   * replay speed.
+   */
+  private void advance() {
+    long now = System.nanoTime();
+    replayTime += (now - lastTick) / 1e9
+                  * SPEEDS[speedComboBox.getSelectedIndex()];
+    lastTick = now;
+    if (replayTime >= trajectory.getEndTime()) {
+      replayTime = trajectory.getEndTime();
+      pause();
+    }
+    try {
+      showFrame(trajectory.getFrameAt(replayTime));
+    } catch (IOException e) {
+      showError(e);
+    }
+  }
+
+  /**
+   * Show a frame on the canvas.
+   *
+   * @param index  the index of the frame
+   * @return whether the frame could be read
+   */
+  private boolean showFrame(int index) {
+    if (index == shownFrame) {
+      return true;
+    }
+    TrajectoryFrame frame;
+    try {
+      frame = trajectory.getFrame(index);
+    } catch (IOException e) {
+      showError(e);
+      return false;
+    }
+    canvas.update(FrameSnapshot.replay(frame));
+    shownFrame = index;
+    isMovingSlider = true;
+    frameSlider.setValue(index);
+    isMovingSlider = false;
+    timeLabel.setText(String.format("%.2fs / %.2fs", frame.getTime(),
+                                    trajectory.getEndTime()));
+    return true;
+  }
+
+  /**
+   * Get the time of the frame shown.
+   *
+   * @return the time of the frame shown
+   */
+  private double currentTime() {
+    try {
+      return trajectory.getFrame(shownFrame).getTime();
+    } catch (IOException e) {
+      // the frame shown was read already
+      return replayTime;
+    }
+  }
+
+  /**
+   * Pause the replay.
+   */
+  private void pause() {
+    timer.stop();
+    playButton.setText("Play");
+  }
+
+  /**
+   * Pause the replay and report a file that cannot be read.
+   *
+   * @param e  the failure
+   */
+  private void showError(IOException e) {
+    pause();
+    JOptionPane.showMessageDialog(this,
+        "Could not read " + trajectory.getFile() + ": " + e.getMessage(),
+        "Replay", JOptionPane.ERROR_MESSAGE);
+  }
+}
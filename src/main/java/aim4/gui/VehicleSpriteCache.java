@@ -0,0 +1,128 @@
+package aim4.gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pre-rendered images of vehicles for drawing them at a middle zoom, where
+ * a vehicle is a few pixels long and filling its exact shape costs far more
+ * than copying an image. The images are keyed by the color, the size of the
+ * vehicle in whole pixels, which tells the vehicle specs apart at a given
+ * scale, and the heading rounded to one of {@link #HEADING_BUCKETS}
+ * directions.
+ */
+class VehicleSpriteCache {
+
+  /////////////////////////////////
+  // CONSTANTS
+  /////////////////////////////////
+
+  /** The number of directions the headings are rounded to */
+  static final int HEADING_BUCKETS = 64;
+  /** The largest length or width of a sprite, in pixels */
+  static final int MAX_SPRITE_SIZE = 255;
+  /** The number of sprites kept before the cache starts over */
+  private static final int MAX_SPRITES = 4096;
+
+  /////////////////////////////////
+  // PRIVATE FIELDS
+  /////////////////////////////////
+
+  /** The sprites by their keys */
+  private final Map<Long, BufferedImage> sprites =
+      new HashMap<Long, BufferedImage>();
+
+  /////////////////////////////////
+  // PUBLIC METHODS
+  /////////////////////////////////
+
+  /**
+   * Get the sprite of a vehicle, rendering it if it is not in the cache.
+   * The vehicle is centered in the sprite.
+   *
+   * @param gc        the configuration of the buffer the sprite is drawn on
+   * @param color     the color of the vehicle
+   * @param lengthPx  the length of the vehicle in pixels, at most
+   *                  {@link #MAX_SPRITE_SIZE}
+   * @param widthPx   the width of the vehicle in pixels, at most
+   *                  {@link #MAX_SPRITE_SIZE}
+   * @param heading   the heading of the vehicle
+   * @return the sprite of the vehicle
+   */
+  BufferedImage get(GraphicsConfiguration gc, Color color,
+                    int lengthPx, int widthPx, double heading) {
+    int bucket = headingBucket(heading);
+    long key = ((long) (color.getRGB() & 0xffffff) << 24)
+               | (lengthPx << 16) | (widthPx << 8) | bucket;
+    BufferedImage sprite = sprites.get(key);
+    if (sprite == null) {
+      if (sprites.size() >= MAX_SPRITES) {
+        sprites.clear();
+      }
+      sprite = render(gc, color, lengthPx, widthPx,
+                      bucket * 2 * Math.PI / HEADING_BUCKETS);
+      sprites.put(key, sprite);
+    }
+    return sprite;
+  }
+
+  /**
+   * Drop all the sprites.
+   */
+  void clear() {
+    sprites.clear();
+  }
+
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Round a heading to a direction.
+   *
+   * @param heading  the heading
+   * @return the index of the nearest of the {@link #HEADING_BUCKETS}
+   *         directions
+   */
+  private static int headingBucket(double heading) {
+    int bucket = (int) Math.round(heading * HEADING_BUCKETS / (2 * Math.PI));
+    return ((bucket % HEADING_BUCKETS) + HEADING_BUCKETS) % HEADING_BUCKETS;
+  }
+
+  /**
+   * Render a vehicle on a new transparent image just large enough for it
+   * in any direction.
+   *
+   * @param gc        the configuration of the buffer the sprite is drawn on
+   * @param color     the color of the vehicle
+   * @param lengthPx  the length of the vehicle in pixels
+   * @param widthPx   the width of the vehicle in pixels
+   * @param heading   the heading of the vehicle
+   * @return the sprite
+   */
+  private static BufferedImage render(GraphicsConfiguration gc, Color color,
+                                      int lengthPx, int widthPx,
+                                      double heading) {
+    int size = (int) Math.ceil(Math.hypot(lengthPx, widthPx)) + 2;
+    BufferedImage sprite = (gc == null
+        ? new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB)
+        : gc.createCompatibleImage(size, size, Transparency.TRANSLUCENT));
+    Graphics2D g = sprite.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                       RenderingHints.VALUE_ANTIALIAS_ON);
+    g.translate(size / 2.0, size / 2.0);
+    g.rotate(heading);
+    g.setPaint(color);
+    g.fill(new Rectangle2D.Double(-lengthPx / 2.0, -widthPx / 2.0,
+                                  lengthPx, widthPx));
+    g.dispose();
+    return sprite;
+  }
+}
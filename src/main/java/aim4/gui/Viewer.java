@@ -45,6 +45,7 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.geom.Point2D;
+import java.io.File;
 import java.io.IOException;
 
 import javax.swing.GroupLayout;
@@ -55,6 +56,7 @@ import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
 import aim4.config.Constants;
@@ -63,12 +65,14 @@ import aim4.config.SimConfig;
 import aim4.gui.frame.signalvisualization.SignalVisualizationWindow;
 import aim4.gui.frame.VehicleInfoFrame;
 import aim4.im.IntersectionManager;
+import aim4.map.BasicMap;
 import aim4.map.Road;
 import aim4.map.lane.Lane;
 import aim4.sim.Simulator;
 import aim4.sim.UdpListener;
 import aim4.sim.AutoDriverOnlySimulator.AutoDriverOnlySimStepResult;
 import aim4.sim.Simulator.SimStepResult;
+import aim4.sim.replay.TrajectoryFile;
 import aim4.sim.setup.BasicSimSetup;
 import aim4.sim.setup.SimFactory;
 import aim4.sim.setup.SimSetup;
@@ -381,6 +385,8 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
 
   /** The initial configuration of the simulation */
   private BasicSimSetup initSimSetup;
+  /** The setup of the last simulation started, or null */
+  private SimSetup lastSimSetup;
   /** The Simulator running in this Viewer. */
   private Simulator sim;
   /** The simulation's thread */
@@ -412,6 +418,8 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
   private SimSetupPanel simSetupPanel;
   /** The status pane on which to display statistics. */
   private StatusPanelContainer statusPanel;
+  /** The controls of the replay of a trajectory file */
+  private ReplayPanel replayPanel;
   /** The Start/Pause/Resume Button */
   private JButton startButton;
   /** The Step Button */
@@ -443,6 +451,10 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
   private JMenuItem startUdpListenerMenuItem;
   /** Menu item for stopping the UDP listener */
   private JMenuItem stopUdpListenerMenuItem;
+  /** Menu item for opening a trajectory file */
+  private JMenuItem openReplayMenuItem;
+  /** Menu item for closing the trajectory file */
+  private JMenuItem closeReplayMenuItem;
   /** Menu item for controlling whether to show the simulation time */
   private JCheckBoxMenuItem showSimulationTimeMenuItem;
   /** Menu item for controlling whether to show VIN numbers */
@@ -474,6 +486,7 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
   public Viewer(final BasicSimSetup initSimSetup, final boolean isRunNow) {
     super(TITLEBAR_STRING);
     this.initSimSetup = initSimSetup;
+    this.lastSimSetup = null;
     this.sim = null;
     this.udpListener = null;
     this.simThread = null;
@@ -616,6 +629,18 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
     stopRecordingMenuItem.addActionListener(this);
     menu.add(stopRecordingMenuItem);
 
+    // Replay
+    menu = new JMenu("Replay");
+    menuBar.add(menu);
+    // Replay->Open
+    openReplayMenuItem = new JMenuItem("Open Trajectory...");
+    openReplayMenuItem.addActionListener(this);
+    menu.add(openReplayMenuItem);
+    // Replay->Close
+    closeReplayMenuItem = new JMenuItem("Close");
+    closeReplayMenuItem.addActionListener(this);
+    menu.add(closeReplayMenuItem);
+
     // UDP
     menu = new JMenu("UDP");
     menuBar.add(menu);
@@ -665,6 +690,8 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
     canvas = new Canvas(this);
     simSetupPanel = new SimSetupPanel(initSimSetup);
     statusPanel = new StatusPanelContainer(this);
+    replayPanel = new ReplayPanel(canvas);
+    replayPanel.setVisible(false);
     startButton = new JButton("Start");
     startButton.addActionListener(this);
     stepButton = new JButton("Step");
@@ -729,7 +756,7 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
     layout.setAutoCreateContainerGaps(false);
     // layout for the horizontal axis
     layout.setHorizontalGroup(layout.createParallelGroup(
-        GroupLayout.Alignment.LEADING).addComponent(mainPanel).addGroup(layout.createSequentialGroup().addGroup(
+        GroupLayout.Alignment.LEADING).addComponent(mainPanel).addComponent(replayPanel).addGroup(layout.createSequentialGroup().addGroup(
         layout.createParallelGroup(GroupLayout.Alignment.LEADING).addComponent(
         startButton,
         DEFAULT_BUTTON_WIDTH,
@@ -741,7 +768,9 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
         statusPanel)));
     // layout for the vertical axis
     layout.setVerticalGroup(
-        layout.createSequentialGroup().addComponent(mainPanel).addGroup(
+        layout.createSequentialGroup().addComponent(mainPanel).addComponent(
+        replayPanel, GroupLayout.PREFERRED_SIZE, GroupLayout.PREFERRED_SIZE,
+        GroupLayout.PREFERRED_SIZE).addGroup(
         layout.createParallelGroup(GroupLayout.Alignment.CENTER).addGroup(layout.createSequentialGroup().addComponent(
         startButton).addComponent(stepButton)).addComponent(statusPanel,
         DEFAULT_STATUS_PANE_HEIGHT,
@@ -776,6 +805,7 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
     stopRecordingMenuItem.setEnabled(false);
     startUdpListenerMenuItem.setEnabled(false);
     stopUdpListenerMenuItem.setEnabled(false);
+    closeReplayMenuItem.setEnabled(false);
     showSimulationTimeMenuItem.setSelected(IS_SHOW_SIMULATION_TIME);
     showVinMenuItem.setSelected(IS_SHOW_VIN_BY_DEFAULT);
     showIMShapesMenuItem.setSelected(IS_SHOW_IM_DEBUG_SHAPES_BY_DEFAULT);
@@ -803,6 +833,7 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
     resetMenuItem.setEnabled(true);
     dumpDataMenuItem.setEnabled(true);
     startUdpListenerMenuItem.setEnabled(true);
+    openReplayMenuItem.setEnabled(false);
     clearDebugPointsMenuItem.setEnabled(true);
   }
 
@@ -834,6 +865,7 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
     resetMenuItem.setEnabled(false);
     dumpDataMenuItem.setEnabled(false);
     startUdpListenerMenuItem.setEnabled(false);
+    openReplayMenuItem.setEnabled(true);
     clearDebugPointsMenuItem.setEnabled(false);
   }
 
@@ -884,6 +916,7 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
 
     // create the simulator
     sim = SimFactory.makeSimulator(initSimSetup);
+    lastSimSetup = initSimSetup;
     // create the simulation thread
     createSimThread();
     // initialize the GUI
@@ -951,6 +984,9 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
       simThread.resume();
     }
     simThread = null;
+    if (sim != null) {
+      sim.dispose();
+    }
     sim = null;
 
     if (udpListener != null) {
@@ -960,6 +996,84 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
     setSimResetGUIsetting();
   }
 
+  // ///////////////////////////////
+  // Replay controls
+  // ///////////////////////////////
+
+  /**
+   * Replay a trajectory file on the map of the last simulation started, or
+   * of the current simulation setup if none was started. The map is built,
+   * but not simulated, and must have the bounds of the map the file was
+   * recorded on.
+   *
+   * @param file  the trajectory file
+   */
+  public void openReplay(File file) {
+    if (simThread != null || replayPanel.isOpen()) {
+      return;
+    }
+    TrajectoryFile trajectory;
+    try {
+      trajectory = new TrajectoryFile(file);
+    } catch (IOException e) {
+      showReplayError("Could not open " + file + ": " + e.getMessage());
+      return;
+    }
+    SimSetup setup =
+        (lastSimSetup != null ? lastSimSetup : simSetupPanel.getSimSetup());
+    BasicMap map = SimFactory.makeSimulator(setup).getMap();
+    if (!map.getDimensions().equals(trajectory.getMapBounds())) {
+      showReplayError(String.format(
+          "%s was recorded on a map of %.1f x %.1f meters, "
+          + "not on the %.1f x %.1f meters map of the simulation setup.",
+          file, trajectory.getMapBounds().getWidth(),
+          trajectory.getMapBounds().getHeight(),
+          map.getDimensions().getWidth(), map.getDimensions().getHeight()));
+      try {
+        trajectory.close();
+      } catch (IOException e) {
+        // nothing to lose
+      }
+      return;
+    }
+    canvasCardLayout.show(mainPanel, "CANVAS");
+    canvas.initWithGivenMap(map);
+    replayPanel.open(trajectory);
+    replayPanel.setVisible(true);
+    // update the buttons
+    startButton.setEnabled(false);
+    stepButton.setEnabled(false);
+    // update the menu items
+    startMenuItem.setEnabled(false);
+    stepMenuItem.setEnabled(false);
+    openReplayMenuItem.setEnabled(false);
+    closeReplayMenuItem.setEnabled(true);
+    canvas.requestFocusInWindow();
+  }
+
+  /**
+   * Stop replaying the trajectory file.
+   */
+  private void closeReplay() {
+    replayPanel.close();
+    replayPanel.setVisible(false);
+    canvas.cleanUp();
+    resetButtonMenuItem();
+    startButton.setEnabled(true);
+    startMenuItem.setEnabled(true);
+    closeReplayMenuItem.setEnabled(false);
+  }
+
+  /**
+   * Report a trajectory file that cannot be replayed.
+   *
+   * @param message  the reason
+   */
+  private void showReplayError(String message) {
+    JOptionPane.showMessageDialog(this, message, TITLEBAR_STRING,
+                                  JOptionPane.ERROR_MESSAGE);
+  }
+
   // //////////////////////////////////////////////////
   // Private methods for interface's event handlers
   // //////////////////////////////////////////////////
@@ -1115,10 +1229,11 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
   // //////////////////////////////////////////////////
 
   /**
-   * Update the screen
+   * Update the screen with a snapshot of the simulation taken between steps,
+   * so the canvas draws without holding up the simulation thread.
    */
   private void updateScreen() {
-    canvas.update();
+    canvas.update(FrameSnapshot.capture(sim));
     statusPanel.update();
   }
 
@@ -1215,6 +1330,14 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
         startRecordingMenuItem.setEnabled(true);
         stopRecordingMenuItem.setEnabled(false);
       }
+    } else if (e.getSource() == openReplayMenuItem) {
+      JFileChooser chooser = new JFileChooser();
+      int returnVal = chooser.showOpenDialog(this);
+      if (returnVal == JFileChooser.APPROVE_OPTION) {
+        openReplay(chooser.getSelectedFile());
+      }
+    } else if (e.getSource() == closeReplayMenuItem) {
+      closeReplay();
     } else if (e.getSource() == startUdpListenerMenuItem) {
       startUdpListening();
     } else if (e.getSource() == stopUdpListenerMenuItem) {
@@ -1253,6 +1376,23 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
       default:
       // do nothing
       }
+    } else if (replayPanel.isOpen()) {
+      switch (e.getKeyCode()) {
+      case KeyEvent.VK_SPACE:
+        replayPanel.togglePlaying();
+        break;
+      case KeyEvent.VK_LEFT:
+        replayPanel.stepFrames(-1);
+        break;
+      case KeyEvent.VK_RIGHT:
+        replayPanel.stepFrames(1);
+        break;
+      case KeyEvent.VK_ESCAPE:
+        closeReplay();
+        break;
+      default:
+      // do nothing
+      }
     } // else ignore the event
   }
 
@@ -1314,7 +1454,8 @@ public class Viewer extends JFrame implements ActionListener, KeyListener,
               
               if (im.getRingAndBarrier() != null) {
                 if (signalVisualizationFrame == null) {
-                  signalVisualizationFrame = new SignalVisualizationWindow(this, 30f);
+                  signalVisualizationFrame = new SignalVisualizationWindow(this,
+                      (float) SimConfig.SIGNAL_HISTORY_WINDOW);
                   signalVisualizationFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
                 }
                 if (!signalVisualizationFrame.isVisible()) {
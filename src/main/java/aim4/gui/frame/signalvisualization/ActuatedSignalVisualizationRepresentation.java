@@ -188,6 +188,52 @@ public class ActuatedSignalVisualizationRepresentation {
         return widthUnadjusted;
     }
 
+    public HistoricalRBSegmentInformation getSegmentInformation() {
+        synchronized (phaseSegmentRectanglesMutex) {
+            return segInf;
+        }
+    }
+
+    /**
+     * @return the simulation time at which the phase segment began
+     */
+    public double getStartTime() {
+        synchronized (phaseSegmentRectanglesMutex) {
+            return segInf.getEpoch();
+        }
+    }
+
+    /**
+     * @return the simulation time up to which the phase segment is known, its
+     * end once it is no longer current
+     */
+    public double getEndTime() {
+        synchronized (phaseSegmentRectanglesMutex) {
+            return segInf.getSimTimeWhenUpdated();
+        }
+    }
+
+    /**
+     * @return the number of colored elements (i.e., min time and extensions)
+     * of the phase segment
+     */
+    public int getNumberOfSegmentElements() {
+        synchronized (phaseSegmentRectanglesMutex) {
+            return phaseSegmentRectangles.size();
+        }
+    }
+
+    /**
+     * @param index the index of a colored element of the phase segment, in
+     * the order they took place
+     * @return the length in seconds of the element
+     */
+    public double getDurationOfSegmentElementAtIndex(int index) {
+        synchronized (phaseSegmentRectanglesMutex) {
+            return phaseSegmentRectangles.get(index).getWidth();
+        }
+    }
+
     public Color getColorForSegmentAtIndex(int index) {
         synchronized (phaseSegmentRectanglesMutex) {
             if (index < phaseSegmentRectangleColors.size()) {
@@ -0,0 +1,169 @@
+package aim4.gui.frame.signalvisualization;
+
+import aim4.config.ringbarrier.HistoricalRBSegmentInformation;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * The completed phase segments of the rings of a ring and barrier, kept in one
+ * ring buffer per ring for a window of simulation time. A segment leaves the
+ * history once it ended before the window, and is then appended to the spill
+ * file, if there is one, so that long runs can be inspected later without the
+ * history growing with the run.
+ */
+class SignalHistory {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final String SPILL_HEADER = "IM,Ring,Segment,Signal,Start,End,MinTime,MaxTime";
+
+    private final int imId;
+    private final double window;
+    private File spillFile;
+    private Writer spill;
+    /**
+     * The segments of each ring, oldest first from the head.
+     */
+    private final ActuatedSignalVisualizationRepresentation[][] segments;
+    private final int[] heads;
+    private final int[] sizes;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param imId the ID of the intersection manager of the ring and barrier,
+     * written to the spill file
+     * @param numberOfRings the number of rings
+     * @param window the seconds of history to keep
+     * @param spillFile the file the segments leaving the history are appended
+     * to, or null to drop them
+     */
+    SignalHistory(int imId, int numberOfRings, double window, File spillFile) {
+        this.imId = imId;
+        this.window = window;
+        this.spillFile = spillFile;
+        segments = new ActuatedSignalVisualizationRepresentation[numberOfRings][INITIAL_CAPACITY];
+        heads = new int[numberOfRings];
+        sizes = new int[numberOfRings];
+    }
+
+    int getNumberOfRings() {
+        return segments.length;
+    }
+
+    int size(int ring) {
+        return sizes[ring];
+    }
+
+    /**
+     * @param ring the index of the ring
+     * @param index the index of the segment, 0 being the oldest
+     * @return the segment
+     */
+    ActuatedSignalVisualizationRepresentation get(int ring, int index) {
+        return segments[ring][(heads[ring] + index) % segments[ring].length];
+    }
+
+    /**
+     * Adds a completed segment and drops the segments of the ring that ended
+     * before the window. The buffer of a ring only grows while all of its
+     * segments are within the window.
+     *
+     * @param ring the index of the ring
+     * @param segment the segment
+     * @param currentTime the current simulation time
+     */
+    void add(int ring, ActuatedSignalVisualizationRepresentation segment, double currentTime) {
+        double oldestTimeKept = currentTime - window;
+        while (sizes[ring] > 0 && get(ring, 0).getEndTime() < oldestTimeKept) {
+            evictOldest(ring);
+        }
+        ActuatedSignalVisualizationRepresentation[] buffer = segments[ring];
+        if (sizes[ring] == buffer.length) {
+            ActuatedSignalVisualizationRepresentation[] grown = Arrays.copyOfRange(buffer, heads[ring], heads[ring] + 2 * buffer.length);
+            System.arraycopy(buffer, 0, grown, buffer.length - heads[ring], heads[ring]);
+            segments[ring] = grown;
+            heads[ring] = 0;
+            buffer = grown;
+        }
+        buffer[(heads[ring] + sizes[ring]) % buffer.length] = segment;
+        ++sizes[ring];
+        flushSpill();
+    }
+
+    /**
+     * Spills every segment still held and closes the spill file.
+     */
+    void close() {
+        for (int ring = 0; ring < segments.length; ++ring) {
+            while (sizes[ring] > 0) {
+                evictOldest(ring);
+            }
+        }
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the signal history file " + spillFile + ": " + e.getMessage());
+            }
+            spill = null;
+        }
+    }
+
+    private void evictOldest(int ring) {
+        ActuatedSignalVisualizationRepresentation[] buffer = segments[ring];
+        ActuatedSignalVisualizationRepresentation segment = buffer[heads[ring]];
+        buffer[heads[ring]] = null;
+        heads[ring] = (heads[ring] + 1) % buffer.length;
+        --sizes[ring];
+        writeSpill(ring, segment.getSegmentInformation());
+    }
+
+    private void writeSpill(int ring, HistoricalRBSegmentInformation segInf) {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            if (spill == null) {
+                boolean isNewFile = !spillFile.exists() || spillFile.length() == 0;
+                spill = new BufferedWriter(new FileWriter(spillFile, true));
+                if (isNewFile) {
+                    spill.write(SPILL_HEADER);
+                    spill.write('\n');
+                }
+            }
+            spill.write(imId + "," + ring + "," + segInf.getId() + "," + segInf.getColor()
+                    + "," + segInf.getEpoch() + "," + segInf.getSimTimeWhenUpdated()
+                    + "," + segInf.getMinTime() + "," + segInf.getMaxTime() + "\n");
+        } catch (IOException e) {
+            System.err.println("Could not write the signal history file " + spillFile + ", history is no longer spilled: " + e.getMessage());
+            abandonSpill();
+        }
+    }
+
+    private void flushSpill() {
+        if (spill != null) {
+            try {
+                spill.flush();
+            } catch (IOException e) {
+                System.err.println("Could not write the signal history file " + spillFile + ", history is no longer spilled: " + e.getMessage());
+                abandonSpill();
+            }
+        }
+    }
+
+    private void abandonSpill() {
+        try {
+            if (spill != null) {
+                spill.close();
+            }
+        } catch (IOException e) {
+            // already reported
+        }
+        spill = null;
+        spillFile = null;
+    }
+}
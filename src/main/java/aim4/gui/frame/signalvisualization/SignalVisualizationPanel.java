@@ -1,17 +1,20 @@
 package aim4.gui.frame.signalvisualization;
 
 import aim4.config.Constants;
+import aim4.config.SimConfig;
 import aim4.config.ringbarrier.HistoricalRBSegmentInformation;
 import aim4.config.ringbarrier.RingAndBarrier;
 import aim4.gui.Viewer;
 import aim4.util.LimitedPairImplementation;
 import aim4.util.Util;
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.geom.Point2D;
-import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -36,15 +39,28 @@ public class SignalVisualizationPanel extends javax.swing.JPanel {
     private static final int MINOR_RULER_TICKS_EVERY_SECONDS = 1;
     private static final Color RULER_COLOR = Color.BLACK;
 
-    private final Object mutex = new Object(); //mutex to keep thread that updates the object on sim step from concurrently modifying/viewing the phaseSegmentDepictions list from conflicting with the paint thread of this panel 
+    private static final int MAX_PENDING_SEGMENTS = 1024;
 
-    private ArrayList<LinkedList<ActuatedSignalVisualizationRepresentation>> phaseSegmentDepictions;
+    private final Object mutex = new Object(); //mutex to keep thread that updates the object on sim step from concurrently modifying/viewing the signal history from conflicting with the paint thread of this panel 
+
+    private SignalHistory history;
+    private ActuatedSignalVisualizationRepresentation[] currentSegmentDepictions;
+    private final List<LimitedPairImplementation<Integer, ActuatedSignalVisualizationRepresentation>> pendingSegmentDepictions = new ArrayList<LimitedPairImplementation<Integer, ActuatedSignalVisualizationRepresentation>>(); //completed segments not yet drawn on the history image, with their ring index
+    /**
+     * The completed segments of the window, drawn once as they complete. The
+     * image wraps around: the column of a time is its pixel on an endless
+     * timeline modulo the width, so scrolling never moves a pixel.
+     */
+    private BufferedImage historyImage;
+    private double historyImagePixelsPerSecond;
+    private int historyImageRingHeight;
+    private long historyImageCurrentPixel;
+    private boolean rebuildHistoryImage;
     private ArrayList<LinkedList<Set<Constants.TurnDirection>>> turnDirectionsByPhases;
     private ArrayList<LinkedList<Double>> entryHeadingsByPhases;
     private ArrayList<List<Set<Long>>> segmentIdsInPhases;
     private double secondsTimeWindowToSupport;
     private double maxRingHeight;
-    private boolean clearAll;
 
     /**
      * The current viewer object
@@ -69,40 +85,44 @@ public class SignalVisualizationPanel extends javax.swing.JPanel {
         this.secondsTimeWindowToSupport = Math.max(0f, secondsTimeWindowToSupport);
 
         maxRingHeight = 50f;
-        phaseSegmentDepictions = null;
+        currentSegmentDepictions = null;
         turnDirectionsByPhases = null;
         setRingAndBarrier(null);
-        clearAll = false;
     }
 
     public void setRingAndBarrier(RingAndBarrier rb) {
         synchronized (mutex) {
             if (this.rb != rb) {
                 this.rb = rb;
+                if (history != null) {
+                    history.close();
+                    history = null;
+                }
+                pendingSegmentDepictions.clear();
+                if (this.rb != null) {
+                    int imId = (this.rb.getIM() == null ? -1 : this.rb.getIM().getId());
+                    File spillFile = (SimConfig.SIGNAL_HISTORY_FILE == null ? null : new File(SimConfig.SIGNAL_HISTORY_FILE));
+                    history = new SignalHistory(imId, this.rb.getNumberOfRings(), secondsTimeWindowToSupport, spillFile);
+                    currentSegmentDepictions = new ActuatedSignalVisualizationRepresentation[this.rb.getNumberOfRings()];
+                }
                 if (this.rb != null && this.rb.getNumberOfRings() > 0) {
-                    phaseSegmentDepictions = new ArrayList<LinkedList<ActuatedSignalVisualizationRepresentation>>(this.rb.getNumberOfRings());
                     turnDirectionsByPhases = this.rb.getTurnDirectionsByRingSeparatedByPhaseSortedByRingId();
                     entryHeadingsByPhases = this.rb.getStreetDirectionsByRingSeparatedByPhaseSortedByRingId();
                     segmentIdsInPhases = this.rb.getSegmentIdsInPhases();
                 } else if (this.rb != null && this.rb.getNumberOfRings() == 0) {
-                    phaseSegmentDepictions = new ArrayList<LinkedList<ActuatedSignalVisualizationRepresentation>>();
                     turnDirectionsByPhases = new ArrayList<LinkedList<Set<Constants.TurnDirection>>>();
                     entryHeadingsByPhases = new ArrayList<LinkedList<Double>>();
                     segmentIdsInPhases = new ArrayList<List<Set<Long>>>();
                 } else {
                     //flip these off so new information isn't continually fetched from the old ring and barrier.
-                    phaseSegmentDepictions = null;
+                    currentSegmentDepictions = null;
                     segmentIdsInPhases = null;
                 }
-                clearAll = true;
+                rebuildHistoryImage = true;
             }
         }
     }
 
-    private double getSecondsPerPixelScale(double workingWidth, double secondsTimeWindowToSupport) {
-        return secondsTimeWindowToSupport / workingWidth;
-    }
-
     private double getWorkingHeight(double minHeightPerc, double maxHeightPerc) {
         double height = getSize().height;
         double realMin = (minHeightPerc <= maxHeightPerc ? minHeightPerc : maxHeightPerc);
@@ -118,84 +138,56 @@ public class SignalVisualizationPanel extends javax.swing.JPanel {
     }
 
     public void updateCurrentPhaseSegmentDepictions() {
-        if (phaseSegmentDepictions != null && rb != null) {
-            //check if this is the first time we're adding to the depictions or if we're updating
+        if (currentSegmentDepictions != null && rb != null) {
             synchronized (mutex) {
                 ArrayList<LinkedList<HistoricalRBSegmentInformation>> phaseSegmentTimingInfo = rb.getCurrentSegmentTimingInfoSortedByRingId();
                 ArrayList<LinkedList<HistoricalRBSegmentInformation>> previousPhaseSegmentTimingInfo = rb.getPreviousSegmentTimingInfoSortedByRingId();
 
-                if (phaseSegmentDepictions.isEmpty()) {
-                    clearAll = true;
-                    int index = 0;
-                    for (LinkedList<HistoricalRBSegmentInformation> listWithOnlyOneElement : phaseSegmentTimingInfo) {
-                        LinkedList<ActuatedSignalVisualizationRepresentation> innerList = new LinkedList<ActuatedSignalVisualizationRepresentation>();
-                        phaseSegmentDepictions.add(innerList);
-                        handleHistoricalInfo(previousPhaseSegmentTimingInfo, index, innerList);
-                        HistoricalRBSegmentInformation sti = listWithOnlyOneElement.get(0);
-                        innerList.add(new ActuatedSignalVisualizationRepresentation(sti));
-                        ++index;
+                for (int index = 0; index < currentSegmentDepictions.length; ++index) {
+                    HistoricalRBSegmentInformation currentSegmentInfoForRing = phaseSegmentTimingInfo.get(index).get(0); //get the current element as far as the ring object is actually concerned
+                    ActuatedSignalVisualizationRepresentation current = currentSegmentDepictions[index];
+                    if (current != null && current.getIdOfSegmentInformation() == currentSegmentInfoForRing.getId()) { //update the most recent phase segment if it is the current segment
+                        current.setNewPhaseSegmentInfo(currentSegmentInfoForRing);
+                    } else { //it is not the current segment, so the segments since the last update are complete
+                        handleHistoricalInfo(previousPhaseSegmentTimingInfo.get(index), index, current, currentSegmentInfoForRing.getSimTimeWhenUpdated());
+                        currentSegmentDepictions[index] = new ActuatedSignalVisualizationRepresentation(currentSegmentInfoForRing);
                     }
-                } else {
-                    //create an iterator to step through all the representations of phase segments we're holding onto
-                    ListIterator<LinkedList<ActuatedSignalVisualizationRepresentation>> lit = phaseSegmentDepictions.listIterator();
-                    while (lit.hasNext()) {
-                        int index = lit.nextIndex();
-                        HistoricalRBSegmentInformation currentSegmentInfoForRing = phaseSegmentTimingInfo.get(index).get(0); //get the current element as far as the ring object is actually concerned
-                        LinkedList<ActuatedSignalVisualizationRepresentation> currentList = lit.next();//look through the list of local phase segment representations for a particular ring
-                        if (currentList.getLast().getIdOfSegmentInformation() == currentSegmentInfoForRing.getId()) { //update the most recent phase segment if it is the current segment
-                            currentList.getLast().setNewPhaseSegmentInfo(currentSegmentInfoForRing);
-                        } else { //it is not the current segment, so we need to add a new one and move on
-                            handleHistoricalInfo(previousPhaseSegmentTimingInfo, index, currentList);
-                            currentList.add(new ActuatedSignalVisualizationRepresentation(currentSegmentInfoForRing)); //add the new current element to the end of the list
-                            removeOldSegmentDepictionsForRing(currentList);
-                        }
-                    }
-
                 }
             }
         }
     }
 
-    private void handleHistoricalInfo(ArrayList<LinkedList<HistoricalRBSegmentInformation>> previousPhaseSegmentTimingInfo, int index, LinkedList<ActuatedSignalVisualizationRepresentation> currentList) {
-        LinkedList<HistoricalRBSegmentInformation> historicalSegmentDataForRing = previousPhaseSegmentTimingInfo.get(index); //this is the historical segment data for the ring at the current index
+    private void handleHistoricalInfo(LinkedList<HistoricalRBSegmentInformation> historicalSegmentDataForRing, int index, ActuatedSignalVisualizationRepresentation current, double currentTime) {
         ListIterator<HistoricalRBSegmentInformation> historicalLit = historicalSegmentDataForRing.listIterator(); //iterator to step through the historical segment data for the ring at the current index
-        while (historicalLit.hasNext()) {
-            /*if (currentList.getLast().getIdOfSegmentInformation() != previousSegmentInfo.getId()) {
-                                        throw new RuntimeException("Phase segment likely missed in signal visualization ID. Previous segment info and previous segment info reported by ring do not have the same ID.");
-                                    }*/
-            int historicalIndex = historicalLit.nextIndex(); //cache at the index within the historical segment data for the ring at the current index
-            HistoricalRBSegmentInformation previousSegmentInfo = historicalLit.next(); //get the next element
-            //if the "current" phase segment is now historical, transition it by updating it one last time, then add one to be the most current
-            if (historicalIndex == 0 && currentList.size() > 0 && currentList.getLast().getIdOfSegmentInformation() == previousSegmentInfo.getId()) {
-                currentList.getLast().setNewPhaseSegmentInfo(previousSegmentInfo);
-            } else { //otherwise, just add the current historical segment onto the end
-                currentList.add(new ActuatedSignalVisualizationRepresentation(previousSegmentInfo));
+        if (current != null) {
+            //if the "current" phase segment is now historical, transition it by updating it one last time
+            if (historicalLit.hasNext()) {
+                HistoricalRBSegmentInformation previousSegmentInfo = historicalLit.next();
+                if (current.getIdOfSegmentInformation() == previousSegmentInfo.getId()) {
+                    current.setNewPhaseSegmentInfo(previousSegmentInfo);
+                } else {
+                    historicalLit.previous();
+                }
             }
+            completeSegment(index, current, currentTime);
+        }
+        //the other historical segments completed between two updates
+        while (historicalLit.hasNext()) {
+            completeSegment(index, new ActuatedSignalVisualizationRepresentation(historicalLit.next()), currentTime);
         }
     }
 
-    private void removeOldSegmentDepictionsForRing(List<ActuatedSignalVisualizationRepresentation> visualizations) {
-        int index = -1;
-        double totalLength = 0;
-        double maxLength = getWorkingWidth(DRAW_MIN_WIDTH_PERC, DRAW_MAX_WIDTH_PERC);
-        ListIterator<ActuatedSignalVisualizationRepresentation> lit = visualizations.listIterator(visualizations.size());
-        double secondsPerPixel = getSecondsPerPixelScale(maxLength, secondsTimeWindowToSupport);
-
-        //figure out which elements fall out
-        while (lit.hasPrevious()) {
-            ActuatedSignalVisualizationRepresentation visual = lit.previous();
-            if (totalLength < maxLength) {
-                totalLength += visual.getWidthUnadjusted() / secondsPerPixel;
+    private void completeSegment(int index, ActuatedSignalVisualizationRepresentation segment, double currentTime) {
+        history.add(index, segment, currentTime);
+        if (!rebuildHistoryImage) {
+            if (pendingSegmentDepictions.size() < MAX_PENDING_SEGMENTS) {
+                pendingSegmentDepictions.add(new LimitedPairImplementation<Integer, ActuatedSignalVisualizationRepresentation>(index, segment));
             } else {
-                index = lit.previousIndex();
-                break;
+                //nobody is painting, the history will be drawn from scratch if they start again
+                pendingSegmentDepictions.clear();
+                rebuildHistoryImage = true;
             }
         }
-
-        //remove the elements that have totally fallen out
-        for (int i = 0; i < index; ++i) {
-            visualizations.remove(0);
-        }
     }
 
     private double getBeginningOfXWorkingSpace() {
@@ -236,71 +228,158 @@ public class SignalVisualizationPanel extends javax.swing.JPanel {
 
     @Override
     public void paintComponent(Graphics g) {
-        double ringHeight = getHistoryRingHeight();
-        double beginningOfYPhaseWorkingSpace = getBeginningOfPhaseDrawingYWorkingSpace();
-        double beginningOfXWorkingSpace = getBeginningOfXWorkingSpace();
-        double endOfRBWorkingSpaceInXDim = getEndOfSpecificWorkingSpace(DRAW_MAX_WIDTH_PERC);
-        double currentX = endOfRBWorkingSpaceInXDim;
-        double currentY;
-        int ringCount = 0;
-
-        ArrayList<LinkedList<ActuatedSignalVisualizationRepresentation>> segmentDepictionsGraphicsCopy = null;
-        ArrayList<LimitedPairImplementation<Long, Color>> segmentIdToColorMapsSortedByRing = new ArrayList<LimitedPairImplementation<Long, Color>>();
+        g.clearRect(0, 0, getSize().width, getSize().height);
+        int x = (int) getBeginningOfXWorkingSpace();
+        int y = (int) getBeginningOfPhaseDrawingYWorkingSpace();
+        int width = (int) getWorkingWidth(DRAW_MIN_WIDTH_PERC, DRAW_MAX_WIDTH_PERC);
+        int ringHeight = (int) getHistoryRingHeight();
+
+        ActuatedSignalVisualizationRepresentation[] currentSegmentsGraphicsCopy = null;
+        boolean isHistoryDrawn = false;
         //the simulation doesn't stop, and we can't modify the simulation's objects while it is modifying them
         synchronized (mutex) {
-            if (clearAll) {
-                clearAll = false;
-                g.clearRect(0, 0, getSize().width, getSize().height);
-            }
-            if (phaseSegmentDepictions != null) {
-                segmentDepictionsGraphicsCopy = new ArrayList<LinkedList<ActuatedSignalVisualizationRepresentation>>();
-                for (LinkedList<ActuatedSignalVisualizationRepresentation> ringList : phaseSegmentDepictions) {
-                    segmentDepictionsGraphicsCopy.add(new LinkedList<ActuatedSignalVisualizationRepresentation>(ringList));
+            if (currentSegmentDepictions != null && currentSegmentDepictions.length > 0 && currentSegmentDepictions[0] != null) {
+                currentSegmentsGraphicsCopy = currentSegmentDepictions.clone();
+                if (width > 0 && ringHeight > 0 && secondsTimeWindowToSupport > 0) {
+                    double currentTime = Double.NEGATIVE_INFINITY;
+                    for (ActuatedSignalVisualizationRepresentation visual : currentSegmentsGraphicsCopy) {
+                        currentTime = Math.max(currentTime, visual.getEndTime());
+                    }
+                    updateHistoryImage(width, ringHeight, width / secondsTimeWindowToSupport, (long) Math.floor(currentTime * width / secondsTimeWindowToSupport));
+                    drawHistoryImage(g, x, y);
+                    isHistoryDrawn = true;
                 }
             }
         }
 
-        //look through every ring to draw the signal history and determine which signal is is what color
-        if (segmentDepictionsGraphicsCopy != null) {
-            for (LinkedList<ActuatedSignalVisualizationRepresentation> ringList : segmentDepictionsGraphicsCopy) {
-                currentY = ringCount * ringHeight + beginningOfYPhaseWorkingSpace;
-                //look through every phase segment
-                ListIterator<ActuatedSignalVisualizationRepresentation> visLit = ringList.listIterator(ringList.size());
-                while (visLit.hasPrevious()) {
-                    boolean isSegmentTheMostRecentSegment = visLit.previousIndex() == ringList.size() - 1;
-                    ActuatedSignalVisualizationRepresentation visual = visLit.previous();
-
-                    if (isSegmentTheMostRecentSegment) {
-                        segmentIdToColorMapsSortedByRing.add(new LimitedPairImplementation<Long, Color>(visual.getIdOfSegmentInformation(), visual.getPrimarySegmentColor()));
-                    }
-                    //look through every colored element (i.e., min time and extensions) of the phase segment
-                    List<Rectangle2D.Double> rectanglesForRow = visual.getPhaseSegmentRectangles(currentX, currentY, beginningOfXWorkingSpace, ringHeight, getSecondsPerPixelScale(getWorkingWidth(DRAW_MIN_WIDTH_PERC, DRAW_MAX_WIDTH_PERC), secondsTimeWindowToSupport));
-                    int index;
-                    ListIterator<Rectangle2D.Double> lit = rectanglesForRow.listIterator(rectanglesForRow.size());
-                    while (lit.hasPrevious()) {
-                        index = lit.previousIndex();
-                        Rectangle2D.Double rect = lit.previous();
-                        g.setColor(visual.getColorForSegmentAtIndex(index));
-                        //Math.ceil to eliminate gaps on the timeline.
-                        //g.fillRect((int) Math.round(rect.getX()), (int) Math.round(rect.getY()), (int) Math.round(rect.getWidth()), (int) Math.round(rect.getHeight()));
-                        g.fillRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth(), (int) rect.getHeight());
-                        currentX = Math.max(rect.getX(), beginningOfXWorkingSpace);
-                    }
+        //nothing to draw
+        if (currentSegmentsGraphicsCopy == null) {
+            return;
+        }
+
+        //draw the current phase segments of every ring and determine which signal is is what color
+        ArrayList<LimitedPairImplementation<Long, Color>> segmentIdToColorMapsSortedByRing = new ArrayList<LimitedPairImplementation<Long, Color>>();
+        for (int ringIndex = 0; ringIndex < currentSegmentsGraphicsCopy.length; ++ringIndex) {
+            ActuatedSignalVisualizationRepresentation visual = currentSegmentsGraphicsCopy[ringIndex];
+            segmentIdToColorMapsSortedByRing.add(new LimitedPairImplementation<Long, Color>(visual.getIdOfSegmentInformation(), visual.getPrimarySegmentColor()));
+            if (isHistoryDrawn) {
+                drawSegment(g, visual, historyImageCurrentPixel - width + 1, x, y + ringIndex * ringHeight, ringHeight, false);
+            }
+        }
+        drawSignalRingAndBarrier(segmentIdToColorMapsSortedByRing, g, getBeginningOfXWorkingSpace());
+        drawGapoutCountdown(g, currentSegmentsGraphicsCopy);
+        drawRuler(g);
+    }
+
+    /**
+     * Brings the history image up to the current time: clears the columns
+     * the window scrolled past and draws the segments completed since the
+     * last paint. The whole window is only drawn again when the size or the
+     * ring and barrier changes.
+     */
+    private void updateHistoryImage(int width, int ringHeight, double pixelsPerSecond, long currentPixel) {
+        int height = ringHeight * currentSegmentDepictions.length;
+        if (rebuildHistoryImage || historyImage == null || historyImage.getWidth() != width || historyImage.getHeight() != height
+                || historyImageRingHeight != ringHeight || historyImagePixelsPerSecond != pixelsPerSecond) {
+            historyImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            historyImageRingHeight = ringHeight;
+            historyImagePixelsPerSecond = pixelsPerSecond;
+            historyImageCurrentPixel = currentPixel;
+            rebuildHistoryImage = false;
+            pendingSegmentDepictions.clear();
+            Graphics2D g2d = historyImage.createGraphics();
+            for (int ringIndex = 0; ringIndex < history.getNumberOfRings(); ++ringIndex) {
+                for (int i = 0; i < history.size(ringIndex); ++i) {
+                    drawSegment(g2d, history.get(ringIndex, i), currentPixel - width + 1, 0, ringIndex * ringHeight, ringHeight, true);
                 }
-                ++ringCount;
-                currentX = endOfRBWorkingSpaceInXDim;
             }
-            drawSignalRingAndBarrier(segmentIdToColorMapsSortedByRing, g, beginningOfXWorkingSpace);
-            drawGapoutCountdown(g);
-            drawRuler(g);
+            g2d.dispose();
+            return;
+        }
+
+        Graphics2D g2d = historyImage.createGraphics();
+        if (currentPixel > historyImageCurrentPixel) {
+            //the columns coming into the window held the times that left it
+            long firstPixel = Math.max(historyImageCurrentPixel + 1, currentPixel - width + 1);
+            g2d.setComposite(AlphaComposite.Clear);
+            fillHistoryImageColumns(g2d, firstPixel, currentPixel, 0, height);
+            g2d.setComposite(AlphaComposite.SrcOver);
+            historyImageCurrentPixel = currentPixel;
+        }
+        for (LimitedPairImplementation<Integer, ActuatedSignalVisualizationRepresentation> pending : pendingSegmentDepictions) {
+            drawSegment(g2d, pending.getValue(), historyImageCurrentPixel - width + 1, 0, pending.getKey() * ringHeight, ringHeight, true);
+        }
+        pendingSegmentDepictions.clear();
+        g2d.dispose();
+    }
+
+    /**
+     * Copies the history image onto the panel, oldest column first.
+     */
+    private void drawHistoryImage(Graphics g, int x, int y) {
+        int width = historyImage.getWidth();
+        int height = historyImage.getHeight();
+        int oldestColumn = getHistoryImageColumn(historyImageCurrentPixel + 1);
+        g.drawImage(historyImage, x, y, x + width - oldestColumn, y + height, oldestColumn, 0, width, height, null);
+        if (oldestColumn > 0) {
+            g.drawImage(historyImage, x + width - oldestColumn, y, x + width, y + height, 0, 0, oldestColumn, height, null);
+        }
+    }
+
+    /**
+     * Draws every colored element (i.e., min time and extensions) of a phase
+     * segment at its place on the timeline, cut to the window.
+     *
+     * @param g the graphics to draw on
+     * @param visual the phase segment
+     * @param oldestPixel the pixel of the timeline at the left of the window
+     * @param x the x coordinate of the left of the window
+     * @param y the y coordinate of the top of the row
+     * @param heightOfRow the height of the row
+     * @param onHistoryImage whether to draw on the wrapping history image
+     * rather than on the panel
+     */
+    private void drawSegment(Graphics g, ActuatedSignalVisualizationRepresentation visual, long oldestPixel, int x, int y, int heightOfRow, boolean onHistoryImage) {
+        long newestPixel = oldestPixel + historyImage.getWidth() - 1;
+        double time = visual.getStartTime();
+        for (int index = 0; index < visual.getNumberOfSegmentElements(); ++index) {
+            double duration = visual.getDurationOfSegmentElementAtIndex(index);
+            if (duration <= 0) {
+                continue;
+            }
+            long firstPixel = Math.max(oldestPixel, (long) Math.floor(time * historyImagePixelsPerSecond));
+            //Math.ceil to eliminate gaps on the timeline.
+            long lastPixel = Math.min(newestPixel, (long) Math.ceil((time + duration) * historyImagePixelsPerSecond) - 1);
+            time += duration;
+            if (firstPixel > lastPixel) {
+                continue;
+            }
+            g.setColor(visual.getColorForSegmentAtIndex(index));
+            if (onHistoryImage) {
+                fillHistoryImageColumns(g, firstPixel, lastPixel, y, heightOfRow);
+            } else {
+                g.fillRect(x + (int) (firstPixel - oldestPixel), y, (int) (lastPixel - firstPixel + 1), heightOfRow);
+            }
         }
+    }
 
-        //nothing to draw, clear it all
-        if (ringCount == 0) {
-            g.clearRect(0, 0, getSize().width, getSize().height);
+    private void fillHistoryImageColumns(Graphics g, long firstPixel, long lastPixel, int y, int height) {
+        int width = historyImage.getWidth();
+        int firstColumn = getHistoryImageColumn(firstPixel);
+        int columns = (int) (lastPixel - firstPixel + 1);
+        if (firstColumn + columns <= width) {
+            g.fillRect(firstColumn, y, columns, height);
+        } else {
+            g.fillRect(firstColumn, y, width - firstColumn, height);
+            g.fillRect(0, y, columns - (width - firstColumn), height);
         }
     }
 
+    private int getHistoryImageColumn(long pixel) {
+        int width = historyImage.getWidth();
+        return (int) (((pixel % width) + width) % width);
+    }
+
     private void drawRuler(Graphics g) {
         double textSpacer = 2;
 
@@ -334,14 +413,14 @@ public class SignalVisualizationPanel extends javax.swing.JPanel {
         }
     }
 
-    private void drawGapoutCountdown(Graphics g) {
+    private void drawGapoutCountdown(Graphics g, ActuatedSignalVisualizationRepresentation[] currentSegments) {
         double ringHeight = getRBDiagramRingHeight();
         double currentY = getBeginningOfRingAndBarrierYWorkingSpace();
         double workingWidth = getWorkingWidth(RING_AND_BARRIER_MAX_DRAW_WIDTH_PERC, DRAW_MAX_WIDTH_PERC);
         double startingX = getEndOfSpecificWorkingSpace(RING_AND_BARRIER_MAX_DRAW_WIDTH_PERC);
 
-        for (int ringNumber = 0; ringNumber < phaseSegmentDepictions.size(); ++ringNumber) {
-            ActuatedSignalVisualizationRepresentation asvr = phaseSegmentDepictions.get(ringNumber).getLast();
+        for (int ringNumber = 0; ringNumber < currentSegments.length; ++ringNumber) {
+            ActuatedSignalVisualizationRepresentation asvr = currentSegments[ringNumber];
             double counter = asvr.getPhaseSegmentTimeSinceEpoch();
             double countTo = asvr.getPhaseSegmentLengthTime();
             String counterPad = (counter < 10 ? "0" : "");
@@ -40,6 +40,8 @@ import java.awt.geom.Rectangle2D;
 import java.util.Collections;
 import java.util.List;
 import aim4.map.Road;
+import aim4.map.intersectionboard.DifferingLanesPerRoadBoard;
+import aim4.map.intersectionboard.IntersectionBoard;
 import aim4.map.lane.Lane;
 import aim4.util.Registry;
 import aim4.util.Util;
@@ -49,6 +51,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An agent to manage an intersection. This is an abstract class that sets up
@@ -59,6 +62,13 @@ public class IntersectionManager {
     /////////////////////////////////
     // PRIVATE FIELDS
     /////////////////////////////////
+    /**
+     * Incremented every time the turn restrictions of any intersection
+     * manager's lanes are reset, so that caches derived from the lane
+     * mappings (such as routing tables) can tell when they are stale.
+     */
+    private static final AtomicInteger laneMappingRevision = new AtomicInteger();
+
     /**
      * The ID number of this intersection manager.
      */
@@ -99,6 +109,13 @@ public class IntersectionManager {
 
     private Lane laneWithShortestTimeToIntersection;
 
+    /**
+     * The board telling whether the paths between the lanes of this
+     * intersection intersect. Lanes may cross several intersections of a map,
+     * so every intersection has a board of its own.
+     */
+    private final IntersectionBoard laneBoard;
+
     /////////////////////////////////
     // CLASS CONSTRUCTORS
     /////////////////////////////////
@@ -137,19 +154,16 @@ public class IntersectionManager {
             resetToBlankExitRoadAndLaneMapsPrivate(rd);
         }
 
-        if (imRegistry.getValues().size() > 1) {
-            throw new RuntimeException("Modifications were made to the simulator in IntersectionManager for realistic traffic conditions which assume only a single intersection. These must be modified before more intersections can be considered.");
-        }
-        //this assumes the distance to the intersection is spawnpoint to intersection, which is incorrect if there are multiple intersections
         for (Lane ln : this.intersection.getEntryLanes()) {
             if (laneWithShortestTimeToIntersection == null) {
                 laneWithShortestTimeToIntersection = ln;
-            } else if (laneWithShortestTimeToIntersection.getStartPoint().distance(this.intersection.getEntryPoint(laneWithShortestTimeToIntersection)) / laneWithShortestTimeToIntersection.getSpeedLimit() < ln.getStartPoint().distance(this.intersection.getEntryPoint(ln)) / ln.getSpeedLimit()) {
+            } else if (timeToIntersectionFromFirstSighting(laneWithShortestTimeToIntersection) < timeToIntersectionFromFirstSighting(ln)) {
                 laneWithShortestTimeToIntersection = ln;
             }
         }
 
         maxAllowedFutureReservationTimeOnLanes = new HashMap<Lane, Double>();
+        laneBoard = new DifferingLanesPerRoadBoard(intersection);
     }
 
     /**
@@ -176,6 +190,23 @@ public class IntersectionManager {
         }
     }
 
+    /**
+     * Get the time a vehicle following the speed limit of an entry lane takes
+     * to reach the intersection from where it is first seen on the lane. As
+     * vehicles are seen as soon as they are spawned, this is the start of the
+     * lane, or the exit of the previous intersection on the lane if a vehicle
+     * could turn onto the lane there.
+     *
+     * @param lane an entry lane of the intersection
+     * @return the time to reach the intersection
+     */
+    private double timeToIntersectionFromFirstSighting(Lane lane) {
+        Point2D entryPoint = intersection.getEntryPoint(lane);
+        double distance = Math.min(lane.getStartPoint().distance(entryPoint),
+                lane.getLaneIM().distanceFromPrevIntersection(entryPoint));
+        return distance / lane.getSpeedLimit();
+    }
+
     /////////////////////////////////
     // PUBLIC METHODS
     /////////////////////////////////
@@ -282,6 +313,16 @@ public class IntersectionManager {
         return intersection.getArea().intersects(rectangle);
     }
 
+    /**
+     * Get the board telling whether the paths between the lanes of this
+     * intersection intersect.
+     *
+     * @return the lane board of this intersection
+     */
+    public IntersectionBoard getLaneBoard() {
+        return laneBoard;
+    }
+
     /**
      * Given an arrival Lane and a departure Road, get an ordered List of Lanes
      * that represents the Lanes from highest to lowest priority based on
@@ -428,6 +469,7 @@ public class IntersectionManager {
      */
     private void resetToBlankExitRoadAndLaneMapsPrivate(Road entryRoad) {
         if (roadToRoad.containsKey(entryRoad)) {
+            laneMappingRevision.incrementAndGet();
             exitLanesToEntryLanesByMappedTurningDirections = null;
             HashMap<Road, Boolean> innerMap = new HashMap<Road, Boolean>();
             for (Road innerRoad : intersection.getExitRoads()) {
@@ -450,6 +492,17 @@ public class IntersectionManager {
         resetToBlankExitRoadAndLaneMapsPrivate(entryRoad);
     }
 
+    /**
+     * Gets the revision number of the lane mappings of all intersection
+     * managers. The number changes whenever the exits reachable from an entry
+     * road of any intersection manager may have changed.
+     *
+     * @return the current lane mapping revision
+     */
+    public static int getLaneMappingRevision() {
+        return laneMappingRevision.get();
+    }
+
     /**
      * Returns a set of lanes which have some turning action mapping to the
      * provided lane as a destination lane. Lazily populates the map in order to
@@ -547,9 +600,7 @@ public class IntersectionManager {
      */
     public double getMaxAllowedFutureReservationTimeOnLane(Lane lane) {
         if (manages(lane)) {
-            if (Resources.map.getIntersectionManagers().size() != 1) {
-                throw new RuntimeException("getMaxAllowedFutureReservationTimeOnLane doesn't allow multiple intersections at the moment. This would require that we model when a human vehicle can actually be seen (which isn't done at the moment, either we assume it is within sensor range provided it is spawned or we assume crossing any green trajectory at all is off limits).");
-            } else if (!SimConfig.FULLY_OBSERVING) {
+            if (!SimConfig.FULLY_OBSERVING) {
                 throw new RuntimeException("getMaxAllowedFutureReservationTimeOnLane assumes that a human vehicle can be detected as soon as it is spawned. Vehicle detection ranges for environments that aren't fully observable have not been implemented.");
                 //if you modify this, see the TODO note in the loop below
             }
@@ -563,13 +614,13 @@ public class IntersectionManager {
                             if (incomingLane == lane) {
                                 continue;
                             } else {
-                                maxAllowedReserveTime = Math.min(lane.getContainingRoad().getAheadReservationTimeAllowedForRoadWithoutIntersectionSpecificAdjustment(), Math.min(maxAllowedReserveTime, incomingLane.getStartPoint().distance(intersection.getEntryPoint(incomingLane)) / incomingLane.getSpeedLimit()));
+                                maxAllowedReserveTime = Math.min(lane.getContainingRoad().getAheadReservationTimeAllowedForRoadWithoutIntersectionSpecificAdjustment(), Math.min(maxAllowedReserveTime, timeToIntersectionFromFirstSighting(incomingLane)));
                             }
                         }
                     }
                     maxAllowedFutureReservationTimeOnLanes.put(lane, maxAllowedReserveTime);
                 } else {
-                    maxAllowedFutureReservationTimeOnLanes.put(lane, Math.min(lane.getContainingRoad().getAheadReservationTimeAllowedForRoadWithoutIntersectionSpecificAdjustment(), laneWithShortestTimeToIntersection.getStartPoint().distance(intersection.getEntryPoint(laneWithShortestTimeToIntersection)) / laneWithShortestTimeToIntersection.getSpeedLimit()));
+                    maxAllowedFutureReservationTimeOnLanes.put(lane, Math.min(lane.getContainingRoad().getAheadReservationTimeAllowedForRoadWithoutIntersectionSpecificAdjustment(), timeToIntersectionFromFirstSighting(laneWithShortestTimeToIntersection)));
                 }
             }
             return maxAllowedFutureReservationTimeOnLanes.get(lane);
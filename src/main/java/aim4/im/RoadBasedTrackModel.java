@@ -39,13 +39,13 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import aim4.config.Debug;
 import aim4.map.Road;
+import aim4.map.intersectionboard.ConflictMatrix;
+import aim4.map.intersectionboard.ConflictMatrixCache;
 import aim4.map.lane.Lane;
 import aim4.util.GeomMath;
 import java.util.LinkedList;
@@ -200,12 +200,12 @@ public class RoadBasedTrackModel implements TrackModel {
 
     // TODO: remove this variable
     /**
-     * A set of 4-tuples of lanes IDs such that if the tuple
-     * <i>(l1, l2, l3, l4)</i> is in the set, the track from lane <i>l1</i> to
-     * lane </i>l2</i> conflicts with the track from lane <i>l3</i> to
-     * <i>l4</i>.
+     * The conflicts between the tracks through the intersection. The track
+     * from lane <i>l1</i> to lane <i>l2</i> conflicts with the track from lane
+     * <i>l3</i> to lane <i>l4</i> if the movement (l1, l2) conflicts with the
+     * movement (l3, l4) in the matrix.
      */
-    private Set<List<Integer>> laneConflicts = new HashSet<List<Integer>>();
+    private ConflictMatrix laneConflicts;
 
     /////////////////////////////////
     // CLASS CONSTRUCTORS
@@ -395,20 +395,33 @@ public class RoadBasedTrackModel implements TrackModel {
      * are linear within the intersection.
      */
     private void calculateLaneConflicts() {
+        List<Integer> entryLaneIds = new ArrayList<Integer>();
+        for (Lane lane : intersection.getEntryLanes()) {
+            entryLaneIds.add(lane.getId());
+        }
+        List<Integer> exitLaneIds = new ArrayList<Integer>();
+        for (Lane lane : intersection.getExitLanes()) {
+            exitLaneIds.add(lane.getId());
+        }
+        ConflictMatrixCache.Key key = (ConflictMatrixCache.isEnabled() ? laneConflictsKey() : null);
+        laneConflicts = ConflictMatrixCache.load(key);
+        if (laneConflicts != null) {
+            return;
+        }
+        laneConflicts = new ConflictMatrix(entryLaneIds, exitLaneIds);
         // N^4: blech!
         for (Lane l11 : intersection.getEntryLanes()) {
             for (Lane l12 : intersection.getExitLanes()) {
+                int m1 = laneConflicts.getMovementId(l11.getId(), l12.getId());
                 // Find the line segments that represent the track
                 List<Line2D> l1Segments = inIntersectionSegments(l11, l12);
                 for (Lane l21 : intersection.getEntryLanes()) {
                     for (Lane l22 : intersection.getExitLanes()) {
+                        int m2 = laneConflicts.getMovementId(l21.getId(), l22.getId());
                         // If the start or end lanes are the same, that's an automatic
                         // conflict
                         if (l11 == l21 || l12 == l22) {
-                            // Construct the key from the IDs of the various lanes
-                            List<Integer> key = Arrays.asList(l11.getId(), l12.getId(),
-                                    l21.getId(), l22.getId());
-                            laneConflicts.add(key);
+                            laneConflicts.setConflict(m1, m2);
                         } else {
                             // Find the line segments that represent the track
                             List<Line2D> l2Segments = inIntersectionSegments(l21, l22);
@@ -418,12 +431,7 @@ public class RoadBasedTrackModel implements TrackModel {
                             for (Line2D l1Seg : l1Segments) {
                                 for (Line2D l2Seg : l2Segments) {
                                     if (l1Seg.intersectsLine(l2Seg)) {
-                                        // Construct the key from the IDs of the various lanes
-                                        List<Integer> key = Arrays.asList(l11.getId(),
-                                                l12.getId(),
-                                                l21.getId(),
-                                                l22.getId());
-                                        laneConflicts.add(key);
+                                        laneConflicts.setConflict(m1, m2);
                                         break findConflict;  // No need to keep calculating
                                     }
                                 }
@@ -434,6 +442,30 @@ public class RoadBasedTrackModel implements TrackModel {
                 }
             }
         }
+        ConflictMatrixCache.store(key, laneConflicts);
+    }
+
+    /**
+     * The key of the lane conflicts in the cache, hashing the points of the
+     * lanes that {@link #inIntersectionSegments(Lane, Lane)} uses.
+     *
+     * @return the key
+     */
+    private ConflictMatrixCache.Key laneConflictsKey() {
+        ConflictMatrixCache.Key key = new ConflictMatrixCache.Key("track");
+        key.add(intersection.getEntryLanes().size());
+        for (Lane lane : intersection.getEntryLanes()) {
+            key.add(lane.getId()).add(intersection.getEntryPoint(lane));
+            boolean exited = intersection.isExitedBy(lane);
+            key.add(exited).add(exited ? intersection.getExitPoint(lane) : lane.getEndPoint());
+        }
+        key.add(intersection.getExitLanes().size());
+        for (Lane lane : intersection.getExitLanes()) {
+            key.add(lane.getId()).add(intersection.getExitPoint(lane));
+            boolean entered = intersection.isEnteredBy(lane);
+            key.add(entered).add(entered ? intersection.getEntryPoint(lane) : lane.getStartPoint());
+        }
+        return key;
     }
 
     /////////////////////////////////
@@ -485,8 +517,9 @@ public class RoadBasedTrackModel implements TrackModel {
      */
     @Override
     public boolean trajectoriesConflict(int l11, int l12, int l21, int l22) {
-        List<Integer> lookupKey = Arrays.asList(l11, l12, l21, l22);
-        return laneConflicts.contains(lookupKey);
+        int m1 = laneConflicts.getMovementId(l11, l12);
+        int m2 = laneConflicts.getMovementId(l21, l22);
+        return m1 >= 0 && m2 >= 0 && laneConflicts.conflicts(m1, m2);
     }
 
     /**
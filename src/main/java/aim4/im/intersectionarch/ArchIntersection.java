@@ -64,6 +64,15 @@ public class ArchIntersection {
      * if only speed limits have been stored.
      */
     private boolean isSetup;
+    /**
+     * The intersection the mappings were set up for, or null before setup.
+     */
+    private Intersection tiedIntersection;
+    /**
+     * The copies of this architecture set up for the other intersections it
+     * is applied to, by intersection.
+     */
+    private final Map<Intersection, ArchIntersection> otherIntersections = new HashMap<Intersection, ArchIntersection>();
     /**
      * Caches road specs for if the intersection wasn't provided, and setup
      * needs to be performed fully after construction.
@@ -548,10 +557,35 @@ public class ArchIntersection {
                     }
                 }
             }
+            tiedIntersection = inter;
             isSetup = true;
         }
     }
 
+    /**
+     * Gets this architecture set up for an intersection. The mappings are
+     * keyed by the lanes of a single intersection, so an intersection other
+     * than the one this ArchIntersection was tied to gets its own copy of the
+     * road specs, set up for that intersection.
+     *
+     * @param inter Intersection the architecture is applied to
+     * @return an ArchIntersection set up for the intersection
+     */
+    public ArchIntersection forIntersection(Intersection inter) {
+        if (!isSetup) {
+            setup(inter);
+        }
+        if (inter == tiedIntersection) {
+            return this;
+        }
+        ArchIntersection arch = otherIntersections.get(inter);
+        if (arch == null) {
+            arch = new ArchIntersection(inter, roadSpecs);
+            otherIntersections.put(inter, arch);
+        }
+        return arch;
+    }
+
     /**
      * Gets if this ArchIntersection has been fully setup.
      *
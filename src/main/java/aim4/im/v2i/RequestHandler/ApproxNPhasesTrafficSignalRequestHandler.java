@@ -39,8 +39,10 @@ import aim4.config.TrafficSignal;
 import aim4.config.SimConfig.SIGNAL_TYPE;
 import aim4.config.SimConfig.VEHICLE_TYPE;
 import aim4.config.ringbarrier.RBSegmentReadOnlyNoLockingView;
+import aim4.driver.AutoDriver;
 import aim4.driver.Driver;
 import aim4.driver.coordinator.V2ICoordinator.State;
+import aim4.driver.navigator.RoutingTable;
 import aim4.im.IntersectionManager;
 
 import java.util.List;
@@ -49,13 +51,11 @@ import aim4.im.v2i.policy.BasePolicy;
 import aim4.im.v2i.policy.BasePolicyCallback;
 import aim4.im.v2i.policy.BasePolicy.ProposalFilterResult;
 import aim4.im.v2i.policy.BasePolicy.ReserveParam;
-import aim4.map.GridMapUtil;
 import aim4.map.Road;
 import aim4.map.lane.Lane;
 import aim4.msg.i2v.Reject;
 import aim4.msg.v2i.Request;
 import aim4.sim.StatCollector;
-import aim4.util.Registry;
 import aim4.util.Util;
 import aim4.vehicle.VehicleSimView;
 import expr.trb.DesignatedLanesExpr;
@@ -134,11 +134,11 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
         /**
          * The duration offset
          */
-        private static double durationOffset;
+        private double durationOffset;
         /**
          * The total duration
          */
-        private static double totalDuration;
+        private double totalDuration;
 
         public CyclicSignalController(double[] durations, TrafficSignal[] signals, boolean[] permissive) {
             this(durations, signals, 0.0, permissive);
@@ -220,7 +220,7 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
          * @param currentTime the current time
          * @return
          */
-        public static boolean needRecalculate(double currentTime) {
+        public boolean needRecalculate(double currentTime) {
             if (currentTime > durationOffset + totalDuration) {
                 return true;
             } else {
@@ -234,7 +234,7 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
          *
          * @return the time of end of this round
          */
-        public static double getEndTime() {
+        public double getEndTime() {
             return durationOffset + totalDuration;
         }
 
@@ -487,6 +487,19 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
 
     private IntersectionManager im;
 
+    /**
+     * The human driven vehicles approaching the intersection, grouped by the
+     * movements they might take. Rebuilt once per time step.
+     */
+    private final HumanVehicleIndex humanVehicleIndex;
+
+    /**
+     * The lists the segments of the rings which may be active at the arrival
+     * and at the exit of a vehicle are looked up into, reused across requests.
+     */
+    private final List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> arrivalSegmentsBuffer = new ArrayList<LinkedHashSet<RBSegmentReadOnlyNoLockingView>>();
+    private final List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> exitSegmentsBuffer = new ArrayList<LinkedHashSet<RBSegmentReadOnlyNoLockingView>>();
+
     /////////////////////////////////
     // CONSTRUCTORS
     /////////////////////////////////
@@ -502,6 +515,7 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
         Resources.signalControllers = signalControllers;
         numberOfLanes = maxNumLanes;
         this.im = im;
+        humanVehicleIndex = new HumanVehicleIndex(im.getLaneBoard());
     }
 
     /**
@@ -926,8 +940,8 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
                     //check every vehicle in the lane
                     for (Integer vin : Resources.laneToVin.get(lane)) {
                         VehicleSimView otherVehicle = Resources.vinToVehicles.get(vin);
-                        //skip the vehicle that's querying
-                        if (vin != vehicle.getVIN()) {
+                        //skip the vehicle that's querying, and vehicles approaching or crossing another intersection
+                        if (vin != vehicle.getVIN() && !isDealingWithOtherIntersection(otherVehicle, im)) {
                             //handle whether reservations or yielding should take priority
                             if (shouldVehicleTypePotentiallyYieldToVehicleTypeForFCFSSystem(vehicle.getVehicleType(), otherVehicle.getVehicleType())) {
                                 double maxSpeedForApproachingVehicle = Util.getMaxSpeedForVehicleIfNotBeyondIntersectionEntrance(im, otherVehicle);
@@ -936,7 +950,7 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
                                 }
 
                                 //if the vehicle on the dual road is making a cross turn too, ignore it. This is a bit unrealistic, but actual drivers make a similar judgement. We're assuming unsafe operations don't get allowed by signals, here, and that AVs won't collide due to reservations..
-                                if (getTurnDirection(lane.getId(), otherVehicle.getDriver().getDestination().getIndexLane().getId()) == Constants.CROSS_TURN_DIRECTION) {
+                                if (getTurnDirection(lane.getId(), getDepartureIndexLane(otherVehicle, lane, im).getId()) == Constants.CROSS_TURN_DIRECTION) {
                                     continue;
                                 }
 
@@ -1011,8 +1025,8 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
     private ArrayList<RBSegmentReadOnlyNoLockingView> getRelevantSegments(Lane laneInOtherRoad, double arrivalTime, double exitTime, Set<TurnDirection> potentiallyConflictingTurnDirections) {
         int laneId = laneInOtherRoad.getId();
         //get phase segments in the window arround arrival and exit
-        List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> arrivalSegments = ((FullyActuatedSignalController) signalControllers.get(laneId)).getPhaseSegmentsAtTimePotentiallyLockingSegmentData(arrivalTime);
-        List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> exitSegments = ((FullyActuatedSignalController) signalControllers.get(laneId)).getPhaseSegmentsAtTimePotentiallyLockingSegmentData(exitTime);
+        List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> arrivalSegments = ((FullyActuatedSignalController) signalControllers.get(laneId)).getPhaseSegmentsAtTimePotentiallyLockingSegmentData(arrivalTime, arrivalSegmentsBuffer);
+        List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> exitSegments = ((FullyActuatedSignalController) signalControllers.get(laneId)).getPhaseSegmentsAtTimePotentiallyLockingSegmentData(exitTime, exitSegmentsBuffer);
         //record keeping lists
         List<RBSegmentReadOnlyNoLockingView> startingSegments = new ArrayList<RBSegmentReadOnlyNoLockingView>();
         List<ArrayList<RBSegmentReadOnlyNoLockingView>> workingSegments = new ArrayList<ArrayList<RBSegmentReadOnlyNoLockingView>>();
@@ -1068,8 +1082,8 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
     private EnumMap<Constants.Direction, EnumMap<Constants.TurnDirection, ArrayList<RBSegmentReadOnlyNoLockingView>>> getAllPossibleSegmentsMappedByDirectionAndAction(FullyActuatedSignalController controller, double arrivalTime, double exitTime) {
         EnumMap<Constants.Direction, EnumMap<Constants.TurnDirection, ArrayList<RBSegmentReadOnlyNoLockingView>>> retMap = new EnumMap<Constants.Direction, EnumMap<Constants.TurnDirection, ArrayList<RBSegmentReadOnlyNoLockingView>>>(Constants.Direction.class);
         //get phase segments in the window arround arrival and exit
-        List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> arrivalSegments = controller.getPhaseSegmentsAtTimePotentiallyLockingSegmentData(arrivalTime);
-        List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> exitSegments = controller.getPhaseSegmentsAtTimePotentiallyLockingSegmentData(exitTime);
+        List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> arrivalSegments = controller.getPhaseSegmentsAtTimePotentiallyLockingSegmentData(arrivalTime, arrivalSegmentsBuffer);
+        List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> exitSegments = controller.getPhaseSegmentsAtTimePotentiallyLockingSegmentData(exitTime, exitSegmentsBuffer);
         //record keeping lists
         List<RBSegmentReadOnlyNoLockingView> startingSegments = new ArrayList<RBSegmentReadOnlyNoLockingView>();
         //go through all the rings
@@ -1186,10 +1200,6 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
      * @return whether the vehicle can enter the intersection
      */
     private boolean canEnterFromLane(int arrivalLaneId, int departureLaneId, SimConfig.VEHICLE_TYPE vType, TrafficSignal sig, boolean beCautious) {
-        if (Resources.map.getImRegistry().getValues().size() != 1) {
-            throw new RuntimeException("One and only one intersection is supported by the canEnterFromLane function at this time, but there are: " + Resources.map.getImRegistry().getValues().size());
-        }
-        IntersectionManager im = Resources.map.getImRegistry().getValues().get(0);
         Lane arrivalLane = DesignatedLanesExpr.laneRegistry.get(arrivalLaneId);
         if (arrivalLane == null) {
             throw new IllegalArgumentException("Arrival lane couldn't be found in the lane registry.");
@@ -1260,6 +1270,38 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
         //uturns aren't allowed at the moment
     }
 
+    /**
+     * Get the index lane of the road a vehicle leaves the intersection on.
+     * This is the destination road of the vehicle, unless it has to cross
+     * further intersections to get there.
+     *
+     * @param vehicle the vehicle
+     * @param arrivalLane the lane the vehicle enters the intersection from
+     * @param im intersection manager of the intersection
+     * @return the index lane of the departure road
+     */
+    private Lane getDepartureIndexLane(VehicleSimView vehicle, Lane arrivalLane, IntersectionManager im) {
+        Road destination = vehicle.getDriver().getDestination();
+        Road departure = RoutingTable.getInstance(Resources.map).nextRoad(Resources.map,
+                arrivalLane.getContainingRoad(), im, destination, vehicle.getSpec(), vehicle.getVehicleType());
+        return (departure == null ? destination : departure).getIndexLane();
+    }
+
+    /**
+     * Check if a vehicle is approaching or crossing an intersection other
+     * than the one of an intersection manager. A road may cross several
+     * intersections, so the vehicles on the lanes entering an intersection
+     * may be dealing with another one.
+     *
+     * @param vehicle the vehicle
+     * @param im intersection manager of the intersection
+     * @return true if the vehicle is dealing with another intersection
+     */
+    private static boolean isDealingWithOtherIntersection(VehicleSimView vehicle, IntersectionManager im) {
+        Driver driver = vehicle.getDriver();
+        return driver instanceof AutoDriver && ((AutoDriver) driver).getCurrentIM() != null && ((AutoDriver) driver).getCurrentIM() != im;
+    }
+
     /////////////////////////////////
     // PRIVATE METHODS
     /////////////////////////////////
@@ -1332,10 +1374,6 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
 
     private boolean makingLeftTurn(int arrivalLaneId, int departureLaneId) {
 
-        if (Resources.map.getImRegistry().getValues().size() != 1) {
-            throw new RuntimeException("One and only one intersection is supported by the makingLeftTurn function at this time, but there are: " + Resources.map.getImRegistry().getValues().size());
-        }
-        IntersectionManager im = Resources.map.getImRegistry().getValues().get(0);
         Lane arrivalLane = Debug.currentMap.getLaneRegistry().get(arrivalLaneId);
         Lane departureLane = Debug.currentMap.getLaneRegistry().get(departureLaneId);
         double arrivalHeading = im.getIntersection().getEntryHeading(arrivalLane);
@@ -1353,10 +1391,6 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
 
     private boolean makingRightTurn(int arrivalLaneId, int departureLaneId) {
 
-        if (Resources.map.getImRegistry().getValues().size() != 1) {
-            throw new RuntimeException("One and only one intersection is supported by the makingRightTurn function at this time, but there are: " + Resources.map.getImRegistry().getValues().size());
-        }
-        IntersectionManager im = Resources.map.getImRegistry().getValues().get(0);
         Lane arrivalLane = Debug.currentMap.getLaneRegistry().get(arrivalLaneId);
         Lane departureLane = Debug.currentMap.getLaneRegistry().get(departureLaneId);
         double arrivalHeading = im.getIntersection().getEntryHeading(arrivalLane);
@@ -1417,9 +1451,7 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
      */
     private boolean notHinderingPotentialHumanDrivers(int arrivalLaneID, int departureLaneID, double arrivalTime, IntersectionManager im, SimConfig.VEHICLE_TYPE vType) {
 
-        Registry<Lane> laneRegistry = Resources.map.getLaneRegistry();
-
-        for (Lane lane : laneRegistry.getValues()) {
+        for (Lane lane : im.getIntersection().getEntryLanes()) {
             // only consider green lanes or uncertain lanes
             TrafficSignal ts = signalControllers.get(lane.getId()).getSignal(arrivalTime);
             if (ts != TrafficSignal.GREEN && ts != TrafficSignal.UNKNOWN_CONTAINING_GREEN) {
@@ -1439,7 +1471,7 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
                     // Actually, the vehicle must go into its corresponding lane the in destination road
                     if (lane.getIndexInRoad() == destinationLane.getIndexInRoad()
                             && canEnterFromLaneAtTimepoint(lane.getId(), destinationLane.getId(), arrivalTime, im, vType, true)) {
-                        if (GridMapUtil.laneIntersect(arrivalLaneID, departureLaneID,
+                        if (im.getLaneBoard().conflicts(arrivalLaneID, departureLaneID,
                                 lane.getId(), destinationLane.getId())) {
                             // There's a chance that this vehicle would collide into the human vehicle
                             return false;
@@ -1469,7 +1501,7 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
 
         //note, this lookup only works on roads in cardinal directions (N, S, E, W) due to the current implementation of the downstream functions
         //also note, we DON'T know the direction the human vehicle is going. This is a workaround for the note below (***) where it's used.
-        TurnDirection td = getTurnDirection(vehicle.getDriver().getCurrentLane().getId(), vehicle.getDriver().getDestination().getIndexLane().getId());
+        TurnDirection td = getTurnDirection(vehicle.getDriver().getCurrentLane().getId(), getDepartureIndexLane(vehicle, vehicle.getDriver().getCurrentLane(), im).getId());
 
         //int i = arrivalLane.getIndexInRoad();
         // we only consider the vehicles that are going into the intersection
@@ -1530,71 +1562,50 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
      * @return whether it would collides into a human driver
      */
     private boolean notHinderingHumanVehiclesForTimeRange(int arrivalLaneID, int departureLaneID, double arrivalTime, double exitTime, IntersectionManager im, boolean myLeftIsOnRedOrYellow) {
-        Map<Integer, VehicleSimView> vinToVehicles = Resources.vinToVehicles;
         //using the arrival ID doesn't matter, as the R&B uses the same "controller" for all signals by referencing the ring and barrier.
         FullyActuatedSignalController controller = (FullyActuatedSignalController) signalControllers.get(arrivalLaneID);
 
         EnumMap<Constants.Direction, EnumMap<Constants.TurnDirection, ArrayList<RBSegmentReadOnlyNoLockingView>>> segments = getAllPossibleSegmentsMappedByDirectionAndAction(controller, arrivalTime, exitTime);
         EnumMap<Constants.Direction, EnumMap<Constants.TurnDirection, TrafficSignal>> signals = new EnumMap<Constants.Direction, EnumMap<Constants.TurnDirection, TrafficSignal>>(Constants.Direction.class);
 
-        for (VehicleSimView vehicle : vinToVehicles.values()) {
-            if (!vehicle.isHuman()) {
-                continue;
-            }
-
+        //only the human vehicles which might take a conflicting movement need to be looked at
+        for (HumanVehicleIndex.Entry entry : getHumanVehicleIndex(im).getConflictingEntries(arrivalLaneID, departureLaneID, myLeftIsOnRedOrYellow)) {
+            VehicleSimView vehicle = entry.getVehicle();
             Driver driver = vehicle.getDriver();
 
-            // if this vehicle has already left the intersection, forget it.
-            if (driver.getState() == State.V2I_CLEARING || driver.getState() == State.V2I_TERMINAL_STATE) {
-                continue;
-            }
-
             //If behind the AV in question
-            if (driver.getCurrentLane().getId() == arrivalLaneID && vehicle.getDriver().getState() != State.V2I_TRAVERSING && vehicle.getDriver().getState() != State.V2I_MAINTAINING_RESERVATION) {
+            if (driver.getCurrentLane().getId() == arrivalLaneID && !entry.isTraversingOrMaintainingReservation()) {
                 continue;
             }
 
             //if vehicle can't arrive at the intersection before the requesting AV exits, ignore it. Make sure it's not in the intersection and so it might need to be considered.
-            if (!Util.vehicleCouldPossiblyArriveWithinTime(im, vehicle, exitTime) && vehicle.getDriver().getState() != State.V2I_TRAVERSING && vehicle.getDriver().getState() != State.V2I_MAINTAINING_RESERVATION) {
+            if (!entry.isTraversingOrMaintainingReservation() && !Util.vehicleCouldPossiblyArriveWithinTime(im, vehicle, exitTime)) {
                 continue;
             }
 
-            Lane humanArrivalLane = (driver.getEntryLane() == null ? driver.getCurrentLane() : driver.getEntryLane());
-            // In this simulator, we DO know where the human vehicle is going.
-            // This is not a realistic assumption -
-            // we don't know the exact destination lane in the real world.
-            // So, we can only determine by the current lane of human driver
-
-            //note, this lookup only works on roads in cardinal directions (N, S, E, W) due to the current implementation of the downstream functions
-            TurnDirection humanTd = getTurnDirection(humanArrivalLane.getId(), vehicle.getDriver().getDestination().getIndexLane().getId());
-            Set<Lane> humanDestinationLanes = new HashSet<Lane>();
-            if (humanArrivalLane.getLaneIM().isValidActionFromLane(im, humanTd, vehicle.getVehicleType())) {
-                for (TurnDirection potentialHumanTd : humanArrivalLane.getLaneIM().validActionsFromLane(im, VEHICLE_TYPE.HUMAN)) {
-                    Lane ln = humanArrivalLane.getLaneIM().getMappedExitLane(im, potentialHumanTd);
-                    if (ln != null) {
-                        humanDestinationLanes.add(ln);
-                    }
-                }
-            } else {
+            Lane humanArrivalLane = entry.getArrivalLane();
+            if (!entry.hasValidAction()) {
+                TurnDirection humanTd = getTurnDirection(humanArrivalLane.getId(), getDepartureIndexLane(vehicle, humanArrivalLane, im).getId());
                 throw new RuntimeException("Vehicle type not allowed to take desired action from lane, discovered in notHinderingHumanVehiclesForTimeRange: " + vehicle.getVehicleType().name() + " " + humanTd.name() + " on road: " + humanArrivalLane.getContainingRoad().getName() + " on lane with index " + humanArrivalLane.getContainingRoad().getRelativeIndexOfLaneInRoad(humanArrivalLane));
             }
 
-            for (Lane lane : humanDestinationLanes) {
-                TurnDirection humanTdIfTurningToLane = getTurnDirection(humanArrivalLane.getId(), lane.getId());
-                if ((myLeftIsOnRedOrYellow && humanTdIfTurningToLane == Constants.CROSS_TURN_DIRECTION) || GridMapUtil.laneIntersect(arrivalLaneID, departureLaneID,
+            for (int i = 0; i < entry.getDestinationLaneCount(); i++) {
+                Lane lane = entry.getDestinationLane(i);
+                TurnDirection humanTdIfTurningToLane = entry.getTurnDirection(i);
+                if ((myLeftIsOnRedOrYellow && humanTdIfTurningToLane == Constants.CROSS_TURN_DIRECTION) || im.getLaneBoard().conflicts(arrivalLaneID, departureLaneID,
                         humanArrivalLane.getId(), lane.getId())) {
 
                     Constants.Direction dir = Util.getDirectionFromHeadingCardinal(im.getIntersection().getEntryHeading(humanArrivalLane));
-                    Road humanArrivalRoad = (vehicle.getDriver().getEntryLane() == null ? vehicle.getDriver().getCurrentLane().getContainingRoad() : vehicle.getDriver().getEntryLane().getContainingRoad());
+                    Road humanArrivalRoad = humanArrivalLane.getContainingRoad();
                     if ((myLeftIsOnRedOrYellow && humanTdIfTurningToLane == Constants.CROSS_TURN_DIRECTION) && humanArrivalRoad == DesignatedLanesExpr.laneRegistry.get(arrivalLaneID).getContainingRoad()) {
                         continue;
                     }
 
-                    if (vehicle.getDriver().getState() == State.V2I_TRAVERSING || vehicle.getDriver().getState() == State.V2I_MAINTAINING_RESERVATION) {
+                    if (entry.isTraversingOrMaintainingReservation()) {
                         //the vehicle is in the intersection right now or is intending to enter the intersection, as we're requesting the reservation, so we need to check if it will be gone by the time we enter. Since it's human, we assume the end of yellow of the current traffic light is the latest it can be there.
                         //check if any segments between the CAV's arrival and departure handle the turn direction
                         if (segments.get(dir) != null) {
-                            Double latestPossibleTimeTheAssociatedYellowCouldExpire = Resources.ringAndBarrier.getLatestEndOfYellowOrRedForRingWithCurrentSegmentHandlingTurnDirectionForRoadAndLockIfNeeded(humanArrivalLane.getContainingRoad(), humanTdIfTurningToLane);
+                            Double latestPossibleTimeTheAssociatedYellowCouldExpire = im.getRingAndBarrier().getLatestEndOfYellowOrRedForRingWithCurrentSegmentHandlingTurnDirectionForRoadAndLockIfNeeded(humanArrivalLane.getContainingRoad(), humanTdIfTurningToLane);
                             if (latestPossibleTimeTheAssociatedYellowCouldExpire != null) {
                                 if (arrivalTime <= latestPossibleTimeTheAssociatedYellowCouldExpire) {
                                     return false; //vehicle could still be in the intersection by the time the CAV arrives
@@ -1671,12 +1682,52 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
      * @return whether it would collides into a human driver
      */
     private boolean notHinderingHumanVehicles(int arrivalLaneID, int departureLaneID, double arrivalTime, IntersectionManager im) {
-        Map<Integer, VehicleSimView> vinToVehicles = Resources.vinToVehicles;
+        //only the human vehicles which might take a movement crossing this one need to be looked at
+        for (HumanVehicleIndex.Entry entry : getHumanVehicleIndex(im).getConflictingEntries(arrivalLaneID, departureLaneID, false)) {
+            VehicleSimView vehicle = entry.getVehicle();
+            Driver driver = vehicle.getDriver();
 
-//         if (true) {
-//            return true;
-//        }
-        for (VehicleSimView vehicle : vinToVehicles.values()) {
+            //If behind the AV in question
+            if (driver.getCurrentLane().getId() == arrivalLaneID) {
+                continue;
+            }
+            // if it's in green light, and it's human,
+            // then the path of this vehicle must not intersect with the human
+            if (canEnterFromLaneAtTimepoint(vehicle, arrivalTime, im)) {
+                Lane humanArrivalLane = entry.getArrivalLane();
+                if (!entry.hasValidAction()) {
+                    TurnDirection humanTd = getTurnDirection(humanArrivalLane.getId(), getDepartureIndexLane(vehicle, humanArrivalLane, im).getId());
+                    throw new RuntimeException("Vehicle type not allowed to take desired action from lane, discovered in notHinderingHumanVehicles: " + vehicle.getVehicleType().name() + " " + humanTd.name() + " on road: " + humanArrivalLane.getContainingRoad().getName() + " on lane with index " + humanArrivalLane.getContainingRoad().getRelativeIndexOfLaneInRoad(humanArrivalLane));
+                }
+                // The approaching vehicle crosses an active green trajectory
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the index of the human driven vehicles approaching the
+     * intersection, rebuilding it if it was built in an earlier time step.
+     * Human vehicles which have already left the intersection, or which are
+     * dealing with another intersection, are not indexed. The possible
+     * destination lanes of a vehicle are the exit lanes mapped to the actions
+     * a human may take from its arrival lane, which is where we assume the
+     * vehicle is going since we do not know its exact destination lane in the
+     * real world.
+     *
+     * @param im intersection manager handling the request
+     * @return the index of the human driven vehicles
+     */
+    private HumanVehicleIndex getHumanVehicleIndex(IntersectionManager im) {
+        double currentTime = basePolicy.getCurrentTime();
+        if (humanVehicleIndex.isIndexedAt(currentTime)) {
+            return humanVehicleIndex;
+        }
+
+        humanVehicleIndex.clear(currentTime);
+        for (VehicleSimView vehicle : Resources.vinToVehicles.values()) {
             if (!vehicle.isHuman()) {
                 continue;
             }
@@ -1687,80 +1738,35 @@ public class ApproxNPhasesTrafficSignalRequestHandler implements
             if (driver.getState() == State.V2I_CLEARING || driver.getState() == State.V2I_TERMINAL_STATE) {
                 continue;
             }
+            // forget vehicles approaching or crossing another intersection
+            if (isDealingWithOtherIntersection(vehicle, im)) {
+                continue;
+            }
 
-            //If behind the AV in question
-            if (driver.getCurrentLane().getId() == arrivalLaneID) {
+            Lane humanArrivalLane = (driver.getEntryLane() == null ? driver.getCurrentLane() : driver.getEntryLane());
+            //note, this lookup only works on roads in cardinal directions (N, S, E, W) due to the current implementation of the downstream functions
+            TurnDirection humanTd = getTurnDirection(humanArrivalLane.getId(), getDepartureIndexLane(vehicle, humanArrivalLane, im).getId());
+            if (!humanArrivalLane.getLaneIM().isValidActionFromLane(im, humanTd, vehicle.getVehicleType())) {
+                humanVehicleIndex.add(vehicle, humanArrivalLane, null, null);
                 continue;
             }
-            // if it's in green light, and it's human,
-            // then the path of this vehicle must not intersect with the human
-            if (canEnterFromLaneAtTimepoint(vehicle, arrivalTime, im)) {
-                //  if (vehicle.isHuman() || vehicle.withCruiseControll() || vehicle.withAdaptiveCruiseControll()) { Guni: Changed here
-                //^^^
-                /*Lane humanArrivalLane = driver.getCurrentLane();
-                // In this simulator, we DO know where the human vehicle is going.
-                // This is not a realistic assumption -
-                // we don't know the exact destination lane in the real world.
-                // So, we can only determine by the current lane of human driver
-
-                //note, this lookup only works on roads in cardinal directions (N, S, E, W) due to the current implementation of the downstream functions
-                TurnDirection humanTd = getTurnDirection(humanArrivalLane.getId(), vehicle.getDriver().getDestination().getIndexLane().getId());
-                Set<Lane> humanDestinationLanes = new HashSet<Lane>();
-
-                if (humanArrivalLane.getLaneIM().isValidActionFromLane(im, humanTd, vehicle.getVehicleType())) {
-                    for (TurnDirection potentialHumanTd : humanArrivalLane.getLaneIM().validActionsFromLane(im, VEHICLE_TYPE.HUMAN)) {
-                        Lane ln = humanArrivalLane.getLaneIM().getMappedExitLane(im, potentialHumanTd);
-                        if (ln != null) {
-                            humanDestinationLanes.add(ln);
-                        }
-                    }
-                } else {
-                    humanTd = getTurnDirection(driver.getEntryLane().getId(), vehicle.getDriver().getDestination().getIndexLane().getId());
-                    if (humanArrivalLane != driver.getEntryLane() && driver.getEntryLane().getLaneIM().isValidActionFromLane(im, humanTd, vehicle.getVehicleType())) {
-                        //the vehicle has just completed a turn onto a lane which it could not have gone onto if had been going straight through the intersection from that lane's incoming road, but the turn was valid nonetheless. So we fudge this a bit. See note "TODO, uncomment below, test and then use it instead of lanes from ^^^ to here." below
-                        for (TurnDirection potentialHumanTd : humanArrivalLane.getLaneIM().validActionsFromLane(im, VEHICLE_TYPE.HUMAN)) {
-                            Lane ln = humanArrivalLane.getLaneIM().getMappedExitLane(im, potentialHumanTd);
-                            if (ln != null) {
-                                humanDestinationLanes.add(ln);
-                            }
-                        }
-                        humanDestinationLanes.add(humanArrivalLane);
-                    } else {
-                        throw new RuntimeException("Vehicle type not allowed to take desired action from lane, discovered in notHinderingHumanVehicles: " + vehicle.getVehicleType().name() + " " + humanTd.name() + " on road: " + humanArrivalLane.getContainingRoad().getName() + " on lane with index " + humanArrivalLane.getContainingRoad().getRelativeIndexOfLaneInRoad(humanArrivalLane));
-                    }
-                }*/
-                //TODO, uncomment below, test and then use it instead of lanes from ^^^ to here. The below wasn't implemented for consistency with some experiements, but is the way the check should be done.
-                Lane humanArrivalLane = (driver.getEntryLane() == null ? driver.getCurrentLane() : driver.getEntryLane());
-                // In this simulator, we DO know where the human vehicle is going.
-                // This is not a realistic assumption -
-                // we don't know the exact destination lane in the real world.
-                // So, we can only determine by the current lane of human driver
-
-                //note, this lookup only works on roads in cardinal directions (N, S, E, W) due to the current implementation of the downstream functions
-                TurnDirection humanTd = getTurnDirection(humanArrivalLane.getId(), vehicle.getDriver().getDestination().getIndexLane().getId());
-                Set<Lane> humanDestinationLanes = new HashSet<Lane>();
-                if (humanArrivalLane.getLaneIM().isValidActionFromLane(im, humanTd, vehicle.getVehicleType())) {
-                    for (TurnDirection potentialHumanTd : humanArrivalLane.getLaneIM().validActionsFromLane(im, VEHICLE_TYPE.HUMAN)) {
-                        Lane ln = humanArrivalLane.getLaneIM().getMappedExitLane(im, potentialHumanTd);
-                        if (ln != null) {
-                            humanDestinationLanes.add(ln);
-                        }
-                    }
-                } else {
-                    throw new RuntimeException("Vehicle type not allowed to take desired action from lane, discovered in notHinderingHumanVehicles: " + vehicle.getVehicleType().name() + " " + humanTd.name() + " on road: " + humanArrivalLane.getContainingRoad().getName() + " on lane with index " + humanArrivalLane.getContainingRoad().getRelativeIndexOfLaneInRoad(humanArrivalLane));
-                }
 
-                for (Lane lane : humanDestinationLanes) {
-                    if (GridMapUtil.laneIntersect(arrivalLaneID, departureLaneID,
-                            humanArrivalLane.getId(), lane.getId())) {
-                        // The approaching vehicle crosses an active green trajectory
-                        return false;
-                    }
+            Set<Lane> humanDestinationLanes = new HashSet<Lane>();
+            for (TurnDirection potentialHumanTd : humanArrivalLane.getLaneIM().validActionsFromLane(im, VEHICLE_TYPE.HUMAN)) {
+                Lane ln = humanArrivalLane.getLaneIM().getMappedExitLane(im, potentialHumanTd);
+                if (ln != null) {
+                    humanDestinationLanes.add(ln);
                 }
             }
-        }
 
-        return true;
+            Lane[] destinationLanes = humanDestinationLanes.toArray(new Lane[humanDestinationLanes.size()]);
+            TurnDirection[] turnDirections = new TurnDirection[destinationLanes.length];
+            for (int i = 0; i < destinationLanes.length; i++) {
+                turnDirections[i] = getTurnDirection(humanArrivalLane.getId(), destinationLanes[i].getId());
+            }
+            humanVehicleIndex.add(vehicle, humanArrivalLane, destinationLanes, turnDirections);
+        }
+        return humanVehicleIndex;
     }
 
 //    /**
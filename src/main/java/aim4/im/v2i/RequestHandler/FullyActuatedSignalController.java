@@ -86,11 +86,22 @@ public class FullyActuatedSignalController extends AbstractSignalControllerWithL
         return TrafficSignal.UNKNOWN;
     }
 
-    public synchronized List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> getPhaseSegmentsAtTimePotentiallyLockingSegmentData(double time) {
+    /**
+     * Get the segments of each ring which may be active at a time. The current
+     * segments are shared, and the future ones are put in the list supplied by
+     * the caller, so that looking them up allocates nothing. Neither the list
+     * returned nor its sets may be modified.
+     *
+     * @param time the time
+     * @param segments the list to fill with the future segments
+     * @return the list of the current segments, or the list supplied
+     */
+    public synchronized List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> getPhaseSegmentsAtTimePotentiallyLockingSegmentData(double time, List<LinkedHashSet<RBSegmentReadOnlyNoLockingView>> segments) {
         if (Util.isDoubleEqual(time, requestHandler.getCurrentTime(), SimConfig.TIME_STEP)) {
-            return rb.getCurrentSegmentViews();
+            return rb.getCurrentSegmentViews(requestHandler.getCurrentTime());
         } else {
-            return rb.getSegmentsByRangeAtTimeAsList(time, requestHandler.getCurrentTime());
+            rb.getSegmentsByRangeAtTime(time, requestHandler.getCurrentTime(), segments);
+            return segments;
         }
     }
 
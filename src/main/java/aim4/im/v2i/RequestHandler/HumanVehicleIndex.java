@@ -0,0 +1,419 @@
+package aim4.im.v2i.RequestHandler;
+
+import aim4.config.Constants;
+import aim4.config.Constants.TurnDirection;
+import aim4.driver.coordinator.V2ICoordinator.State;
+import aim4.map.intersectionboard.ConflictMatrix;
+import aim4.map.intersectionboard.IntersectionBoard;
+import aim4.map.lane.Lane;
+import aim4.vehicle.VehicleSimView;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the human driven vehicles approaching or crossing an
+ * intersection, rebuilt at most once per time step. Vehicles are grouped by
+ * the movements (arrival lane, possible destination lane) they might take
+ * through the intersection, so that a request only has to look at the human
+ * vehicles whose movements actually conflict with the requested one.
+ */
+public class HumanVehicleIndex {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * A human driven vehicle in the index.
+     */
+    public static class Entry {
+
+        /**
+         * The position of the entry in the order the vehicles were indexed.
+         */
+        private final int order;
+        /**
+         * The vehicle.
+         */
+        private final VehicleSimView vehicle;
+        /**
+         * The lane the vehicle entered, or will enter, the intersection from.
+         */
+        private final Lane arrivalLane;
+        /**
+         * Whether the vehicle is crossing the intersection or is about to.
+         */
+        private final boolean isTraversingOrMaintainingReservation;
+        /**
+         * The lanes the vehicle could leave the intersection on, or
+         * <code>null</code> if the vehicle is not allowed to take the action
+         * leading to its destination from its arrival lane.
+         */
+        private final Lane[] destinationLanes;
+        /**
+         * The turn direction taken to reach each destination lane.
+         */
+        private final TurnDirection[] turnDirections;
+
+        /**
+         * Create an entry.
+         *
+         * @param order the position of the entry
+         * @param vehicle the vehicle
+         * @param arrivalLane the lane the vehicle enters the intersection from
+         * @param destinationLanes the lanes the vehicle could leave on
+         * @param turnDirections the turn direction for each destination lane
+         */
+        private Entry(int order, VehicleSimView vehicle, Lane arrivalLane,
+                Lane[] destinationLanes, TurnDirection[] turnDirections) {
+            State state = vehicle.getDriver().getState();
+            this.order = order;
+            this.vehicle = vehicle;
+            this.arrivalLane = arrivalLane;
+            this.isTraversingOrMaintainingReservation
+                    = state == State.V2I_TRAVERSING
+                    || state == State.V2I_MAINTAINING_RESERVATION;
+            this.destinationLanes = destinationLanes;
+            this.turnDirections = turnDirections;
+        }
+
+        /**
+         * @return the vehicle
+         */
+        public VehicleSimView getVehicle() {
+            return vehicle;
+        }
+
+        /**
+         * @return the lane the vehicle enters the intersection from
+         */
+        public Lane getArrivalLane() {
+            return arrivalLane;
+        }
+
+        /**
+         * @return whether the vehicle is crossing the intersection or is
+         * about to
+         */
+        public boolean isTraversingOrMaintainingReservation() {
+            return isTraversingOrMaintainingReservation;
+        }
+
+        /**
+         * @return whether the vehicle is allowed to take the action leading to
+         * its destination from its arrival lane
+         */
+        public boolean hasValidAction() {
+            return destinationLanes != null;
+        }
+
+        /**
+         * @return the number of lanes the vehicle could leave on
+         */
+        public int getDestinationLaneCount() {
+            return destinationLanes.length;
+        }
+
+        /**
+         * @param i the index of the destination lane
+         * @return a lane the vehicle could leave on
+         */
+        public Lane getDestinationLane(int i) {
+            return destinationLanes[i];
+        }
+
+        /**
+         * @param i the index of the destination lane
+         * @return the turn direction taken to reach the destination lane
+         */
+        public TurnDirection getTurnDirection(int i) {
+            return turnDirections[i];
+        }
+    }
+
+    /**
+     * A movement through the intersection and the vehicles which might take it.
+     */
+    private static class Movement {
+
+        /**
+         * The ID of the arrival lane.
+         */
+        private final int arrivalLaneId;
+        /**
+         * The ID of the destination lane.
+         */
+        private final int destinationLaneId;
+        /**
+         * The turn direction of the movement.
+         */
+        private final TurnDirection turnDirection;
+        /**
+         * The ID of the movement in the conflict matrix, or -1 if the lanes
+         * are not part of the matrix.
+         */
+        private final int movementId;
+        /**
+         * The entries of the vehicles which might take the movement, in the
+         * order they were indexed.
+         */
+        private final List<Entry> entries = new ArrayList<Entry>();
+
+        private Movement(int arrivalLaneId, int destinationLaneId,
+                TurnDirection turnDirection, int movementId) {
+            this.arrivalLaneId = arrivalLaneId;
+            this.destinationLaneId = destinationLaneId;
+            this.turnDirection = turnDirection;
+            this.movementId = movementId;
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The time at which the index was last built.
+     */
+    private double indexedTime = Double.NaN;
+    /**
+     * The board of the intersection telling whether lane paths intersect.
+     */
+    private final IntersectionBoard board;
+    /**
+     * All the entries, in the order they were indexed.
+     */
+    private final List<Entry> entries = new ArrayList<Entry>();
+    /**
+     * The conflicts between the movements through the intersection.
+     */
+    private ConflictMatrix conflictMatrix;
+    /**
+     * The movements of the conflict matrix, by movement ID.
+     */
+    private Movement[] movementsById;
+    /**
+     * The set of the IDs of the movements of the conflict matrix.
+     */
+    private long[] movementSet;
+    /**
+     * The movements which are not part of the conflict matrix, keyed by
+     * arrival lane ID and destination lane ID.
+     */
+    private final Map<List<Integer>, Movement> unmatchedMovementsByLanes = new HashMap<List<Integer>, Movement>();
+    /**
+     * The movements in the order they were first seen.
+     */
+    private final List<Movement> movements = new ArrayList<Movement>();
+    /**
+     * The movements which are cross turns.
+     */
+    private final List<Movement> crossTurnMovements = new ArrayList<Movement>();
+    /**
+     * The entries of the vehicles without a valid action, which are reported
+     * to every request.
+     */
+    private final List<Entry> invalidEntries = new ArrayList<Entry>();
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create an empty index.
+     *
+     * @param board the board of the intersection telling whether lane paths
+     * intersect
+     */
+    public HumanVehicleIndex(IntersectionBoard board) {
+        this.board = board;
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * Whether the index was built at the given time.
+     *
+     * @param currentTime the current time
+     * @return true if the index does not need to be rebuilt
+     */
+    public boolean isIndexedAt(double currentTime) {
+        return indexedTime == currentTime;
+    }
+
+    /**
+     * Empty the index before rebuilding it.
+     *
+     * @param currentTime the time at which the index is rebuilt
+     */
+    public void clear(double currentTime) {
+        indexedTime = currentTime;
+        entries.clear();
+        ConflictMatrix matrix = board.getConflictMatrix();
+        if (matrix != conflictMatrix) {
+            conflictMatrix = matrix;
+            movementsById = new Movement[matrix.getMovementCount()];
+            movementSet = matrix.newMovementSet();
+        } else {
+            Arrays.fill(movementsById, null);
+            Arrays.fill(movementSet, 0L);
+        }
+        unmatchedMovementsByLanes.clear();
+        movements.clear();
+        crossTurnMovements.clear();
+        invalidEntries.clear();
+    }
+
+    /**
+     * Add a human driven vehicle to the index.
+     *
+     * @param vehicle the vehicle
+     * @param arrivalLane the lane the vehicle enters the intersection from
+     * @param destinationLanes the lanes the vehicle could leave on, or
+     * <code>null</code> if the vehicle has no valid action
+     * @param turnDirections the turn direction for each destination lane
+     */
+    public void add(VehicleSimView vehicle, Lane arrivalLane,
+            Lane[] destinationLanes, TurnDirection[] turnDirections) {
+        Entry entry = new Entry(entries.size(), vehicle, arrivalLane,
+                destinationLanes, turnDirections);
+        entries.add(entry);
+        if (destinationLanes == null) {
+            invalidEntries.add(entry);
+            return;
+        }
+        for (int i = 0; i < destinationLanes.length; i++) {
+            Movement movement = getOrCreateMovement(arrivalLane.getId(),
+                    destinationLanes[i].getId(), turnDirections[i]);
+            // a vehicle lists each destination lane once
+            movement.entries.add(entry);
+        }
+    }
+
+    /**
+     * Get all the entries of the index.
+     *
+     * @return the entries, in the order they were indexed
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Get the entries of the vehicles which might take a movement conflicting
+     * with the given one, along with the entries of the vehicles without a
+     * valid action.
+     *
+     * @param arrivalLaneID the arrival lane of the movement
+     * @param departureLaneID the departure lane of the movement
+     * @param crossTurnsConflict whether every cross turn is considered to
+     * conflict with the movement
+     * @return the entries, in the order they were indexed
+     */
+    public List<Entry> getConflictingEntries(int arrivalLaneID,
+            int departureLaneID, boolean crossTurnsConflict) {
+        boolean[] isSelected = null;
+        if (!invalidEntries.isEmpty()) {
+            isSelected = new boolean[entries.size()];
+            for (Entry entry : invalidEntries) {
+                isSelected[entry.order] = true;
+            }
+        }
+        int requestedId = conflictMatrix.getMovementId(arrivalLaneID, departureLaneID);
+        if (requestedId < 0) {
+            // not a movement of the conflict matrix; check every movement
+            for (Movement movement : movements) {
+                if ((crossTurnsConflict && movement.turnDirection == Constants.CROSS_TURN_DIRECTION)
+                        || board.conflicts(arrivalLaneID, departureLaneID,
+                                movement.arrivalLaneId, movement.destinationLaneId)) {
+                    isSelected = select(movement, isSelected);
+                }
+            }
+        } else {
+            if (crossTurnsConflict) {
+                for (Movement movement : crossTurnMovements) {
+                    isSelected = select(movement, isSelected);
+                }
+            }
+            for (int id = conflictMatrix.nextConflictingMovement(requestedId, movementSet, 0);
+                    id >= 0;
+                    id = conflictMatrix.nextConflictingMovement(requestedId, movementSet, id + 1)) {
+                isSelected = select(movementsById[id], isSelected);
+            }
+            for (Movement movement : unmatchedMovementsByLanes.values()) {
+                if (board.conflicts(arrivalLaneID, departureLaneID,
+                        movement.arrivalLaneId, movement.destinationLaneId)) {
+                    isSelected = select(movement, isSelected);
+                }
+            }
+        }
+        if (isSelected == null) {
+            return Collections.emptyList();
+        }
+
+        List<Entry> result = new ArrayList<Entry>();
+        for (int i = 0; i < isSelected.length; i++) {
+            if (isSelected[i]) {
+                result.add(entries.get(i));
+            }
+        }
+        return result;
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Get the movement for a pair of lanes, adding it to the index if it was
+     * not seen yet.
+     *
+     * @param arrivalLaneId the ID of the arrival lane
+     * @param destinationLaneId the ID of the destination lane
+     * @param turnDirection the turn direction of the movement
+     * @return the movement
+     */
+    private Movement getOrCreateMovement(int arrivalLaneId,
+            int destinationLaneId, TurnDirection turnDirection) {
+        int movementId = conflictMatrix.getMovementId(arrivalLaneId, destinationLaneId);
+        Movement movement;
+        if (movementId >= 0) {
+            movement = movementsById[movementId];
+        } else {
+            movement = unmatchedMovementsByLanes.get(Arrays.asList(arrivalLaneId, destinationLaneId));
+        }
+        if (movement == null) {
+            movement = new Movement(arrivalLaneId, destinationLaneId, turnDirection, movementId);
+            if (movementId >= 0) {
+                movementsById[movementId] = movement;
+                ConflictMatrix.addMovement(movementSet, movementId);
+            } else {
+                unmatchedMovementsByLanes.put(Arrays.asList(arrivalLaneId, destinationLaneId), movement);
+            }
+            movements.add(movement);
+            if (turnDirection == Constants.CROSS_TURN_DIRECTION) {
+                crossTurnMovements.add(movement);
+            }
+        }
+        return movement;
+    }
+
+    /**
+     * Mark the entries of a movement as selected.
+     *
+     * @param movement the movement
+     * @param isSelected whether each entry is selected, or <code>null</code>
+     * if none is selected yet
+     * @return whether each entry is selected
+     */
+    private boolean[] select(Movement movement, boolean[] isSelected) {
+        if (isSelected == null) {
+            isSelected = new boolean[entries.size()];
+        }
+        for (Entry entry : movement.entries) {
+            isSelected[entry.order] = true;
+        }
+        return isSelected;
+    }
+}
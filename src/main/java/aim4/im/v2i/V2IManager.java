@@ -328,6 +328,19 @@ public class V2IManager extends IntersectionManager
     bitsReceived += msg.getSize();
   }
 
+  /**
+   * Adds messages to the incoming queue of messages delivered to this
+   * IntersectionManager, in the order given.
+   *
+   * @param msgs the messages to be received
+   */
+  public void receiveAll(List<V2IMessage> msgs) {
+    inbox.addAll(msgs);
+    for (int i = 0; i < msgs.size(); i++) {
+      bitsReceived += msgs.get(i).getSize();
+    }
+  }
+
   /**
    * Get the number of bits this IntersectionManager has received.
    *
@@ -58,6 +58,8 @@ import aim4.msg.v2i.Request;
 import aim4.msg.v2i.V2IMessage;
 import aim4.msg.v2i.Request.Proposal;
 import aim4.sim.StatCollector;
+import aim4.sim.jfr.FlightEvents;
+import aim4.sim.jfr.ReservationRequestEvent;
 import aim4.util.HashMapRegistry;
 import aim4.util.Registry;
 import aim4.vehicle.VehicleSimView;
@@ -416,6 +418,12 @@ public final class BasePolicy implements Policy, ExtendedBasePolicyCallback {
     private ArrayList<Integer> rejectedVehiclesList
             = new ArrayList<Integer>();
 
+    /**
+     * The outcome of the last response sent, reported by the flight recorder
+     * events of the requests
+     */
+    private String lastResponseOutcome;
+
     /**
      * A mapping from VIN numbers to reservation Id
      */
@@ -541,6 +549,7 @@ public final class BasePolicy implements Policy, ExtendedBasePolicyCallback {
                                 .getDepartureLaneID()).getMaxSize(),
                         reserveParam.getGridPlan().getAccelerationProfile());
         im.sendI2VMessage(confirmMsg);
+        lastResponseOutcome = "CONFIRMED";
 
         // bookkeeping
         ReservationRecord r
@@ -576,12 +585,16 @@ public final class BasePolicy implements Policy, ExtendedBasePolicyCallback {
                 latestRequestId,
                 nextAllowedCommunication,
                 reason));
-        if (Resources.vinToVehicles.get(vin).isHuman()) {
-            TrafficSignalExpr.Hrejects++;
-        } else if (Resources.vinToVehicles.get(vin).withAdaptiveCruiseControll() || Resources.vinToVehicles.get(vin).withCruiseControll()) {
-            TrafficSignalExpr.SAVrejects++;
-        } else {
-            TrafficSignalExpr.AVrejects++;
+        lastResponseOutcome = String.valueOf(reason);
+        // the counters are shared by intersection managers acting concurrently
+        synchronized (TrafficSignalExpr.class) {
+            if (Resources.vinToVehicles.get(vin).isHuman()) {
+                TrafficSignalExpr.Hrejects++;
+            } else if (Resources.vinToVehicles.get(vin).withAdaptiveCruiseControll() || Resources.vinToVehicles.get(vin).withCruiseControll()) {
+                TrafficSignalExpr.SAVrejects++;
+            } else {
+                TrafficSignalExpr.AVrejects++;
+            }
         }
         // mark the vehicles who have been rejected.
         rejectedVehiclesList.add(vin);
@@ -696,7 +709,23 @@ public final class BasePolicy implements Policy, ExtendedBasePolicyCallback {
     @Override
     public void processV2IMessage(V2IMessage msg) {
         if (msg instanceof Request) {
+            ReservationRequestEvent event = null;
+            if (FlightEvents.AVAILABLE && ReservationRequestEvent.isTypeEnabled()) {
+                event = new ReservationRequestEvent();
+                event.begin();
+            }
+            long stepsBefore = im.getReservationGridManager().getSimulationSteps();
+            lastResponseOutcome = null;
             requestHandler.processRequestMsg((Request) msg);
+            if (event != null && event.shouldCommit()) {
+                event.intersectionManager = im.getId();
+                event.vin = msg.getVin();
+                event.proposals = ((Request) msg).getProposals().size();
+                event.outcome = (lastResponseOutcome == null ? "NONE" : lastResponseOutcome);
+                event.simulationSteps = im.getReservationGridManager().getSimulationSteps() - stepsBefore;
+                event.simulationTime = getCurrentTime();
+                event.commit();
+            }
         } else if (msg instanceof Cancel) {
             processCancelMsg((Cancel) msg);
         } else if (msg instanceof Done) {
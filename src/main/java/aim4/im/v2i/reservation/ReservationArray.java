@@ -31,6 +31,8 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package aim4.im.v2i.reservation;
 
 import aim4.config.Resources;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -40,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.TreeMap;
 
@@ -120,6 +123,117 @@ public class ReservationArray {
         }
     }
 
+    /**
+     * A list of time-tiles kept as runs of consecutive discrete times of the
+     * same tile, as the internal simulation of a vehicle finds them. A
+     * time-tile is only created when an element of the list is read, and the
+     * reservation array reserves the runs without creating any.
+     *
+     * @param <T> the type of the time-tiles
+     */
+    public abstract static class TimeTileRuns<T extends TimeTile> extends AbstractList<T> implements RandomAccess {
+
+        /**
+         * The tile ID of each run.
+         */
+        private final int[] tileIds;
+
+        /**
+         * The first discrete time of each run.
+         */
+        private final int[] firstTimes;
+
+        /**
+         * The index in the list of the time-tile after each run.
+         */
+        private final int[] ends;
+
+        /**
+         * Create a list of time-tiles from runs.
+         *
+         * @param tileIds the tile ID of each run
+         * @param firstTimes the first discrete time of each run
+         * @param lengths the number of discrete times of each run, at least 1
+         * @param runCount the number of runs, the first ones of the arrays
+         */
+        protected TimeTileRuns(int[] tileIds, int[] firstTimes, int[] lengths, int runCount) {
+            this.tileIds = Arrays.copyOf(tileIds, runCount);
+            this.firstTimes = Arrays.copyOf(firstTimes, runCount);
+            ends = new int[runCount];
+            int end = 0;
+            for (int r = 0; r < runCount; r++) {
+                assert lengths[r] > 0;
+                end += lengths[r];
+                ends[r] = end;
+            }
+        }
+
+        /**
+         * Create a time-tile of the list.
+         *
+         * @param dt the discrete time
+         * @param tid the tile ID
+         * @return the time-tile
+         */
+        protected abstract T newTimeTile(int dt, int tid);
+
+        /**
+         * Get the number of runs.
+         *
+         * @return the number of runs
+         */
+        public int getRunCount() {
+            return ends.length;
+        }
+
+        /**
+         * Get the tile ID of a run.
+         *
+         * @param r the index of the run
+         * @return the tile ID of the run
+         */
+        public int getRunTileId(int r) {
+            return tileIds[r];
+        }
+
+        /**
+         * Get the first discrete time of a run.
+         *
+         * @param r the index of the run
+         * @return the first discrete time of the run
+         */
+        public int getRunFirstTime(int r) {
+            return firstTimes[r];
+        }
+
+        /**
+         * Get the number of discrete times of a run.
+         *
+         * @param r the index of the run
+         * @return the number of discrete times of the run
+         */
+        public int getRunLength(int r) {
+            return ends[r] - (r == 0 ? 0 : ends[r - 1]);
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            // the run ending after the index, as runs are never empty
+            int r = Arrays.binarySearch(ends, index);
+            r = (r >= 0 ? r + 1 : -r - 1);
+            int start = (r == 0 ? 0 : ends[r - 1]);
+            return newTimeTile(firstTimes[r] + index - start, tileIds[r]);
+        }
+
+        @Override
+        public int size() {
+            return (ends.length == 0 ? 0 : ends[ends.length - 1]);
+        }
+    }
+
     /////////////////////////////////
     // PRIVATE FIELDS
     /////////////////////////////////
@@ -177,11 +291,21 @@ public class ReservationArray {
      * @param tid the tile ID
      */
     public boolean isReserved(int dt, int tid) {
-        if (grids.containsKey(dt)) {
-            return grids.get(dt)[tid] >= 0;
-        } else {
-            return false;
-        }
+        int[] grid = grids.get(dt);
+        return grid != null && grid[tid] >= 0;
+    }
+
+    /**
+     * Get the grid of a discrete time, the reservation ID of every tile at the
+     * time, or -1 for the tiles no one reserved. The grid is the one held by
+     * the reservation array, so it must not be changed, and it is only up to
+     * date until the next reservation, cancellation or clean up.
+     *
+     * @param dt the discrete time
+     * @return the grid; null if no tile is reserved at the time
+     */
+    public int[] getGrid(int dt) {
+        return grids.get(dt);
     }
 
     /**
@@ -192,11 +316,8 @@ public class ReservationArray {
      * @return the reservation ID; -1 if the reservation ID does not exist
      */
     public int getReservationId(int dt, int tid) {
-        if (grids.containsKey(dt)) {
-            return grids.get(dt)[tid];
-        } else {
-            return -1;
-        }
+        int[] grid = grids.get(dt);
+        return (grid != null ? grid[tid] : -1);
     }
 
     /**
@@ -253,63 +374,61 @@ public class ReservationArray {
      * @return whether the reservation is successful
      */
     public boolean reserve(int rid, Collection<? extends TimeTile> workingList, int currentDiscreteTime) {
+        if (workingList instanceof TimeTileRuns) {
+            return reserveRuns(rid, (TimeTileRuns<?>) workingList, currentDiscreteTime);
+        }
         // check to see if any time-tile is reserved in the past
         for (TimeTile tt : workingList) {
-            int dt = tt.getDiscreteTime();
-            if (grids.containsKey(dt) && grids.get(dt)[tt.getTileId()] >= 0) {
+            if (isReserved(tt.getDiscreteTime(), tt.getTileId())) {
                 return false; // the time-tile has been reserved.
             }
         }
 
         // actually make the reservation
-        int timeBegin = 0;
-        try {
-            timeBegin = grids.firstKey();
-        } catch (NoSuchElementException e) {
-            // It means the grid is empty. All time-tiles are acceptable.
-        }
+        int timeBegin = getFirstReservedDiscreteTime();
         for (TimeTile tt : workingList) {
             int dt = tt.getDiscreteTime();
-            int tid = tt.getTileId();
             if (dt >= timeBegin || currentDiscreteTime <= dt) {
-                // update grids;
-                int[] grid = grids.get(dt);
-                if (grid == null) {
-                    grid = new int[numOfTiles];
-                    for (int i = 0; i < numOfTiles; i++) { // initialize the grid
-                        grid[i] = -1;
-                    }
-                    grids.put(dt, grid);
-                }
-                grid[tid] = rid;
+                reserveTimeTile(rid, dt, tt.getTileId());
+            }  // else ignore timetile that is before timeBegin
+        }
+        assert (!SHOULD_CHECK_CONSISTENCY) || checkConsistency();
+        return true;
+    }
 
-                // update timeToRidToTid
-                Map<Integer, Set<Integer>> ridToTid = timeToRidToTid.get(dt);
-                if (ridToTid == null) {
-                    ridToTid = new HashMap<Integer, Set<Integer>>();
-                    timeToRidToTid.put(dt, ridToTid);
-                }
-                Set<Integer> tidSet = ridToTid.get(rid);
-                if (tidSet == null) {
-                    tidSet = new HashSet<Integer>();
-                    ridToTid.put(rid, tidSet);
-                }
-                tidSet.add(tid);
-
-                // update ridToTimeToTid
-                NavigableMap<Integer, Set<Integer>> timeToTid
-                        = ridToTimeToTid.get(rid);
-                if (timeToTid == null) {
-                    timeToTid = new TreeMap<Integer, Set<Integer>>();
-                    ridToTimeToTid.put(rid, timeToTid);
-                }
-                tidSet = timeToTid.get(dt);
-                if (tidSet == null) {
-                    tidSet = new HashSet<Integer>();
-                    timeToTid.put(dt, tidSet);
+    /**
+     * Make the reservation of runs of time-tiles with a given reservation id,
+     * as {@link #reserve(int, Collection, int)} does, without creating the
+     * time-tiles.
+     *
+     * @param rid the reservation ID
+     * @param runs the runs of time-tiles to be reserved
+     * @param currentDiscreteTime The current discrete representation of time
+     *
+     * @return whether the reservation is successful
+     */
+    private boolean reserveRuns(int rid, TimeTileRuns<?> runs, int currentDiscreteTime) {
+        // check to see if any time-tile is reserved in the past
+        for (int r = 0; r < runs.getRunCount(); r++) {
+            int tid = runs.getRunTileId(r);
+            int firstTime = runs.getRunFirstTime(r);
+            for (int dt = firstTime; dt < firstTime + runs.getRunLength(r); dt++) {
+                if (isReserved(dt, tid)) {
+                    return false; // the time-tile has been reserved.
                 }
-                tidSet.add(tid);
-            }  // else ignore timetile that is before timeBegin
+            }
+        }
+
+        // actually make the reservation
+        int timeBegin = getFirstReservedDiscreteTime();
+        for (int r = 0; r < runs.getRunCount(); r++) {
+            int tid = runs.getRunTileId(r);
+            int firstTime = runs.getRunFirstTime(r);
+            for (int dt = firstTime; dt < firstTime + runs.getRunLength(r); dt++) {
+                if (dt >= timeBegin || currentDiscreteTime <= dt) {
+                    reserveTimeTile(rid, dt, tid);
+                }  // else ignore timetile that is before timeBegin
+            }
         }
         assert (!SHOULD_CHECK_CONSISTENCY) || checkConsistency();
         return true;
@@ -420,6 +539,71 @@ public class ReservationArray {
         }
     }
 
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Get the first discrete time at which any time-tile is reserved.
+     *
+     * @return the first discrete time at which any time-tile is reserved; 0
+     * if there is no reservation, so that all time-tiles are acceptable.
+     */
+    private int getFirstReservedDiscreteTime() {
+        try {
+            return grids.firstKey();
+        } catch (NoSuchElementException e) {
+            // It means the grid is empty. All time-tiles are acceptable.
+            return 0;
+        }
+    }
+
+    /**
+     * Reserve a time-tile for a reservation ID.
+     *
+     * @param rid the reservation ID
+     * @param dt the discrete time
+     * @param tid the tile ID
+     */
+    private void reserveTimeTile(int rid, int dt, int tid) {
+        // update grids;
+        int[] grid = grids.get(dt);
+        if (grid == null) {
+            grid = new int[numOfTiles];
+            for (int i = 0; i < numOfTiles; i++) { // initialize the grid
+                grid[i] = -1;
+            }
+            grids.put(dt, grid);
+        }
+        grid[tid] = rid;
+
+        // update timeToRidToTid
+        Map<Integer, Set<Integer>> ridToTid = timeToRidToTid.get(dt);
+        if (ridToTid == null) {
+            ridToTid = new HashMap<Integer, Set<Integer>>();
+            timeToRidToTid.put(dt, ridToTid);
+        }
+        Set<Integer> tidSet = ridToTid.get(rid);
+        if (tidSet == null) {
+            tidSet = new HashSet<Integer>();
+            ridToTid.put(rid, tidSet);
+        }
+        tidSet.add(tid);
+
+        // update ridToTimeToTid
+        NavigableMap<Integer, Set<Integer>> timeToTid
+                = ridToTimeToTid.get(rid);
+        if (timeToTid == null) {
+            timeToTid = new TreeMap<Integer, Set<Integer>>();
+            ridToTimeToTid.put(rid, timeToTid);
+        }
+        tidSet = timeToTid.get(dt);
+        if (tidSet == null) {
+            tidSet = new HashSet<Integer>();
+            timeToTid.put(dt, tidSet);
+        }
+        tidSet.add(tid);
+    }
+
     /////////////////////////////////
     // DEBUG
     /////////////////////////////////
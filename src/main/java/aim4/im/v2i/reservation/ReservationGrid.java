@@ -96,6 +96,29 @@ public class ReservationGrid extends ReservationArray {
 
     }
 
+    /**
+     * Runs of time tiles of the reservation grid.
+     */
+    private class GridTimeTileRuns extends TimeTileRuns<TimeTile> {
+
+        /**
+         * Create runs of time tiles.
+         *
+         * @param tileIds the tile ID of each run
+         * @param firstTimes the first discrete time of each run
+         * @param lengths the number of discrete times of each run
+         * @param runCount the number of runs
+         */
+        GridTimeTileRuns(int[] tileIds, int[] firstTimes, int[] lengths, int runCount) {
+            super(tileIds, firstTimes, lengths, runCount);
+        }
+
+        @Override
+        protected TimeTile newTimeTile(int dt, int tid) {
+            return new TimeTile(dt, tid);
+        }
+    }
+
     /////////////////////////////////
     // PRIVATE FIELDS
     /////////////////////////////////
@@ -225,6 +248,20 @@ public class ReservationGrid extends ReservationArray {
         return gridTimeStep;
     }
 
+    /**
+     * Create a list of the time tiles of runs of consecutive discrete times of
+     * the same tiles. The arrays are copied.
+     *
+     * @param tileIds the tile ID of each run
+     * @param firstTimes the first discrete time of each run
+     * @param lengths the number of discrete times of each run, at least 1
+     * @param runCount the number of runs, the first ones of the arrays
+     * @return the time tiles of the runs, in the order of the runs
+     */
+    public TimeTileRuns<TimeTile> newTimeTileRuns(int[] tileIds, int[] firstTimes, int[] lengths, int runCount) {
+        return new GridTimeTileRuns(tileIds, firstTimes, lengths, runCount);
+    }
+
     /**
      * Get the discrete time of a given time. If the given time is not exactly
      * equal to the discrete time, the largest discrete time that is smaller or
@@ -35,6 +35,7 @@ import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -47,6 +48,8 @@ import aim4.config.Debug;
 import aim4.config.Resources;
 import aim4.config.SimConfig;
 import aim4.config.SimConfig.VEHICLE_TYPE;
+import aim4.sim.jfr.FlightEvents;
+import aim4.sim.jfr.GridQueryEvent;
 import aim4.driver.CrashTestDummy;
 import aim4.driver.Driver;
 import aim4.im.Intersection;
@@ -533,6 +536,36 @@ public class ReservationGridManager implements
      * The statistic collector
      */
     private StatCollector<ReservationGridManager> statCollector;
+    /**
+     * The number of steps of internal simulation run so far
+     */
+    private long simulationSteps = 0;
+    /**
+     * The tile IDs, first discrete times and lengths of the runs of time
+     * tiles found so far by the internal simulation of a query, a run being
+     * the buffered times of an occupied tile. They are reused by every query,
+     * so that no time tile is created for a query.
+     */
+    private int[] runTileIds = new int[256];
+    private int[] runFirstTimes = new int[256];
+    private int[] runLengths = new int[256];
+    /**
+     * The grids of the discrete times checked at a step of the internal
+     * simulation, reused by every step.
+     */
+    private int[][] checkedGrids = new int[0][];
+    /**
+     * The specification, the vehicle and the driver of the internal
+     * simulation, created by the first query and reset by every other one.
+     */
+    private VehicleSpec testSpec;
+    private BasicAutoVehicle testVehicle;
+    private CrashTestDummy testDriver;
+    /**
+     * The tiles occupied by the test vehicle at a step of the internal
+     * simulation, reused by every step.
+     */
+    private List<Tile> occupied = new ArrayList<Tile>();
 
     /////////////////////////////////
     // CONSTRUCTORS
@@ -617,6 +650,15 @@ public class ReservationGridManager implements
         return tiledArea;
     }
 
+    /**
+     * Get the reservation grid.
+     *
+     * @return the reservation grid
+     */
+    public ReservationGrid getReservationGrid() {
+        return reservationGrid;
+    }
+
     /**
      * Get the statistic collector.
      *
@@ -629,6 +671,15 @@ public class ReservationGridManager implements
     /////////////////////////////////
     // PUBLIC METHODS
     /////////////////////////////////
+    /**
+     * Get the number of steps of internal simulation run to check proposals.
+     *
+     * @return the number of steps of internal simulation run so far
+     */
+    public long getSimulationSteps() {
+        return simulationSteps;
+    }
+
     /**
      * Find a set of space-time tile for a particular traversal proposal in a
      * request message. This attempt can be either with attempting to
@@ -642,6 +693,12 @@ public class ReservationGridManager implements
      * of the vehicle if the reservation is successful; otherwise return null.
      */
     public Plan query(Query q, VEHICLE_TYPE vehicleType) {
+        GridQueryEvent event = null;
+        if (FlightEvents.AVAILABLE && GridQueryEvent.isTypeEnabled()) {
+            event = new GridQueryEvent();
+            event.begin();
+        }
+        long stepsBefore = simulationSteps;
 
         // Position the Vehicle to be ready to start the simulation
         Lane arrivalLane
@@ -649,16 +706,15 @@ public class ReservationGridManager implements
         Lane departureLane
                 = Debug.currentMap.getLaneRegistry().get(q.getDepartureLaneId());
 
-        // Create a test vehicle to use in the internal simulation
-        BasicAutoVehicle testVehicle
-                = createTestVehicle(q.getSpec(),
-                        q.getArrivalVelocity(),
-                        q.getMaxTurnVelocity(),
-                        arrivalLane,
-                        vehicleType);
+        // Reset the test vehicle to use in the internal simulation
+        resetTestVehicle(q.getSpec(),
+                q.getArrivalVelocity(),
+                q.getMaxTurnVelocity(),
+                arrivalLane,
+                vehicleType);
 
-        // Create a dummy driver to steer it
-        Driver dummy = new CrashTestDummy(testVehicle, arrivalLane, departureLane);
+        // Reset the dummy driver to steer it
+        Driver dummy = resetTestDriver(arrivalLane, departureLane);
 
         // assign the drive to the vehicle
         // testVehicle.setDriver(dummy);  // TODO fix this later.
@@ -670,6 +726,16 @@ public class ReservationGridManager implements
                 q.getArrivalTime(),
                 q.isAccelerating());
 
+        if (event != null && event.shouldCommit()) {
+            event.vin = q.getVin();
+            event.arrivalLane = q.getArrivalLaneId();
+            event.departureLane = q.getDepartureLaneId();
+            event.arrivalTime = q.getArrivalTime();
+            event.simulationSteps = simulationSteps - stepsBefore;
+            event.feasible = (fResult != null);
+            event.commit();
+        }
+
         if (fResult != null) {
             List<TimeTile> workingList = fResult.getWorkingList();
 
@@ -715,51 +781,97 @@ public class ReservationGridManager implements
     // PRIVATE FIELDS
     /////////////////////////////////
     /**
-     * Create a test vehicle to use in the internal simulation.
+     * Reset the test vehicle to use in the internal simulation, creating it
+     * on the first query.
      *
      * @param spec the specification of the test vehicle
      * @param arrivalVelocity the arrival velocity of the vehicle
      * @param maxVelocity the Vehicle's maximum velocity, in meters per second
      * @param arrivalLane the arrival lane of the vehicle in this proposal
-     *
-     * @return whether or not a reservation could be made
+     * @param vehicleType the type of the vehicle
      */
-    private BasicAutoVehicle createTestVehicle(
+    private void resetTestVehicle(
             Request.VehicleSpecForRequestMsg spec,
             double arrivalVelocity,
             double maxVelocity,
             Lane arrivalLane,
             VEHICLE_TYPE vehicleType) {
 
-        VehicleSpec newSpec = new VehicleSpec(
-                "TestVehicle",
-                spec.getMaxAcceleration(),
-                spec.getMaxDeceleration(),
-                maxVelocity, // TODO: why not one in msg.getSpec().getMaxVelocity()
-                spec.getMinVelocity(),
-                spec.getLength(),
-                spec.getWidth(),
-                spec.getFrontAxleDisplacement(),
-                spec.getRearAxleDisplacement(),
-                0.0, // wheelSpan
-                0.0, // wheelRadius
-                0.0, // wheelWidth
-                spec.getMaxSteeringAngle(),
-                spec.getMaxTurnPerSecond());
-
-        BasicAutoVehicle testVehicle = new BasicAutoVehicle(
-                newSpec,
-                intersection.getEntryPoint(arrivalLane), // Position
-                intersection.getEntryHeading(arrivalLane), // Heading
-                0.0, // Steering angle
-                arrivalVelocity, // velocity
-                0.0, // target velocity
-                0.0, // Acceleration
-                0.0,
-                vehicleType); // the current time   // TODO: need to think about the appropriate
-        // current time
-
-        return testVehicle;
+        if (testSpec == null) {
+            testSpec = new VehicleSpec(
+                    "TestVehicle",
+                    spec.getMaxAcceleration(),
+                    spec.getMaxDeceleration(),
+                    maxVelocity, // TODO: why not one in msg.getSpec().getMaxVelocity()
+                    spec.getMinVelocity(),
+                    spec.getLength(),
+                    spec.getWidth(),
+                    spec.getFrontAxleDisplacement(),
+                    spec.getRearAxleDisplacement(),
+                    0.0, // wheelSpan
+                    0.0, // wheelRadius
+                    0.0, // wheelWidth
+                    spec.getMaxSteeringAngle(),
+                    spec.getMaxTurnPerSecond());
+        } else {
+            testSpec.assign(
+                    "TestVehicle",
+                    spec.getMaxAcceleration(),
+                    spec.getMaxDeceleration(),
+                    maxVelocity,
+                    spec.getMinVelocity(),
+                    spec.getLength(),
+                    spec.getWidth(),
+                    spec.getFrontAxleDisplacement(),
+                    spec.getRearAxleDisplacement(),
+                    0.0, // wheelSpan
+                    0.0, // wheelRadius
+                    0.0, // wheelWidth
+                    spec.getMaxSteeringAngle(),
+                    spec.getMaxTurnPerSecond());
+        }
+
+        if (testVehicle == null) {
+            testVehicle = new BasicAutoVehicle(
+                    testSpec,
+                    intersection.getEntryPoint(arrivalLane), // Position
+                    intersection.getEntryHeading(arrivalLane), // Heading
+                    0.0, // Steering angle
+                    arrivalVelocity, // velocity
+                    0.0, // target velocity
+                    0.0, // Acceleration
+                    0.0,
+                    vehicleType); // the current time   // TODO: need to think about the appropriate
+            // current time
+        } else {
+            testVehicle.reset(
+                    intersection.getEntryPoint(arrivalLane), // Position
+                    intersection.getEntryHeading(arrivalLane), // Heading
+                    0.0, // Steering angle
+                    arrivalVelocity, // velocity
+                    0.0, // target velocity
+                    0.0, // Acceleration
+                    0.0, // the current time
+                    vehicleType);
+        }
+    }
+
+    /**
+     * Reset the dummy driver steering the test vehicle, creating it on the
+     * first query.
+     *
+     * @param arrivalLane the arrival lane of the vehicle in this proposal
+     * @param departureLane the departure lane of the vehicle in this proposal
+     *
+     * @return the dummy driver
+     */
+    private Driver resetTestDriver(Lane arrivalLane, Lane departureLane) {
+        if (testDriver == null) {
+            testDriver = new CrashTestDummy(testVehicle, arrivalLane, departureLane);
+        } else {
+            testDriver.reset(arrivalLane, departureLane);
+        }
+        return testDriver;
     }
 
     /**
@@ -834,55 +946,76 @@ public class ReservationGridManager implements
         assert areaPlus.contains(testVehicle.getPointAtMiddleFront(
                 Constants.DOUBLE_EQUAL_PRECISION));
 
-        // The list of tile-times that will make up this reservation
-        List<TimeTile> workingList = new ArrayList<TimeTile>();
-        // for occupation estimate
-        List<Tile> occupied = null;
-
+        // The number of runs of tile-times that will make up this reservation,
+        // kept in runTileIds, runFirstTimes and runLengths
+        int runCount = 0;
         // A discrete representation of the time throughout the internal simulation
         // Notice that currentIntTime != arrivalTime
         int currentIntTime = reservationGrid.calcDiscreteTime(arrivalTime);
         // The duration in the current time interval
         double currentDuration = reservationGrid.calcRemainingTime(arrivalTime);
 
+        // Figure out how large of a time buffer to use for edge tiles and for
+        // internal tiles
+        double expand = 1;
+        if (SimConfig.signalType != null && SimConfig.signalType != SimConfig.SIGNAL_TYPE.DEFAULT && testVehicle.isHuman()) {
+            expand = SimConfig.HUMAN_TARDINESS;
+        }
+        int edgeBuffer = (int) (edgeTileTimeBufferSteps * expand);
+        int internalBuffer = (int) (internalTileTimeBufferSteps * expand);
+        int maxBuffer = (isEdgeTileTimeBufferEnabled ? Math.max(edgeBuffer, internalBuffer) : internalBuffer);
+        if (checkedGrids.length < 2 * maxBuffer + 1) {
+            checkedGrids = new int[2 * maxBuffer + 1][];
+        }
+
+        boolean firstStep = true;
+
         double nearMissePath = DesignatedLanesExpr.MAX_MISS_MEASURE;
         // drive the test vehicle until it leaves the intersection
         while (VehicleUtil.intersects(testVehicle, areaPlus)) {
             moveTestVehicle(testVehicle, dummy, currentDuration, accelerating);
+            simulationSteps++;
             // Find out which tiles are occupied by the vehicle
             currentIntTime++;  // Record that we've moved forward one time step
 
             // if it's not human driver, we should simulate its position
             // otherwise, use the occupied in argument
-            occupied = tiledArea.findOccupiedTiles(testVehicle.getShape(staticBufferSize));
-
-            // Make sure none of these tiles are reserved by someone else already
-            for (Tile tile : occupied) {
+            tiledArea.findOccupiedTiles(testVehicle.getShape(staticBufferSize), occupied);
 
-                // Figure out how large of a time buffer to use, based on whether or
-                // not this is an edge tile
-                int buffer;
-                double expand = 1;
-
-                if (SimConfig.signalType != null && SimConfig.signalType != SimConfig.SIGNAL_TYPE.DEFAULT && testVehicle.isHuman()) {
-                    expand = SimConfig.HUMAN_TARDINESS;
+            // Look up the grids of the times in the buffers once for all tiles;
+            // the times move forward by one step, so only the last one is new
+            if (firstStep) {
+                for (int i = 0; i <= 2 * maxBuffer; i++) {
+                    checkedGrids[i] = reservationGrid.getGrid(currentIntTime - maxBuffer + i);
                 }
+                firstStep = false;
+            } else {
+                System.arraycopy(checkedGrids, 1, checkedGrids, 0, 2 * maxBuffer);
+                checkedGrids[2 * maxBuffer] = reservationGrid.getGrid(currentIntTime + maxBuffer);
+            }
 
-                if (isEdgeTileTimeBufferEnabled && tile.isEdgeTile()) {
-                    buffer = (int) (edgeTileTimeBufferSteps * expand);
-                } else {
-                    buffer = (int) (internalTileTimeBufferSteps * expand);
-                }
+            // Make sure none of these tiles are reserved by someone else already
+            for (int i = 0; i < occupied.size(); i++) {
+                Tile tile = occupied.get(i);
+                int buffer = (isEdgeTileTimeBufferEnabled && tile.isEdgeTile() ? edgeBuffer : internalBuffer);
                 int tileId = tile.getId();
 
                 for (int t = currentIntTime - buffer; t <= currentIntTime + buffer; t++) {
                     // If the tile is already reserved and it isn't by us, we've failed
-                    if (!reservationGrid.isReserved(t, tileId)) {
-                        workingList.add(reservationGrid.new TimeTile(t, tile.getId()));
-                    } else {
+                    int[] grid = checkedGrids[t - currentIntTime + maxBuffer];
+                    if (grid != null && grid[tileId] >= 0) {
                         return null; // Failure! Just bail!
                     }
                 }
+                if (runCount == runTileIds.length) {
+                    runTileIds = Arrays.copyOf(runTileIds, 2 * runCount);
+                    runFirstTimes = Arrays.copyOf(runFirstTimes, 2 * runCount);
+                    runLengths = Arrays.copyOf(runLengths, 2 * runCount);
+                }
+                runTileIds[runCount] = tileId;
+                runFirstTimes[runCount] = currentIntTime - buffer;
+                runLengths[runCount] = 2 * buffer + 1;
+                runCount++;
                 if (DesignatedLanesExpr.OBSERVE_NEAR_MISS) {
                     double minNearMiss = DesignatedLanesExpr.MAX_MISS_MEASURE;
                     buffer = (int) (DesignatedLanesExpr.MAX_MISS_MEASURE / config.getGridTimeStep());
@@ -901,6 +1034,8 @@ public class ReservationGridManager implements
             DesignatedLanesExpr.nearMisses.add(nearMissePath);
             System.err.println(nearMissePath + ",");
         }
+        // The list of tile-times that will make up this reservation
+        List<TimeTile> workingList = reservationGrid.newTimeTileRuns(runTileIds, runFirstTimes, runLengths, runCount);
         return new FindTileTimesBySimulationResult(workingList,
                 reservationGrid
                         .calcTime(currentIntTime));
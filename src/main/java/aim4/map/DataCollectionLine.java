@@ -124,31 +124,32 @@ public class DataCollectionLine {
    */
   public boolean intersect(VehicleSimView v, double time,
                            Point2D p1, Point2D p2) {
+    // test the line first, as most vehicles do not cross it in a step and
+    // the lookups of the VIN box it
+    if (!line.intersectsLine(p1.getX(), p1.getY(), p2.getX(), p2.getY())) {
+      return false;
+    }
     int vin = v.getVIN();
     if (!isNoRepeat
       || !vinToTime.containsKey(vin)
       || vinToTime.get(vin).get(vinToTime.get(vin).size()-1)
         + NO_REPEAT_TIME_PERIOD < time) {
-      if (line.intersectsLine(p1.getX(), p1.getY(), p2.getX(), p2.getY())) {
-      	VehicleSimView vehicle = Resources.vinToVehicles.get(vin);
-      	
-        if (!vinToTime.containsKey(vin)) {
-          List<Double> times = new LinkedList<Double>();
-          List<Boolean> ifHumans = new LinkedList<Boolean>();
-          
-          times.add(time);
-          ifHumans.add(vehicle.isHuman());
-          
-          vinToTime.put(vin, times);
-          vinToIfHuman.put(vin, ifHumans);
-        } else {
-          vinToTime.get(vin).add(time);
-          vinToIfHuman.get(vin).add(vehicle.isHuman());
-        }
-        return true;
+      VehicleSimView vehicle = Resources.vinToVehicles.get(vin);
+
+      if (!vinToTime.containsKey(vin)) {
+        List<Double> times = new LinkedList<Double>();
+        List<Boolean> ifHumans = new LinkedList<Boolean>();
+
+        times.add(time);
+        ifHumans.add(vehicle.isHuman());
+
+        vinToTime.put(vin, times);
+        vinToIfHuman.put(vin, ifHumans);
       } else {
-        return false;
+        vinToTime.get(vin).add(time);
+        vinToIfHuman.get(vin).add(vehicle.isHuman());
       }
+      return true;
     } else {  // the vehicle passed through this data collection line
               // twice or more within last NO_REPEAT_TIME_PERIOD seconds
       return false;
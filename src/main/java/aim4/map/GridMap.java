@@ -163,8 +163,8 @@ public class GridMap implements BasicMap {
      * direction
      * @param distanceBetween the distance between the adjacent intersections
      * @param interArch object containing information about the architecture and
-     * turning policies for an intersection (this should be <code>null</code> in
-     * multi-intersection layouts)
+     * turning policies for an intersection, applied to every intersection of
+     * the grid
      */
     public GridMap(double initTime, int columns, int rows,
             double laneWidth, double speedLimit, int lanesPerRoad,
@@ -173,8 +173,6 @@ public class GridMap implements BasicMap {
         if (rows < 1 || columns < 1) {
             throw new IllegalArgumentException("Must have at least one column "
                     + "and row!");
-        } else if (interArch != null && (columns > 1 || rows > 1)) {
-            throw new IllegalArgumentException("ArchitectureDTO specified with multiple intersections. This is not allowed.");
         }
         this.columns = columns;
         this.rows = rows;
@@ -50,7 +50,6 @@ import aim4.config.SimConfig.VEHICLE_TYPE;
 import aim4.config.ringbarrier.RingAndBarrier;
 import aim4.config.ringbarrier.RingAndBarrierFactory;
 import aim4.im.DedicatedTrafficController;
-import aim4.im.Intersection;
 import aim4.im.IntersectionManager;
 import aim4.im.LaneTrafficController;
 import aim4.im.LaneTrafficController.LaneInfo;
@@ -82,15 +81,12 @@ import aim4.map.destination.DestinationSelector;
 import aim4.map.destination.FileBasedDestinationSelector;
 import aim4.map.destination.RandomDestinationSelector;
 import aim4.map.destination.TurnBasedDestinationSelector;
-import aim4.map.intersectionboard.DifferingLanesPerRoadBoard;
-import aim4.map.intersectionboard.IntersectionBoard;
-import aim4.map.intersectionboard.StandardIntersectionBoard;
 import aim4.map.lane.Lane;
 import aim4.map.lane.LaneIM;
 import aim4.map.trafficbyturns.DestinationFileSpawnSpecGenerator;
 import aim4.map.trafficbyturns.LaneRestrictedFileSpawnSpecGenerator;
 import aim4.map.trafficbyturns.TrafficFlowReaderFactory;
-import aim4.map.trafficbyturns.TurnMovements;
+import aim4.map.trafficbyturns.AbstractTurnMovements;
 import aim4.sim.setup.AdaptiveTrafficSignalSuperviser;
 import aim4.util.Util;
 import aim4.vehicle.VehicleSpec;
@@ -102,7 +98,6 @@ import java.io.File;
  */
 public class GridMapUtil {
 
-    private static IntersectionBoard roadBoard = null;
     private static double currentTrafficLevel;
 
     /////////////////////////////////
@@ -537,20 +532,6 @@ public class GridMapUtil {
     /////////////////////////////////
     // PUBLIC STATIC METHODS
     /////////////////////////////////
-    public static boolean laneIntersect(int firstLaneIn, int firstLaneOut,
-            int secondLaneIn, int secondLaneOut) {
-        if (roadBoard == null) {
-            // initialize this, if needed.
-            roadBoard = new StandardIntersectionBoard();
-        }
-
-        return roadBoard.intersects(firstLaneIn, firstLaneOut, secondLaneIn, secondLaneOut);
-    }
-
-    public static void createAndUseDifferingLanesPerRoadBoard(Intersection inter) {
-        roadBoard = new DifferingLanesPerRoadBoard(inter);
-    }
-
     /**
      * Set the FCFS managers at all intersections.
      *
@@ -564,12 +545,10 @@ public class GridMapUtil {
             double currentTime,
             ReservationGridManager.Config config, ArchIntersection interArch) {
         layout.removeAllManagers();
-        Intersection inter = null;
         for (int column = 0; column < layout.getColumns(); column++) {
             for (int row = 0; row < layout.getRows(); row++) {
                 List<Road> roads = layout.getRoads(column, row);
                 RoadBasedIntersection intersection = new RoadBasedIntersection(roads);
-                inter = intersection;
                 RoadBasedTrackModel trajectoryModel
                         = new RoadBasedTrackModel(intersection);
                 V2IManager im
@@ -582,12 +561,11 @@ public class GridMapUtil {
                     }
                 }
                 im.setPolicy(new BasePolicy(im, new FCFSRequestHandler()));
+                // build the conflict matrix during the setup rather than mid-simulation
+                im.getLaneBoard().getConflictMatrix();
                 layout.setManager(column, row, im);
             }
         }
-        if (layout.getColumns() == layout.getRows() && layout.getColumns() == 1 && inter != null) {
-            createAndUseDifferingLanesPerRoadBoard(inter);
-        }
     }
 
     /**
@@ -605,12 +583,10 @@ public class GridMapUtil {
             ReservationGridManager.Config config,
             double processingInterval, ArchIntersection interArch) {
         layout.removeAllManagers();
-        Intersection inter = null;
         for (int column = 0; column < layout.getColumns(); column++) {
             for (int row = 0; row < layout.getRows(); row++) {
                 List<Road> roads = layout.getRoads(column, row);
                 RoadBasedIntersection intersection = new RoadBasedIntersection(roads);
-                inter = intersection;
                 RoadBasedTrackModel trajectoryModel
                         = new RoadBasedTrackModel(intersection);
                 V2IManager im
@@ -627,12 +603,11 @@ public class GridMapUtil {
                                 new RoadBasedReordering(processingInterval),
                                 new BatchModeRequestHandler.RequestStatCollector());
                 im.setPolicy(new BasePolicy(im, rh));
+                // build the conflict matrix during the setup rather than mid-simulation
+                im.getLaneBoard().getConflictMatrix();
                 layout.setManager(column, row, im);
             }
         }
-        if (layout.getColumns() == layout.getRows() && layout.getColumns() == 1 && inter != null) {
-            createAndUseDifferingLanesPerRoadBoard(inter);
-        }
     }
 
     /**
@@ -654,12 +629,10 @@ public class GridMapUtil {
             double yellowLightDuration, ArchIntersection interArch) {
 
         layout.removeAllManagers();
-        Intersection inter = null;
         for (int column = 0; column < layout.getColumns(); column++) {
             for (int row = 0; row < layout.getRows(); row++) {
                 List<Road> roads = layout.getRoads(column, row);
                 RoadBasedIntersection intersection = new RoadBasedIntersection(roads);
-                inter = intersection;
                 RoadBasedTrackModel trajectoryModel
                         = new RoadBasedTrackModel(intersection);
                 V2IManager im
@@ -675,12 +648,11 @@ public class GridMapUtil {
                         = new ApproxSimpleTrafficSignalRequestHandler(greenLightDuration,
                                 yellowLightDuration);
                 im.setPolicy(new BasePolicy(im, requestHandler));
+                // build the conflict matrix during the setup rather than mid-simulation
+                im.getLaneBoard().getConflictMatrix();
                 layout.setManager(column, row, im);
             }
         }
-        if (layout.getColumns() == layout.getRows() && layout.getColumns() == 1 && inter != null) {
-            createAndUseDifferingLanesPerRoadBoard(inter);
-        }
     }
 
     /**
@@ -701,12 +673,10 @@ public class GridMapUtil {
             double greenLightDuration,
             double yellowLightDuration, ArchIntersection interArch) {
         layout.removeAllManagers();
-        Intersection inter = null;
         for (int column = 0; column < layout.getColumns(); column++) {
             for (int row = 0; row < layout.getRows(); row++) {
                 List<Road> roads = layout.getRoads(column, row);
                 RoadBasedIntersection intersection = new RoadBasedIntersection(roads);
-                inter = intersection;
                 RoadBasedTrackModel trajectoryModel
                         = new RoadBasedTrackModel(intersection);
                 V2IManager im
@@ -722,12 +692,11 @@ public class GridMapUtil {
                         = new Approx4PhasesTrafficSignalRequestHandler(greenLightDuration,
                                 yellowLightDuration);
                 im.setPolicy(new BasePolicy(im, requestHandler));
+                // build the conflict matrix during the setup rather than mid-simulation
+                im.getLaneBoard().getConflictMatrix();
                 layout.setManager(column, row, im);
             }
         }
-        if (layout.getColumns() == layout.getRows() && layout.getColumns() == 1 && inter != null) {
-            createAndUseDifferingLanesPerRoadBoard(inter);
-        }
     }
 
     /**
@@ -748,18 +717,16 @@ public class GridMapUtil {
             String trafficSignalPhaseFileName, ArchIntersection interArch) {
 
         layout.removeAllManagers();
-        Intersection inter = null;
-        RingAndBarrier ringAndBarrier = null;
-        if (layout.getColumns() > 0 && layout.getRows() > 0) {
-            ringAndBarrier = RingAndBarrierFactory.createRingAndBarrierFromFile(layout, trafficSignalPhaseFileName);
-            Resources.ringAndBarrier = ringAndBarrier;
-        }
 
         for (int column = 0; column < layout.getColumns(); column++) {
             for (int row = 0; row < layout.getRows(); row++) {
+                // every intersection runs its own signal
+                RingAndBarrier ringAndBarrier = RingAndBarrierFactory.createRingAndBarrierFromFile(layout, column, row, trafficSignalPhaseFileName);
+                if (column == 0 && row == 0) {
+                    Resources.ringAndBarrier = ringAndBarrier;
+                }
                 List<Road> roads = layout.getRoads(column, row);
                 RoadBasedIntersection intersection = new RoadBasedIntersection(roads);
-                inter = intersection;
                 RoadBasedTrackModel trajectoryModel
                         = new RoadBasedTrackModel(intersection);
                 V2IManager im
@@ -809,18 +776,17 @@ public class GridMapUtil {
                 }
 
                 im.setPolicy(new BasePolicy(im, requestHandler));
+                // build the conflict matrix during the setup rather than mid-simulation
+                im.getLaneBoard().getConflictMatrix();
                 layout.setManager(column, row, im);
                 Resources.im = im;
-                if (SimConfig.signalType == SimConfig.SIGNAL_TYPE.FULLY_ACTUATED || Resources.ringAndBarrier != null) {
+                if (SimConfig.signalType == SimConfig.SIGNAL_TYPE.FULLY_ACTUATED || ringAndBarrier != null) {
                     if(!ringAndBarrier.bindPhaseSegmentsToIM()) {
                         throw new RuntimeException("Couldn't bind IM to segments from the ring and barrier object.");
                     }
                 }
             }
         }
-        if (layout.getColumns() == layout.getRows() && layout.getColumns() == 1 && inter != null) {
-            createAndUseDifferingLanesPerRoadBoard(inter);
-        }
     }
 
     /**
@@ -836,12 +802,10 @@ public class GridMapUtil {
             double currentTime,
             ReservationGridManager.Config config, ArchIntersection interArch) {
         layout.removeAllManagers();
-        Intersection inter = null;
         for (int column = 0; column < layout.getColumns(); column++) {
             for (int row = 0; row < layout.getRows(); row++) {
                 List<Road> roads = layout.getRoads(column, row);
                 RoadBasedIntersection intersection = new RoadBasedIntersection(roads);
-                inter = intersection;
                 RoadBasedTrackModel trajectoryModel
                         = new RoadBasedTrackModel(intersection);
                 V2IManager im
@@ -856,19 +820,16 @@ public class GridMapUtil {
                 ApproxStopSignRequestHandler requestHandler
                         = new ApproxStopSignRequestHandler();
                 im.setPolicy(new BasePolicy(im, requestHandler));
+                // build the conflict matrix during the setup rather than mid-simulation
+                im.getLaneBoard().getConflictMatrix();
                 layout.setManager(column, row, im);
             }
         }
-        if (layout.getColumns() == layout.getRows() && layout.getColumns() == 1 && inter != null) {
-            createAndUseDifferingLanesPerRoadBoard(inter);
-        }
     }
 
-    public static void setPolicyAndExitRestictionsForLane(Lane lane, V2IManager im, ArchIntersection interArch) {
-        if (interArch != null && lane != null && im != null) {
-            if (!interArch.isSetup()) {
-                interArch.tieIntersection(im.getIntersection());
-            }
+    public static void setPolicyAndExitRestictionsForLane(Lane lane, V2IManager im, ArchIntersection arch) {
+        if (arch != null && lane != null && im != null) {
+            ArchIntersection interArch = arch.forIntersection(im.getIntersection());
             LaneIM laIM = lane.getLaneIM(); //lane intersection manager relationship, NOT the im.
             Iterable<TurnDirection> mappingKeys = interArch.getExitMappingKeys(lane);
             if (mappingKeys != null) {
@@ -917,9 +878,9 @@ public class GridMapUtil {
      * the FileBasedSpawnSpecGenerator
      */
     public static void setSpawnDestSpawnPoints(BasicMap map,
-            TurnMovements tms) {
+            AbstractTurnMovements tms) {
 
-        DestinationFileSpawnSpecGenerator destspecgen = TrafficFlowReaderFactory.getDestFileSpawnSpecGen(tms.getCountLists(), new FileBasedDestinationSelector(map.getImRegistry()));
+        DestinationFileSpawnSpecGenerator destspecgen = TrafficFlowReaderFactory.getDestFileSpawnSpecGen(tms, new FileBasedDestinationSelector(map.getImRegistry()));
 
         for (SpawnPoint sp : map.getSpawnPoints()) {
             sp.setVehicleSpecChooser(destspecgen);
@@ -934,9 +895,9 @@ public class GridMapUtil {
      * the FileBasedSpawnSpecGenerator
      */
     public static void setLaneRestrictedSpawnDestSpawnPoints(BasicMap map,
-            TurnMovements tms) {
+            AbstractTurnMovements tms) {
 
-        LaneRestrictedFileSpawnSpecGenerator destspecgen = TrafficFlowReaderFactory.getLaneRestrDestFileSpawnSpecGen(tms.getCountLists(), new FileBasedDestinationSelector(map.getImRegistry()));
+        LaneRestrictedFileSpawnSpecGenerator destspecgen = TrafficFlowReaderFactory.getLaneRestrDestFileSpawnSpecGen(tms, new FileBasedDestinationSelector(map.getImRegistry()));
 
         for (SpawnPoint sp : map.getSpawnPoints()) {
             sp.setVehicleSpecChooser(destspecgen);
@@ -26,20 +26,23 @@ public class LaneSegment {
 //         neighbours[dir.toint()] = neighbour;
 //    }
     
-    public void exit() {
-        if(numberOfCars > DesignatedLanesExpr.maxQueueLength){
-            DesignatedLanesExpr.maxQueueLength = numberOfCars;
+    //lanes may be shared by intersection managers acting concurrently
+    public synchronized void exit() {
+        synchronized (LaneSegment.class) {
+            if(numberOfCars > DesignatedLanesExpr.maxQueueLength){
+                DesignatedLanesExpr.maxQueueLength = numberOfCars;
+            }
         }
         numberOfCars--;
         //neighbours[dir.toint()].enter();
     }
 
-    public void enter() {
+    public synchronized void enter() {
         numberOfCars++;
         //System.out.println("Lane " + segmentIndex + ", " + numberOfCars + " Vehicles.");
     }
     
-        public int getNumberOfCars() {
+        public synchronized int getNumberOfCars() {
         return numberOfCars;
     }
 
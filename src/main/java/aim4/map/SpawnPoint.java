@@ -299,6 +299,18 @@ public class SpawnPoint {
         currentTime += timeStep;
     }
 
+    /**
+     * Move the current time forward to a given time, for spawn points that
+     * are not acted upon in every time step.
+     *
+     * @param time the time
+     */
+    public void advanceTo(double time) {
+        if (time > currentTime) {
+            currentTime = time;
+        }
+    }
+
     public SpawnSpec act(double timeStep, VEHICLE_TYPE vehicleType, Road destinationRoad) {
         assert vehicleSpecChooser != null;
         return vehicleSpecChooser.act(this, timeStep, vehicleType, destinationRoad);
@@ -0,0 +1,333 @@
+package aim4.map.intersectionboard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A precomputed table of the conflicts between the movements through an
+ * intersection. Every (entry lane, exit lane) pair of the intersection is
+ * given a dense movement ID, and the movements conflicting with a given
+ * movement are stored as a bitset over the movement IDs, so that checking a
+ * pair of movements is a single bit test and checking a movement against a
+ * whole set of movements only costs a few word operations.
+ */
+public final class ConflictMatrix {
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The dense index of each entry lane, by lane ID, or -1 if the lane does
+     * not enter the intersection.
+     */
+    private final int[] entryIndices;
+    /**
+     * The dense index of each exit lane, by lane ID, or -1 if the lane does
+     * not leave the intersection.
+     */
+    private final int[] exitIndices;
+    /**
+     * The IDs of the entry lanes, by dense index.
+     */
+    private final int[] entryLaneIds;
+    /**
+     * The IDs of the exit lanes, by dense index.
+     */
+    private final int[] exitLaneIds;
+    /**
+     * The number of movements.
+     */
+    private final int movementCount;
+    /**
+     * The number of words of a movement set.
+     */
+    private final int words;
+    /**
+     * The conflict sets of the movements, one row of <code>words</code> words
+     * per movement.
+     */
+    private final long[] bits;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a matrix without any conflict.
+     *
+     * @param entryLaneIds the IDs of the lanes entering the intersection
+     * @param exitLaneIds the IDs of the lanes leaving the intersection
+     */
+    public ConflictMatrix(Collection<Integer> entryLaneIds,
+            Collection<Integer> exitLaneIds) {
+        this.entryLaneIds = toSortedArray(entryLaneIds);
+        this.exitLaneIds = toSortedArray(exitLaneIds);
+        this.entryIndices = makeIndices(this.entryLaneIds);
+        this.exitIndices = makeIndices(this.exitLaneIds);
+        this.movementCount = this.entryLaneIds.length * this.exitLaneIds.length;
+        this.words = (movementCount + 63) >>> 6;
+        this.bits = new long[movementCount * words];
+    }
+
+    /**
+     * Create a matrix from its parts, as stored by {@link ConflictMatrixCache}.
+     *
+     * @param entryLaneIds the sorted IDs of the lanes entering the
+     * intersection
+     * @param exitLaneIds the sorted IDs of the lanes leaving the intersection
+     * @param bits the conflict sets of the movements
+     */
+    ConflictMatrix(int[] entryLaneIds, int[] exitLaneIds, long[] bits) {
+        this.entryLaneIds = entryLaneIds;
+        this.exitLaneIds = exitLaneIds;
+        this.entryIndices = makeIndices(entryLaneIds);
+        this.exitIndices = makeIndices(exitLaneIds);
+        this.movementCount = entryLaneIds.length * exitLaneIds.length;
+        this.words = (movementCount + 63) >>> 6;
+        if (bits.length != movementCount * words) {
+            throw new IllegalArgumentException("Conflict sets of " + bits.length + " words do not fit " + movementCount + " movements.");
+        }
+        this.bits = bits;
+    }
+
+    /////////////////////////////////
+    // PUBLIC STATIC METHODS
+    /////////////////////////////////
+    /**
+     * Compute the conflict matrix of an intersection board by checking every
+     * pair of movements of the board once.
+     *
+     * @param board the intersection board
+     * @param entryLaneIds the IDs of the lanes entering the intersection
+     * @param exitLaneIds the IDs of the lanes leaving the intersection
+     * @return the conflict matrix
+     */
+    public static ConflictMatrix fromBoard(IntersectionBoard board,
+            Collection<Integer> entryLaneIds, Collection<Integer> exitLaneIds) {
+        ConflictMatrix matrix = new ConflictMatrix(entryLaneIds, exitLaneIds);
+        for (int m1 = 0; m1 < matrix.movementCount; m1++) {
+            int in1 = matrix.getEntryLaneId(m1);
+            int out1 = matrix.getExitLaneId(m1);
+            for (int m2 = 0; m2 < matrix.movementCount; m2++) {
+                if (board.intersects(in1, out1,
+                        matrix.getEntryLaneId(m2), matrix.getExitLaneId(m2))) {
+                    matrix.setConflict(m1, m2);
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * @return the number of movements
+     */
+    public int getMovementCount() {
+        return movementCount;
+    }
+
+    /**
+     * Get the ID of a movement.
+     *
+     * @param entryLaneId the ID of the lane entering the intersection
+     * @param exitLaneId the ID of the lane leaving the intersection
+     * @return the movement ID, or -1 if either lane is not part of the
+     * intersection
+     */
+    public int getMovementId(int entryLaneId, int exitLaneId) {
+        int in = lookup(entryIndices, entryLaneId);
+        int out = lookup(exitIndices, exitLaneId);
+        if (in < 0 || out < 0) {
+            return -1;
+        }
+        return in * exitLaneIds.length + out;
+    }
+
+    /**
+     * @param movementId the movement ID
+     * @return the ID of the lane the movement enters the intersection from
+     */
+    public int getEntryLaneId(int movementId) {
+        return entryLaneIds[movementId / exitLaneIds.length];
+    }
+
+    /**
+     * @param movementId the movement ID
+     * @return the ID of the lane the movement leaves the intersection on
+     */
+    public int getExitLaneId(int movementId) {
+        return exitLaneIds[movementId % exitLaneIds.length];
+    }
+
+    /**
+     * Record that the first movement conflicts with the second one.
+     *
+     * @param movementId the first movement ID
+     * @param otherMovementId the second movement ID
+     */
+    public void setConflict(int movementId, int otherMovementId) {
+        bits[movementId * words + (otherMovementId >>> 6)]
+                |= 1L << otherMovementId;
+    }
+
+    /**
+     * Whether the first movement conflicts with the second one.
+     *
+     * @param movementId the first movement ID
+     * @param otherMovementId the second movement ID
+     * @return whether the movements conflict
+     */
+    public boolean conflicts(int movementId, int otherMovementId) {
+        return (bits[movementId * words + (otherMovementId >>> 6)]
+                & (1L << otherMovementId)) != 0;
+    }
+
+    /**
+     * Create an empty set of movements, to be used with
+     * {@link #addMovement(long[], int)} and
+     * {@link #nextConflictingMovement(int, long[], int)}.
+     *
+     * @return an empty movement set
+     */
+    public long[] newMovementSet() {
+        return new long[words];
+    }
+
+    /**
+     * Add a movement to a movement set.
+     *
+     * @param movementSet the movement set
+     * @param movementId the movement ID
+     */
+    public static void addMovement(long[] movementSet, int movementId) {
+        movementSet[movementId >>> 6] |= 1L << movementId;
+    }
+
+    /**
+     * Whether a movement conflicts with any movement of a set.
+     *
+     * @param movementId the movement ID
+     * @param movementSet the movement set
+     * @return whether any movement of the set conflicts
+     */
+    public boolean conflictsWithAny(int movementId, long[] movementSet) {
+        int row = movementId * words;
+        for (int i = 0; i < words; i++) {
+            if ((bits[row + i] & movementSet[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the next movement of a set which conflicts with a movement.
+     *
+     * @param movementId the movement ID
+     * @param movementSet the movement set
+     * @param fromMovementId the movement ID to start searching from
+     * @return the smallest ID of a conflicting movement of the set not less
+     * than <code>fromMovementId</code>, or -1 if there is none
+     */
+    public int nextConflictingMovement(int movementId, long[] movementSet,
+            int fromMovementId) {
+        if (fromMovementId >= movementCount) {
+            return -1;
+        }
+        int row = movementId * words;
+        int i = fromMovementId >>> 6;
+        long word = bits[row + i] & movementSet[i] & (-1L << fromMovementId);
+        while (word == 0) {
+            if (++i == words) {
+                return -1;
+            }
+            word = bits[row + i] & movementSet[i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /////////////////////////////////
+    // PACKAGE METHODS
+    /////////////////////////////////
+    /**
+     * @return the sorted IDs of the lanes entering the intersection, not to
+     * be modified
+     */
+    int[] getEntryLaneIds() {
+        return entryLaneIds;
+    }
+
+    /**
+     * @return the sorted IDs of the lanes leaving the intersection, not to be
+     * modified
+     */
+    int[] getExitLaneIds() {
+        return exitLaneIds;
+    }
+
+    /**
+     * @return the conflict sets of the movements, not to be modified
+     */
+    long[] getBits() {
+        return bits;
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Sort lane IDs into an array.
+     *
+     * @param laneIds the lane IDs
+     * @return the sorted IDs
+     */
+    private static int[] toSortedArray(Collection<Integer> laneIds) {
+        List<Integer> sorted = new ArrayList<Integer>(laneIds);
+        Collections.sort(sorted);
+        int[] result = new int[sorted.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sorted.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Build the lookup table from lane IDs to dense indices.
+     *
+     * @param laneIds the lane IDs, by dense index
+     * @return the dense indices, by lane ID
+     */
+    private static int[] makeIndices(int[] laneIds) {
+        int maxId = -1;
+        for (int id : laneIds) {
+            if (id < 0) {
+                throw new IllegalArgumentException("Negative lane ID: " + id);
+            }
+            maxId = Math.max(maxId, id);
+        }
+        int[] indices = new int[maxId + 1];
+        Arrays.fill(indices, -1);
+        for (int i = 0; i < laneIds.length; i++) {
+            indices[laneIds[i]] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * Look up the dense index of a lane.
+     *
+     * @param indices the dense indices, by lane ID
+     * @param laneId the lane ID
+     * @return the dense index, or -1 if the lane is unknown
+     */
+    private static int lookup(int[] indices, int laneId) {
+        if (laneId < 0 || laneId >= indices.length) {
+            return -1;
+        }
+        return indices[laneId];
+    }
+}
@@ -0,0 +1,282 @@
+package aim4.map.intersectionboard;
+
+import aim4.config.SimConfig;
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A cache of conflict matrices on disk, shared by every run using the same
+ * cache directory. Computing the conflicts between every pair of movements of
+ * an intersection is most of the time spent setting up a simulation, but only
+ * depends on the geometry of the intersection, which is the same for every run
+ * of a sweep. Each matrix is kept in a versioned binary file named after a
+ * hash of the geometry it was computed from, and read back through a memory
+ * mapped buffer. The cache is only used if
+ * {@link SimConfig#SCENARIO_CACHE_DIR} is set.
+ */
+public final class ConflictMatrixCache {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * The key of a conflict matrix, hashing everything the computation of the
+     * matrix depends on.
+     */
+    public static final class Key {
+
+        /**
+         * The kind of matrix, which prefixes the name of its file.
+         */
+        private final String kind;
+        /**
+         * The hash of the inputs added so far.
+         */
+        private final MessageDigest digest;
+        /**
+         * A buffer for the values added.
+         */
+        private final ByteBuffer value = ByteBuffer.allocate(8);
+        /**
+         * The name of the file of the matrix, once the hash is done.
+         */
+        private String fileName;
+
+        /**
+         * Create the key of a kind of matrix.
+         *
+         * @param kind the kind of matrix, made of letters and digits
+         */
+        public Key(String kind) {
+            this.kind = kind;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+            add(VERSION);
+            digest.update(kind.getBytes());
+        }
+
+        /**
+         * Add an integer input.
+         *
+         * @param i the input
+         * @return this key
+         */
+        public Key add(int i) {
+            if (fileName != null) {
+                throw new IllegalStateException("No inputs can be added to a key once it is used.");
+            }
+            value.clear();
+            value.putInt(i);
+            digest.update(value.array(), 0, 4);
+            return this;
+        }
+
+        /**
+         * Add a real input.
+         *
+         * @param d the input
+         * @return this key
+         */
+        public Key add(double d) {
+            if (fileName != null) {
+                throw new IllegalStateException("No inputs can be added to a key once it is used.");
+            }
+            value.clear();
+            value.putDouble(d);
+            digest.update(value.array(), 0, 8);
+            return this;
+        }
+
+        /**
+         * Add a boolean input.
+         *
+         * @param b the input
+         * @return this key
+         */
+        public Key add(boolean b) {
+            return add(b ? 1 : 0);
+        }
+
+        /**
+         * Add a point input, which may be null.
+         *
+         * @param p the input
+         * @return this key
+         */
+        public Key add(Point2D p) {
+            if (p == null) {
+                return add(false);
+            }
+            return add(true).add(p.getX()).add(p.getY());
+        }
+
+        /**
+         * @return the name of the file of the matrix. The key can take no more
+         * inputs afterwards.
+         */
+        private String fileName() {
+            if (fileName != null) {
+                return fileName;
+            }
+            byte[] hash = digest.digest();
+            StringBuilder sb = new StringBuilder(kind).append('-');
+            for (int i = 0; i < 16; i++) {
+                sb.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(hash[i] & 0xf, 16));
+            }
+            fileName = sb.append(".cm").toString();
+            return fileName;
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * Marks a conflict matrix file.
+     */
+    private static final int MAGIC = 0x41494d43;
+    /**
+     * The version of the files and of the computation of the matrices. Bump
+     * it when either changes, so stale files are no longer found.
+     */
+    private static final int VERSION = 1;
+
+    private ConflictMatrixCache() {
+    }
+
+    /////////////////////////////////
+    // PUBLIC STATIC METHODS
+    /////////////////////////////////
+    /**
+     * @return whether conflict matrices are cached
+     */
+    public static boolean isEnabled() {
+        return SimConfig.SCENARIO_CACHE_DIR != null;
+    }
+
+    /**
+     * Read a conflict matrix from the cache.
+     *
+     * @param key the key of the matrix
+     * @return the matrix, or null if the cache is disabled or does not hold a
+     * valid matrix for the key
+     */
+    public static ConflictMatrix load(Key key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        File file = new File(SimConfig.SCENARIO_CACHE_DIR, key.fileName());
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = in.getChannel();
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return read(buf);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // a file that cannot be read is recomputed and replaced
+            return null;
+        } catch (RuntimeException e) {
+            // a truncated or otherwise invalid file as well
+            return null;
+        }
+    }
+
+    /**
+     * Write a conflict matrix to the cache. The file is written under a
+     * temporary name and then renamed, so runs sharing the cache never read a
+     * partly written file. Failing to write is reported but not fatal.
+     *
+     * @param key the key of the matrix
+     * @param matrix the matrix
+     */
+    public static void store(Key key, ConflictMatrix matrix) {
+        if (!isEnabled()) {
+            return;
+        }
+        File dir = new File(SimConfig.SCENARIO_CACHE_DIR);
+        File tmp = null;
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("Cannot create directory " + dir);
+            }
+            int[] entryLaneIds = matrix.getEntryLaneIds();
+            int[] exitLaneIds = matrix.getExitLaneIds();
+            long[] bits = matrix.getBits();
+            ByteBuffer buf = ByteBuffer.allocate(4 * (5 + entryLaneIds.length + exitLaneIds.length) + 8 * bits.length);
+            buf.putInt(MAGIC).putInt(VERSION);
+            buf.putInt(entryLaneIds.length).putInt(exitLaneIds.length).putInt(bits.length);
+            buf.asIntBuffer().put(entryLaneIds).put(exitLaneIds);
+            buf.position(buf.position() + 4 * (entryLaneIds.length + exitLaneIds.length));
+            buf.asLongBuffer().put(bits);
+            buf.rewind();
+
+            tmp = File.createTempFile("conflicts", ".tmp", dir);
+            RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+            try {
+                FileChannel channel = out.getChannel();
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(tmp.toPath(), new File(dir, key.fileName()).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException e) {
+            System.err.println("Could not cache conflict matrix in " + dir + ": " + e.getMessage());
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Read a conflict matrix file.
+     *
+     * @param buf the content of the file
+     * @return the matrix, or null if the file is not a valid conflict matrix
+     * file of this version
+     */
+    private static ConflictMatrix read(ByteBuffer buf) {
+        if (buf.remaining() < 20 || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            return null;
+        }
+        int entries = buf.getInt();
+        int exits = buf.getInt();
+        int words = buf.getInt();
+        if (entries < 0 || exits < 0 || words < 0
+                || buf.remaining() != 4L * (entries + exits) + 8L * words) {
+            return null;
+        }
+        int[] entryLaneIds = new int[entries];
+        int[] exitLaneIds = new int[exits];
+        long[] bits = new long[words];
+        buf.asIntBuffer().get(entryLaneIds).get(exitLaneIds);
+        buf.position(buf.position() + 4 * (entries + exits));
+        buf.asLongBuffer().get(bits);
+        return new ConflictMatrix(entryLaneIds, exitLaneIds, bits);
+    }
+}
@@ -6,15 +6,9 @@ import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class DifferingLanesPerRoadBoard extends IntersectionBoard {
 
-    /**
-     * map from laneId to its corresponding point on board
-     */
-    private Map<Integer, Point2D> laneInSet, laneOutSet;
-
     /**
      * Constructor.
      * @param inter Intersection for which the intersection of lanes needs to be checked
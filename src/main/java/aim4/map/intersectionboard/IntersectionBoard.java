@@ -1,6 +1,9 @@
 package aim4.map.intersectionboard;
 
 import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -19,6 +22,11 @@ public abstract class IntersectionBoard {
      */
     protected Map<Integer, Point2D> laneInSet, laneOutSet;
 
+    /**
+     * the precomputed conflicts between the lane paths of the board
+     */
+    private volatile ConflictMatrix conflictMatrix;
+
     /**
      * whether two lanes intersect
      *
@@ -29,4 +37,76 @@ public abstract class IntersectionBoard {
      * @return
      */
     public abstract boolean intersects(int firstLaneIn, int firstLaneOut, int secondLaneIn, int secondlaneOut);
+
+    /**
+     * get the conflict matrix of the board, computing it the first time it is
+     * needed
+     *
+     * @return the conflicts between every pair of lane paths of the board
+     */
+    public ConflictMatrix getConflictMatrix() {
+        ConflictMatrix matrix = conflictMatrix;
+        if (matrix == null) {
+            synchronized (this) {
+                // intersection managers may act concurrently
+                matrix = conflictMatrix;
+                if (matrix == null) {
+                    ConflictMatrixCache.Key key = (ConflictMatrixCache.isEnabled() ? cacheKey() : null);
+                    matrix = ConflictMatrixCache.load(key);
+                    if (matrix == null) {
+                        matrix = ConflictMatrix.fromBoard(this, laneInSet.keySet(), laneOutSet.keySet());
+                        ConflictMatrixCache.store(key, matrix);
+                    }
+                    conflictMatrix = matrix;
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * the key of the conflict matrix of the board in the cache, hashing the
+     * class of the board and its points
+     *
+     * @return the key
+     */
+    private ConflictMatrixCache.Key cacheKey() {
+        ConflictMatrixCache.Key key = new ConflictMatrixCache.Key("board");
+        for (char c : getClass().getName().toCharArray()) {
+            key.add(c);
+        }
+        addPoints(key, laneInSet);
+        addPoints(key, laneOutSet);
+        return key;
+    }
+
+    private static void addPoints(ConflictMatrixCache.Key key, Map<Integer, Point2D> points) {
+        List<Integer> laneIds = new ArrayList<Integer>(points.keySet());
+        Collections.sort(laneIds);
+        key.add(laneIds.size());
+        for (Integer laneId : laneIds) {
+            key.add(laneId.intValue()).add(points.get(laneId));
+        }
+    }
+
+    /**
+     * whether two lanes intersect, looked up in the conflict matrix of the
+     * board
+     *
+     * @param firstLaneIn
+     * @param firstLaneOut
+     * @param secondLaneIn
+     * @param secondLaneOut
+     * @return
+     */
+    public boolean conflicts(int firstLaneIn, int firstLaneOut, int secondLaneIn, int secondLaneOut) {
+        ConflictMatrix matrix = getConflictMatrix();
+        int first = matrix.getMovementId(firstLaneIn, firstLaneOut);
+        int second = matrix.getMovementId(secondLaneIn, secondLaneOut);
+        if (first < 0 || second < 0) {
+            // not a lane path of the board
+            return intersects(firstLaneIn, firstLaneOut, secondLaneIn, secondLaneOut);
+        }
+        return matrix.conflicts(first, second);
+    }
 }
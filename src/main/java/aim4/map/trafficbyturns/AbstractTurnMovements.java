@@ -0,0 +1,199 @@
+package aim4.map.trafficbyturns;
+
+import aim4.config.Constants;
+import java.util.Set;
+
+/**
+ * The turn counts of the roads of an intersection over consecutive time
+ * slots, and the totals of turns expected up to each slot. Subclasses decide
+ * how the turn counts of a time slot are kept: {@link TurnMovements} holds
+ * all of them in memory, and StreamingTurnMovements reads them from a file
+ * as the simulation reaches them.
+ */
+public abstract class AbstractTurnMovements {
+
+    /**
+     * The roads with turn counts
+     */
+    private final Set<Constants.Direction> directions;
+    /**
+     * The number of time slots
+     */
+    private final int listSize;
+    /**
+     * total of turns across all the time slots
+     */
+    private final int total;
+    /**
+     * start time of each time slot
+     */
+    private final double[] slotStarts;
+    /**
+     * end time of each time slot
+     */
+    private final double[] slotEnds;
+    /**
+     * total number of turns expected up to a given time slot
+     */
+    private final int[] beforeSlotTotals;
+    /**
+     * total number of turns expected up to and including a given time slot
+     */
+    private final int[] includingSlotTotals;
+    /**
+     * The last time slot found by a lookup. Lookups mostly move forward with
+     * the simulation clock, so the next lookup usually ends in the same or
+     * the following slot.
+     */
+    private int lastSlot = 0;
+
+    /**
+     * Create turn movements.
+     *
+     * @param directions the roads with turn counts
+     * @param slotStarts the start time of each time slot
+     * @param slotEnds the end time of each time slot
+     * @param slotTotals the number of turns in each time slot, across all
+     * roads
+     * @param total the total of turns across all the time slots
+     */
+    protected AbstractTurnMovements(Set<Constants.Direction> directions, double[] slotStarts, double[] slotEnds, int[] slotTotals, int total) {
+        this.directions = directions;
+        this.listSize = slotStarts.length;
+        this.slotStarts = slotStarts;
+        this.slotEnds = slotEnds;
+        beforeSlotTotals = new int[listSize];
+        includingSlotTotals = new int[listSize];
+        int includingTotal = 0;
+        for (int i = 0; i < listSize; i++) {
+            beforeSlotTotals[i] = includingTotal;
+            includingTotal += slotTotals[i];
+            includingSlotTotals[i] = includingTotal;
+        }
+        this.total = total;
+    }
+
+    /**
+     * @return the roads with turn counts
+     */
+    public Set<Constants.Direction> getDirections() {
+        return directions;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the number of time slots
+     */
+    public int getSlotCount() {
+        return listSize;
+    }
+
+    /**
+     * @param slot the index of the time slot
+     * @return the start time of the time slot
+     */
+    public double getSlotStart(int slot) {
+        return slotStarts[slot];
+    }
+
+    /**
+     * Get the turn counts of a road in a time slot.
+     *
+     * @param dir the road
+     * @param slot the index of the time slot
+     * @return the turn counts
+     */
+    public abstract TurnMovementCountForRoad getCount(Constants.Direction dir, int slot);
+
+    /**
+     * Signal that the turn counts of the time slots before the given one will
+     * not be asked for again, so they need not be kept.
+     *
+     * @param slot the index of the first time slot still needed
+     */
+    public void releaseSlotsBefore(int slot) {
+        //nothing to release unless a subclass drops counts
+    }
+
+    /**
+     * Find the time slot containing a time.
+     *
+     * @param time the time
+     * @param fromSlot the first time slot to consider
+     * @return the index of the time slot, or -1 if no time slot from fromSlot
+     * on contains the time
+     */
+    public int getSlotIndexAt(double time, int fromSlot) {
+        //invalid parameter check
+        if (fromSlot < 0 || fromSlot >= listSize) {
+            return -1;
+        }
+        int slot = Math.max(lastSlot, fromSlot);
+        if (slot < listSize && time >= slotStarts[slot] && time < slotEnds[slot]) {
+            return slot;
+        }
+        if (slot + 1 < listSize && time >= slotStarts[slot + 1] && time < slotEnds[slot + 1]) {
+            lastSlot = slot + 1;
+            return slot + 1;
+        }
+        slot = binarySearchTime(fromSlot, listSize - 1, time);
+        if (slot != -1) {
+            lastSlot = slot;
+        }
+        return slot;
+    }
+
+    public int getExpectedSpawnsUpToEndOfTimeSlot(double time) {
+        //doesn't support a negative simulation time
+        if (directions.size() > 0 && time >= 0) {
+            if (listSize > 0 && time > slotEnds[listSize - 1]) {
+                return includingSlotTotals[includingSlotTotals.length - 1];
+            }
+            int index = getSlotIndexAt(time, 0);
+            if (index != -1) {
+                return includingSlotTotals[index];
+            }
+        }
+        return 0;
+    }
+
+    public int getExpectedSpawnsUpToBeginningOfTimeSlot(double time) {
+        //doesn't support a negative simulation time
+        if (directions.size() > 0 && time >= 0) {
+            if (listSize > 0 && time > slotEnds[listSize - 1]) {
+                return beforeSlotTotals[beforeSlotTotals.length - 1];
+            }
+            int index = getSlotIndexAt(time, 0);
+            if (index != -1) {
+                return beforeSlotTotals[index];
+            }
+        }
+        return 0;
+    }
+
+    private int binarySearchTime(int lef, int righ, double time) {
+        int left = lef;
+        int right = righ;
+
+        int mid;
+        double midval;
+        while (left <= right) {
+            mid = (left + right) / 2;
+            midval = slotStarts[mid];
+            if (time >= midval) {
+                //check if time falls in interval, if not, move the mark.
+                if (time < slotEnds[mid]) {
+                    return mid;
+                }
+
+                left = mid + 1;
+            } else {
+                right = mid - 1;
+            }
+        }
+        return -1;
+    }
+}
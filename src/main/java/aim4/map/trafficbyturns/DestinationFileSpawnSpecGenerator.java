@@ -30,9 +30,9 @@ public class DestinationFileSpawnSpecGenerator extends FileSpawnSpecGenerator {
      */
     private double start;
     /**
-     * Map of road to list of turn counts for each time segment
+     * Turn counts of each road for each time segment
      */
-    private final Map<Constants.Direction, ArrayList<TurnMovementCountForRoad>> turncounts;
+    private final AbstractTurnMovements turnMovements;
     /**
      * Total number of vehicles scheduled per road up to this point.
      */
@@ -62,7 +62,11 @@ public class DestinationFileSpawnSpecGenerator extends FileSpawnSpecGenerator {
 
     //FileDestination selector chosen rather than generic to enforce the ability to call act(lane, action).
     public DestinationFileSpawnSpecGenerator(Map<Constants.Direction, ArrayList<TurnMovementCountForRoad>> turncounts, FileBasedDestinationSelector fbds) {
-        this.turncounts = turncounts;
+        this(new TurnMovements(new HashMap<Constants.Direction, ArrayList<TurnMovementCountForRoad>>(turncounts)), fbds);
+    }
+
+    public DestinationFileSpawnSpecGenerator(AbstractTurnMovements turnMovements, FileBasedDestinationSelector fbds) {
+        this.turnMovements = turnMovements;
         destselect = fbds;
 
         //initialize turns at present, totals, and next spawns for every road
@@ -70,7 +74,7 @@ public class DestinationFileSpawnSpecGenerator extends FileSpawnSpecGenerator {
         totalSpawned = new HashMap<Constants.Direction, Integer>();
         spawnQueues = new HashMap<Constants.Direction, LinkedList<SpawnScheduleInformation>>();
         start = 0;
-        for (Constants.Direction key : turncounts.keySet()) {
+        for (Constants.Direction key : turnMovements.getDirections()) {
             totalScheduled.put(key, 0);
             totalSpawned.put(key, 0);
             spawnQueues.put(key, new LinkedList<SpawnScheduleInformation>());
@@ -95,9 +99,7 @@ public class DestinationFileSpawnSpecGenerator extends FileSpawnSpecGenerator {
         updateTimeTracking(spawnPoint, timeStep);
         ArrayList<SpawnPoint.SpawnSpec> specs = new ArrayList<SpawnPoint.SpawnSpec>();
         Road spawnroad = spawnPoint.getLane().getContainingRoad();
-        //** THIS ONLY FUNCTIONS WITH 1 INTERSECTION
-        Lane spawnLane = spawnPoint.getLane();
-        Constants.Direction roadDir = Util.getDirectionFromHeadingCardinalOrIntercardinal(spawnLane.getLaneIM().firstIntersectionManager().getIntersection().getEntryHeading(spawnLane));
+        Constants.Direction roadDir = getRoadDirection(spawnPoint);
         SpawnScheduleInformation ssi = shouldSpawnVehicle(roadDir, trtime);
         if (ssi != null) {
             updateAppropriateSpawnQueue(roadDir, ssi);
@@ -115,6 +117,53 @@ public class DestinationFileSpawnSpecGenerator extends FileSpawnSpecGenerator {
         return specs;
     }
 
+    @Override
+    public void startStep(double time, double timeStep) {
+        spawnsCheckedThisStep = new HashSet<SpawnPoint>();
+        laststepsize = timeStep;
+        trtime = time;
+        int indx = getIndexWithTime(trtime);
+        if (indx > lastindex) {
+            updateToPresent(indx);
+        }
+    }
+
+    @Override
+    public double getNextSpawnTime(SpawnPoint spawnPoint) {
+        LinkedList<SpawnScheduleInformation> queue = spawnQueues.get(getRoadDirection(spawnPoint));
+        if (queue == null) {
+            //road isn't in the turn movements file
+            return Double.POSITIVE_INFINITY;
+        }
+        if (!queue.isEmpty()) {
+            //any action is permitted from anywhere, so the first element is the next one spawned
+            return queue.getFirst().getSpawnTime();
+        }
+        return getNextSlotStart();
+    }
+
+    /**
+     * @return the start time of the time slot after the last one scheduled,
+     * or {@link Double#POSITIVE_INFINITY} if every time slot is scheduled
+     */
+    protected double getNextSlotStart() {
+        int next = lastindex + 1;
+        return (next < turnMovements.getSlotCount() ? turnMovements.getSlotStart(next) : Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Get the direction of the road of a spawn point, as used in the turn
+     * movements file.
+     *
+     * @param spawnPoint the spawn point
+     * @return the direction the road enters the intersection from
+     */
+    protected Constants.Direction getRoadDirection(SpawnPoint spawnPoint) {
+        //** THIS ONLY FUNCTIONS WITH 1 INTERSECTION
+        Lane spawnLane = spawnPoint.getLane();
+        return Util.getDirectionFromHeadingCardinalOrIntercardinal(spawnLane.getLaneIM().firstIntersectionManager().getIntersection().getEntryHeading(spawnLane));
+    }
+
     //does not alow you to go backwards. Assumes once you've progressed to an index, you won't go to an earlier time.
     protected SpawnScheduleInformation shouldSpawnVehicle(Constants.Direction roadDir, double time) {
         int indx = getIndexWithTime(time);
@@ -147,18 +196,17 @@ public class DestinationFileSpawnSpecGenerator extends FileSpawnSpecGenerator {
     void updateToPresent(int indx) {
         if (indx > lastindex) {
             //assumes all roads have the same number of time entries with same times
-            //todo, should just keep the length value as a member rather that grabbing it from a list
-            ArrayList<TurnMovementCountForRoad> tempal = turncounts.get((Constants.Direction) turncounts.keySet().toArray()[0]);
+            int slotCount = turnMovements.getSlotCount();
             //ensures we don't step over the end of the list....todo, causes problems if given negative numbers, should throw exception
-            int tempindx = Math.min(indx, tempal.size() - 1);
+            int tempindx = Math.min(indx, slotCount - 1);
 
             //update for every time index from last known/requested to now
             boolean timeset = false;
-            for (int i = lastindex + 1; i < tempal.size() && i <= indx; i++) {
-                for (Constants.Direction roadidentifier : turncounts.keySet()) {
+            for (int i = lastindex + 1; i < slotCount && i <= indx; i++) {
+                for (Constants.Direction roadidentifier : turnMovements.getDirections()) {
                     //todo!! AP this isn't thread safe
                     LinkedList<SpawnScheduleInformation> queueForRoad = spawnQueues.get(roadidentifier);
-                    TurnMovementCountForRoad turns = turncounts.get(roadidentifier).get(i);
+                    TurnMovementCountForRoad turns = turnMovements.getCount(roadidentifier, i);
                     if (!timeset) {
                         start = turns.getTimeOffset();
                         timeset = true;
@@ -228,6 +276,8 @@ public class DestinationFileSpawnSpecGenerator extends FileSpawnSpecGenerator {
                 }
             }
             lastindex = tempindx;
+            //time only moves forward, so the counts up to the current slot are done with
+            turnMovements.releaseSlotsBefore(lastindex + 1);
 
             //error checking
             if (getTotalVehiclesScheduled() - getTotalVehiclesSpawned() != getVehiclesLeftInCurrentTimeSlot()) {
@@ -238,41 +288,12 @@ public class DestinationFileSpawnSpecGenerator extends FileSpawnSpecGenerator {
 
     protected int getIndexWithTime(double time) {
         //assumes all lists are same size and have same steps
-        if (turncounts.keySet().size() > 0) {
-            ArrayList<TurnMovementCountForRoad> al = turncounts.get((Constants.Direction) turncounts.keySet().toArray()[0]);
-            return binarySearchTime(Math.max(0, lastindex), al.size() - 1, time, al);
+        if (turnMovements.getDirections().size() > 0) {
+            return turnMovements.getSlotIndexAt(time, Math.max(0, lastindex));
         }
         return -2;
     }
 
-    private int binarySearchTime(int lef, int righ, double time, ArrayList<TurnMovementCountForRoad> lis) {
-        int left = lef;
-        int right = righ;
-
-        //invalid parameter check
-        if (left < 0 || left >= lis.size() || right < 0 || right >= lis.size()) {
-            return -1;
-        }
-
-        int mid;
-        double midval;
-        while (left <= right) {
-            mid = (left + right) / 2;
-            midval = lis.get(mid).getTimeOffset();
-            if (time >= midval) {
-                //check if time falls in interval, if not, move the mark.
-                if (time < lis.get(mid).getEndTime()) {
-                    return mid;
-                }
-
-                left = mid + 1;
-            } else {
-                right = mid - 1;
-            }
-        }
-        return -1;
-    }
-
     /**
      * Check if spawn point has been checked for spawns. If it has since the
      * last update, we must be in the next time step.
@@ -37,6 +37,30 @@ public abstract class FileSpawnSpecGenerator implements SpawnSpecGenerator {
      */
     public abstract int getVehiclesLeftInCurrentTimeSlot();
 
+    /**
+     * Move the tracked time to the end of a time step and catch up with the
+     * time slots it reaches. Used when only the spawn points with a spawn due
+     * are acted upon, rather than every spawn point in every time step, as
+     * the tracked time otherwise only moves when a spawn point is acted upon
+     * a second time.
+     *
+     * @param time the time at the end of the time step
+     * @param timeStep the time step
+     */
+    public abstract void startStep(double time, double timeStep);
+
+    /**
+     * Gets the earliest time a vehicle may be spawned at a spawn point, given
+     * the vehicles scheduled so far. Spawn points are not guaranteed to spawn
+     * at that time, but will not spawn before it.
+     *
+     * @param spawnPoint the spawn point
+     * @return the earliest time a vehicle may be spawned, or
+     * {@link Double#POSITIVE_INFINITY} if the spawn point will not spawn any
+     * more vehicles
+     */
+    public abstract double getNextSpawnTime(SpawnPoint spawnPoint);
+
     @Override
     public SpawnPoint.SpawnSpec act(SpawnPoint spawnPoint, double timeStep, SimConfig.VEHICLE_TYPE vehicleType, Road destinationRoad) {
         throw new UnsupportedOperationException("Specifying a destination road outside of turn movements file is not permitted with a FileSpawnSpecGenerator.");
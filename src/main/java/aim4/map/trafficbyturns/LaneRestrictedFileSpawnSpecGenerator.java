@@ -20,6 +20,7 @@ import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -34,7 +35,11 @@ public class LaneRestrictedFileSpawnSpecGenerator extends DestinationFileSpawnSp
     protected HashMap<IntersectionManager, HashMap<Road, EnumMap<SimConfig.VEHICLE_TYPE, EnumMap<Constants.TurnDirection, HashSet<Lane>>>>> potentiallyUsableLanesForTurningActionAndType;
 
     public LaneRestrictedFileSpawnSpecGenerator(Map<Constants.Direction, ArrayList<TurnMovementCountForRoad>> turncounts, FileBasedDestinationSelector fbds) {
-        super(turncounts, fbds);
+        this(new TurnMovements(new HashMap<Constants.Direction, ArrayList<TurnMovementCountForRoad>>(turncounts)), fbds);
+    }
+
+    public LaneRestrictedFileSpawnSpecGenerator(AbstractTurnMovements turnMovements, FileBasedDestinationSelector fbds) {
+        super(turnMovements, fbds);
         if (Debug.CAN_CHANGE_LANE) {
             throw new RuntimeException("Error: LaneRestrictedFileSpawnSpecGenerator cannot be used while lane changes are allowed.");
         }
@@ -58,7 +63,7 @@ public class LaneRestrictedFileSpawnSpecGenerator extends DestinationFileSpawnSp
         //** THIS ONLY FUNCTIONS WITH 1 INTERSECTION
         Lane spawnLane = spawnPoint.getLane();
         Road spawnroad = spawnLane.getContainingRoad();
-        Constants.Direction roadDir = Util.getDirectionFromHeadingCardinalOrIntercardinal(spawnLane.getLaneIM().firstIntersectionManager().getIntersection().getEntryHeading(spawnLane));
+        Constants.Direction roadDir = getRoadDirection(spawnPoint);
         //since time tracking appears below to accomodate tracking of which spawn points have been selected to spawn so far, we need to use trtime+timeStep here
         SpawnScheduleInformation ssi = shouldSpawnVehicle(spawnPoint, roadDir, trtime, timeStep, vehicleType);
 
@@ -78,6 +83,35 @@ public class LaneRestrictedFileSpawnSpecGenerator extends DestinationFileSpawnSp
         return specs;
     }
 
+    @Override
+    public void startStep(double time, double timeStep) {
+        spawnedThisStep = new HashSet<SpawnPoint>();
+        super.startStep(time, timeStep);
+    }
+
+    /**
+     * {@inheritDoc} Only the vehicles with a turning action allowed from the
+     * lane of the spawn point, for any vehicle type, are considered.
+     */
+    @Override
+    public double getNextSpawnTime(SpawnPoint spawnPoint) {
+        LinkedList<SpawnScheduleInformation> queue = spawnQueues.get(getRoadDirection(spawnPoint));
+        if (queue == null) {
+            //road isn't in the turn movements file
+            return Double.POSITIVE_INFINITY;
+        }
+        Lane lane = spawnPoint.getLane();
+        IntersectionManager firstIM = lane.getLaneIM().firstIntersectionManager();
+        for (SpawnScheduleInformation candidateSpawnAppointment : queue) {
+            for (SimConfig.VEHICLE_TYPE vType : SimConfig.VEHICLE_TYPE.values()) {
+                if (getAllowedLanesToSpawnOn(firstIM, candidateSpawnAppointment.getTD(), lane.getContainingRoad(), vType).contains(lane)) {
+                    return candidateSpawnAppointment.getSpawnTime();
+                }
+            }
+        }
+        return getNextSlotStart();
+    }
+
     //does not alow you to go backwards. Assumes once you've progressed to an index, you won't go to an earlier time.
     protected SpawnScheduleInformation shouldSpawnVehicle(SpawnPoint spawnPoint, Constants.Direction roadDir, double time, double timeStep, SimConfig.VEHICLE_TYPE vType) {
         int indx = getIndexWithTime(time);
@@ -0,0 +1,140 @@
+package aim4.map.trafficbyturns;
+
+import aim4.config.Constants;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turn movements read from a file while the simulation reaches them. The
+ * file is scanned once up front for the times and totals of the time slots,
+ * which keeps the expected spawn totals exact, but the turn counts of a time
+ * slot are only parsed when they are first asked for, and dropped once the
+ * spawn generator has moved past the slot. This keeps count files spanning
+ * many days from being held in memory all at once.
+ */
+class StreamingTurnMovements extends AbstractTurnMovements {
+
+    /**
+     * The times and totals of the time slots of a file.
+     */
+    private static class Scan {
+
+        /**
+         * The column of each road in a row of the file.
+         */
+        private final HashMap<Constants.Direction, Integer> columns = new HashMap<Constants.Direction, Integer>();
+        private double[] slotStarts = new double[64];
+        private double[] slotEnds = new double[64];
+        private int[] slotTotals = new int[64];
+        private int slotCount = 0;
+        private int total = 0;
+
+        private void add(TurnMovementCountForRoad[] row) {
+            if (row.length == 0) {
+                //a file without roads has no time slots
+                return;
+            }
+            if (slotCount == slotStarts.length) {
+                slotStarts = Arrays.copyOf(slotStarts, slotCount * 2);
+                slotEnds = Arrays.copyOf(slotEnds, slotCount * 2);
+                slotTotals = Arrays.copyOf(slotTotals, slotCount * 2);
+            }
+            int total = 0;
+            for (int i = 0; i < row.length; i++) {
+                total += row[i].getTotal();
+            }
+            slotStarts[slotCount] = row[0].getTimeOffset();
+            slotEnds[slotCount] = row[0].getEndTime();
+            slotTotals[slotCount] = total;
+            slotCount++;
+            this.total += total;
+        }
+    }
+
+    /**
+     * The turn movements file.
+     */
+    private final File file;
+    /**
+     * The mapping of the column labels of the file to turn directions.
+     */
+    private final Map<String, Constants.TurnDirection> labeltoaction;
+    /**
+     * The column of each road in a row of the file.
+     */
+    private final HashMap<Constants.Direction, Integer> columns;
+    /**
+     * The reader of the file, opened when the first time slot is asked for.
+     */
+    private TurnMovementFileReader reader;
+    /**
+     * The rows of the time slots read and not released yet.
+     */
+    private final ArrayList<TurnMovementCountForRoad[]> window = new ArrayList<TurnMovementCountForRoad[]>();
+    /**
+     * The index of the time slot of the first row in the window.
+     */
+    private int firstSlot = 0;
+
+    StreamingTurnMovements(File fi, Map<String, Constants.TurnDirection> labeltoaction) {
+        this(fi, labeltoaction, scan(fi, labeltoaction));
+    }
+
+    private StreamingTurnMovements(File fi, Map<String, Constants.TurnDirection> labeltoaction, Scan scan) {
+        super(scan.columns.keySet(),
+                Arrays.copyOf(scan.slotStarts, scan.slotCount),
+                Arrays.copyOf(scan.slotEnds, scan.slotCount),
+                Arrays.copyOf(scan.slotTotals, scan.slotCount),
+                scan.total);
+        this.file = fi;
+        this.labeltoaction = labeltoaction;
+        this.columns = scan.columns;
+    }
+
+    @Override
+    public TurnMovementCountForRoad getCount(Constants.Direction dir, int slot) {
+        if (slot < firstSlot) {
+            throw new RuntimeException("Turn counts of time slot " + slot + " were already released.");
+        }
+        if (slot >= getSlotCount()) {
+            throw new IndexOutOfBoundsException("Time slot: " + slot + ", number of time slots: " + getSlotCount());
+        }
+        if (reader == null) {
+            reader = new TurnMovementFileReader(file, labeltoaction);
+        }
+        while (firstSlot + window.size() <= slot) {
+            TurnMovementCountForRoad[] row = reader.nextRow();
+            if (row == null) {
+                throw new RuntimeException("Turn movements file changed while it was read: " + file);
+            }
+            window.add(row);
+        }
+        return window.get(slot - firstSlot)[columns.get(dir)];
+    }
+
+    @Override
+    public void releaseSlotsBefore(int slot) {
+        int released = Math.min(slot - firstSlot, window.size());
+        if (released > 0) {
+            window.subList(0, released).clear();
+            firstSlot += released;
+        }
+    }
+
+    private static Scan scan(File fi, Map<String, Constants.TurnDirection> labeltoaction) {
+        TurnMovementFileReader scanner = new TurnMovementFileReader(fi, labeltoaction);
+        Scan scan = new Scan();
+        //filled in before any row is read, as the count lists of TrafficFlowReaderFactory are, so roads are visited in the same order
+        Constants.Direction[] roads = scanner.getRoads();
+        for (int i = 0; i < roads.length; i++) {
+            scan.columns.put(roads[i], i);
+        }
+        for (TurnMovementCountForRoad[] row = scanner.nextRow(); row != null; row = scanner.nextRow()) {
+            scan.add(row);
+        }
+        return scan;
+    }
+}
@@ -0,0 +1,482 @@
+package aim4.map.trafficbyturns;
+
+import aim4.config.Constants;
+import aim4.config.SimConfig;
+import aim4.util.Util;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A synthetic source of turn movements, for pushing the simulator to volumes
+ * beyond the recorded turn movements files. The turn counts of every road are
+ * drawn for every time slot from an arrival process and split over the turn
+ * directions by the turn ratios. The spawn generators spread the vehicles of a
+ * time slot evenly at random over it, so platoons and surges only show up as
+ * bursts when the time slots are short compared to them.
+ * <p>
+ * A demand can be described by a string of semicolon separated key=value
+ * pairs, which keeps it a single value in the comma separated result files,
+ * for instance
+ * <code>synthetic:process=platooned;vph=1800;lanes=3;duration=3600;platoon=5</code>.
+ * See {@link #parse(String)} for the keys.
+ */
+public class SyntheticDemand {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * The arrival process of the vehicles of a road.
+     */
+    public enum ArrivalProcess {
+        /**
+         * Vehicles arrive independently at a constant rate.
+         */
+        POISSON,
+        /**
+         * Platoons arrive independently, each with a number of vehicles drawn
+         * from a geometric distribution with the mean platoon size. The rate
+         * of vehicles stays the same.
+         */
+        PLATOONED,
+        /**
+         * Vehicles arrive independently, at a rate multiplied by the surge
+         * factor during the surge.
+         */
+        SURGE
+    }
+
+    /////////////////////////////////
+    // PUBLIC FIELDS
+    /////////////////////////////////
+    /**
+     * The prefix of the string description of a demand.
+     */
+    public static final String PREFIX = "synthetic:";
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The largest mean of a Poisson draw done in a single step. Larger means
+     * are split up, as the product of the uniform draws underflows for them.
+     */
+    private static final double MAX_POISSON_STEP = 30;
+
+    /**
+     * The arrival process.
+     */
+    private final ArrivalProcess process;
+    /**
+     * The mean number of vehicles arriving per hour at each lane.
+     */
+    private final double vehiclesPerHourPerLane;
+    /**
+     * The number of lanes of each road.
+     */
+    private final int lanesPerRoad;
+    /**
+     * The time covered by the turn movements, in seconds.
+     */
+    private final double duration;
+    /**
+     * The length of a time slot, in seconds.
+     */
+    private double slotLength = 60;
+    /**
+     * The roads vehicles arrive on.
+     */
+    private EnumSet<Constants.Direction> roads = EnumSet.of(Constants.Direction.NORTH,
+            Constants.Direction.EAST, Constants.Direction.SOUTH, Constants.Direction.WEST);
+    /**
+     * The share of the vehicles taking each turn direction.
+     */
+    private final EnumMap<Constants.TurnDirection, Double> turnRatios = new EnumMap<Constants.TurnDirection, Double>(Constants.TurnDirection.class);
+    /**
+     * The share of the vehicles of each type, or null to keep the mix of the
+     * experiment.
+     */
+    private EnumMap<SimConfig.VEHICLE_TYPE, Double> vehicleTypeMix = null;
+    /**
+     * The mean number of vehicles in a platoon.
+     */
+    private double meanPlatoonSize = 4;
+    /**
+     * The start of the surge, in seconds.
+     */
+    private double surgeStart;
+    /**
+     * The length of the surge, in seconds.
+     */
+    private double surgeLength;
+    /**
+     * The factor the arrival rate is multiplied by during the surge.
+     */
+    private double surgeFactor = 3;
+    /**
+     * The seed of the draws of the turn counts. The draws do not use the
+     * random number generator of the simulation.
+     */
+    private long seed = 0;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a synthetic demand. Vehicles turn left, go straight and turn
+     * right with a ratio of 0.2, 0.6 and 0.2, on four roads, in time slots of
+     * a minute. A surge covers the middle third of the duration.
+     *
+     * @param process the arrival process
+     * @param vehiclesPerHourPerLane the mean number of vehicles arriving per
+     * hour at each lane
+     * @param lanesPerRoad the number of lanes of each road
+     * @param duration the time covered by the turn movements, in seconds
+     */
+    public SyntheticDemand(ArrivalProcess process, double vehiclesPerHourPerLane, int lanesPerRoad, double duration) {
+        if (vehiclesPerHourPerLane < 0 || lanesPerRoad < 1 || duration <= 0) {
+            throw new IllegalArgumentException("Invalid synthetic demand: " + vehiclesPerHourPerLane + " vehicles per hour per lane, " + lanesPerRoad + " lanes per road, duration " + duration);
+        }
+        this.process = process;
+        this.vehiclesPerHourPerLane = vehiclesPerHourPerLane;
+        this.lanesPerRoad = lanesPerRoad;
+        this.duration = duration;
+        turnRatios.put(Constants.TurnDirection.LEFT, 0.2);
+        turnRatios.put(Constants.TurnDirection.STRAIGHT, 0.6);
+        turnRatios.put(Constants.TurnDirection.RIGHT, 0.2);
+        surgeStart = duration / 3;
+        surgeLength = duration / 3;
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * Whether a string describes a synthetic demand rather than naming a turn
+     * movements file.
+     *
+     * @param spec the string
+     * @return whether the string starts with {@link #PREFIX}
+     */
+    public static boolean isSpec(String spec) {
+        return spec.startsWith(PREFIX);
+    }
+
+    /**
+     * Parse the string description of a demand. After {@link #PREFIX} come
+     * semicolon separated key=value pairs. The keys are
+     * <ul>
+     * <li>process: poisson, platooned or surge (default poisson)</li>
+     * <li>vph: vehicles per hour per lane (required)</li>
+     * <li>lanes: lanes per road (default 1)</li>
+     * <li>duration: seconds covered (default 3600)</li>
+     * <li>slot: length of a time slot in seconds</li>
+     * <li>left, straight, right: turn ratios</li>
+     * <li>platoon: mean platoon size</li>
+     * <li>surgestart, surgelength, surgefactor: the surge</li>
+     * <li>av, human, cc, acc: vehicle type mix</li>
+     * <li>seed: seed of the draws</li>
+     * </ul>
+     *
+     * @param spec the description
+     * @return the demand
+     */
+    public static SyntheticDemand parse(String spec) {
+        if (!isSpec(spec)) {
+            throw new IllegalArgumentException("Synthetic demand must start with \"" + PREFIX + "\": " + spec);
+        }
+        HashMap<String, String> values = new HashMap<String, String>();
+        for (String pair : spec.substring(PREFIX.length()).split(";")) {
+            if (pair.trim().isEmpty()) {
+                continue;
+            }
+            String[] kv = pair.split("=", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Invalid key=value pair in synthetic demand: " + pair);
+            }
+            values.put(kv[0].trim().toLowerCase(), kv[1].trim());
+        }
+        if (!values.containsKey("vph")) {
+            throw new IllegalArgumentException("Synthetic demand is missing vph: " + spec);
+        }
+        ArrivalProcess process = (values.containsKey("process")
+                ? Util.getParseEnumFromStringCaseInsen(values.remove("process"), ArrivalProcess.class)
+                : ArrivalProcess.POISSON);
+        SyntheticDemand demand = new SyntheticDemand(process,
+                Double.parseDouble(values.remove("vph")),
+                (values.containsKey("lanes") ? Integer.parseInt(values.remove("lanes")) : 1),
+                (values.containsKey("duration") ? Double.parseDouble(values.remove("duration")) : 3600));
+
+        if (values.containsKey("slot")) {
+            demand.setSlotLength(Double.parseDouble(values.remove("slot")));
+        }
+        if (values.containsKey("left") || values.containsKey("straight") || values.containsKey("right")) {
+            demand.setTurnRatios(parseRatio(values.remove("left")), parseRatio(values.remove("straight")), parseRatio(values.remove("right")));
+        }
+        if (values.containsKey("platoon")) {
+            demand.setMeanPlatoonSize(Double.parseDouble(values.remove("platoon")));
+        }
+        if (values.containsKey("surgestart") || values.containsKey("surgelength") || values.containsKey("surgefactor")) {
+            demand.setSurge(
+                    (values.containsKey("surgestart") ? Double.parseDouble(values.remove("surgestart")) : demand.surgeStart),
+                    (values.containsKey("surgelength") ? Double.parseDouble(values.remove("surgelength")) : demand.surgeLength),
+                    (values.containsKey("surgefactor") ? Double.parseDouble(values.remove("surgefactor")) : demand.surgeFactor));
+        }
+        if (values.containsKey("av") || values.containsKey("human") || values.containsKey("cc") || values.containsKey("acc")) {
+            EnumMap<SimConfig.VEHICLE_TYPE, Double> mix = new EnumMap<SimConfig.VEHICLE_TYPE, Double>(SimConfig.VEHICLE_TYPE.class);
+            mix.put(SimConfig.VEHICLE_TYPE.AUTO, parseRatio(values.remove("av")));
+            mix.put(SimConfig.VEHICLE_TYPE.HUMAN, parseRatio(values.remove("human")));
+            mix.put(SimConfig.VEHICLE_TYPE.CRUISE, parseRatio(values.remove("cc")));
+            mix.put(SimConfig.VEHICLE_TYPE.ADAPTIVE_CRUISE, parseRatio(values.remove("acc")));
+            demand.setVehicleTypeMix(mix);
+        }
+        if (values.containsKey("seed")) {
+            demand.setSeed(Long.parseLong(values.remove("seed")));
+        }
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown keys in synthetic demand: " + values.keySet());
+        }
+        return demand;
+    }
+
+    /**
+     * Set the length of a time slot.
+     *
+     * @param slotLength the length of a time slot, in seconds
+     */
+    public void setSlotLength(double slotLength) {
+        if (slotLength <= 0) {
+            throw new IllegalArgumentException("Time slots must be longer than 0 seconds: " + slotLength);
+        }
+        this.slotLength = slotLength;
+    }
+
+    /**
+     * Set the roads vehicles arrive on.
+     *
+     * @param roads the roads
+     */
+    public void setRoads(EnumSet<Constants.Direction> roads) {
+        this.roads = EnumSet.copyOf(roads);
+    }
+
+    /**
+     * Set the turn ratios. The ratios need not add up to 1.
+     *
+     * @param left the share of the vehicles turning left
+     * @param straight the share of the vehicles going straight
+     * @param right the share of the vehicles turning right
+     */
+    public void setTurnRatios(double left, double straight, double right) {
+        if (left < 0 || straight < 0 || right < 0 || left + straight + right <= 0) {
+            throw new IllegalArgumentException("Invalid turn ratios: " + left + ", " + straight + ", " + right);
+        }
+        turnRatios.put(Constants.TurnDirection.LEFT, left);
+        turnRatios.put(Constants.TurnDirection.STRAIGHT, straight);
+        turnRatios.put(Constants.TurnDirection.RIGHT, right);
+    }
+
+    /**
+     * Set the mean number of vehicles in a platoon, used by
+     * {@link ArrivalProcess#PLATOONED}.
+     *
+     * @param meanPlatoonSize the mean platoon size, at least 1
+     */
+    public void setMeanPlatoonSize(double meanPlatoonSize) {
+        if (meanPlatoonSize < 1) {
+            throw new IllegalArgumentException("Platoons must have at least one vehicle on average: " + meanPlatoonSize);
+        }
+        this.meanPlatoonSize = meanPlatoonSize;
+    }
+
+    /**
+     * Set the surge, used by {@link ArrivalProcess#SURGE}.
+     *
+     * @param start the start of the surge, in seconds
+     * @param length the length of the surge, in seconds
+     * @param factor the factor the arrival rate is multiplied by during the
+     * surge
+     */
+    public void setSurge(double start, double length, double factor) {
+        if (length < 0 || factor < 0) {
+            throw new IllegalArgumentException("Invalid surge: length " + length + ", factor " + factor);
+        }
+        surgeStart = start;
+        surgeLength = length;
+        surgeFactor = factor;
+    }
+
+    /**
+     * Set the share of the vehicles of each type. The shares need not add up
+     * to 1.
+     *
+     * @param vehicleTypeMix the share of each vehicle type, or null to keep
+     * the mix of the experiment
+     */
+    public void setVehicleTypeMix(Map<SimConfig.VEHICLE_TYPE, Double> vehicleTypeMix) {
+        if (vehicleTypeMix == null) {
+            this.vehicleTypeMix = null;
+            return;
+        }
+        double sum = 0;
+        for (double share : vehicleTypeMix.values()) {
+            if (share < 0) {
+                throw new IllegalArgumentException("Invalid vehicle type mix: " + vehicleTypeMix);
+            }
+            sum += share;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("Invalid vehicle type mix: " + vehicleTypeMix);
+        }
+        this.vehicleTypeMix = new EnumMap<SimConfig.VEHICLE_TYPE, Double>(SimConfig.VEHICLE_TYPE.class);
+        for (SimConfig.VEHICLE_TYPE type : SimConfig.VEHICLE_TYPE.values()) {
+            Double share = vehicleTypeMix.get(type);
+            this.vehicleTypeMix.put(type, (share == null ? 0 : share / sum));
+        }
+    }
+
+    /**
+     * Get the share of the vehicles of each type.
+     *
+     * @return the share of each vehicle type, adding up to 1, or null to keep
+     * the mix of the experiment
+     */
+    public Map<SimConfig.VEHICLE_TYPE, Double> getVehicleTypeMix() {
+        return vehicleTypeMix;
+    }
+
+    /**
+     * Set the seed of the draws of the turn counts.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Draw the turn movements. The same demand and seed always give the same
+     * turn movements.
+     *
+     * @return the turn movements
+     */
+    public TurnMovements generate() {
+        Random rand = new Random(seed);
+        double vehiclesPerSecond = vehiclesPerHourPerLane * lanesPerRoad / 3600;
+        HashMap<Constants.Direction, ArrayList<TurnMovementCountForRoad>> countlists = new HashMap<Constants.Direction, ArrayList<TurnMovementCountForRoad>>();
+        for (Constants.Direction road : roads) {
+            countlists.put(road, new ArrayList<TurnMovementCountForRoad>());
+        }
+        int total = 0;
+        for (int slot = 0; slot * slotLength < duration; slot++) {
+            double start = slot * slotLength;
+            double length = Math.min(slotLength, duration - start);
+            double mean = vehiclesPerSecond * length;
+            if (process == ArrivalProcess.SURGE) {
+                mean *= 1 + (surgeFactor - 1) * overlap(start, start + length, surgeStart, surgeStart + surgeLength) / length;
+            }
+            for (Constants.Direction road : roads) {
+                int vehicles;
+                if (process == ArrivalProcess.PLATOONED) {
+                    vehicles = 0;
+                    for (int platoons = poisson(rand, mean / meanPlatoonSize); platoons > 0; platoons--) {
+                        vehicles += platoonSize(rand);
+                    }
+                } else {
+                    vehicles = poisson(rand, mean);
+                }
+                TurnMovementCountForRoad counts = new TurnMovementCountForRoad(start);
+                counts.setTimeInterval(length);
+                EnumMap<Constants.TurnDirection, Integer> turns = splitTurns(rand, vehicles);
+                for (Map.Entry<Constants.TurnDirection, Integer> turn : turns.entrySet()) {
+                    counts.putActVal(turn.getKey(), turn.getValue());
+                }
+                countlists.get(road).add(counts);
+                total += vehicles;
+            }
+        }
+        return new TurnMovements(countlists, total);
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    private static double parseRatio(String value) {
+        return (value == null ? 0 : Double.parseDouble(value));
+    }
+
+    private static double overlap(double start1, double end1, double start2, double end2) {
+        return Math.max(0, Math.min(end1, end2) - Math.max(start1, start2));
+    }
+
+    /**
+     * Draw from a Poisson distribution, splitting large means into a sum of
+     * smaller draws.
+     *
+     * @param rand the random number generator
+     * @param mean the mean
+     * @return the number drawn
+     */
+    private static int poisson(Random rand, double mean) {
+        int n = 0;
+        double left = mean;
+        while (left > 0) {
+            double step = Math.min(left, MAX_POISSON_STEP);
+            left -= step;
+            double limit = Math.exp(-step);
+            for (double product = rand.nextDouble(); product > limit; product *= rand.nextDouble()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @param rand the random number generator
+     * @return the size of a platoon, drawn from a geometric distribution
+     * starting at 1 with the mean platoon size
+     */
+    private int platoonSize(Random rand) {
+        if (meanPlatoonSize <= 1) {
+            return 1;
+        }
+        double p = 1 / meanPlatoonSize;
+        return 1 + (int) Math.floor(Math.log(1 - rand.nextDouble()) / Math.log(1 - p));
+    }
+
+    /**
+     * Split vehicles over the turn directions by the turn ratios.
+     *
+     * @param rand the random number generator
+     * @param vehicles the number of vehicles
+     * @return the number of vehicles taking each turn direction
+     */
+    private EnumMap<Constants.TurnDirection, Integer> splitTurns(Random rand, int vehicles) {
+        EnumMap<Constants.TurnDirection, Integer> turns = new EnumMap<Constants.TurnDirection, Integer>(Constants.TurnDirection.class);
+        double sum = 0;
+        for (Map.Entry<Constants.TurnDirection, Double> ratio : turnRatios.entrySet()) {
+            turns.put(ratio.getKey(), 0);
+            sum += ratio.getValue();
+        }
+        for (int i = 0; i < vehicles; i++) {
+            double r = rand.nextDouble() * sum;
+            Constants.TurnDirection picked = null;
+            for (Map.Entry<Constants.TurnDirection, Double> ratio : turnRatios.entrySet()) {
+                if (ratio.getValue() > 0) {
+                    //the last direction taken by any vehicle catches rounding errors
+                    picked = ratio.getKey();
+                }
+                r -= ratio.getValue();
+                if (r < 0 && picked != null) {
+                    break;
+                }
+            }
+            turns.put(picked, turns.get(picked) + 1);
+        }
+        return turns;
+    }
+}
@@ -0,0 +1,204 @@
+package aim4.map.trafficbyturns;
+
+import aim4.config.Constants;
+import aim4.util.Util;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Reads the rows of a turn movements file one time slot at a time. A row is
+ * handed out once the row after it has been read, as the length of a time
+ * slot is only known from the start of the next one.
+ */
+class TurnMovementFileReader {
+
+    private static final double DAY = 86400;
+    private static final String DELIM = ",";
+
+    private final Scanner in;
+    /**
+     * The roads of the file, in column order.
+     */
+    private final Constants.Direction[] roads;
+    /**
+     * The turn directions of the columns of each road.
+     */
+    private final ArrayList<ArrayList<Constants.TurnDirection>> elemsperroad;
+    /**
+     * The format of the times of the rows.
+     */
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("h:mm a");
+
+    //state of the row parsing
+    private int row = 0;
+    private boolean inittime = false;
+    private long starttime = 0;
+    private double offsettime = Double.NaN;
+    private double initialdiff = Double.POSITIVE_INFINITY;
+    //used to confirm inference that the last time step should be of the same size as all the previous ones by checking to see that all of them were the same
+    private boolean lastsame = true;
+    private int daymult = 0;
+    private boolean wrap = false;
+    /**
+     * The last row read, whose time interval is not known yet.
+     */
+    private TurnMovementCountForRoad[] pending;
+
+    TurnMovementFileReader(File fi, Map<String, Constants.TurnDirection> labeltoaction) {
+        try {
+            in = new Scanner(fi);
+        } catch (FileNotFoundException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        //get road names
+        String[] roadStrings = in.nextLine().trim().split(DELIM);
+        roads = new Constants.Direction[roadStrings.length];
+        for (int i = 0; i < roads.length; i++) {
+            roads[i] = Util.getParseEnumFromStringCaseInsen(roadStrings[i], Constants.Direction.class);
+        }
+
+        //handle header row for columns
+        //todo, no way to map total keyword, need to fix that
+        elemsperroad = new ArrayList<ArrayList<Constants.TurnDirection>>();
+        String[] templine = in.nextLine().trim().split(DELIM);
+        //read and track the directions for each road
+        for (int lineelemindex = 0, roadindx = 0; lineelemindex < templine.length && roadindx < roads.length; lineelemindex++) {
+            String elem = templine[lineelemindex];
+            if (elem.equals("Total")) {
+                roadindx++;
+            } else {
+                if (elemsperroad.size() == roadindx) {
+                    elemsperroad.add(new ArrayList<Constants.TurnDirection>());
+                }
+                if (labeltoaction.containsKey(elem)) {
+                    elemsperroad.get(roadindx).add(labeltoaction.get(elem));
+                } else {
+                    throw new RuntimeException("Invalid/unmapped turn direction found while parsing file: " + elem);
+                }
+            }
+        }
+
+        pending = readRow();
+    }
+
+    /**
+     * @return the roads of the file, in column order
+     */
+    Constants.Direction[] getRoads() {
+        return roads;
+    }
+
+    /**
+     * Get the next time slot of the file.
+     *
+     * @return the turn counts of every road for the time slot, in column
+     * order, or <code>null</code> if the file has no more rows
+     */
+    TurnMovementCountForRoad[] nextRow() {
+        TurnMovementCountForRoad[] next = pending;
+        if (next != null) {
+            pending = readRow();
+            if (pending == null && lastsame) {
+                //the last time slot is as long as all the ones before it
+                for (int i = 0; i < next.length; i++) {
+                    next[i].setTimeInterval(initialdiff);
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Stop reading the file.
+     */
+    void close() {
+        in.close();
+    }
+
+    /**
+     * Parse the next row of the file and set the time interval of the row
+     * before it.
+     *
+     * @return the turn counts of every road, or <code>null</code> at the end
+     * of the file
+     */
+    private TurnMovementCountForRoad[] readRow() {
+        if (!in.hasNextLine()) {
+            in.close();
+            return null;
+        }
+        String[] templine = in.nextLine().trim().split(DELIM);
+        long numtime;
+        try {
+            //get time offset
+            numtime = timeFormat.parse(templine[0]).getTime();
+        } catch (ParseException ex) {
+            throw new RuntimeException("Error parsing time for row in traffic file, expected: \"" + templine[0] + "\"");
+        }
+
+        //init original time if it isn't set
+        if (!inittime) {
+            starttime = numtime;
+            inittime = true;
+        }
+
+        //handle if data spans across multiple days
+        if (numtime < starttime && !wrap) {
+            wrap = true;
+            daymult++;
+        } else if (numtime >= starttime && wrap) {
+            wrap = false;
+        }
+
+        //prepping to split row information by road
+        TurnMovementCountForRoad[] tmcfrs = new TurnMovementCountForRoad[roads.length];
+        double prevoffsettime = offsettime;
+        offsettime = (numtime - starttime) / 1000 + daymult * DAY;
+        for (int i = 0; i < tmcfrs.length; i++) {
+            tmcfrs[i] = new TurnMovementCountForRoad(offsettime);
+        }
+
+        //set time on previous row if applicable
+        for (int i = 0; pending != null && i < pending.length; i++) {
+            pending[i].setTimeInterval(offsettime - pending[i].getTimeOffset());
+        }
+
+        //handle recording initialdiff and checking if timing is consistent across all rows
+        //todo major priority, make this more robust...it's using doubles which could easily croak with slight errors
+        if (row == 1) {
+            initialdiff = offsettime;
+        } else if (row > 0 && initialdiff != offsettime - prevoffsettime) {
+            lastsame = false;
+        }
+
+        //handle row items, assuming actions for one road are followed by a total field
+        int roadindx = 0;
+        for (int lineelemindex = 1, numelem = 0; lineelemindex < templine.length && roadindx < roads.length; lineelemindex++) {
+            String elem = templine[lineelemindex];
+            //Record count of appropriate action for appropriate row and road (column)
+            if (numelem < elemsperroad.get(roadindx).size()) {
+                if (!tmcfrs[roadindx].putActValIfAbsent(elemsperroad.get(roadindx).get(numelem), Integer.parseInt(elem))) {
+                    throw new RuntimeException("Problem when parsing turn movements file. Duplicate column: " + elemsperroad.get(roadindx).get(numelem).name());
+                }
+                numelem++;
+            }
+
+            if (numelem >= elemsperroad.get(roadindx).size()) {
+                numelem = 0;
+                roadindx++;
+                lineelemindex++; //skip "total"
+            }
+        }
+        if (roadindx < roads.length) {
+            throw new RuntimeException("Problem when parsing turn movements file. Row " + row + " is missing the columns of road: " + roads[roadindx].name());
+        }
+        row++;
+        return tmcfrs;
+    }
+}
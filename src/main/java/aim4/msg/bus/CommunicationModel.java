@@ -0,0 +1,52 @@
+package aim4.msg.bus;
+
+/**
+ * A model of the wireless channel between the vehicles and the intersection
+ * managers. For every message sent, the model decides whether the message
+ * reaches its recipient and how long it takes to get there.
+ */
+public interface CommunicationModel {
+
+    /**
+     * The direction a message travels in.
+     */
+    enum Link {
+        /**
+         * From a vehicle to an intersection manager.
+         */
+        V2I,
+        /**
+         * From an intersection manager to a vehicle.
+         */
+        I2V,
+    }
+
+    /**
+     * The delay returned for a message which never reaches its recipient.
+     */
+    double LOST = -1.0;
+
+    /**
+     * Called once at the start of the communication phase of every time step,
+     * before any message of the step is transmitted.
+     *
+     * @param currentTime the current time
+     * @param timeStep the time step
+     */
+    void beginStep(double currentTime, double timeStep);
+
+    /**
+     * Transmit a message.
+     *
+     * @param link the direction the message travels in
+     * @param senderId the VIN of the sending vehicle, or the ID of the sending
+     * intersection manager
+     * @param distance the distance the message must travel, in meters
+     * @param power the transmission power of the sender, in meters
+     * @param sizeInBits the size of the message, in bits
+     * @return the time it takes the message to reach its recipient, in
+     * seconds, or {@link #LOST} if the message is lost
+     */
+    double transmit(Link link, int senderId, double distance, double power,
+            int sizeInBits);
+}
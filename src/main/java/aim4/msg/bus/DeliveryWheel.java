@@ -0,0 +1,142 @@
+package aim4.msg.bus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A timer wheel holding the messages which reach their recipients in a later
+ * time step. Every slot of the wheel holds the messages due in the steps
+ * congruent to it, so scheduling a message and finding the messages due in a
+ * step take constant time per message. Messages due in the same step come
+ * out in the order they were scheduled.
+ *
+ * @param <T> the type of the messages
+ */
+class DeliveryWheel<T> {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * A scheduled message.
+     */
+    private static class Pending<T> {
+
+        /**
+         * The step the message is due in.
+         */
+        private final long dueStep;
+        /**
+         * The message.
+         */
+        private final T msg;
+
+        private Pending(long dueStep, T msg) {
+            this.dueStep = dueStep;
+            this.msg = msg;
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The slots of the wheel. The number of slots is a power of two.
+     */
+    private List<List<Pending<T>>> slots;
+    /**
+     * The number of scheduled messages.
+     */
+    private int size = 0;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create an empty wheel.
+     */
+    DeliveryWheel() {
+        slots = newSlots(64);
+    }
+
+    /////////////////////////////////
+    // PACKAGE METHODS
+    /////////////////////////////////
+    /**
+     * @return whether no message is scheduled
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Schedule a message.
+     *
+     * @param dueStep the step the message is due in
+     * @param msg the message
+     */
+    void schedule(long dueStep, T msg) {
+        slots.get(slotOf(dueStep)).add(new Pending<T>(dueStep, msg));
+        size++;
+        if (size > slots.size() * 4) {
+            grow();
+        }
+    }
+
+    /**
+     * Remove the messages due in a step. Messages are due in every step in
+     * turn, so no earlier message is left on the wheel.
+     *
+     * @param step the step
+     * @param due the list the due messages are added to
+     */
+    void takeDue(long step, List<T> due) {
+        if (size == 0) {
+            return;
+        }
+        List<Pending<T>> slot = slots.get(slotOf(step));
+        int kept = 0;
+        for (int i = 0; i < slot.size(); i++) {
+            Pending<T> pending = slot.get(i);
+            if (pending.dueStep <= step) {
+                due.add(pending.msg);
+            } else {
+                // due in a later turn of the wheel
+                slot.set(kept++, pending);
+            }
+        }
+        size -= slot.size() - kept;
+        slot.subList(kept, slot.size()).clear();
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    private int slotOf(long step) {
+        return (int) (step & (slots.size() - 1));
+    }
+
+    /**
+     * Double the number of slots, so that fewer messages wait for a later
+     * turn of the wheel.
+     */
+    private void grow() {
+        List<List<Pending<T>>> old = slots;
+        slots = newSlots(old.size() * 2);
+        for (List<Pending<T>> slot : old) {
+            // messages due in the same step share a slot, so they keep their
+            // order
+            for (Pending<T> pending : slot) {
+                slots.get(slotOf(pending.dueStep)).add(pending);
+            }
+        }
+    }
+
+    private static <T> List<List<Pending<T>>> newSlots(int count) {
+        List<List<Pending<T>>> slots = new ArrayList<List<Pending<T>>>(count);
+        for (int i = 0; i < count; i++) {
+            slots.add(new ArrayList<Pending<T>>());
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,124 @@
+package aim4.msg.bus;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A channel with a fixed latency, a probability of losing every message and
+ * a bandwidth shared by all the messages of a sender. A message which the
+ * sender has no bandwidth left for waits until the messages sent before it
+ * are transmitted. Messages to recipients out of range are lost, as in the
+ * {@link RangeCommunicationModel}.
+ */
+public class LossyCommunicationModel implements CommunicationModel {
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The time every message takes to reach its recipient, in seconds.
+     */
+    private final double latency;
+    /**
+     * The probability a message is lost.
+     */
+    private final double dropProbability;
+    /**
+     * The number of bits a sender can transmit per second, or a non positive
+     * number if the bandwidth is unlimited.
+     */
+    private final double bandwidth;
+    /**
+     * The random number generator deciding which messages are lost. The
+     * channel has its own generator so that lost messages do not change the
+     * random numbers drawn by the rest of the simulation.
+     */
+    private final Random random;
+    /**
+     * The time each sender is done transmitting the messages sent so far,
+     * by direction and sender ID.
+     */
+    private final EnumMap<Link, Map<Integer, Double>> busyUntil
+            = new EnumMap<Link, Map<Integer, Double>>(Link.class);
+    /**
+     * The current time.
+     */
+    private double currentTime;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a lossy channel.
+     *
+     * @param latency the time every message takes to reach its recipient, in
+     * seconds
+     * @param dropProbability the probability a message is lost
+     * @param bandwidth the number of bits a sender can transmit per second,
+     * or a non positive number if the bandwidth is unlimited
+     * @param seed the seed of the random number generator deciding which
+     * messages are lost
+     */
+    public LossyCommunicationModel(double latency, double dropProbability,
+            double bandwidth, long seed) {
+        if (latency < 0) {
+            throw new IllegalArgumentException("Latency must be non negative: " + latency);
+        }
+        if (dropProbability < 0 || dropProbability > 1) {
+            throw new IllegalArgumentException("Drop probability must be between 0 and 1: " + dropProbability);
+        }
+        this.latency = latency;
+        this.dropProbability = dropProbability;
+        this.bandwidth = bandwidth;
+        this.random = new Random(seed);
+        for (Link link : Link.values()) {
+            busyUntil.put(link, new HashMap<Integer, Double>());
+        }
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beginStep(double currentTime, double timeStep) {
+        this.currentTime = currentTime;
+        // forget the senders done transmitting, most of which have left
+        for (Map<Integer, Double> senders : busyUntil.values()) {
+            for (Iterator<Double> iter = senders.values().iterator(); iter.hasNext();) {
+                if (iter.next() <= currentTime) {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double transmit(Link link, int senderId, double distance,
+            double power, int sizeInBits) {
+        if (distance > power) {
+            return LOST;
+        }
+        double queueingDelay = 0.0;
+        if (bandwidth > 0) {
+            // the channel is taken by the message even if it is lost
+            Map<Integer, Double> senders = busyUntil.get(link);
+            Double busy = senders.get(senderId);
+            double start = (busy == null ? currentTime : Math.max(currentTime, busy));
+            senders.put(senderId, start + sizeInBits / bandwidth);
+            queueingDelay = start - currentTime;
+        }
+        if (dropProbability > 0 && random.nextDouble() < dropProbability) {
+            return LOST;
+        }
+        return queueingDelay + latency;
+    }
+}
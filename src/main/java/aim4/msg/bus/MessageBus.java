@@ -0,0 +1,347 @@
+package aim4.msg.bus;
+
+import aim4.im.IntersectionManager;
+import aim4.im.v2i.V2IManager;
+import aim4.map.BasicMap;
+import aim4.msg.bus.CommunicationModel.Link;
+import aim4.msg.i2v.I2VMessage;
+import aim4.msg.v2i.V2IMessage;
+import aim4.vehicle.AutoVehicleSimView;
+import aim4.vehicle.VehicleSimView;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Delivers the V2I and I2V messages of a simulation once per time step. The
+ * V2I messages are collected into a queue per intersection manager, indexed
+ * by intersection manager ID, and handed to every intersection manager in a
+ * single call. Whether and when a message arrives is decided by a pluggable
+ * {@link CommunicationModel}; messages arriving in a later step wait on a
+ * timer wheel. With the default {@link RangeCommunicationModel} every message
+ * within range is delivered in the same step, in the order it was sent.
+ */
+public class MessageBus {
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The map, holding the intersection managers.
+     */
+    private final BasicMap basicMap;
+    /**
+     * All active vehicles, in form of a map from VINs to vehicle objects.
+     */
+    private final Map<Integer, VehicleSimView> vinToVehicles;
+    /**
+     * The communication model.
+     */
+    private CommunicationModel model = new RangeCommunicationModel();
+    /**
+     * The smallest intersection manager ID.
+     */
+    private int firstImId;
+    /**
+     * The intersection managers, by ID relative to the smallest ID.
+     */
+    private V2IManager[] ims;
+    /**
+     * The V2I messages to hand to each intersection manager in the current
+     * step, by ID relative to the smallest ID.
+     */
+    private List<List<V2IMessage>> imQueues;
+    /**
+     * The V2I messages arriving in a later step.
+     */
+    private final DeliveryWheel<V2IMessage> delayedV2I = new DeliveryWheel<V2IMessage>();
+    /**
+     * The I2V messages arriving in a later step.
+     */
+    private final DeliveryWheel<I2VMessage> delayedI2V = new DeliveryWheel<I2VMessage>();
+    /**
+     * Scratch space for the messages taken off the timer wheels.
+     */
+    private final List<V2IMessage> dueV2I = new ArrayList<V2IMessage>();
+    /**
+     * Scratch space for the messages taken off the timer wheels.
+     */
+    private final List<I2VMessage> dueI2V = new ArrayList<I2VMessage>();
+    /**
+     * The number of steps delivered so far.
+     */
+    private long step = 0;
+    /**
+     * The number of messages sent.
+     */
+    private long sentMessages = 0;
+    /**
+     * The number of reservation requests sent.
+     */
+    private long sentRequests = 0;
+    /**
+     * The number of messages lost.
+     */
+    private long lostMessages = 0;
+    /**
+     * The number of messages scheduled for a later step than they were sent
+     * in.
+     */
+    private long delayedMessages = 0;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a message bus using the {@link RangeCommunicationModel}.
+     *
+     * @param basicMap the map
+     * @param vinToVehicles the active vehicles by VIN
+     */
+    public MessageBus(BasicMap basicMap, Map<Integer, VehicleSimView> vinToVehicles) {
+        this.basicMap = basicMap;
+        this.vinToVehicles = vinToVehicles;
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * @return the communication model
+     */
+    public CommunicationModel getCommunicationModel() {
+        return model;
+    }
+
+    /**
+     * Set the communication model. Messages already waiting for a later step
+     * still arrive as scheduled.
+     *
+     * @param model the communication model
+     */
+    public void setCommunicationModel(CommunicationModel model) {
+        if (model == null) {
+            throw new IllegalArgumentException("The communication model must not be null.");
+        }
+        this.model = model;
+    }
+
+    /**
+     * @return the number of messages sent
+     */
+    public long getSentMessages() {
+        return sentMessages;
+    }
+
+    /**
+     * @return the number of V2I reservation requests sent
+     */
+    public long getSentRequests() {
+        return sentRequests;
+    }
+
+    /**
+     * @return the number of messages lost, including those whose recipient
+     * left the simulation before they arrived
+     */
+    public long getLostMessages() {
+        return lostMessages;
+    }
+
+    /**
+     * @return the number of messages scheduled for a later step than they
+     * were sent in
+     */
+    public long getDelayedMessages() {
+        return delayedMessages;
+    }
+
+    /**
+     * Deliver the messages of a time step: first the messages due from
+     * earlier steps, then the V2I messages in the outboxes of the vehicles,
+     * then the I2V messages in the outboxes of the intersection managers.
+     *
+     * @param currentTime the current time
+     * @param timeStep the time step
+     */
+    public void deliver(double currentTime, double timeStep) {
+        if (ims == null || ims.length != basicMap.getIntersectionManagers().size()) {
+            indexIntersectionManagers();
+        }
+        model.beginStep(currentTime, timeStep);
+
+        delayedV2I.takeDue(step, dueV2I);
+        for (V2IMessage msg : dueV2I) {
+            imQueues.get(msg.getImId() - firstImId).add(msg);
+        }
+        dueV2I.clear();
+        collectV2IMessages(timeStep);
+        for (int i = 0; i < ims.length; i++) {
+            List<V2IMessage> queue = imQueues.get(i);
+            if (!queue.isEmpty()) {
+                ims[i].receiveAll(queue);
+                queue.clear();
+            }
+        }
+
+        delayedI2V.takeDue(step, dueI2V);
+        for (I2VMessage msg : dueI2V) {
+            AutoVehicleSimView vehicle = getAutoVehicle(msg.getVin());
+            if (vehicle == null) {
+                lostMessages++;
+            } else {
+                vehicle.receive(msg);
+            }
+        }
+        dueI2V.clear();
+        deliverI2VMessages(timeStep);
+
+        step++;
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Index the intersection managers of the map by ID.
+     */
+    private void indexIntersectionManagers() {
+        List<IntersectionManager> list = basicMap.getIntersectionManagers();
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        for (IntersectionManager im : list) {
+            minId = Math.min(minId, im.getId());
+            maxId = Math.max(maxId, im.getId());
+        }
+        firstImId = (list.isEmpty() ? 0 : minId);
+        int count = (list.isEmpty() ? 0 : maxId - minId + 1);
+        ims = new V2IManager[count];
+        imQueues = new ArrayList<List<V2IMessage>>(count);
+        for (int i = 0; i < count; i++) {
+            imQueues.add(new ArrayList<V2IMessage>());
+        }
+        for (IntersectionManager im : list) {
+            ims[im.getId() - firstImId] = (V2IManager) im;
+        }
+    }
+
+    /**
+     * Move the V2I messages in the outboxes of the vehicles to the queues of
+     * the intersection managers or onto the timer wheel.
+     *
+     * @param timeStep the time step
+     */
+    private void collectV2IMessages(double timeStep) {
+        for (VehicleSimView vehicle : vinToVehicles.values()) {
+            if (vehicle instanceof AutoVehicleSimView) {
+                AutoVehicleSimView sender = (AutoVehicleSimView) vehicle;
+                Queue<V2IMessage> v2iOutbox = sender.getV2IOutbox();
+                while (!v2iOutbox.isEmpty()) {
+                    V2IMessage msg = v2iOutbox.poll();
+                    if (msg.getMessageType() == V2IMessage.Type.REQUEST) {
+                        sentRequests++;
+                    }
+                    int index = msg.getImId() - firstImId;
+                    V2IManager receiver = ims[index];
+                    // Calculate the distance the message must travel
+                    double txDistance = sender.getPosition().distance(
+                            receiver.getIntersection().getCentroid());
+                    double delay = transmit(Link.V2I, sender.getVIN(), txDistance,
+                            sender.getTransmissionPower(), msg.getSize());
+                    long steps = toSteps(delay, timeStep);
+                    if (steps == 0) {
+                        imQueues.get(index).add(msg);
+                    } else if (steps > 0) {
+                        delayedV2I.schedule(step + steps, msg);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver the I2V messages in the outboxes of the intersection managers,
+     * or move them onto the timer wheel, and clear the outboxes.
+     *
+     * @param timeStep the time step
+     */
+    private void deliverI2VMessages(double timeStep) {
+        for (IntersectionManager im : basicMap.getIntersectionManagers()) {
+            V2IManager senderIM = (V2IManager) im;
+            for (Iterator<I2VMessage> i2vIter = senderIM.outboxIterator();
+                    i2vIter.hasNext();) {
+                I2VMessage msg = i2vIter.next();
+                AutoVehicleSimView vehicle = getAutoVehicle(msg.getVin());
+                if (vehicle == null) {
+                    // the vehicle has left the simulation
+                    sentMessages++;
+                    lostMessages++;
+                    continue;
+                }
+                // Calculate the distance the message must travel
+                double txDistance = senderIM.getIntersection().getCentroid().distance(
+                        vehicle.getPosition());
+                double delay = transmit(Link.I2V, senderIM.getId(), txDistance,
+                        senderIM.getTransmissionPower(), msg.getSize());
+                long steps = toSteps(delay, timeStep);
+                if (steps == 0) {
+                    vehicle.receive(msg);
+                } else if (steps > 0) {
+                    delayedI2V.schedule(step + steps, msg);
+                }
+            }
+            // Done delivering the IntersectionManager's messages, so clear the
+            // outbox.
+            senderIM.clearOutbox();
+        }
+    }
+
+    /**
+     * Transmit a message through the communication model and count it.
+     *
+     * @return the delay of the message, or {@link CommunicationModel#LOST}
+     */
+    private double transmit(Link link, int senderId, double distance,
+            double power, int sizeInBits) {
+        sentMessages++;
+        double delay = model.transmit(link, senderId, distance, power, sizeInBits);
+        if (delay < 0) {
+            lostMessages++;
+        } else if (delay > 0) {
+            delayedMessages++;
+        }
+        return delay;
+    }
+
+    /**
+     * Convert a delay into a number of steps.
+     *
+     * @param delay the delay, in seconds, or a negative number if the message
+     * is lost
+     * @param timeStep the time step
+     * @return the number of steps until the message arrives, or -1 if it is
+     * lost
+     */
+    private static long toSteps(double delay, double timeStep) {
+        if (delay < 0) {
+            return -1;
+        } else if (delay == 0) {
+            return 0;
+        }
+        // a message arrives in the first step starting after its delay, and
+        // at least one step later than it was sent
+        return Math.max(1, (long) Math.ceil(delay / timeStep - 1e-9));
+    }
+
+    /**
+     * @param vin the VIN of a vehicle
+     * @return the vehicle, or <code>null</code> if it is not an active
+     * autonomous vehicle
+     */
+    private AutoVehicleSimView getAutoVehicle(int vin) {
+        VehicleSimView vehicle = vinToVehicles.get(vin);
+        return (vehicle instanceof AutoVehicleSimView ? (AutoVehicleSimView) vehicle : null);
+    }
+}
@@ -0,0 +1,25 @@
+package aim4.msg.bus;
+
+/**
+ * The ideal channel: a message is delivered instantly if the recipient is
+ * within the transmission power of the sender, and lost otherwise.
+ */
+public class RangeCommunicationModel implements CommunicationModel {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beginStep(double currentTime, double timeStep) {
+        // the channel keeps no state
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double transmit(Link link, int senderId, double distance,
+            double power, int sizeInBits) {
+        return (distance <= power ? 0.0 : LOST);
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains the message bus delivering the V2I and I2V messages
+ * of a simulation, and the communication models deciding whether and when a
+ * message reaches its recipient.
+ */
+package aim4.msg.bus;
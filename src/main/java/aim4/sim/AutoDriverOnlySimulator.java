@@ -34,19 +34,20 @@ import java.awt.Color;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Queue;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import aim4.config.Constants;
 import aim4.config.Debug;
 import aim4.config.DebugPoint;
 import aim4.config.RedPhaseData;
@@ -63,7 +64,6 @@ import aim4.driver.coordinator.V2ICoordinator;
 import aim4.driver.coordinator.V2ICoordinator.State;
 import aim4.im.IntersectionManager;
 import aim4.im.v2i.V2IManager;
-import aim4.im.v2i.RequestHandler.ApproxNPhasesTrafficSignalRequestHandler;
 import aim4.im.v2i.RequestHandler.ApproxNPhasesTrafficSignalRequestHandler.CyclicSignalController;
 import aim4.im.v2i.RequestHandler.ApproxNPhasesTrafficSignalRequestHandler.SignalController;
 import aim4.im.v2i.policy.BasePolicy;
@@ -77,9 +77,16 @@ import aim4.map.SpawnPoint.SpawnSpecGenerator;
 import aim4.map.lane.Lane;
 import aim4.map.trafficbyturns.DestinationFileSpawnSpecGenerator;
 import aim4.map.trafficbyturns.FileSpawnSpecGenerator;
-import aim4.map.trafficbyturns.TurnMovements;
-import aim4.msg.i2v.I2VMessage;
-import aim4.msg.v2i.V2IMessage;
+import aim4.map.trafficbyturns.AbstractTurnMovements;
+import aim4.msg.bus.CommunicationModel;
+import aim4.msg.bus.MessageBus;
+import aim4.sim.jfr.FlightEvents;
+import aim4.sim.jfr.VehicleCompletionEvent;
+import aim4.sim.replay.TrajectoryRecorder;
+import aim4.sim.results.AbsoluteDeviation;
+import aim4.sim.results.OutcomeStatistics;
+import aim4.sim.results.VehicleResultLog;
+import aim4.sim.results.VehicleResultLogReader;
 import aim4.sim.setup.AdaptiveTrafficSignalSuperviser;
 import aim4.vehicle.AutoVehicleSimView;
 import aim4.vehicle.BasicAutoVehicle;
@@ -162,12 +169,73 @@ public class AutoDriverOnlySimulator implements Simulator {
      */
     public int generatedVehicles = 0;
 
-    private List<Double> completionTimes;
+    /**
+     * The statistics of the travel times and delays of the completed
+     * vehicles.
+     */
+    private final OutcomeStatistics outcomeStatistics;
+    /**
+     * The mean and the mean absolute deviation of the travel times of the
+     * completed vehicles, binned by time step.
+     */
+    private final AbsoluteDeviation travelTimeDeviation;
 
     /**
      * Specifies flow and turn movement information
      */
-    protected TurnMovements turnMovements;
+    protected AbstractTurnMovements turnMovements;
+
+    /**
+     * The threads the intersection managers act on, created when a map with
+     * several intersection managers first needs them.
+     */
+    private IntersectionManagerPool imPool;
+
+    /**
+     * The bus delivering the V2I and I2V messages.
+     */
+    private final MessageBus messageBus;
+
+    /**
+     * The queue of the spawns due, created on the first time step spawns are
+     * scheduled in, or null.
+     */
+    private SpawnScheduler spawnScheduler;
+
+    /**
+     * Whether the spawn points of the map were checked for a spawn scheduler.
+     */
+    private boolean spawnSchedulerChecked = false;
+
+    /**
+     * The log the outcomes of the completed vehicles are written to, or null
+     * if they are kept in memory.
+     */
+    private VehicleResultLog resultLog;
+    /**
+     * The profiler of the phases of a step, or null if steps are not
+     * profiled.
+     */
+    private StepProfiler stepProfiler;
+    /**
+     * The recorder of the vehicle poses and traffic signals of every step,
+     * or null if the steps are not recorded.
+     */
+    private TrajectoryRecorder trajectoryRecorder;
+    /**
+     * The result of the steps in which no vehicle completed, shared as it
+     * holds nothing.
+     */
+    private static final AutoDriverOnlySimStepResult NO_COMPLETED_VEHICLES
+            = new AutoDriverOnlySimStepResult(Collections.<Integer>emptyList());
+    /**
+     * The mappings from vehicles to next vehicles and from lanes to the
+     * consolidated lists of vehicles, cleared and refilled at every step.
+     */
+    private final Map<VehicleSimView, VehicleSimView> nextVehicles
+            = new HashMap<VehicleSimView, VehicleSimView>();
+    private final Map<Lane, SortedMap<Double, VehicleSimView>> consolidatedVehicleLists
+            = new HashMap<Lane, SortedMap<Double, VehicleSimView>>();
 
     /////////////////////////////////
     // CLASS CONSTRUCTORS
@@ -178,18 +246,34 @@ public class AutoDriverOnlySimulator implements Simulator {
      * @param basicMap the map of the simulation
      * @param turnMovements Specifies flow and turn movement information
      */
-    public AutoDriverOnlySimulator(BasicMap basicMap, TurnMovements turnMovements) {
+    public AutoDriverOnlySimulator(BasicMap basicMap, AbstractTurnMovements turnMovements) {
         this.basicMap = basicMap;
         this.vinToVehicles = new HashMap<Integer, VehicleSimView>();
         Resources.vinToVehicles = this.vinToVehicles;
+        this.messageBus = new MessageBus(basicMap, vinToVehicles);
 
         this.turnMovements = turnMovements;
 
         currentTime = 0.0;
-        this.completionTimes = new ArrayList<Double>(5000);
+        this.outcomeStatistics = new OutcomeStatistics(DesignatedLanesExpr.vehicleTimesSecondsIndexStep);
+        this.travelTimeDeviation = new AbsoluteDeviation(SimConfig.TIME_STEP);
         numOfCompletedVehicles = 0;
         totalBitsTransmittedByCompletedVehicles = 0;
         totalBitsReceivedByCompletedVehicles = 0;
+        if (SimConfig.RESULT_LOG_FILE != null) {
+            try {
+                resultLog = new VehicleResultLog(new File(SimConfig.RESULT_LOG_FILE));
+            } catch (IOException e) {
+                throw new RuntimeException("Could not create the result log " + SimConfig.RESULT_LOG_FILE + ".", e);
+            }
+        }
+        if (SimConfig.PROFILE_STEPS) {
+            stepProfiler = new StepProfiler(SimConfig.PROFILE_ALLOCATIONS);
+            stepProfiler.register();
+        }
+        if (SimConfig.TRAJECTORY_FILE != null) {
+            trajectoryRecorder = new TrajectoryRecorder(new File(SimConfig.TRAJECTORY_FILE), basicMap);
+        }
     }
 
     /////////////////////////////////
@@ -205,29 +289,42 @@ public class AutoDriverOnlySimulator implements Simulator {
             System.err.printf("--------------------------------------\n");
             System.err.printf("------SIM:spawnVehicles---------------\n");
         }
+        long lapStart = (stepProfiler == null ? 0 : stepProfiler.startStep());
 
         // update red signal for dynamic FCFS-SIGNAL 
         if (SimConfig.signalType == SimConfig.SIGNAL_TYPE.RED_PHASE_ADAPTIVE
-                && ApproxNPhasesTrafficSignalRequestHandler.CyclicSignalController.needRecalculate(currentTime)) {
+                && legacySignalController().needRecalculate(currentTime)) {
             updateTrafficSignal();
         } else if (SimConfig.signalType == SimConfig.SIGNAL_TYPE.FULLY_ACTUATED) {
-            Resources.ringAndBarrier.refreshSignals(currentTime);
+            refreshSignals();
+        }
+        if (stepProfiler != null) {
+            lapStart = stepProfiler.lap(StepProfiler.Phase.SIGNALS, lapStart);
         }
 
         // spawning vehicles from spawning points according to traffic level
         spawnVehicles(timeStep);
+        if (stepProfiler != null) {
+            lapStart = stepProfiler.lap(StepProfiler.Phase.SPAWN, lapStart);
+        }
         if (Debug.PRINT_SIMULATOR_STAGE) {
             System.err.printf("------SIM:provideSensorInput---------------\n");
         }
         
         // generate information like the linked-table of vehicles, intervals between vehicles, signal, etc 
         provideSensorInput();
+        if (stepProfiler != null) {
+            lapStart = stepProfiler.lap(StepProfiler.Phase.SENSORS, lapStart);
+        }
         if (Debug.PRINT_SIMULATOR_STAGE) {
             System.err.printf("------SIM:letDriversAct---------------\n");
         }
 
         // allow driver proposals
         letDriversAct();
+        if (stepProfiler != null) {
+            lapStart = stepProfiler.lap(StepProfiler.Phase.DRIVERS, lapStart);
+        }
         if (Debug.PRINT_SIMULATOR_STAGE) {
             System.err.printf("------SIM:letIntersectionManagersAct--------------\n");
         }
@@ -246,17 +343,26 @@ public class AutoDriverOnlySimulator implements Simulator {
 
         // intersection dealing with proposals
         letIntersectionManagersAct(timeStep);
+        if (stepProfiler != null) {
+            lapStart = stepProfiler.lap(StepProfiler.Phase.INTERSECTION_MANAGERS, lapStart);
+        }
         if (Debug.PRINT_SIMULATOR_STAGE) {
             System.err.printf("------SIM:communication---------------\n");
         }
 
-        communication();
+        communication(timeStep);
+        if (stepProfiler != null) {
+            lapStart = stepProfiler.lap(StepProfiler.Phase.COMMUNICATION, lapStart);
+        }
         if (Debug.PRINT_SIMULATOR_STAGE) {
             System.err.printf("------SIM:moveVehicles---------------\n");
         }
 
         // move vehicles graphically. DCL information calculated here.
         moveVehicles(timeStep);
+        if (stepProfiler != null) {
+            lapStart = stepProfiler.lap(StepProfiler.Phase.MOVE, lapStart);
+        }
         if (Debug.PRINT_SIMULATOR_STAGE) {
             System.err.printf("------SIM:cleanUpCompletedVehicles---------------\n");
         }
@@ -278,8 +384,26 @@ public class AutoDriverOnlySimulator implements Simulator {
                     + "Expected by end of time slot: " + turnMovements.getExpectedSpawnsUpToEndOfTimeSlot(currentTime) + "\n"
                     + "Number currently spawned and/or scheduled: " + (getGeneratedVehiclesNum() + getScheduledVehiclesRemaining()));
         }
+        if (stepProfiler != null) {
+            stepProfiler.lap(StepProfiler.Phase.CLEANUP, lapStart);
+            stepProfiler.endStep(vinToVehicles.size(), messageBus.getSentRequests());
+        }
+        if (trajectoryRecorder != null) {
+            trajectoryRecorder.record(currentTime, vinToVehicles.values());
+        }
 
-        return new AutoDriverOnlySimStepResult(completedVINs);
+        return (completedVINs.isEmpty() ? NO_COMPLETED_VEHICLES : new AutoDriverOnlySimStepResult(completedVINs));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void dispose() {
+        if (imPool != null) {
+            imPool.shutdown();
+            imPool = null;
+        }
     }
 
     /////////////////////////////////
@@ -352,6 +476,25 @@ public class AutoDriverOnlySimulator implements Simulator {
         return vinToVehicles.get(vin);
     }
 
+    /**
+     * Get the bus delivering the V2I and I2V messages, which counts the
+     * messages sent, lost and delayed.
+     *
+     * @return the message bus
+     */
+    public synchronized MessageBus getMessageBus() {
+        return messageBus;
+    }
+
+    /**
+     * Set the model of the channel the V2I and I2V messages are sent over.
+     *
+     * @param model the communication model
+     */
+    public synchronized void setCommunicationModel(CommunicationModel model) {
+        messageBus.setCommunicationModel(model);
+    }
+
     /////////////////////////////////
     // PUBLIC METHODS
     /////////////////////////////////
@@ -401,27 +544,130 @@ public class AutoDriverOnlySimulator implements Simulator {
             DesignatedLanesExpr.spawnVehicles(timeStep, this);
         } else if (DesignatedLanesExpr.exprType == DesignatedLanesExpr.ExprType.DESIGNATED_LANES_WITH_ARCH) {
             DesignatedLanesExpr.spawnVehiclesWithInterArch(timeStep, this);
-        } else {
+        } else if (!SimConfig.SCHEDULE_SPAWNS || !spawnScheduled(timeStep, new SpawnScheduler.Spawner() {
+            @Override
+            public void spawn(SpawnPoint spawnPoint, double timeStep) {
+                spawnVehicles(spawnPoint, timeStep);
+            }
+        })) {
             for (SpawnPoint spawnPoint : basicMap.getSpawnPoints()) {
-                // figure out whether it can spawn - now vehicles too near
-                List<SpawnSpec> spawnSpecs = spawnPoint.act(timeStep);
-                if (!spawnSpecs.isEmpty()) {
-                    for (SpawnSpec spawnSpec : spawnSpecs) {
-                        if (canSpawnVehicle(spawnPoint)) {
-                            VehicleSimView vehicle = makeVehicle(spawnPoint, spawnSpec);
-                            VinRegistry.registerVehicle(vehicle); // Get vehicle a VIN number
-
-                            vinToVehicles.put(vehicle.getVIN(), vehicle);
-                            spawnPoint.vehicleGenerated(); // so it knows a platooning vehicle is generated.
-
-                            generatedVehicles++; // counter for vehicles generated
-                        }
-                    }
+                spawnVehicles(spawnPoint, timeStep);
+            }
+        }
+    }
+
+    /**
+     * Spawn the vehicles of a spawn point.
+     *
+     * @param spawnPoint the spawn point
+     * @param timeStep the time step
+     */
+    private void spawnVehicles(SpawnPoint spawnPoint, double timeStep) {
+        // figure out whether it can spawn - now vehicles too near
+        List<SpawnSpec> spawnSpecs = spawnPoint.act(timeStep);
+        if (!spawnSpecs.isEmpty()) {
+            for (SpawnSpec spawnSpec : spawnSpecs) {
+                if (canSpawnVehicle(spawnPoint)) {
+                    VehicleSimView vehicle = makeVehicle(spawnPoint, spawnSpec);
+                    VinRegistry.registerVehicle(vehicle); // Get vehicle a VIN number
+
+                    vinToVehicles.put(vehicle.getVIN(), vehicle);
+                    spawnPoint.vehicleGenerated(); // so it knows a platooning vehicle is generated.
+
+                    generatedVehicles++; // counter for vehicles generated
                 }
             }
         }
     }
 
+    /**
+     * Spawn the vehicles due in this time step through the spawn scheduler,
+     * if the spawn points of the map can be scheduled.
+     *
+     * @param timeStep the time step
+     * @param spawner the spawner of the vehicles
+     * @return whether the spawns were scheduled. If not, nothing was spawned
+     * and every spawn point should be acted upon instead.
+     */
+    public boolean spawnScheduled(double timeStep, SpawnScheduler.Spawner spawner) {
+        if (!spawnSchedulerChecked) {
+            spawnSchedulerChecked = true;
+            if (SpawnScheduler.canSchedule(basicMap.getSpawnPoints())) {
+                spawnScheduler = new SpawnScheduler(this, basicMap.getSpawnPoints());
+            }
+        }
+        if (spawnScheduler == null) {
+            return false;
+        }
+        spawnScheduler.spawnDue(currentTime, timeStep, spawner);
+        return true;
+    }
+
+    /**
+     * Get the spawn scheduler.
+     *
+     * @return the spawn scheduler, or null if spawns are not scheduled
+     */
+    public SpawnScheduler getSpawnScheduler() {
+        return spawnScheduler;
+    }
+
+    /**
+     * Get the log the outcomes of the completed vehicles are written to.
+     *
+     * @return the result log, or null if the outcomes are kept in memory
+     */
+    public VehicleResultLog getResultLog() {
+        return resultLog;
+    }
+
+    /**
+     * Get the profiler of the phases of a step.
+     *
+     * @return the step profiler, or null if steps are not profiled
+     */
+    public StepProfiler getStepProfiler() {
+        return stepProfiler;
+    }
+
+    /**
+     * Get the recorder of the vehicle poses and traffic signals of every
+     * step.
+     *
+     * @return the trajectory recorder, or null if the steps are not recorded
+     */
+    public TrajectoryRecorder getTrajectoryRecorder() {
+        return trajectoryRecorder;
+    }
+
+    /**
+     * Get the statistics of the travel times and delays of the vehicles
+     * completed so far.
+     *
+     * @return the statistics
+     */
+    public OutcomeStatistics getOutcomeStatistics() {
+        return outcomeStatistics;
+    }
+
+    /**
+     * Compute the summary statistics of the vehicles completed so far from
+     * the result log.
+     *
+     * @return the summary
+     */
+    public synchronized VehicleResultLogReader.Summary summarizeResultLog() {
+        if (resultLog == null) {
+            throw new IllegalStateException("The outcomes of the completed vehicles are not logged.");
+        }
+        resultLog.flush();
+        try {
+            return new VehicleResultLogReader(resultLog.getFile()).summarize();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the result log " + resultLog.getFile() + ".", e);
+        }
+    }
+
     public int getProhibitedVehiclesNum() {
         return inhibitedVehicles;
     }
@@ -518,7 +764,12 @@ public class AutoDriverOnlySimulator implements Simulator {
                     // Now add it to the map.
                     vehicleLists.get(lane).put(dst, vehicle);
                 }
-                lane.getLaneIM().setVehiclesInLane(Collections.unmodifiableSortedMap(vehicleLists.get(lane)));
+            }
+        }
+        // the lanes without a vehicle keep the lists they were last given
+        for (Map.Entry<Lane, SortedMap<Double, VehicleSimView>> entry : vehicleLists.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                entry.getKey().getLaneIM().setVehiclesInLane(Collections.unmodifiableSortedMap(entry.getValue()));
             }
         }
 
@@ -534,8 +785,9 @@ public class AutoDriverOnlySimulator implements Simulator {
      * distance on their lanes with connecting lanes consolidated.
      */
     private Map<Lane, SortedMap<Double, VehicleSimView>> consolidateVehicleList(Map<Lane, SortedMap<Double, VehicleSimView>> vehicleLists) {
-        Map<Lane, SortedMap<Double, VehicleSimView>> consolVehicleLists
-                = new HashMap<Lane, SortedMap<Double, VehicleSimView>>(vehicleLists);
+        Map<Lane, SortedMap<Double, VehicleSimView>> consolVehicleLists = consolidatedVehicleLists;
+        consolVehicleLists.clear();
+        consolVehicleLists.putAll(vehicleLists);
         // Now consolidate the lists based on lanes
         for (Road road : basicMap.getRoads()) {
             for (Lane lane : road.getLanes()) {
@@ -568,8 +820,8 @@ public class AutoDriverOnlySimulator implements Simulator {
         // should include all the Lanes they run into.  Now we need to turn this
         // into a hash map that maps Vehicles to the next vehicle in the Lane
         // or any Lane the Lane runs into
-        Map<VehicleSimView, VehicleSimView> nextVehicle
-                = new HashMap<VehicleSimView, VehicleSimView>();
+        Map<VehicleSimView, VehicleSimView> nextVehicle = nextVehicles;
+        nextVehicle.clear();
         // For each of the ordered lists of vehicles, each lane
         for (SortedMap<Double, VehicleSimView> vehicleList : vehicleLists.values()) {
             VehicleSimView lastVehicle = null;
@@ -908,8 +1160,16 @@ public class AutoDriverOnlySimulator implements Simulator {
      * @param timeStep the time step
      */
     private void letIntersectionManagersAct(double timeStep) {
-        for (IntersectionManager im : basicMap.getIntersectionManagers()) {
-            im.act(timeStep);
+        List<IntersectionManager> ims = basicMap.getIntersectionManagers();
+        if (SimConfig.IM_THREADS > 1 && ims.size() > 1) {
+            if (imPool == null) {
+                imPool = new IntersectionManagerPool(SimConfig.IM_THREADS);
+            }
+            imPool.actAll(ims, timeStep);
+        } else {
+            for (IntersectionManager im : ims) {
+                im.act(timeStep);
+            }
         }
     }
 
@@ -918,73 +1178,14 @@ public class AutoDriverOnlySimulator implements Simulator {
     /////////////////////////////////
     /**
      * Deliver the V2I and I2V messages.
+     *
+     * @param timeStep the time step
      */
-    private void communication() {
-        deliverV2IMessages();
-        deliverI2VMessages();
+    private void communication(double timeStep) {
+        messageBus.deliver(currentTime, timeStep);
 //    deliverV2VMessages();
     }
 
-    /**
-     * Deliver the V2I messages.
-     */
-    private void deliverV2IMessages() {
-        // Go through each vehicle and deliver each of its messages
-        for (VehicleSimView vehicle : vinToVehicles.values()) {
-            // Start with V2I messages
-            if (vehicle instanceof AutoVehicleSimView) {
-                AutoVehicleSimView sender = (AutoVehicleSimView) vehicle;
-                Queue<V2IMessage> v2iOutbox = sender.getV2IOutbox();
-                while (!v2iOutbox.isEmpty()) {
-                    V2IMessage msg = v2iOutbox.poll();
-                    V2IManager receiver
-                            = (V2IManager) basicMap.getImRegistry().get(msg.getImId());
-                    // Calculate the distance the message must travel
-                    double txDistance
-                            = sender.getPosition().distance(
-                                    receiver.getIntersection().getCentroid());
-                    // Find out if the message will make it that far
-                    if (transmit(txDistance, sender.getTransmissionPower())) {
-                        // Actually deliver the message
-                        receiver.receive(msg);
-                        // Add the delivery to the debugging information
-                    }
-                    // Either way, we increment the number of transmitted messages
-                }
-            }
-        }
-    }
-
-    /**
-     * Deliver the I2V messages.
-     */
-    private void deliverI2VMessages() {
-        // Now deliver all the I2V messages
-        for (IntersectionManager im : basicMap.getIntersectionManagers()) {
-            V2IManager senderIM = (V2IManager) im;
-            for (Iterator<I2VMessage> i2vIter = senderIM.outboxIterator();
-                    i2vIter.hasNext();) {
-                I2VMessage msg = i2vIter.next();
-                AutoVehicleSimView vehicle
-                        = (AutoVehicleSimView) VinRegistry.getVehicleFromVIN(
-                                msg.getVin());
-                // Calculate the distance the message must travel
-                double txDistance
-                        = senderIM.getIntersection().getCentroid().distance(
-                                vehicle.getPosition());
-                // Find out if the message will make it that far
-                if (transmit(txDistance, senderIM.getTransmissionPower())) {
-                    // Actually deliver the message
-                    vehicle.receive(msg);
-                }
-            }
-
-            // Done delivering the IntersectionManager's messages, so clear the
-            // outbox.
-            senderIM.clearOutbox();
-        }
-    }
-
 //  private void deliverV2VMessages() {
 //
 //    // Create a place to store broadcast messages until they can be sent so
@@ -1057,18 +1258,6 @@ public class AutoDriverOnlySimulator implements Simulator {
 //      }
 //    }
 //  }
-    /**
-     * Whether the transmission of a message is successful
-     *
-     * @param distance the distance of the transmission
-     * @param power the power of the transmission
-     * @return whether the transmission of a messsage is successful
-     */
-    private boolean transmit(double distance, double power) {
-        // Simple for now
-        return distance <= power;
-    }
-
     /////////////////////////////////
     // STEP 6
     /////////////////////////////////
@@ -1127,13 +1316,12 @@ public class AutoDriverOnlySimulator implements Simulator {
      * @return the VINs of the completed vehicles
      */
     private List<Integer> cleanUpCompletedVehicles() {
-        List<Integer> completedVINs = new LinkedList<Integer>();
-
         Rectangle2D mapBoundary = basicMap.getDimensions();
 
-        List<Integer> removedVINs = new ArrayList<Integer>(vinToVehicles.size());
-        for (int vin : vinToVehicles.keySet()) {
-            VehicleSimView v = vinToVehicles.get(vin);
+        // created on the first completed vehicle, as most steps have none
+        List<Integer> removedVINs = null;
+        for (Map.Entry<Integer, VehicleSimView> entry : vinToVehicles.entrySet()) {
+            VehicleSimView v = entry.getValue();
 
             // If the vehicle is no longer in the layout
             // TODO: this should be replaced with destination zone.
@@ -1144,14 +1332,17 @@ public class AutoDriverOnlySimulator implements Simulator {
                     totalBitsTransmittedByCompletedVehicles += v2.getBitsTransmitted();
                     totalBitsReceivedByCompletedVehicles += v2.getBitsReceived();
                 }
-                removedVINs.add(vin);
+                if (removedVINs == null) {
+                    removedVINs = new ArrayList<Integer>();
+                }
+                removedVINs.add(entry.getKey());
             }
         }
+        if (removedVINs == null) {
+            return Collections.<Integer>emptyList();
+        }
         // Remove the marked vehicles
         for (int vin : removedVINs) {
-
-            completedVINs.add(vin);
-
             Resources.laneToVin.get(Resources.vinToLane.get(vin)).remove(vin);
             Resources.vinToLane.remove(vin);
 
@@ -1162,6 +1353,7 @@ public class AutoDriverOnlySimulator implements Simulator {
             //todo, I'm committing a sin with regard to this inheritance/instance of checking, but there's something weird going on with VINs and initial speed limits at the Driver class level (vins start at -1 a lot of times and the vehicle is acted on, and they have a speed less than the limit on spawn), so that's why I did it at the higher level
             Double delay = (vehicleDriver instanceof AutoDriver ? ((AutoDriver) vehicleDriver).getDelayPerTimeStep() * SimConfig.TIME_STEP : null);
             Double delayNoInter = (vehicleDriver instanceof AutoDriver ? ((AutoDriver) vehicleDriver).getDelayPerTimeStepExcludingIntersections() * SimConfig.TIME_STEP : null);
+            boolean keepOutcomes = DesignatedLanesExpr.KEEP_VEHICLE_TIMES;
 
             if (v.isHuman()) {
                 TrafficSignalExpr.Htotal++;
@@ -1171,12 +1363,14 @@ public class AutoDriverOnlySimulator implements Simulator {
                 if (shouldUpdateTime(lastMax, DesignatedLanesExpr.maxTravelTimeH)) {
                     DesignatedLanesExpr.timeMaxTravelHCompletion = currentTime;
                 }
-                DesignatedLanesExpr.humanVehicleTimesByDirection.get(DesignatedLanesExpr.vinToTimeIndex.get(vin)).get(DesignatedLanesExpr.timingIndexMap.get(DesignatedLanesExpr.vinToSpawnDirection.get(vin))).add(travelTime);
-                if (delay != null && delayNoInter != null) {
+                if (keepOutcomes) {
+                    DesignatedLanesExpr.humanVehicleTimesByDirection.get(DesignatedLanesExpr.vinToTimeIndex.get(vin)).get(DesignatedLanesExpr.timingIndexMap.get(DesignatedLanesExpr.vinToSpawnDirection.get(vin))).add(travelTime);
+                }
+                if (keepOutcomes && delay != null && delayNoInter != null) {
                     DesignatedLanesExpr.humanVehicleDelaysByDirection.get(DesignatedLanesExpr.vinToTimeIndex.get(vin)).get(DesignatedLanesExpr.timingIndexMap.get(DesignatedLanesExpr.vinToSpawnDirection.get(vin))).add(delay);
                     DesignatedLanesExpr.humanVehicleDelaysByDirectionNoInter.get(DesignatedLanesExpr.vinToTimeIndex.get(vin)).get(DesignatedLanesExpr.timingIndexMap.get(DesignatedLanesExpr.vinToSpawnDirection.get(vin))).add(delayNoInter);
                 }
-                if (vehicleDriver instanceof AutoDriver && !((AutoDriver) vehicleDriver).getWasStopped()) {
+                if (keepOutcomes && vehicleDriver instanceof AutoDriver && !((AutoDriver) vehicleDriver).getWasStopped()) {
                     DesignatedLanesExpr.humanVehicleDelaysExcludingStops.get(DesignatedLanesExpr.vinToTimeIndex.get(vin)).get(DesignatedLanesExpr.timingIndexMap.get(DesignatedLanesExpr.vinToSpawnDirection.get(vin))).add(delayNoInter);
                 }
             } else if (v.withAdaptiveCruiseControll()) {
@@ -1203,24 +1397,58 @@ public class AutoDriverOnlySimulator implements Simulator {
                 if (shouldUpdateTime(lastMax, DesignatedLanesExpr.maxTravelTimeAV)) {
                     DesignatedLanesExpr.timeMaxTravelAVCompletion = currentTime;
                 }
-                DesignatedLanesExpr.autoVehicleTimesByDirection.get(DesignatedLanesExpr.vinToTimeIndex.get(vin)).get(DesignatedLanesExpr.timingIndexMap.get(DesignatedLanesExpr.vinToSpawnDirection.get(vin))).add(travelTime);
-                if (delay != null && delayNoInter != null) {
+                if (keepOutcomes) {
+                    DesignatedLanesExpr.autoVehicleTimesByDirection.get(DesignatedLanesExpr.vinToTimeIndex.get(vin)).get(DesignatedLanesExpr.timingIndexMap.get(DesignatedLanesExpr.vinToSpawnDirection.get(vin))).add(travelTime);
+                }
+                if (keepOutcomes && delay != null && delayNoInter != null) {
                     DesignatedLanesExpr.autoVehicleDelaysByDirection.get(DesignatedLanesExpr.vinToTimeIndex.get(vin)).get(DesignatedLanesExpr.timingIndexMap.get(DesignatedLanesExpr.vinToSpawnDirection.get(vin))).add(delay);
                     DesignatedLanesExpr.autoVehicleDelaysByDirectionNoInter.get(DesignatedLanesExpr.vinToTimeIndex.get(vin)).get(DesignatedLanesExpr.timingIndexMap.get(DesignatedLanesExpr.vinToSpawnDirection.get(vin))).add(delayNoInter);
                 }
-                if (vehicleDriver instanceof AutoDriver && !((AutoDriver) vehicleDriver).getWasStopped()) {
+                if (keepOutcomes && vehicleDriver instanceof AutoDriver && !((AutoDriver) vehicleDriver).getWasStopped()) {
                     DesignatedLanesExpr.autoVehicleDelaysExcludingStops.get(DesignatedLanesExpr.vinToTimeIndex.get(vin)).get(DesignatedLanesExpr.timingIndexMap.get(DesignatedLanesExpr.vinToSpawnDirection.get(vin))).add(delayNoInter);
                 }
             }
 
-            completionTimes.add(travelTime);
+            Constants.TurnDirection turn = (vehicleDriver instanceof AutoDriver ? ((AutoDriver) vehicleDriver).getLastTurnDirection() : null);
+            outcomeStatistics.add(v.getVehicleType(), DesignatedLanesExpr.vinToSpawnDirection.get(vin), turn,
+                    v.getSpawnTime(), travelTime, (delay == null ? Double.NaN : delay));
+            travelTimeDeviation.add(travelTime);
+            if (resultLog != null) {
+                logOutcome(vin, v, turn, delay);
+            }
+            if (FlightEvents.AVAILABLE) {
+                VehicleCompletionEvent.emit(v, (delay == null ? Double.NaN : delay), currentTime);
+            }
             numOfCompletedVehicles++;
             vinToVehicles.remove(vin);
             DesignatedLanesExpr.vinToTimeIndex.remove(vin);
             DesignatedLanesExpr.vinToSpawnDirection.remove(vin);
         }
 
-        return completedVINs;
+        return removedVINs;
+    }
+
+    /**
+     * Write the outcome of a completed vehicle to the result log.
+     *
+     * @param vin the VIN of the vehicle
+     * @param v the vehicle
+     * @param turn the turn the vehicle made, or null
+     * @param delay the delay of the vehicle, or null
+     */
+    private void logOutcome(int vin, VehicleSimView v, Constants.TurnDirection turn, Double delay) {
+        double entryTime = Double.NaN;
+        double exitTime = Double.NaN;
+        double stoppedTime = 0;
+        if (v.getDriver() instanceof AutoDriver) {
+            AutoDriver driver = (AutoDriver) v.getDriver();
+            entryTime = driver.getIntersectionEntryTime();
+            exitTime = driver.getIntersectionExitTime();
+            stoppedTime = driver.getTimeStopped();
+        }
+        resultLog.append(vin, v.getVehicleType(), DesignatedLanesExpr.vinToSpawnDirection.get(vin), turn,
+                v.getSpawnTime(), entryTime, exitTime, currentTime,
+                (delay == null ? Double.NaN : delay), stoppedTime);
     }
 
     //compares a previous double and a current double (representing max times), if they don't equal returns true
@@ -1228,6 +1456,20 @@ public class AutoDriverOnlySimulator implements Simulator {
         return prev != current;
     }
 
+    /**
+     * Bring the signals of every intersection up to the current time. Each
+     * intersection manager has its own ring and barrier.
+     */
+    private void refreshSignals() {
+        Set<RingAndBarrier> refreshed = Collections.newSetFromMap(new IdentityHashMap<RingAndBarrier, Boolean>());
+        for (IntersectionManager im : basicMap.getIntersectionManagers()) {
+            RingAndBarrier ringAndBarrier = im.getRingAndBarrier();
+            if (ringAndBarrier != null && refreshed.add(ringAndBarrier)) {
+                ringAndBarrier.refreshSignals(currentTime);
+            }
+        }
+    }
+
     /////////////////////////////////
     // DEBUG
     /////////////////////////////////
@@ -1260,7 +1502,7 @@ public class AutoDriverOnlySimulator implements Simulator {
         double hp = SimConfig.HUMAN_PERCENTAGE; // human percentage
 
         double rp = RedPhaseData.getRedPhase(hp, tl); // red phase
-        double offset = ApproxNPhasesTrafficSignalRequestHandler.CyclicSignalController.getEndTime();
+        double offset = legacySignalController().getEndTime();
 
         RingAndBarrier ringAndBarrier = Resources.ringAndBarrier;
         Map<Integer, SignalController> signalControllers = Resources.signalControllers;
@@ -1279,26 +1521,46 @@ public class AutoDriverOnlySimulator implements Simulator {
         }
     }
 
+    /**
+     * Get a signal controller of the intersection whose red phases adapt to
+     * the traffic. All the controllers of the intersection are created for
+     * the same round, so any of them tells when the round ends.
+     *
+     * @return a cyclic signal controller of the intersection
+     */
+    private CyclicSignalController legacySignalController() {
+        Lane lane = Resources.im.getIntersection().getEntryLanes().get(0);
+        return (CyclicSignalController) Resources.signalControllers.get(lane.getId());
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public synchronized double getAvgTravelTime() {
-        double ans = 0;
-        for (double time : completionTimes) {
-            ans += time;
+        if (resultLog != null) {
+            return summarizeResultLog().getAvgTravelTime();
         }
-        return ans / completionTimes.size();
+        return travelTimeDeviation.getMean();
     }
 
+    /**
+     * {@inheritDoc}
+     */
     @Override
     public synchronized double getTimeSTD() {
-        double ans = 0;
-        double avg = getAvgTravelTime();
-        for (Double t : completionTimes) {
-            ans += Math.abs(t - avg);
+        if (resultLog != null) {
+            return summarizeResultLog().getTravelTimeDeviation();
         }
-        return ans / completionTimes.size();
+        return travelTimeDeviation.getMeanAbsoluteDeviation();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized double getTravelTimeStandardDeviation() {
+        return outcomeStatistics.getTotal().getTravelTime().getStandardDeviation();
     }
 
     @Override
@@ -0,0 +1,129 @@
+package aim4.sim;
+
+import aim4.im.IntersectionManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A pool of threads letting the intersection managers of a map act
+ * concurrently within a time step. Every intersection manager keeps its own
+ * reservation grid, signal controllers and ring and barrier, and only talks to
+ * vehicles through its own inbox and outbox, so the managers do not depend on
+ * each other while they act. The step only continues once every manager is
+ * done.
+ */
+class IntersectionManagerPool {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * Lets a single intersection manager act.
+     */
+    private static class ActTask implements Callable<Void> {
+
+        /**
+         * The intersection manager.
+         */
+        private final IntersectionManager im;
+        /**
+         * The time step.
+         */
+        private final double timeStep;
+
+        private ActTask(IntersectionManager im, double timeStep) {
+            this.im = im;
+            this.timeStep = timeStep;
+        }
+
+        @Override
+        public Void call() {
+            im.act(timeStep);
+            return null;
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The threads the intersection managers act on.
+     */
+    private final ExecutorService executor;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a pool of threads. The threads do not keep the simulator
+     * running once everything else is done.
+     *
+     * @param threads the number of threads
+     */
+    IntersectionManagerPool(int threads) {
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "im-pool-" + (count++));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /////////////////////////////////
+    // PACKAGE METHODS
+    /////////////////////////////////
+    /**
+     * Let every intersection manager act, and wait until all of them are
+     * done.
+     *
+     * @param ims the intersection managers
+     * @param timeStep the time step
+     */
+    void actAll(List<IntersectionManager> ims, double timeStep) {
+        List<ActTask> tasks = new ArrayList<ActTask>(ims.size());
+        for (IntersectionManager im : ims) {
+            tasks.add(new ActTask(im, timeStep));
+        }
+        List<Future<Void>> results;
+        try {
+            results = executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while the intersection managers were acting.", e);
+        }
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while the intersection managers were acting.", e);
+            } catch (ExecutionException e) {
+                // surface the failure of a manager as if it had acted on this thread
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * Stop the threads. The pool cannot be used afterwards.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -55,6 +55,12 @@ public interface Simulator {
    */
   SimStepResult step(double timeStep);
 
+  /**
+   * Release the threads and other resources the simulator holds once the
+   * run is over. Stepping the simulator again takes them back.
+   */
+  void dispose();
+
   /**
    * Get the layout of the simulation.
    *
@@ -138,5 +144,18 @@ public interface Simulator {
   int getTotalScheduledVehicles();
   
   double getAvgTravelTime();
+  /**
+   * Get the mean absolute deviation of the travel times of the completed
+   * vehicles from their mean, the "Time STD" of the experiment results.
+   *
+   * @return the mean absolute deviation of the travel times
+   */
   double getTimeSTD();
+  /**
+   * Get the standard deviation of the travel times of the completed
+   * vehicles.
+   *
+   * @return the standard deviation of the travel times
+   */
+  double getTravelTimeStandardDeviation();
 }
@@ -0,0 +1,219 @@
+package aim4.sim;
+
+import aim4.map.SpawnPoint;
+import aim4.map.SpawnPoint.SpawnSpecGenerator;
+import aim4.map.trafficbyturns.FileSpawnSpecGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Spawns vehicles only at the spawn points with a spawn due. The next spawn
+ * time of every spawn point is kept in a single queue, so a time step only
+ * visits the spawn points spawning in it instead of every spawn point. A spawn
+ * blocked by a vehicle still in the no vehicle zone of its spawn point is
+ * retried, waiting twice as long after every failed try, up to
+ * {@link #MAX_BACKOFF} seconds.
+ * <p>
+ * Only spawn points of a {@link FileSpawnSpecGenerator} can be scheduled, as
+ * other generators draw their spawns while they are acted upon.
+ */
+public class SpawnScheduler {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * Spawns the vehicles of the spawn points with a spawn due.
+     */
+    public static interface Spawner {
+
+        /**
+         * Spawn a vehicle at a spawn point with a spawn due and no vehicle in
+         * its no vehicle zone. Acting upon the spawn point is up to the
+         * spawner.
+         *
+         * @param spawnPoint the spawn point
+         * @param timeStep the time step
+         */
+        void spawn(SpawnPoint spawnPoint, double timeStep);
+    }
+
+    /**
+     * The next time a spawn point is visited.
+     */
+    private static class SpawnEvent implements Comparable<SpawnEvent> {
+
+        /**
+         * The spawn point.
+         */
+        private final SpawnPoint spawnPoint;
+        /**
+         * The generator of the spawn point.
+         */
+        private final FileSpawnSpecGenerator generator;
+        /**
+         * The time the spawn point is visited.
+         */
+        private double time;
+        /**
+         * The order the event was queued in, which breaks ties between events
+         * of the same time.
+         */
+        private long order;
+        /**
+         * The number of times in a row the spawn was blocked.
+         */
+        private int blocked = 0;
+
+        private SpawnEvent(SpawnPoint spawnPoint, FileSpawnSpecGenerator generator) {
+            this.spawnPoint = spawnPoint;
+            this.generator = generator;
+        }
+
+        @Override
+        public int compareTo(SpawnEvent other) {
+            int c = Double.compare(time, other.time);
+            if (c != 0) {
+                return c;
+            }
+            return (order < other.order ? -1 : (order == other.order ? 0 : 1));
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The longest time, in seconds, a blocked spawn waits before it is tried
+     * again.
+     */
+    private static final double MAX_BACKOFF = 1.0;
+
+    /**
+     * The simulator the vehicles are spawned in.
+     */
+    private final AutoDriverOnlySimulator sim;
+    /**
+     * The generators of the spawn points.
+     */
+    private final List<FileSpawnSpecGenerator> generators = new ArrayList<FileSpawnSpecGenerator>();
+    /**
+     * The spawn points waiting for their next spawn, by time.
+     */
+    private final PriorityQueue<SpawnEvent> events = new PriorityQueue<SpawnEvent>();
+    /**
+     * The order of the next event queued.
+     */
+    private long nextOrder = 0;
+    /**
+     * The number of spawns blocked so far.
+     */
+    private int blockedSpawns = 0;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a spawn scheduler. Every spawn point must have a
+     * {@link FileSpawnSpecGenerator}.
+     *
+     * @param sim the simulator the vehicles are spawned in
+     * @param spawnPoints the spawn points
+     */
+    SpawnScheduler(AutoDriverOnlySimulator sim, List<SpawnPoint> spawnPoints) {
+        this.sim = sim;
+        for (SpawnPoint spawnPoint : spawnPoints) {
+            FileSpawnSpecGenerator generator = (FileSpawnSpecGenerator) spawnPoint.getVehicleSpecChooser();
+            if (!generators.contains(generator)) {
+                generators.add(generator);
+            }
+            SpawnEvent event = new SpawnEvent(spawnPoint, generator);
+            schedule(event, generator.getNextSpawnTime(spawnPoint));
+        }
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * Whether the spawns of every spawn point can be scheduled.
+     *
+     * @param spawnPoints the spawn points
+     * @return whether every spawn point has a {@link FileSpawnSpecGenerator}
+     */
+    public static boolean canSchedule(List<SpawnPoint> spawnPoints) {
+        for (SpawnPoint spawnPoint : spawnPoints) {
+            SpawnSpecGenerator generator = spawnPoint.getVehicleSpecChooser();
+            if (!(generator instanceof FileSpawnSpecGenerator)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spawn the vehicles due in a time step. Every spawn point spawns at most
+     * once in a time step.
+     *
+     * @param currentTime the time at the start of the time step
+     * @param timeStep the time step
+     * @param spawner the spawner of the vehicles
+     */
+    public void spawnDue(double currentTime, double timeStep, Spawner spawner) {
+        double stepEnd = currentTime + timeStep;
+        for (FileSpawnSpecGenerator generator : generators) {
+            generator.startStep(stepEnd, timeStep);
+        }
+        List<SpawnEvent> due = new ArrayList<SpawnEvent>();
+        while (!events.isEmpty() && events.peek().time <= stepEnd) {
+            due.add(events.poll());
+        }
+        // a time within the next time step, clear of rounding at its end
+        double nextStep = stepEnd + timeStep / 2;
+        for (SpawnEvent event : due) {
+            SpawnPoint spawnPoint = event.spawnPoint;
+            spawnPoint.advanceTo(currentTime);
+            if (sim.canSpawnVehicle(spawnPoint)) {
+                event.blocked = 0;
+                spawner.spawn(spawnPoint, timeStep);
+                schedule(event, Math.max(event.generator.getNextSpawnTime(spawnPoint), nextStep));
+            } else {
+                blockedSpawns++;
+                double backoff = timeStep * ((1L << Math.min(event.blocked, 30)) - 1);
+                event.blocked++;
+                schedule(event, nextStep + Math.min(backoff, MAX_BACKOFF));
+            }
+        }
+    }
+
+    /**
+     * Get the number of spawns blocked so far by a vehicle in the no vehicle
+     * zone of their spawn point. A spawn blocked several times is counted
+     * every time.
+     *
+     * @return the number of spawns blocked
+     */
+    public int getBlockedSpawns() {
+        return blockedSpawns;
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Queue the next visit of a spawn point, unless it will not spawn any
+     * more vehicles.
+     *
+     * @param event the event of the spawn point
+     * @param time the time of the visit
+     */
+    private void schedule(SpawnEvent event, double time) {
+        if (time == Double.POSITIVE_INFINITY) {
+            return;
+        }
+        event.time = time;
+        event.order = nextOrder++;
+        events.add(event);
+    }
+}
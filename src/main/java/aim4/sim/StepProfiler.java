@@ -0,0 +1,488 @@
+package aim4.sim;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Times the phases of the steps of a simulator. Every phase keeps a rolling
+ * histogram of its times over the last {@link #WINDOW} steps, next to the
+ * number of active vehicles and reservation requests of each step. Timing
+ * takes a call to {@link System#nanoTime()} per phase, and the histograms are
+ * only updated once per step. The profile can be watched through JMX under
+ * {@link #OBJECT_NAME}.
+ * <p>
+ * When counting allocations, every phase also keeps a rolling histogram of
+ * the bytes it allocated on the simulation thread, read from the
+ * {@link ThreadMXBean} of the JVM once per phase. Allocations of other
+ * threads, as the intersection manager pool, are not counted.
+ */
+public class StepProfiler implements StepProfilerMBean {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * The phases of a step, in the order they run.
+     */
+    public static enum Phase {
+        /** Refreshing the traffic signals. */
+        SIGNALS,
+        /** Spawning vehicles. */
+        SPAWN,
+        /** Providing sensor input to the vehicles. */
+        SENSORS,
+        /** Letting the drivers act. */
+        DRIVERS,
+        /** Letting the intersection managers act. */
+        INTERSECTION_MANAGERS,
+        /** Delivering the V2I and I2V messages. */
+        COMMUNICATION,
+        /** Moving the vehicles. */
+        MOVE,
+        /** Removing the completed vehicles and checking the step. */
+        CLEANUP
+    }
+
+    /**
+     * A histogram of the last values added. Values are counted in buckets
+     * of at most an eighth of their value, so quantiles are within 12.5%.
+     */
+    private static class RollingHistogram {
+
+        /**
+         * The number of buckets per power of two.
+         */
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final long[] values;
+        private final int[] counts = new int[BUCKETS];
+        /**
+         * The index the next value is written at.
+         */
+        private int next = 0;
+        private int size = 0;
+        private long sum = 0;
+
+        private RollingHistogram(int window) {
+            values = new long[window];
+        }
+
+        private void add(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            if (size == values.length) {
+                long old = values[next];
+                counts[bucket(old)]--;
+                sum -= old;
+            } else {
+                size++;
+            }
+            values[next] = value;
+            counts[bucket(value)]++;
+            sum += value;
+            next = (next + 1) % values.length;
+        }
+
+        private double mean() {
+            return (size == 0 ? Double.NaN : (double) sum / size);
+        }
+
+        private long max() {
+            long max = 0;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, values[i]);
+            }
+            return max;
+        }
+
+        private double quantile(double q) {
+            if (size == 0) {
+                return Double.NaN;
+            }
+            int rank = (int) (q * (size - 1));
+            int seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts[b];
+                if (rank < seen) {
+                    return middle(b);
+                }
+            }
+            return max();
+        }
+
+        private void clear() {
+            Arrays.fill(counts, 0);
+            next = 0;
+            size = 0;
+            sum = 0;
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) ((value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+            return ((exp - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + sub;
+        }
+
+        private static double middle(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exp = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+            long width = 1L << (exp - SUB_BUCKET_BITS);
+            long lower = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) * width;
+            return lower + (width - 1) / 2.0;
+        }
+    }
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+    /**
+     * The name the profiler is registered under with the platform MBean
+     * server.
+     */
+    public static final String OBJECT_NAME = "aim4:type=StepProfiler";
+    /**
+     * The number of steps in the rolling window.
+     */
+    public static final int WINDOW = 3000;
+
+    private static final Phase[] PHASES = Phase.values();
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The times of the phases of the step being profiled, only touched by
+     * the simulation thread.
+     */
+    private final long[] currentStep = new long[PHASES.length];
+    private final RollingHistogram[] phaseTimes = new RollingHistogram[PHASES.length];
+    private final RollingHistogram stepTimes = new RollingHistogram(WINDOW);
+    private final RollingHistogram activeVehicles = new RollingHistogram(WINDOW);
+    private final RollingHistogram requests = new RollingHistogram(WINDOW);
+    /**
+     * The counter of the bytes allocated by threads, or null if allocations
+     * are not counted.
+     */
+    private final com.sun.management.ThreadMXBean allocationCounter;
+    /**
+     * The bytes allocated by the phases of the step being profiled, only
+     * touched by the simulation thread.
+     */
+    private final long[] currentStepBytes = new long[PHASES.length];
+    private final RollingHistogram[] phaseBytes = new RollingHistogram[PHASES.length];
+    private final RollingHistogram stepBytes = new RollingHistogram(WINDOW);
+    /**
+     * The bytes allocated by the simulation thread when the current phase
+     * started.
+     */
+    private long lapBytes = 0;
+    /**
+     * The time of each phase over all steps profiled.
+     */
+    private final long[] totalPhaseTimes = new long[PHASES.length];
+    private long steps = 0;
+    /**
+     * The number of requests sent before the current step.
+     */
+    private long lastRequestTotal = -1;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a step profiler timing the phases.
+     */
+    public StepProfiler() {
+        this(false);
+    }
+
+    /**
+     * Create a step profiler.
+     *
+     * @param countAllocations whether the bytes every phase allocates should
+     * be counted too. They are not counted if the JVM cannot count the bytes
+     * allocated by a thread.
+     */
+    public StepProfiler(boolean countAllocations) {
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseTimes[i] = new RollingHistogram(WINDOW);
+            phaseBytes[i] = new RollingHistogram(WINDOW);
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (countAllocations && threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            allocationCounter = (com.sun.management.ThreadMXBean) threads;
+            allocationCounter.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            allocationCounter = null;
+        }
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * Register the profiler with the platform MBean server, replacing the
+     * profiler of an earlier simulator. Failing to register is reported but
+     * not fatal.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("Could not register the step profiler: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Record the start of a step.
+     *
+     * @return the value of {@link System#nanoTime()} now, when the first
+     * phase starts
+     */
+    public long startStep() {
+        if (allocationCounter != null) {
+            lapBytes = allocatedBytes();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the end of a phase of the current step.
+     *
+     * @param phase the phase
+     * @param start the value of {@link System#nanoTime()} when the phase
+     * started
+     * @return the value of {@link System#nanoTime()} now, when the next phase
+     * starts
+     */
+    public long lap(Phase phase, long start) {
+        long now = System.nanoTime();
+        currentStep[phase.ordinal()] += now - start;
+        if (allocationCounter != null) {
+            long bytes = allocatedBytes();
+            currentStepBytes[phase.ordinal()] += bytes - lapBytes;
+            lapBytes = bytes;
+            // the counting itself is left to the next phase
+            now = System.nanoTime();
+        }
+        return now;
+    }
+
+    /**
+     * Record the end of the current step.
+     *
+     * @param activeVehicleCount the number of active vehicles
+     * @param requestTotal the number of reservation requests sent so far
+     */
+    public synchronized void endStep(int activeVehicleCount, long requestTotal) {
+        long total = 0;
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseTimes[i].add(currentStep[i]);
+            totalPhaseTimes[i] += currentStep[i];
+            total += currentStep[i];
+            currentStep[i] = 0;
+        }
+        stepTimes.add(total);
+        if (allocationCounter != null) {
+            long totalBytes = 0;
+            for (int i = 0; i < PHASES.length; i++) {
+                phaseBytes[i].add(currentStepBytes[i]);
+                totalBytes += currentStepBytes[i];
+                currentStepBytes[i] = 0;
+            }
+            stepBytes.add(totalBytes);
+        }
+        activeVehicles.add(activeVehicleCount);
+        requests.add(lastRequestTotal < 0 ? 0 : requestTotal - lastRequestTotal);
+        lastRequestTotal = requestTotal;
+        steps++;
+    }
+
+    @Override
+    public synchronized long getSteps() {
+        return steps;
+    }
+
+    @Override
+    public synchronized int getWindowSteps() {
+        return stepTimes.size;
+    }
+
+    @Override
+    public String[] getPhaseNames() {
+        String[] names = new String[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            names[i] = PHASES[i].name();
+        }
+        return names;
+    }
+
+    @Override
+    public synchronized double[] getPhaseMeanMicros() {
+        double[] micros = new double[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            micros[i] = phaseTimes[i].mean() / 1e3;
+        }
+        return micros;
+    }
+
+    @Override
+    public synchronized double[] getPhaseP50Micros() {
+        return phaseQuantileMicros(0.5);
+    }
+
+    @Override
+    public synchronized double[] getPhaseP99Micros() {
+        return phaseQuantileMicros(0.99);
+    }
+
+    @Override
+    public synchronized double[] getPhaseMaxMicros() {
+        double[] micros = new double[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            micros[i] = phaseTimes[i].max() / 1e3;
+        }
+        return micros;
+    }
+
+    @Override
+    public synchronized double[] getPhaseShares() {
+        long total = 0;
+        for (long t : totalPhaseTimes) {
+            total += t;
+        }
+        double[] shares = new double[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            shares[i] = (total == 0 ? Double.NaN : (double) totalPhaseTimes[i] / total);
+        }
+        return shares;
+    }
+
+    @Override
+    public synchronized double getStepMeanMicros() {
+        return stepTimes.mean() / 1e3;
+    }
+
+    @Override
+    public synchronized double getStepP99Micros() {
+        return stepTimes.quantile(0.99) / 1e3;
+    }
+
+    @Override
+    public boolean isCountingAllocations() {
+        return allocationCounter != null;
+    }
+
+    @Override
+    public synchronized double[] getPhaseMeanAllocatedBytes() {
+        double[] bytes = new double[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            bytes[i] = phaseBytes[i].mean();
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized double getStepMeanAllocatedBytes() {
+        return stepBytes.mean();
+    }
+
+    @Override
+    public synchronized double getStepP99AllocatedBytes() {
+        return stepBytes.quantile(0.99);
+    }
+
+    @Override
+    public synchronized double getMeanActiveVehicles() {
+        return activeVehicles.mean();
+    }
+
+    @Override
+    public synchronized long getMaxActiveVehicles() {
+        return activeVehicles.max();
+    }
+
+    @Override
+    public synchronized double getMeanRequests() {
+        return requests.mean();
+    }
+
+    @Override
+    public synchronized long getMaxRequests() {
+        return requests.max();
+    }
+
+    @Override
+    public synchronized String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Step profile over the last %d of %d steps: mean %.1f us, p99 %.1f us, %.1f vehicles (max %d), %.2f requests (max %d)%n",
+                stepTimes.size, steps, getStepMeanMicros(), getStepP99Micros(),
+                getMeanActiveVehicles(), getMaxActiveVehicles(), getMeanRequests(), getMaxRequests()));
+        if (allocationCounter != null) {
+            sb.append(String.format("  allocated per step: mean %.1f KB, p99 %.1f KB%n",
+                    getStepMeanAllocatedBytes() / 1024, getStepP99AllocatedBytes() / 1024));
+        }
+        double[] shares = getPhaseShares();
+        for (int i = 0; i < PHASES.length; i++) {
+            RollingHistogram h = phaseTimes[i];
+            sb.append(String.format("  %-22s mean %9.1f us  p50 %9.1f us  p99 %9.1f us  max %9.1f us  share %5.1f%%",
+                    PHASES[i].name(), h.mean() / 1e3, h.quantile(0.5) / 1e3,
+                    h.quantile(0.99) / 1e3, h.max() / 1e3, shares[i] * 100));
+            if (allocationCounter != null) {
+                sb.append(String.format("  allocated %9.1f KB", phaseBytes[i].mean() / 1024));
+            }
+            sb.append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseTimes[i].clear();
+            phaseBytes[i].clear();
+            totalPhaseTimes[i] = 0;
+        }
+        stepTimes.clear();
+        stepBytes.clear();
+        activeVehicles.clear();
+        requests.clear();
+        steps = 0;
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * @return the bytes allocated so far by the current thread
+     */
+    private long allocatedBytes() {
+        return allocationCounter.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private double[] phaseQuantileMicros(double q) {
+        double[] micros = new double[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            micros[i] = phaseTimes[i].quantile(q) / 1e3;
+        }
+        return micros;
+    }
+}
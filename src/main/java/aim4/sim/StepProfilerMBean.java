@@ -0,0 +1,114 @@
+package aim4.sim;
+
+/**
+ * The management interface of a {@link StepProfiler}. Times are in
+ * microseconds and, unless stated otherwise, cover the steps in the rolling
+ * window of the profiler. Phase arrays are in the order of
+ * {@link #getPhaseNames()}.
+ */
+public interface StepProfilerMBean {
+
+    /**
+     * @return the number of steps profiled since the profiler was created or
+     * reset
+     */
+    long getSteps();
+
+    /**
+     * @return the number of steps in the rolling window
+     */
+    int getWindowSteps();
+
+    /**
+     * @return the names of the phases of a step
+     */
+    String[] getPhaseNames();
+
+    /**
+     * @return the mean time of each phase
+     */
+    double[] getPhaseMeanMicros();
+
+    /**
+     * @return the median time of each phase
+     */
+    double[] getPhaseP50Micros();
+
+    /**
+     * @return the 99th percentile time of each phase
+     */
+    double[] getPhaseP99Micros();
+
+    /**
+     * @return the longest time of each phase
+     */
+    double[] getPhaseMaxMicros();
+
+    /**
+     * @return the share of each phase in the time of all steps profiled
+     */
+    double[] getPhaseShares();
+
+    /**
+     * @return the mean time of a step
+     */
+    double getStepMeanMicros();
+
+    /**
+     * @return the 99th percentile time of a step
+     */
+    double getStepP99Micros();
+
+    /**
+     * @return whether the bytes allocated by the phases are counted
+     */
+    boolean isCountingAllocations();
+
+    /**
+     * @return the mean bytes allocated by each phase on the simulation
+     * thread, or NaN if allocations are not counted
+     */
+    double[] getPhaseMeanAllocatedBytes();
+
+    /**
+     * @return the mean bytes allocated by a step on the simulation thread, or
+     * NaN if allocations are not counted
+     */
+    double getStepMeanAllocatedBytes();
+
+    /**
+     * @return the 99th percentile of the bytes allocated by a step on the
+     * simulation thread, or NaN if allocations are not counted
+     */
+    double getStepP99AllocatedBytes();
+
+    /**
+     * @return the mean number of active vehicles at the end of a step
+     */
+    double getMeanActiveVehicles();
+
+    /**
+     * @return the largest number of active vehicles at the end of a step
+     */
+    long getMaxActiveVehicles();
+
+    /**
+     * @return the mean number of reservation requests sent in a step
+     */
+    double getMeanRequests();
+
+    /**
+     * @return the largest number of reservation requests sent in a step
+     */
+    long getMaxRequests();
+
+    /**
+     * @return a readable report of the profile
+     */
+    String getReport();
+
+    /**
+     * Forget every step profiled so far.
+     */
+    void reset();
+}
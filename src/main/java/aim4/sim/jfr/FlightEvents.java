@@ -0,0 +1,43 @@
+package aim4.sim.jfr;
+
+/**
+ * Whether the flight recorder events can be emitted. The events need the
+ * <code>jdk.jfr</code> module, which older Java runtimes do not have; call
+ * sites check {@link #AVAILABLE} before creating an event, so the event
+ * classes are never loaded on such runtimes. The events emitted on hot paths
+ * also have an <code>isTypeEnabled</code> check, so that they are only
+ * created while a recording has them enabled.
+ */
+public final class FlightEvents {
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+    /**
+     * Whether the Java runtime has the flight recorder API.
+     */
+    public static final boolean AVAILABLE = isFlightRecorderPresent();
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * This class should never be instantiated.
+     */
+    private FlightEvents() {
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    private static boolean isFlightRecorderPresent() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package aim4.sim.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A query of the reservation grid for the tiles of a proposal. There is one
+ * query per proposal tried, so the event is disabled unless the recording
+ * settings enable it.
+ */
+@Name("aim4.GridQuery")
+@Label("Reservation Grid Query")
+@Category({"AIM4", "Intersection Manager"})
+@Description("The reservation grid simulating a proposal through the intersection")
+@Enabled(false)
+@StackTrace(false)
+public class GridQueryEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(GridQueryEvent.class);
+
+    /**
+     * Whether a running recording has the event enabled, for call sites to
+     * skip building the event otherwise.
+     *
+     * @return whether the event is enabled
+     */
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    @Label("VIN")
+    public int vin;
+
+    @Label("Arrival Lane")
+    public int arrivalLane;
+
+    @Label("Departure Lane")
+    public int departureLane;
+
+    @Label("Arrival Time")
+    public double arrivalTime;
+
+    @Label("Internal Simulation Steps")
+    public long simulationSteps;
+
+    @Label("Feasible")
+    @Description("Whether the tiles of the proposal were free")
+    public boolean feasible;
+}
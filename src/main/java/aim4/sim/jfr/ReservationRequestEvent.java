@@ -0,0 +1,54 @@
+package aim4.sim.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The processing of a reservation request by the policy of an intersection
+ * manager.
+ */
+@Name("aim4.ReservationRequest")
+@Label("Reservation Request")
+@Category({"AIM4", "Intersection Manager"})
+@Description("An intersection manager processing a reservation request")
+@StackTrace(false)
+public class ReservationRequestEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(ReservationRequestEvent.class);
+
+    /**
+     * Whether a running recording has the event enabled, for call sites to
+     * skip building the event otherwise.
+     *
+     * @return whether the event is enabled
+     */
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    @Label("Intersection Manager")
+    public int intersectionManager;
+
+    @Label("VIN")
+    public int vin;
+
+    @Label("Proposals")
+    @Description("The number of proposals in the request")
+    public int proposals;
+
+    @Label("Outcome")
+    @Description("CONFIRMED, the reason of the rejection, or NONE if no response was sent")
+    public String outcome;
+
+    @Label("Internal Simulation Steps")
+    @Description("The steps the reservation grid simulated to check the proposals")
+    public long simulationSteps;
+
+    @Label("Simulation Time")
+    public double simulationTime;
+}
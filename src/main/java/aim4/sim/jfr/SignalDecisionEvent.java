@@ -0,0 +1,107 @@
+package aim4.sim.jfr;
+
+import aim4.config.ringbarrier.HistoricalRBSegmentInformation;
+import aim4.config.ringbarrier.RBRing;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A decision of a ring and barrier signal controller: a ring changing
+ * phase, a phase gapping out early, or a phase being extended by an
+ * actuation.
+ */
+@Name("aim4.SignalDecision")
+@Label("Signal Decision")
+@Category({"AIM4", "Signal"})
+@Description("A ring and barrier controller changing, gapping out or extending a phase")
+@StackTrace(false)
+public class SignalDecisionEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(SignalDecisionEvent.class);
+
+    /**
+     * Whether a running recording has the event enabled, for call sites to
+     * skip building the event otherwise.
+     *
+     * @return whether the event is enabled
+     */
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * A ring changed to its next phase segment.
+     */
+    public static final String PHASE_CHANGE = "PHASE_CHANGE";
+    /**
+     * The current phase segment of a ring will end early, as no vehicle is
+     * approaching.
+     */
+    public static final String GAP_OUT = "GAP_OUT";
+    /**
+     * An actuation extended the current phase segment of a ring.
+     */
+    public static final String EXTENSION = "EXTENSION";
+
+    @Label("Intersection Manager")
+    public int intersectionManager;
+
+    @Label("Ring")
+    public int ring;
+
+    @Label("Decision")
+    public String decision;
+
+    @Label("Segment")
+    @Description("The phase segment the decision is about, the one ended for a phase change")
+    public long segment;
+
+    @Label("Next Segment")
+    @Description("The phase segment started by a phase change, or -1")
+    public long nextSegment;
+
+    @Label("Actuations")
+    @Description("The actuations registered during the segment so far")
+    public int actuations;
+
+    @Label("Expected End Time")
+    @Description("The simulation time the current segment of the ring is expected to end")
+    public double expectedEndTime;
+
+    @Label("Simulation Time")
+    public double simulationTime;
+
+    /**
+     * Record a decision, if the event is enabled.
+     *
+     * @param intersectionManager the ID of the intersection manager of the
+     * controller, or -1
+     * @param ring the ring
+     * @param decision the decision
+     * @param endedSegment the timing of the segment ended by a phase change,
+     * or null if the decision is about the current segment of the ring
+     * @param currentTime the current time
+     */
+    public static void emit(int intersectionManager, RBRing ring, String decision,
+            HistoricalRBSegmentInformation endedSegment, double currentTime) {
+        SignalDecisionEvent event = new SignalDecisionEvent();
+        if (event.shouldCommit()) {
+            HistoricalRBSegmentInformation current = ring.getCurrentSegmentTimingInformationCopy();
+            HistoricalRBSegmentInformation segment = (endedSegment == null ? current : endedSegment);
+            event.intersectionManager = intersectionManager;
+            event.ring = ring.getRingId();
+            event.decision = decision;
+            event.segment = segment.getId();
+            event.nextSegment = (endedSegment == null ? -1 : current.getId());
+            event.actuations = segment.getNumberOfActuationsWithUniqueTimes();
+            event.expectedEndTime = current.getSimTimeWhenExpectedEndTimeExpires();
+            event.simulationTime = currentTime;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package aim4.sim.jfr;
+
+import aim4.vehicle.VehicleSimView;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A vehicle leaving the simulation.
+ */
+@Name("aim4.VehicleCompletion")
+@Label("Vehicle Completion")
+@Category({"AIM4", "Vehicle"})
+@StackTrace(false)
+public class VehicleCompletionEvent extends Event {
+
+    @Label("VIN")
+    public int vin;
+
+    @Label("Vehicle Type")
+    public String vehicleType;
+
+    @Label("Travel Time")
+    @Description("The simulation time the vehicle spent in the simulation, in seconds")
+    public double travelTime;
+
+    @Label("Delay")
+    @Description("The delay of the vehicle in seconds, or NaN if it has none")
+    public double delay;
+
+    @Label("Simulation Time")
+    public double simulationTime;
+
+    /**
+     * Record the completion of a vehicle, if the event is enabled.
+     *
+     * @param vehicle the vehicle
+     * @param delay the delay of the vehicle, or NaN
+     * @param currentTime the current time
+     */
+    public static void emit(VehicleSimView vehicle, double delay, double currentTime) {
+        VehicleCompletionEvent event = new VehicleCompletionEvent();
+        if (event.shouldCommit()) {
+            event.vin = vehicle.getVIN();
+            event.vehicleType = String.valueOf(vehicle.getVehicleType());
+            event.travelTime = currentTime - vehicle.getSpawnTime();
+            event.delay = delay;
+            event.simulationTime = currentTime;
+            event.commit();
+        }
+    }
+}
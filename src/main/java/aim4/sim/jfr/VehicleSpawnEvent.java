@@ -0,0 +1,48 @@
+package aim4.sim.jfr;
+
+import aim4.driver.Driver;
+import aim4.vehicle.VehicleSimView;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A vehicle entering the simulation.
+ */
+@Name("aim4.VehicleSpawn")
+@Label("Vehicle Spawn")
+@Category({"AIM4", "Vehicle"})
+@StackTrace(false)
+public class VehicleSpawnEvent extends Event {
+
+    @Label("VIN")
+    public int vin;
+
+    @Label("Vehicle Type")
+    public String vehicleType;
+
+    @Label("Lane")
+    public int lane;
+
+    @Label("Simulation Time")
+    public double simulationTime;
+
+    /**
+     * Record the spawn of a vehicle, if the event is enabled.
+     *
+     * @param vehicle the vehicle, with its VIN assigned
+     */
+    public static void emit(VehicleSimView vehicle) {
+        VehicleSpawnEvent event = new VehicleSpawnEvent();
+        if (event.shouldCommit()) {
+            Driver driver = vehicle.getDriver();
+            event.vin = vehicle.getVIN();
+            event.vehicleType = String.valueOf(vehicle.getVehicleType());
+            event.lane = (driver == null || driver.getCurrentLane() == null ? -1 : driver.getCurrentLane().getId());
+            event.simulationTime = vehicle.getSpawnTime();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * This package contains the Java Flight Recorder events of a simulation.
+ * The events are only recorded while a flight recording with them enabled
+ * is running, for instance one started with
+ * <code>-XX:StartFlightRecording</code> or from JDK Mission Control.
+ */
+package aim4.sim.jfr;
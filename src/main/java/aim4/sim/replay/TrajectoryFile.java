@@ -0,0 +1,512 @@
+package aim4.sim.replay;
+
+import aim4.config.SimConfig.VEHICLE_TYPE;
+import aim4.config.TrafficSignal;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a file written by {@link TrajectoryRecorder}, giving random access
+ * to its frames. The chunks are mapped into memory when a frame in them is
+ * read, and the frames of the last chunk read are kept, so that playing,
+ * stepping and scrubbing through the frames of a chunk only inflates it
+ * once.
+ */
+public class TrajectoryFile {
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+    private static final int VEHICLE_TYPE_COUNT = VEHICLE_TYPE.values().length;
+    private static final int SIGNAL_COUNT = TrafficSignal.values().length;
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The file of the recording.
+     */
+    private final File file;
+    private final RandomAccessFile in;
+    private final FileChannel channel;
+    /**
+     * The bounds of the map the recording was made on.
+     */
+    private final Rectangle2D mapBounds;
+    /**
+     * The x and y coordinates of each traffic light.
+     */
+    private final float[] lightPositions;
+    /**
+     * The heading of the entry lane of each traffic light.
+     */
+    private final float[] lightHeadings;
+    /**
+     * The offsets of the chunks, followed by the end of the last chunk.
+     */
+    private final long[] chunkOffsets;
+    /**
+     * The indices of the first frames of the chunks, followed by the number
+     * of frames.
+     */
+    private final int[] chunkFirstFrames;
+    private final double[] chunkFirstTimes;
+    private final double[] chunkLastTimes;
+    /**
+     * Whether the file ends with the index of its chunks.
+     */
+    private final boolean indexed;
+    private final Inflater inflater = new Inflater();
+    /**
+     * The chunk whose frames are kept, or -1.
+     */
+    private int cachedChunk = -1;
+    private TrajectoryFrame[] cachedFrames;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Open a trajectory file.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be read or is not a trajectory
+     * file
+     */
+    public TrajectoryFile(File file) throws IOException {
+        this.file = file;
+        in = new RandomAccessFile(file, "r");
+        try {
+            channel = in.getChannel();
+            long size = channel.size();
+            ByteBuffer header = map(0, Math.min(size, 4 + 4 + 4 * 8 + 4));
+            if (header.remaining() < 8 || header.getInt() != TrajectoryRecorder.MAGIC) {
+                throw new IOException(file + " is not a trajectory file.");
+            }
+            int version = header.getInt();
+            if (version != TrajectoryRecorder.VERSION) {
+                throw new IOException(file + " is a trajectory file of version " + version + ", not " + TrajectoryRecorder.VERSION + ".");
+            }
+            if (header.remaining() < 4 * 8 + 4) {
+                throw new IOException(file + " ends in its header.");
+            }
+            mapBounds = new Rectangle2D.Double(header.getDouble(), header.getDouble(),
+                    header.getDouble(), header.getDouble());
+            int lightCount = header.getInt();
+            long headerEnd = header.limit() + 3L * 4 * lightCount;
+            if (lightCount < 0 || headerEnd > size) {
+                throw new IOException(file + " ends in its header.");
+            }
+            ByteBuffer lights = map(header.limit(), headerEnd - header.limit());
+            lightPositions = new float[2 * lightCount];
+            lightHeadings = new float[lightCount];
+            for (int i = 0; i < lightCount; i++) {
+                lightPositions[2 * i] = lights.getFloat();
+                lightPositions[2 * i + 1] = lights.getFloat();
+                lightHeadings[i] = lights.getFloat();
+            }
+
+            List<long[]> chunks = readIndex(headerEnd, size);
+            indexed = (chunks != null);
+            if (chunks == null) {
+                chunks = scanChunks(headerEnd, size);
+            }
+            int n = chunks.size() - 1;
+            chunkOffsets = new long[n + 1];
+            chunkFirstFrames = new int[n + 1];
+            chunkFirstTimes = new double[n];
+            chunkLastTimes = new double[n];
+            for (int c = 0; c <= n; c++) {
+                long[] chunk = chunks.get(c);
+                chunkOffsets[c] = chunk[0];
+                if (c < n) {
+                    chunkFirstFrames[c + 1] = chunkFirstFrames[c] + (int) chunk[1];
+                    chunkFirstTimes[c] = Double.longBitsToDouble(chunk[2]);
+                    chunkLastTimes[c] = Double.longBitsToDouble(chunk[3]);
+                }
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * @return the file of the recording
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the bounds of the map the recording was made on
+     */
+    public Rectangle2D getMapBounds() {
+        return mapBounds;
+    }
+
+    /**
+     * @return whether the recording was closed; the frames of a recording
+     * that was not closed end with the last full chunk written
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * @return the number of frames
+     */
+    public int getFrameCount() {
+        return chunkFirstFrames[chunkFirstFrames.length - 1];
+    }
+
+    /**
+     * @return the time of the first frame, or NaN if there are no frames
+     */
+    public double getStartTime() {
+        return (chunkFirstTimes.length == 0 ? Double.NaN : chunkFirstTimes[0]);
+    }
+
+    /**
+     * @return the time of the last frame, or NaN if there are no frames
+     */
+    public double getEndTime() {
+        return (chunkLastTimes.length == 0 ? Double.NaN : chunkLastTimes[chunkLastTimes.length - 1]);
+    }
+
+    /**
+     * @return the number of traffic lights
+     */
+    public int getLightCount() {
+        return lightHeadings.length;
+    }
+
+    /**
+     * @param i the index of a traffic light
+     * @return the x-coordinate of the traffic light
+     */
+    public float getLightX(int i) {
+        return lightPositions[2 * i];
+    }
+
+    /**
+     * @param i the index of a traffic light
+     * @return the y-coordinate of the traffic light
+     */
+    public float getLightY(int i) {
+        return lightPositions[2 * i + 1];
+    }
+
+    /**
+     * @param i the index of a traffic light
+     * @return the heading of the entry lane of the traffic light
+     */
+    public float getLightHeading(int i) {
+        return lightHeadings[i];
+    }
+
+    /**
+     * Find the frame shown at a time.
+     *
+     * @param time the simulation time
+     * @return the index of the last frame at or before the time, or 0 if the
+     * time is before the first frame
+     * @throws IOException if the chunk of the frame cannot be read
+     */
+    public synchronized int getFrameAt(double time) throws IOException {
+        int c = lastAtOrBefore(chunkFirstTimes, chunkFirstTimes.length, time);
+        if (c < 0) {
+            return 0;
+        }
+        TrajectoryFrame[] frames = readChunk(c);
+        int lo = 0;
+        int hi = frames.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (frames[mid].getTime() <= time) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return chunkFirstFrames[c] + lo;
+    }
+
+    /**
+     * Read a frame.
+     *
+     * @param index the index of the frame
+     * @return the frame
+     * @throws IOException if the chunk of the frame cannot be read
+     */
+    public synchronized TrajectoryFrame getFrame(int index) throws IOException {
+        if (index < 0 || index >= getFrameCount()) {
+            throw new IndexOutOfBoundsException("No frame " + index + " in " + file + " of " + getFrameCount() + " frames.");
+        }
+        int c = lastAtOrBefore(chunkFirstFrames, chunkFirstFrames.length - 1, index);
+        return readChunk(c)[index - chunkFirstFrames[c]];
+    }
+
+    /**
+     * Close the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        cachedChunk = -1;
+        cachedFrames = null;
+        inflater.end();
+        in.close();
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Read the index at the end of a closed file.
+     *
+     * @param headerEnd the end of the header
+     * @param size the size of the file
+     * @return the offset, number of frames and the bits of the first and last
+     * times of every chunk, followed by the end of the last chunk, or null if
+     * the file has no index
+     * @throws IOException if the index cannot be read
+     */
+    private List<long[]> readIndex(long headerEnd, long size) throws IOException {
+        if (size < headerEnd + TrajectoryRecorder.FOOTER_BYTES) {
+            return null;
+        }
+        ByteBuffer footer = map(size - TrajectoryRecorder.FOOTER_BYTES, TrajectoryRecorder.FOOTER_BYTES);
+        long indexOffset = footer.getLong();
+        int count = footer.getInt();
+        if (footer.getInt() != TrajectoryRecorder.INDEX_MAGIC || count < 0 || indexOffset < headerEnd
+                || indexOffset + (long) count * TrajectoryRecorder.INDEX_ENTRY_BYTES
+                + TrajectoryRecorder.FOOTER_BYTES != size) {
+            return null;
+        }
+        ByteBuffer index = map(indexOffset, (long) count * TrajectoryRecorder.INDEX_ENTRY_BYTES);
+        List<long[]> chunks = new ArrayList<long[]>(count + 1);
+        for (int c = 0; c < count; c++) {
+            chunks.add(new long[]{index.getLong(), index.getInt(),
+                Double.doubleToLongBits(index.getDouble()), Double.doubleToLongBits(index.getDouble())});
+        }
+        chunks.add(new long[]{indexOffset});
+        return chunks;
+    }
+
+    /**
+     * Rebuild the index of a file that was not closed from the headers of
+     * its chunks, ignoring a chunk cut short.
+     *
+     * @param headerEnd the end of the header
+     * @param size the size of the file
+     * @return the offset, number of frames and the bits of the first and last
+     * times of every chunk, followed by the end of the last chunk
+     * @throws IOException if the chunks cannot be read
+     */
+    private List<long[]> scanChunks(long headerEnd, long size) throws IOException {
+        List<long[]> chunks = new ArrayList<long[]>();
+        long offset = headerEnd;
+        while (offset + TrajectoryRecorder.CHUNK_HEADER_BYTES <= size) {
+            ByteBuffer header = map(offset, TrajectoryRecorder.CHUNK_HEADER_BYTES);
+            int count = header.getInt();
+            double firstTime = header.getDouble();
+            double lastTime = header.getDouble();
+            header.getInt();
+            int deflatedLength = header.getInt();
+            long end = offset + TrajectoryRecorder.CHUNK_HEADER_BYTES + deflatedLength;
+            if (count <= 0 || deflatedLength < 0 || end > size) {
+                break;
+            }
+            chunks.add(new long[]{offset, count,
+                Double.doubleToLongBits(firstTime), Double.doubleToLongBits(lastTime)});
+            offset = end;
+        }
+        chunks.add(new long[]{offset});
+        return chunks;
+    }
+
+    /**
+     * Read the frames of a chunk, or get them if they are kept.
+     *
+     * @param c the index of the chunk
+     * @return the frames of the chunk
+     * @throws IOException if the chunk cannot be read
+     */
+    private TrajectoryFrame[] readChunk(int c) throws IOException {
+        if (c == cachedChunk) {
+            return cachedFrames;
+        }
+        ByteBuffer chunk = map(chunkOffsets[c], chunkOffsets[c + 1] - chunkOffsets[c]);
+        TrajectoryFrame[] frames;
+        try {
+            int count = chunk.getInt();
+            chunk.getDouble();
+            chunk.getDouble();
+            byte[] raw = new byte[chunk.getInt()];
+            byte[] deflated = new byte[chunk.getInt()];
+            chunk.get(deflated);
+            inflater.reset();
+            inflater.setInput(deflated);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != raw.length) {
+                throw new IOException(file + " holds a truncated chunk at " + chunkOffsets[c] + ".");
+            }
+            frames = decodeFrames(ByteBuffer.wrap(raw), count);
+        } catch (DataFormatException e) {
+            throw new IOException(file + " holds a corrupt chunk at " + chunkOffsets[c] + ".", e);
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file + " holds a truncated chunk at " + chunkOffsets[c] + ".", e);
+        }
+        cachedChunk = c;
+        cachedFrames = frames;
+        return frames;
+    }
+
+    /**
+     * Decode the frames of a chunk.
+     *
+     * @param buf the inflated frames
+     * @param count the number of frames
+     * @return the frames
+     * @throws IOException if a frame holds an unknown vehicle type or signal
+     */
+    private TrajectoryFrame[] decodeFrames(ByteBuffer buf, int count) throws IOException {
+        TrajectoryFrame[] frames = new TrajectoryFrame[count];
+        float scale = TrajectoryRecorder.POSITION_SCALE;
+        int[] previousVins = new int[0];
+        int[] previousX = new int[0];
+        int[] previousY = new int[0];
+        for (int f = 0; f < count; f++) {
+            double time = buf.getDouble();
+            double humanAverageTravelTime = buf.getDouble();
+            double autoAverageTravelTime = buf.getDouble();
+            int n = readVarInt(buf);
+            int[] vins = new int[n];
+            byte[] types = new byte[n];
+            float[] corners = new float[8 * n];
+            int[] firstX = new int[n];
+            int[] firstY = new int[n];
+            int vin = 0;
+            int p = 0;
+            for (int i = 0; i < n; i++) {
+                vin += unzigzag(readVarInt(buf));
+                vins[i] = vin;
+                types[i] = buf.get();
+                if (types[i] < 0 || types[i] >= VEHICLE_TYPE_COUNT) {
+                    throw new IOException(file + " holds an unknown vehicle type: " + types[i]);
+                }
+                int x0 = unzigzag(readVarInt(buf));
+                int y0 = unzigzag(readVarInt(buf));
+                while (p < previousVins.length && previousVins[p] < vin) {
+                    p++;
+                }
+                if (p < previousVins.length && previousVins[p] == vin) {
+                    x0 += previousX[p];
+                    y0 += previousY[p];
+                }
+                firstX[i] = x0;
+                firstY[i] = y0;
+                corners[8 * i] = x0 / scale;
+                corners[8 * i + 1] = y0 / scale;
+                for (int c = 1; c < 4; c++) {
+                    corners[8 * i + 2 * c] = (x0 + unzigzag(readVarInt(buf))) / scale;
+                    corners[8 * i + 2 * c + 1] = (y0 + unzigzag(readVarInt(buf))) / scale;
+                }
+            }
+            byte[] signals = new byte[lightHeadings.length];
+            buf.get(signals);
+            for (byte signal : signals) {
+                if (signal < 0 || signal >= SIGNAL_COUNT) {
+                    throw new IOException(file + " holds an unknown signal: " + signal);
+                }
+            }
+            frames[f] = new TrajectoryFrame(this, time, humanAverageTravelTime,
+                    autoAverageTravelTime, vins, types, corners, signals);
+            previousVins = vins;
+            previousX = firstX;
+            previousY = firstY;
+        }
+        return frames;
+    }
+
+    private ByteBuffer map(long offset, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    /**
+     * Find the last of the first values of a sorted array that is at most a
+     * value.
+     *
+     * @return the index of the value, or -1 if there is none
+     */
+    private static int lastAtOrBefore(double[] values, int length, double value) {
+        int lo = -1;
+        int hi = length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (values[mid] <= value) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    private static int lastAtOrBefore(int[] values, int length, int value) {
+        int lo = -1;
+        int hi = length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (values[mid] <= value) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Read an unsigned int written seven bits per byte.
+     *
+     * @param buf the input
+     * @return the value
+     * @throws IOException if the value takes more than five bytes
+     */
+    private static int readVarInt(ByteBuffer buf) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buf.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("A varint of more than five bytes.");
+    }
+}
@@ -0,0 +1,154 @@
+package aim4.sim.replay;
+
+import aim4.config.SimConfig.VEHICLE_TYPE;
+import aim4.config.TrafficSignal;
+
+/**
+ * A frame read from a trajectory file: the poses of the vehicles and the
+ * signals of the traffic lights at the end of a step.
+ */
+public class TrajectoryFrame {
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+    private static final VEHICLE_TYPE[] VEHICLE_TYPES = VEHICLE_TYPE.values();
+    private static final TrafficSignal[] TRAFFIC_SIGNALS = TrafficSignal.values();
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    private final TrajectoryFile file;
+    private final double time;
+    private final double humanAverageTravelTime;
+    private final double autoAverageTravelTime;
+    private final int[] vins;
+    private final byte[] vehicleTypes;
+    /**
+     * The x and y coordinates of the four corners of each vehicle.
+     */
+    private final float[] corners;
+    private final byte[] signals;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    TrajectoryFrame(TrajectoryFile file, double time, double humanAverageTravelTime,
+            double autoAverageTravelTime, int[] vins, byte[] vehicleTypes,
+            float[] corners, byte[] signals) {
+        this.file = file;
+        this.time = time;
+        this.humanAverageTravelTime = humanAverageTravelTime;
+        this.autoAverageTravelTime = autoAverageTravelTime;
+        this.vins = vins;
+        this.vehicleTypes = vehicleTypes;
+        this.corners = corners;
+        this.signals = signals;
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * @return the simulation time of the frame
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return the average travel time of the human driven vehicles completed
+     * by then, or NaN if none had completed
+     */
+    public double getHumanAverageTravelTime() {
+        return humanAverageTravelTime;
+    }
+
+    /**
+     * @return the average travel time of the autonomous vehicles completed by
+     * then, or NaN if none had completed
+     */
+    public double getAutoAverageTravelTime() {
+        return autoAverageTravelTime;
+    }
+
+    /**
+     * @return the number of vehicles, which are in the order of their VINs
+     */
+    public int getVehicleCount() {
+        return vins.length;
+    }
+
+    /**
+     * @param i the index of a vehicle
+     * @return the VIN of the vehicle
+     */
+    public int getVin(int i) {
+        return vins[i];
+    }
+
+    /**
+     * @param i the index of a vehicle
+     * @return the type of the vehicle
+     */
+    public VEHICLE_TYPE getVehicleType(int i) {
+        return VEHICLE_TYPES[vehicleTypes[i]];
+    }
+
+    /**
+     * @param i the index of a vehicle
+     * @param corner the index of a corner, from 0 to 3
+     * @return the x-coordinate of the corner of the vehicle
+     */
+    public float getCornerX(int i, int corner) {
+        return corners[8 * i + 2 * corner];
+    }
+
+    /**
+     * @param i the index of a vehicle
+     * @param corner the index of a corner, from 0 to 3
+     * @return the y-coordinate of the corner of the vehicle
+     */
+    public float getCornerY(int i, int corner) {
+        return corners[8 * i + 2 * corner + 1];
+    }
+
+    /**
+     * @return the number of traffic lights
+     */
+    public int getLightCount() {
+        return signals.length;
+    }
+
+    /**
+     * @param i the index of a traffic light
+     * @return the x-coordinate of the traffic light
+     */
+    public float getLightX(int i) {
+        return file.getLightX(i);
+    }
+
+    /**
+     * @param i the index of a traffic light
+     * @return the y-coordinate of the traffic light
+     */
+    public float getLightY(int i) {
+        return file.getLightY(i);
+    }
+
+    /**
+     * @param i the index of a traffic light
+     * @return the heading of the entry lane of the traffic light
+     */
+    public float getLightHeading(int i) {
+        return file.getLightHeading(i);
+    }
+
+    /**
+     * @param i the index of a traffic light
+     * @return the signal of the traffic light
+     */
+    public TrafficSignal getLightSignal(int i) {
+        return TRAFFIC_SIGNALS[signals[i]];
+    }
+}
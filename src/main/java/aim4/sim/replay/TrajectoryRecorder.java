@@ -0,0 +1,571 @@
+package aim4.sim.replay;
+
+import aim4.config.SimConfig;
+import aim4.config.SimConfig.SIGNAL_TYPE;
+import aim4.config.TrafficSignal;
+import aim4.im.IntersectionManager;
+import aim4.im.v2i.RequestHandler.ApproxNPhasesTrafficSignalRequestHandler;
+import aim4.im.v2i.RequestHandler.TrafficSignalRequestHandler;
+import aim4.im.v2i.V2IManager;
+import aim4.im.v2i.policy.BasePolicy;
+import aim4.im.v2i.policy.Policy;
+import aim4.map.BasicMap;
+import aim4.map.lane.Lane;
+import aim4.vehicle.VehicleSimView;
+import expr.trb.TrafficSignalExpr;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Records the vehicle poses and traffic signals of every step of a
+ * simulation to a trajectory file, so that the run can be replayed without
+ * simulating it again. The frames are collected in chunks of
+ * {@link #FRAMES_PER_CHUNK} steps, and every full chunk is deflated and
+ * written to the file by a background thread. The file is created when the
+ * first frame is recorded.
+ * <p>
+ * The file starts with {@link #MAGIC}, {@link #VERSION}, the bounds of the
+ * map and the position and heading of every traffic light. A chunk starts
+ * with its number of frames, the times of its first and last frames, and the
+ * lengths of its frames before and after deflating. A frame holds its time,
+ * the average travel times of the completed human driven and autonomous
+ * vehicles, its vehicles in the order of their VINs, and the ordinal of the
+ * signal of every traffic light. The corners of a vehicle are quantized to
+ * {@link #POSITION_SCALE} units per meter, its first corner written as the
+ * change since the previous frame of the chunk if the vehicle was in it, and
+ * its other corners relative to the first. A closed file ends with an index
+ * of the chunks; {@link TrajectoryFile} rebuilds the index of a file that was
+ * not closed from the chunks written.
+ */
+public class TrajectoryRecorder {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * The traffic light of an entry lane of an intersection guided by
+     * traffic signals.
+     */
+    private static class TrafficLight {
+
+        private final TrafficSignalRequestHandler requestHandler;
+        private final int laneId;
+        private final Point2D position;
+        private final double heading;
+
+        private TrafficLight(TrafficSignalRequestHandler requestHandler,
+                int laneId, Point2D position, double heading) {
+            this.requestHandler = requestHandler;
+            this.laneId = laneId;
+            this.position = position;
+            this.heading = heading;
+        }
+
+        private TrafficSignal getSignal() {
+            return (SimConfig.signalType == SIGNAL_TYPE.FULLY_ACTUATED
+                    ? ((ApproxNPhasesTrafficSignalRequestHandler) requestHandler).getSignalForGUI(laneId)
+                    : requestHandler.getSignal(laneId));
+        }
+    }
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+    /**
+     * Marks a trajectory file.
+     */
+    public static final int MAGIC = 0x41494d54;
+    /**
+     * The version of the file layout.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The number of frames in a full chunk.
+     */
+    public static final int FRAMES_PER_CHUNK = 250;
+    /**
+     * The number of units per meter the corners of the vehicles are
+     * quantized to.
+     */
+    public static final int POSITION_SCALE = 100;
+    /**
+     * Marks the end of the index of a closed file.
+     */
+    static final int INDEX_MAGIC = 0x41494d49;
+    /**
+     * The number of bytes of the header of a chunk.
+     */
+    static final int CHUNK_HEADER_BYTES = 4 + 8 + 8 + 4 + 4;
+    /**
+     * The number of bytes of an entry of the index: the offset of a chunk,
+     * its number of frames and the times of its first and last frames.
+     */
+    static final int INDEX_ENTRY_BYTES = 8 + 4 + 8 + 8;
+    /**
+     * The number of bytes after the index: its offset, the number of chunks
+     * and {@link #INDEX_MAGIC}.
+     */
+    static final int FOOTER_BYTES = 8 + 4 + 4;
+    /**
+     * The number of full chunks that may wait to be written before the
+     * simulation waits for the writer.
+     */
+    private static final int MAX_PENDING_CHUNKS = 4;
+
+    private static final Comparator<VehicleSimView> BY_VIN = new Comparator<VehicleSimView>() {
+        @Override
+        public int compare(VehicleSimView v1, VehicleSimView v2) {
+            return (v1.getVIN() < v2.getVIN() ? -1 : (v1.getVIN() == v2.getVIN() ? 0 : 1));
+        }
+    };
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The file of the recording.
+     */
+    private final File file;
+    /**
+     * The map of the simulation.
+     */
+    private final BasicMap map;
+    /**
+     * The channel the file is written through, or null until the first frame
+     * is recorded.
+     */
+    private FileChannel channel;
+    /**
+     * The thread deflating and writing the chunks, in the order they were
+     * filled.
+     */
+    private ExecutorService writer;
+    /**
+     * The chunks that may still be handed to the writer.
+     */
+    private final Semaphore pending = new Semaphore(MAX_PENDING_CHUNKS);
+    /**
+     * The deflater of the writer.
+     */
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    /**
+     * The index of the chunks written, only touched by the writer.
+     */
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    /**
+     * The number of chunks written, only touched by the writer.
+     */
+    private int chunkCount = 0;
+    /**
+     * The traffic lights, in the order of the header.
+     */
+    private List<TrafficLight> lights;
+    /**
+     * The frames of the chunk being filled.
+     */
+    private final ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream();
+    private final DataOutputStream chunk = new DataOutputStream(chunkBytes);
+    private int chunkFrames = 0;
+    private double chunkFirstTime;
+    private double chunkLastTime;
+    /**
+     * The VINs and quantized first corners of the vehicles of the previous
+     * frame of the chunk, in the order of their VINs.
+     */
+    private int[] previousVins = new int[0];
+    private int[] previousX = new int[0];
+    private int[] previousY = new int[0];
+    private int previousCount = 0;
+    /**
+     * The same for the frame being recorded.
+     */
+    private int[] currentVins = new int[0];
+    private int[] currentX = new int[0];
+    private int[] currentY = new int[0];
+    /**
+     * The vehicles of the frame being recorded, sorted by VIN.
+     */
+    private VehicleSimView[] sorted = new VehicleSimView[0];
+    /**
+     * The number of frames recorded.
+     */
+    private int frameCount = 0;
+    /**
+     * The first failure of the writer, or null.
+     */
+    private volatile IOException failure;
+    /**
+     * Whether the recorder is closed.
+     */
+    private boolean closed = false;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a recorder. The file is replaced when the first frame is
+     * recorded.
+     *
+     * @param file the file of the recording
+     * @param map the map of the simulation
+     */
+    public TrajectoryRecorder(File file, BasicMap map) {
+        this.file = file;
+        this.map = map;
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * @return the file of the recording
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of frames recorded
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Record the state of the simulation at the end of a step.
+     *
+     * @param time the simulation time
+     * @param vehicles the active vehicles
+     */
+    public void record(double time, Collection<VehicleSimView> vehicles) {
+        if (closed) {
+            throw new IllegalStateException("The trajectory recorder of " + file + " is closed.");
+        }
+        checkFailure();
+        if (channel == null) {
+            open();
+        }
+        int n = vehicles.size();
+        if (sorted.length < n) {
+            int capacity = Math.max(n, 2 * sorted.length);
+            sorted = new VehicleSimView[capacity];
+            previousVins = Arrays.copyOf(previousVins, capacity);
+            previousX = Arrays.copyOf(previousX, capacity);
+            previousY = Arrays.copyOf(previousY, capacity);
+            currentVins = new int[capacity];
+            currentX = new int[capacity];
+            currentY = new int[capacity];
+        }
+        vehicles.toArray(sorted);
+        Arrays.sort(sorted, 0, n, BY_VIN);
+        if (chunkFrames == 0) {
+            chunkFirstTime = time;
+        }
+        try {
+            chunk.writeDouble(time);
+            chunk.writeDouble(TrafficSignalExpr.HtotalTime / TrafficSignalExpr.Htotal);
+            chunk.writeDouble(TrafficSignalExpr.AVtotalTime / TrafficSignalExpr.AVtotal);
+            writeVarInt(chunk, n);
+            int lastVin = 0;
+            int p = 0;
+            for (int i = 0; i < n; i++) {
+                VehicleSimView vehicle = sorted[i];
+                int vin = vehicle.getVIN();
+                writeVarInt(chunk, zigzag(vin - lastVin));
+                lastVin = vin;
+                chunk.writeByte(vehicle.getVehicleType().ordinal());
+                Point2D[] corners = vehicle.getCornerPoints();
+                int x0 = quantize(corners[0].getX());
+                int y0 = quantize(corners[0].getY());
+                while (p < previousCount && previousVins[p] < vin) {
+                    p++;
+                }
+                if (p < previousCount && previousVins[p] == vin) {
+                    writeVarInt(chunk, zigzag(x0 - previousX[p]));
+                    writeVarInt(chunk, zigzag(y0 - previousY[p]));
+                } else {
+                    writeVarInt(chunk, zigzag(x0));
+                    writeVarInt(chunk, zigzag(y0));
+                }
+                for (int c = 1; c < 4; c++) {
+                    writeVarInt(chunk, zigzag(quantize(corners[c].getX()) - x0));
+                    writeVarInt(chunk, zigzag(quantize(corners[c].getY()) - y0));
+                }
+                currentVins[i] = vin;
+                currentX[i] = x0;
+                currentY[i] = y0;
+                sorted[i] = null;
+            }
+            for (TrafficLight light : lights) {
+                chunk.writeByte(light.getSignal().ordinal());
+            }
+        } catch (IOException e) {
+            // the chunk is in memory
+            throw new RuntimeException(e);
+        }
+        int[] swap = previousVins;
+        previousVins = currentVins;
+        currentVins = swap;
+        swap = previousX;
+        previousX = currentX;
+        currentX = swap;
+        swap = previousY;
+        previousY = currentY;
+        currentY = swap;
+        previousCount = n;
+        chunkLastTime = time;
+        chunkFrames++;
+        frameCount++;
+        if (chunkFrames == FRAMES_PER_CHUNK) {
+            submitChunk();
+        }
+    }
+
+    /**
+     * Write every frame recorded so far, and wait until it is in the file.
+     */
+    public void flush() {
+        if (closed || channel == null) {
+            return;
+        }
+        if (chunkFrames > 0) {
+            submitChunk();
+        }
+        // every chunk handed to the writer holds a permit until it is written
+        acquire(MAX_PENDING_CHUNKS);
+        pending.release(MAX_PENDING_CHUNKS);
+        checkFailure();
+    }
+
+    /**
+     * Write every frame recorded so far and the index of the chunks, and
+     * close the file. Closing a closed recorder does nothing.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (channel == null) {
+            open();
+        }
+        try {
+            flush();
+            long indexOffset = channel.position();
+            ByteBuffer footer = ByteBuffer.allocate(index.size() + FOOTER_BYTES);
+            footer.put(index.toByteArray());
+            footer.putLong(indexOffset).putInt(chunkCount).putInt(INDEX_MAGIC);
+            footer.flip();
+            write(footer);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write the index of the trajectory file " + file + ".", e);
+        } finally {
+            closed = true;
+            writer.shutdown();
+            try {
+                writer.awaitTermination(1, TimeUnit.MINUTES);
+                channel.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while closing the trajectory file " + file + ".", e);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not close the trajectory file " + file + ".", e);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Create the file and write its header.
+     */
+    private void open() {
+        lights = findTrafficLights(map);
+        Rectangle2D bounds = map.getDimensions();
+        ByteBuffer header = ByteBuffer.allocate(4 + 4 + 4 * 8 + 4 + lights.size() * 3 * 4);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.putDouble(bounds.getX()).putDouble(bounds.getY());
+        header.putDouble(bounds.getWidth()).putDouble(bounds.getHeight());
+        header.putInt(lights.size());
+        for (TrafficLight light : lights) {
+            header.putFloat((float) light.position.getX());
+            header.putFloat((float) light.position.getY());
+            header.putFloat((float) light.heading);
+        }
+        header.flip();
+        try {
+            channel = new FileOutputStream(file).getChannel();
+            write(header);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create the trajectory file " + file + ".", e);
+        }
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "trajectory-recorder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Hand the chunk being filled to the writer, waiting while too many
+     * chunks are waiting to be written, and start a new chunk.
+     */
+    private void submitChunk() {
+        final byte[] frames = chunkBytes.toByteArray();
+        final int count = chunkFrames;
+        final double firstTime = chunkFirstTime;
+        final double lastTime = chunkLastTime;
+        chunkBytes.reset();
+        chunkFrames = 0;
+        // the first frame of a chunk does not depend on earlier chunks
+        previousCount = 0;
+        acquire(1);
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (failure == null) {
+                        writeChunk(frames, count, firstTime, lastTime);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    pending.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Deflate a chunk, write it and add it to the index. This runs on the
+     * writer.
+     *
+     * @param frames the frames of the chunk
+     * @param count the number of frames
+     * @param firstTime the time of the first frame
+     * @param lastTime the time of the last frame
+     * @throws IOException if the chunk cannot be written
+     */
+    private void writeChunk(byte[] frames, int count, double firstTime, double lastTime) throws IOException {
+        deflater.reset();
+        deflater.setInput(frames);
+        deflater.finish();
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream(frames.length / 4 + 64);
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) {
+            int len = deflater.deflate(buf);
+            deflated.write(buf, 0, len);
+        }
+        long offset = channel.position();
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES);
+        header.putInt(count).putDouble(firstTime).putDouble(lastTime);
+        header.putInt(frames.length).putInt(deflated.size());
+        header.flip();
+        write(header);
+        write(ByteBuffer.wrap(deflated.toByteArray()));
+        DataOutputStream entry = new DataOutputStream(index);
+        entry.writeLong(offset);
+        entry.writeInt(count);
+        entry.writeDouble(firstTime);
+        entry.writeDouble(lastTime);
+        chunkCount++;
+    }
+
+    private void acquire(int permits) {
+        try {
+            pending.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing the trajectory file " + file + ".", e);
+        }
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new RuntimeException("Could not write the trajectory file " + file + ".", failure);
+        }
+    }
+
+    /**
+     * Find the traffic lights of a map, at the entry lanes of the
+     * intersections whose managers guide the vehicles by traffic signals.
+     *
+     * @param map the map
+     * @return the traffic lights
+     */
+    private static List<TrafficLight> findTrafficLights(BasicMap map) {
+        List<TrafficLight> lights = new ArrayList<TrafficLight>();
+        for (IntersectionManager im : map.getIntersectionManagers()) {
+            if (!(im instanceof V2IManager)) {
+                continue;
+            }
+            Policy policy = ((V2IManager) im).getPolicy();
+            if (!(policy instanceof BasePolicy)
+                    || !(((BasePolicy) policy).getRequestHandler() instanceof TrafficSignalRequestHandler)) {
+                continue;
+            }
+            TrafficSignalRequestHandler requestHandler
+                    = (TrafficSignalRequestHandler) ((BasePolicy) policy).getRequestHandler();
+            for (Lane entryLane : im.getIntersection().getEntryLanes()) {
+                lights.add(new TrafficLight(requestHandler, entryLane.getId(),
+                        im.getIntersection().getEntryPoint(entryLane),
+                        im.getIntersection().getEntryHeading(entryLane)));
+            }
+        }
+        return lights;
+    }
+
+    private static int quantize(double coordinate) {
+        return (int) Math.round(coordinate * POSITION_SCALE);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Write an unsigned int in as few bytes as its value needs, seven bits
+     * per byte.
+     *
+     * @param out the output
+     * @param value the value
+     * @throws IOException if the value cannot be written
+     */
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
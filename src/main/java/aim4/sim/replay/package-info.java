@@ -0,0 +1,6 @@
+/**
+ * This package contains the trajectory files of a simulation: the recorder
+ * writing the vehicle poses and traffic signals of every step, and the
+ * reader giving random access to the recorded frames for replay.
+ */
+package aim4.sim.replay;
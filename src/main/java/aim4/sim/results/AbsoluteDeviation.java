@@ -0,0 +1,112 @@
+package aim4.sim.results;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The mean and the mean absolute deviation from the mean of a stream of
+ * values. The absolute deviation needs the final mean, so the values are
+ * counted and summed in bins of a resolution, such as the time step for
+ * travel times, and the memory grows with the range of the values rather
+ * than with their number. The deviation is exact, up to rounding, as long
+ * as the values of a bin lie on the same side of the mean, which holds for
+ * values that are multiples of the resolution.
+ */
+public class AbsoluteDeviation {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * The values of a bin.
+     */
+    private static final class Bin {
+
+        private long count = 0;
+        private double sum = 0;
+    }
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The width of a bin.
+     */
+    private final double resolution;
+    /**
+     * The bins with values, by index.
+     */
+    private final Map<Long, Bin> bins = new TreeMap<Long, Bin>();
+    /**
+     * The number of values.
+     */
+    private long count = 0;
+    /**
+     * The sum of the values, in the order they were added.
+     */
+    private double sum = 0;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create an empty deviation.
+     *
+     * @param resolution the width of a bin
+     */
+    public AbsoluteDeviation(double resolution) {
+        if (!(resolution > 0)) {
+            throw new IllegalArgumentException("Resolution must be positive: " + resolution);
+        }
+        this.resolution = resolution;
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * Add a value.
+     *
+     * @param x the value
+     */
+    public void add(double x) {
+        long index = Math.round(x / resolution);
+        Bin bin = bins.get(index);
+        if (bin == null) {
+            bin = new Bin();
+            bins.put(index, bin);
+        }
+        bin.count++;
+        bin.sum += x;
+        count++;
+        sum += x;
+    }
+
+    /**
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean of the values, the sum in the order they were added
+     * divided by their number, or NaN if there are none
+     */
+    public double getMean() {
+        return sum / count;
+    }
+
+    /**
+     * @return the mean absolute deviation of the values from their mean, or
+     * NaN if there are none
+     */
+    public double getMeanAbsoluteDeviation() {
+        double mean = getMean();
+        double deviation = 0;
+        for (Bin bin : bins.values()) {
+            deviation += Math.abs(bin.sum - bin.count * mean);
+        }
+        return deviation / count;
+    }
+}
@@ -0,0 +1,248 @@
+package aim4.sim.results;
+
+import aim4.config.Constants;
+import aim4.config.SimConfig.VEHICLE_TYPE;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming statistics of the travel times and delays of the completed
+ * vehicles of a simulation, kept by vehicle type, spawn direction, turn and
+ * time bucket of the spawn time. Every combination holds constant-size
+ * accumulators, so the memory does not grow with the number of vehicles.
+ * Statistics of parallel replications can be merged.
+ */
+public class OutcomeStatistics {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * The statistics of a group of vehicles.
+     */
+    public static class Cell {
+
+        private final RunningStatistics travelTime = new RunningStatistics();
+        private final RunningStatistics delay = new RunningStatistics();
+        private final QuantileSketch travelTimeSketch = new QuantileSketch();
+        private final QuantileSketch delaySketch = new QuantileSketch();
+
+        private void add(double travelTime, double delay) {
+            this.travelTime.add(travelTime);
+            travelTimeSketch.add(Math.max(travelTime, 0));
+            if (!Double.isNaN(delay)) {
+                this.delay.add(delay);
+                delaySketch.add(Math.max(delay, 0));
+            }
+        }
+
+        private void merge(Cell other) {
+            travelTime.merge(other.travelTime);
+            delay.merge(other.delay);
+            travelTimeSketch.merge(other.travelTimeSketch);
+            delaySketch.merge(other.delaySketch);
+        }
+
+        /**
+         * @return the statistics of the travel times of the vehicles
+         */
+        public RunningStatistics getTravelTime() {
+            return travelTime;
+        }
+
+        /**
+         * @return the statistics of the delays of the vehicles with a delay
+         */
+        public RunningStatistics getDelay() {
+            return delay;
+        }
+
+        /**
+         * @return the distribution of the travel times of the vehicles
+         */
+        public QuantileSketch getTravelTimeSketch() {
+            return travelTimeSketch;
+        }
+
+        /**
+         * @return the distribution of the delays of the vehicles with a delay
+         */
+        public QuantileSketch getDelaySketch() {
+            return delaySketch;
+        }
+    }
+
+    /**
+     * The group of a vehicle.
+     */
+    private static final class Key {
+
+        private final VEHICLE_TYPE type;
+        private final Constants.Direction direction;
+        private final Constants.TurnDirection turn;
+        private final int bucket;
+
+        private Key(VEHICLE_TYPE type, Constants.Direction direction, Constants.TurnDirection turn, int bucket) {
+            this.type = type;
+            this.direction = direction;
+            this.turn = turn;
+            this.bucket = bucket;
+        }
+
+        private boolean matches(VEHICLE_TYPE type, Constants.Direction direction, Constants.TurnDirection turn, int bucket) {
+            return (type == null || type == this.type)
+                    && (direction == null || direction == this.direction)
+                    && (turn == null || turn == this.turn)
+                    && (bucket < 0 || bucket == this.bucket);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return type == other.type && direction == other.direction
+                    && turn == other.turn && bucket == other.bucket;
+        }
+
+        @Override
+        public int hashCode() {
+            // hashed by ordinal, so the groups are visited in the same order in every run
+            int h = ordinal(type);
+            h = 31 * h + ordinal(direction);
+            h = 31 * h + ordinal(turn);
+            return 31 * h + bucket;
+        }
+
+        private static int ordinal(Enum<?> value) {
+            return (value == null ? -1 : value.ordinal());
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The length of a time bucket, in seconds.
+     */
+    private final double bucketLength;
+    /**
+     * The statistics of every group of vehicles seen.
+     */
+    private final Map<Key, Cell> cells = new HashMap<Key, Cell>();
+    /**
+     * The statistics of all vehicles.
+     */
+    private final Cell total = new Cell();
+    /**
+     * The largest time bucket seen, or -1.
+     */
+    private int maxBucket = -1;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create empty statistics.
+     *
+     * @param bucketLength the length of a time bucket, in seconds
+     */
+    public OutcomeStatistics(double bucketLength) {
+        if (!(bucketLength > 0)) {
+            throw new IllegalArgumentException("Bucket length must be positive: " + bucketLength);
+        }
+        this.bucketLength = bucketLength;
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * Add the outcome of a completed vehicle.
+     *
+     * @param type the type of the vehicle
+     * @param direction the direction of the road the vehicle spawned on, or
+     * null
+     * @param turn the turn the vehicle made, or null
+     * @param spawnTime the time the vehicle spawned
+     * @param travelTime the travel time of the vehicle
+     * @param delay the delay of the vehicle, or NaN
+     */
+    public void add(VEHICLE_TYPE type, Constants.Direction direction, Constants.TurnDirection turn,
+            double spawnTime, double travelTime, double delay) {
+        int bucket = Math.max(0, (int) (spawnTime / bucketLength));
+        Key key = new Key(type, direction, turn, bucket);
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = new Cell();
+            cells.put(key, cell);
+        }
+        cell.add(travelTime, delay);
+        total.add(travelTime, delay);
+        maxBucket = Math.max(maxBucket, bucket);
+    }
+
+    /**
+     * Add the outcomes of other statistics, such as those of another
+     * replication, to these.
+     *
+     * @param other the other statistics, of the same bucket length
+     */
+    public void merge(OutcomeStatistics other) {
+        if (other.bucketLength != bucketLength) {
+            throw new IllegalArgumentException("Statistics of bucket lengths " + bucketLength + " and " + other.bucketLength + " cannot be merged.");
+        }
+        for (Map.Entry<Key, Cell> entry : other.cells.entrySet()) {
+            Cell cell = cells.get(entry.getKey());
+            if (cell == null) {
+                cell = new Cell();
+                cells.put(entry.getKey(), cell);
+            }
+            cell.merge(entry.getValue());
+        }
+        total.merge(other.total);
+        maxBucket = Math.max(maxBucket, other.maxBucket);
+    }
+
+    /**
+     * @return the statistics of all vehicles
+     */
+    public Cell getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the statistics of a group of vehicles.
+     *
+     * @param type the vehicle type, or null for every type
+     * @param direction the spawn direction, or null for every direction
+     * @param turn the turn, or null for every turn
+     * @param bucket the time bucket, or -1 for every time bucket
+     * @return the statistics of the vehicles of the group
+     */
+    public Cell get(VEHICLE_TYPE type, Constants.Direction direction, Constants.TurnDirection turn, int bucket) {
+        Cell merged = new Cell();
+        for (Map.Entry<Key, Cell> entry : cells.entrySet()) {
+            if (entry.getKey().matches(type, direction, turn, bucket)) {
+                merged.merge(entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return the length of a time bucket, in seconds
+     */
+    public double getBucketLength() {
+        return bucketLength;
+    }
+
+    /**
+     * @return the largest time bucket with a vehicle, or -1 if there are no
+     * vehicles
+     */
+    public int getMaxBucket() {
+        return maxBucket;
+    }
+}
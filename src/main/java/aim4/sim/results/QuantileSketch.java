@@ -0,0 +1,192 @@
+package aim4.sim.results;
+
+import java.util.Arrays;
+
+/**
+ * An approximation of the distribution of a stream of non-negative values,
+ * answering quantiles within a relative error. Values are counted in buckets
+ * whose bounds grow geometrically, so the memory only depends on the range of
+ * the values, not on how many there are. Sketches of the same accuracy can be
+ * merged exactly, which makes quantiles of parallel replications available
+ * without keeping their values.
+ */
+public class QuantileSketch {
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+    /**
+     * The default relative error of the quantiles.
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    /**
+     * Values below this are counted as zero.
+     */
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The relative error of the quantiles.
+     */
+    private final double relativeAccuracy;
+    /**
+     * The ratio of the upper and lower bound of a bucket.
+     */
+    private final double gamma;
+    /**
+     * The natural logarithm of gamma.
+     */
+    private final double logGamma;
+    /**
+     * The counts of the buckets, from the bucket of index offset on.
+     */
+    private long[] counts = new long[0];
+    /**
+     * The index of the bucket counted in counts[0].
+     */
+    private int offset = 0;
+    /**
+     * The number of values counted as zero.
+     */
+    private long zeroCount = 0;
+    /**
+     * The number of values.
+     */
+    private long count = 0;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a sketch with the default relative error.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Create a sketch.
+     *
+     * @param relativeAccuracy the relative error of the quantiles, between 0
+     * and 1
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        logGamma = Math.log(gamma);
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * Add a value.
+     *
+     * @param x the value, not negative
+     */
+    public void add(double x) {
+        if (!(x >= 0)) {
+            throw new IllegalArgumentException("Only non-negative values can be added to a quantile sketch: " + x);
+        }
+        count++;
+        if (x < MIN_INDEXABLE) {
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(x) / logGamma);
+        ensureBucket(index);
+        counts[index - offset]++;
+    }
+
+    /**
+     * Add the values of another sketch to this one.
+     *
+     * @param other the other sketch, of the same relative accuracy
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Sketches of relative accuracy " + relativeAccuracy + " and " + other.relativeAccuracy + " cannot be merged.");
+        }
+        if (other.counts.length > 0) {
+            ensureBucket(other.offset);
+            ensureBucket(other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.offset + i - offset] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    /**
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the relative error of the quantiles
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Get a quantile of the values.
+     *
+     * @param q the quantile, between 0 and 1
+     * @return a value within the relative accuracy of the quantile, or NaN if
+     * there are no values
+     */
+    public double getQuantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                // the value of least relative error to every value of the bucket
+                return 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+            }
+        }
+        // not reached, as the counts add up to count
+        return 2 * Math.pow(gamma, offset + counts.length - 1) / (gamma + 1);
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Make sure a bucket has a count.
+     *
+     * @param index the index of the bucket
+     */
+    private void ensureBucket(int index) {
+        if (counts.length == 0) {
+            counts = new long[8];
+            offset = index;
+        } else if (index < offset) {
+            int shift = Math.max(offset - index, counts.length / 2);
+            long[] grown = new long[counts.length + shift];
+            System.arraycopy(counts, 0, grown, shift, counts.length);
+            counts = grown;
+            offset -= shift;
+        } else if (index - offset >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index - offset + 1, counts.length + counts.length / 2));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package aim4.sim.results;
+
+/**
+ * The count, mean, variance, minimum and maximum of a stream of values, kept
+ * in constant memory with Welford's method. Statistics of separate streams,
+ * such as parallel replications, can be merged.
+ */
+public class RunningStatistics {
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The number of values.
+     */
+    private long count = 0;
+    /**
+     * The sum of the values, in the order they were added.
+     */
+    private double sum = 0;
+    /**
+     * The mean of the values.
+     */
+    private double mean = 0;
+    /**
+     * The sum of the squared deviations of the values from their mean.
+     */
+    private double m2 = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * Add a value.
+     *
+     * @param x the value
+     */
+    public void add(double x) {
+        count++;
+        sum += x;
+        double d = x - mean;
+        mean += d / count;
+        m2 += d * (x - mean);
+        if (x < min) {
+            min = x;
+        }
+        if (x > max) {
+            max = x;
+        }
+    }
+
+    /**
+     * Add the values of other statistics to these.
+     *
+     * @param other the other statistics
+     */
+    public void merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            sum = other.sum;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            return;
+        }
+        long n = count + other.count;
+        double d = other.mean - mean;
+        mean += d * other.count / n;
+        m2 += other.m2 + d * d * ((double) count * other.count / n);
+        count = n;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the values
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the mean of the values, or NaN if there are none
+     */
+    public double getMean() {
+        return (count == 0 ? Double.NaN : mean);
+    }
+
+    /**
+     * @return the population variance of the values, or NaN if there are
+     * none
+     */
+    public double getVariance() {
+        return (count == 0 ? Double.NaN : m2 / count);
+    }
+
+    /**
+     * @return the population standard deviation of the values, or NaN if
+     * there are none
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return the smallest value, or NaN if there are none
+     */
+    public double getMin() {
+        return (count == 0 ? Double.NaN : min);
+    }
+
+    /**
+     * @return the largest value, or NaN if there are none
+     */
+    public double getMax() {
+        return (count == 0 ? Double.NaN : max);
+    }
+}
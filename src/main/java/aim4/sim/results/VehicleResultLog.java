@@ -0,0 +1,323 @@
+package aim4.sim.results;
+
+import aim4.config.Constants;
+import aim4.config.SimConfig.VEHICLE_TYPE;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only log of the outcome of every completed vehicle of a
+ * simulation. The outcomes are collected in batches of fixed-width records,
+ * and every full batch is written to the file by a background thread, so
+ * neither the outcomes nor the writing stay on the simulation thread.
+ * <p>
+ * The file starts with {@link #MAGIC} and {@link #VERSION}, followed by a
+ * block per batch. A block holds the number of records in it, then every
+ * column of the block in turn: the VINs as ints, the vehicle types, spawn
+ * directions and turns as the bytes of their ordinals, and the spawn times,
+ * intersection entry times, intersection exit times, completion times,
+ * delays and stopped times as doubles. A missing enum is written as -1 and a
+ * missing time as NaN. {@link VehicleResultLogReader} reads the file back.
+ */
+public class VehicleResultLog {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * The columns of a batch of records.
+     */
+    private static class Batch {
+
+        private final int[] vins = new int[BATCH_SIZE];
+        private final byte[] types = new byte[BATCH_SIZE];
+        private final byte[] spawnDirections = new byte[BATCH_SIZE];
+        private final byte[] turns = new byte[BATCH_SIZE];
+        private final double[] spawnTimes = new double[BATCH_SIZE];
+        private final double[] entryTimes = new double[BATCH_SIZE];
+        private final double[] exitTimes = new double[BATCH_SIZE];
+        private final double[] completionTimes = new double[BATCH_SIZE];
+        private final double[] delays = new double[BATCH_SIZE];
+        private final double[] stoppedTimes = new double[BATCH_SIZE];
+        /**
+         * The number of records in the batch.
+         */
+        private int size = 0;
+
+        /**
+         * Lay out the batch as a block of the file.
+         *
+         * @return the block, ready to be written
+         */
+        private ByteBuffer toBlock() {
+            ByteBuffer buf = ByteBuffer.allocate(4 + size * RECORD_BYTES);
+            buf.putInt(size);
+            for (int i = 0; i < size; i++) {
+                buf.putInt(vins[i]);
+            }
+            buf.put(types, 0, size);
+            buf.put(spawnDirections, 0, size);
+            buf.put(turns, 0, size);
+            putColumn(buf, spawnTimes, size);
+            putColumn(buf, entryTimes, size);
+            putColumn(buf, exitTimes, size);
+            putColumn(buf, completionTimes, size);
+            putColumn(buf, delays, size);
+            putColumn(buf, stoppedTimes, size);
+            buf.flip();
+            return buf;
+        }
+
+        private static void putColumn(ByteBuffer buf, double[] column, int size) {
+            for (int i = 0; i < size; i++) {
+                buf.putDouble(column[i]);
+            }
+        }
+    }
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+    /**
+     * Marks a result log file.
+     */
+    public static final int MAGIC = 0x41494d52;
+    /**
+     * The version of the file layout.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The number of bytes of a record.
+     */
+    public static final int RECORD_BYTES = 4 + 3 + 6 * 8;
+    /**
+     * The number of records in a full batch.
+     */
+    private static final int BATCH_SIZE = 4096;
+    /**
+     * The number of full batches that may wait to be written before the
+     * simulation waits for the writer.
+     */
+    private static final int MAX_PENDING_BATCHES = 4;
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The file of the log.
+     */
+    private final File file;
+    /**
+     * The channel the blocks are written to.
+     */
+    private final FileChannel channel;
+    /**
+     * The thread writing the blocks, in the order the batches were filled.
+     */
+    private final ExecutorService writer;
+    /**
+     * The batches that may still be handed to the writer.
+     */
+    private final Semaphore pending = new Semaphore(MAX_PENDING_BATCHES);
+    /**
+     * The batch being filled.
+     */
+    private Batch batch = new Batch();
+    /**
+     * The number of records appended.
+     */
+    private int recordCount = 0;
+    /**
+     * The first failure of the writer, or null.
+     */
+    private volatile IOException failure;
+    /**
+     * Whether the log is closed.
+     */
+    private boolean closed = false;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a log, replacing the file if it exists.
+     *
+     * @param file the file of the log
+     * @throws IOException if the file cannot be created
+     */
+    public VehicleResultLog(File file) throws IOException {
+        this.file = file;
+        channel = new FileOutputStream(file).getChannel();
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        write(header);
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "result-log");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * @return the file of the log
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of records appended
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Append the outcome of a completed vehicle.
+     *
+     * @param vin the VIN of the vehicle
+     * @param type the type of the vehicle, or null
+     * @param spawnDirection the direction of the road the vehicle spawned on,
+     * or null
+     * @param turn the turn the vehicle made, or null
+     * @param spawnTime the time the vehicle spawned
+     * @param entryTime the time the vehicle entered the intersection, or NaN
+     * @param exitTime the time the vehicle left the intersection, or NaN
+     * @param completionTime the time the vehicle left the map
+     * @param delay the delay of the vehicle, or NaN
+     * @param stoppedTime the time the vehicle spent stopped
+     */
+    public void append(int vin, VEHICLE_TYPE type, Constants.Direction spawnDirection,
+            Constants.TurnDirection turn, double spawnTime, double entryTime,
+            double exitTime, double completionTime, double delay, double stoppedTime) {
+        if (closed) {
+            throw new IllegalStateException("The result log " + file + " is closed.");
+        }
+        checkFailure();
+        int i = batch.size++;
+        batch.vins[i] = vin;
+        batch.types[i] = ordinal(type);
+        batch.spawnDirections[i] = ordinal(spawnDirection);
+        batch.turns[i] = ordinal(turn);
+        batch.spawnTimes[i] = spawnTime;
+        batch.entryTimes[i] = entryTime;
+        batch.exitTimes[i] = exitTime;
+        batch.completionTimes[i] = completionTime;
+        batch.delays[i] = delay;
+        batch.stoppedTimes[i] = stoppedTime;
+        recordCount++;
+        if (batch.size == BATCH_SIZE) {
+            submit(batch);
+            batch = new Batch();
+        }
+    }
+
+    /**
+     * Write every record appended so far, and wait until it is in the file.
+     */
+    public void flush() {
+        if (closed) {
+            return;
+        }
+        if (batch.size > 0) {
+            submit(batch);
+            batch = new Batch();
+        }
+        // every batch handed to the writer holds a permit until it is written
+        acquire(MAX_PENDING_BATCHES);
+        pending.release(MAX_PENDING_BATCHES);
+        checkFailure();
+    }
+
+    /**
+     * Write every record appended so far and close the file. Closing a
+     * closed log does nothing.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            writer.shutdown();
+            try {
+                writer.awaitTermination(1, TimeUnit.MINUTES);
+                channel.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while closing the result log " + file + ".", e);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not close the result log " + file + ".", e);
+            }
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Hand a batch to the writer, waiting while too many batches are waiting
+     * to be written.
+     *
+     * @param full the batch
+     */
+    private void submit(final Batch full) {
+        acquire(1);
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (failure == null) {
+                        write(full.toBlock());
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    pending.release();
+                }
+            }
+        });
+    }
+
+    private void acquire(int permits) {
+        try {
+            pending.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing the result log " + file + ".", e);
+        }
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new RuntimeException("Could not write the result log " + file + ".", failure);
+        }
+    }
+
+    private static byte ordinal(Enum<?> value) {
+        return (byte) (value == null ? -1 : value.ordinal());
+    }
+}
@@ -0,0 +1,274 @@
+package aim4.sim.results;
+
+import aim4.config.SimConfig.VEHICLE_TYPE;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file written by {@link VehicleResultLog}. As the file is laid out
+ * in columns, the summary only reads the columns it needs.
+ */
+public class VehicleResultLogReader {
+
+    /////////////////////////////////
+    // NESTED CLASSES
+    /////////////////////////////////
+    /**
+     * The summary statistics of the vehicles in a result log, by vehicle
+     * type.
+     */
+    public static class Summary {
+
+        private final int[] counts = new int[TYPE_COUNT];
+        private final double[] totalTravelTimes = new double[TYPE_COUNT];
+        private final double[] maxTravelTimes = new double[TYPE_COUNT];
+        private final double[] maxTravelTimeCompletions = new double[TYPE_COUNT];
+        private final double[] totalDelays = new double[TYPE_COUNT];
+        private final int[] delayCounts = new int[TYPE_COUNT];
+        private final double[] totalStoppedTimes = new double[TYPE_COUNT];
+        private final int[] stoppedCounts = new int[TYPE_COUNT];
+        /**
+         * The sum of the absolute deviations of the travel times of all
+         * vehicles from their mean.
+         */
+        private double totalTravelTimeDeviation = 0;
+
+        private Summary() {
+            for (int i = 0; i < TYPE_COUNT; i++) {
+                maxTravelTimes[i] = -1;
+                maxTravelTimeCompletions[i] = -1;
+            }
+        }
+
+        /**
+         * @return the number of vehicles
+         */
+        public int getCount() {
+            int count = 0;
+            for (int c : counts) {
+                count += c;
+            }
+            return count;
+        }
+
+        /**
+         * @param type the vehicle type
+         * @return the number of vehicles of the type
+         */
+        public int getCount(VEHICLE_TYPE type) {
+            return counts[type.ordinal()];
+        }
+
+        /**
+         * @return the mean travel time of all vehicles, or NaN if there are
+         * none
+         */
+        public double getAvgTravelTime() {
+            double total = 0;
+            for (double t : totalTravelTimes) {
+                total += t;
+            }
+            return total / getCount();
+        }
+
+        /**
+         * @param type the vehicle type
+         * @return the mean travel time of the vehicles of the type, or NaN if
+         * there are none
+         */
+        public double getAvgTravelTime(VEHICLE_TYPE type) {
+            return totalTravelTimes[type.ordinal()] / counts[type.ordinal()];
+        }
+
+        /**
+         * @return the mean absolute deviation of the travel times of all
+         * vehicles from their mean, or NaN if there are none
+         */
+        public double getTravelTimeDeviation() {
+            return totalTravelTimeDeviation / getCount();
+        }
+
+        /**
+         * @param type the vehicle type
+         * @return the longest travel time of the vehicles of the type, or -1
+         * if there are none
+         */
+        public double getMaxTravelTime(VEHICLE_TYPE type) {
+            return maxTravelTimes[type.ordinal()];
+        }
+
+        /**
+         * @param type the vehicle type
+         * @return the time the first vehicle of the type with the longest
+         * travel time left the map, or -1 if there are none
+         */
+        public double getMaxTravelTimeCompletion(VEHICLE_TYPE type) {
+            return maxTravelTimeCompletions[type.ordinal()];
+        }
+
+        /**
+         * @param type the vehicle type
+         * @return the sum of the delays of the vehicles of the type with a
+         * delay
+         */
+        public double getTotalDelay(VEHICLE_TYPE type) {
+            return totalDelays[type.ordinal()];
+        }
+
+        /**
+         * @param type the vehicle type
+         * @return the number of vehicles of the type with a delay
+         */
+        public int getDelayCount(VEHICLE_TYPE type) {
+            return delayCounts[type.ordinal()];
+        }
+
+        /**
+         * @param type the vehicle type
+         * @return the mean delay of the vehicles of the type with a delay, or
+         * NaN if there are none
+         */
+        public double getAvgDelay(VEHICLE_TYPE type) {
+            return totalDelays[type.ordinal()] / delayCounts[type.ordinal()];
+        }
+
+        /**
+         * @param type the vehicle type
+         * @return the mean time the vehicles of the type spent stopped, or
+         * NaN if there are none
+         */
+        public double getAvgStoppedTime(VEHICLE_TYPE type) {
+            return totalStoppedTimes[type.ordinal()] / counts[type.ordinal()];
+        }
+
+        /**
+         * @param type the vehicle type
+         * @return the number of vehicles of the type that stopped at least
+         * once
+         */
+        public int getStoppedCount(VEHICLE_TYPE type) {
+            return stoppedCounts[type.ordinal()];
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE FIELDS
+    /////////////////////////////////
+    /**
+     * The number of vehicle types.
+     */
+    private static final int TYPE_COUNT = VEHICLE_TYPE.values().length;
+
+    /**
+     * The file of the log.
+     */
+    private final File file;
+
+    /////////////////////////////////
+    // CLASS CONSTRUCTORS
+    /////////////////////////////////
+    /**
+     * Create a reader of a result log.
+     *
+     * @param file the file of the log
+     */
+    public VehicleResultLogReader(File file) {
+        this.file = file;
+    }
+
+    /////////////////////////////////
+    // PUBLIC METHODS
+    /////////////////////////////////
+    /**
+     * Compute the summary statistics of the vehicles written to the log so
+     * far. Records a {@link VehicleResultLog} still holds are not included
+     * until it is flushed.
+     *
+     * @return the summary
+     * @throws IOException if the file cannot be read or is not a result log
+     */
+    public Summary summarize() throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.remaining() < 8 || buf.getInt() != VehicleResultLog.MAGIC) {
+                throw new IOException(file + " is not a result log.");
+            }
+            int version = buf.getInt();
+            if (version != VehicleResultLog.VERSION) {
+                throw new IOException(file + " is a result log of version " + version + ", not " + VehicleResultLog.VERSION + ".");
+            }
+            Summary summary = new Summary();
+            // the deviations need the mean, so the travel times are read twice
+            readBlocks(buf.slice(), summary, false);
+            readBlocks(buf.slice(), summary, true);
+            return summary;
+        } finally {
+            in.close();
+        }
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Read the blocks of a log into a summary.
+     *
+     * @param buf the blocks
+     * @param summary the summary
+     * @param deviations whether to add up the deviations of the travel times
+     * from the mean, rather than everything else
+     * @throws IOException if a block is truncated
+     */
+    private void readBlocks(ByteBuffer buf, Summary summary, boolean deviations) throws IOException {
+        double mean = (deviations ? summary.getAvgTravelTime() : 0);
+        while (buf.hasRemaining()) {
+            if (buf.remaining() < 4) {
+                throw new IOException(file + " ends in a truncated block.");
+            }
+            int n = buf.getInt();
+            int start = buf.position();
+            if (n < 0 || buf.remaining() < (long) n * VehicleResultLog.RECORD_BYTES) {
+                throw new IOException(file + " ends in a truncated block.");
+            }
+            // the offsets of the columns in the block
+            int types = start + 4 * n;
+            int spawnTimes = types + 3 * n;
+            int completionTimes = spawnTimes + 3 * 8 * n;
+            int delays = completionTimes + 8 * n;
+            int stoppedTimes = delays + 8 * n;
+            for (int i = 0; i < n; i++) {
+                double travelTime = buf.getDouble(completionTimes + 8 * i) - buf.getDouble(spawnTimes + 8 * i);
+                if (deviations) {
+                    summary.totalTravelTimeDeviation += Math.abs(travelTime - mean);
+                    continue;
+                }
+                int type = buf.get(types + i);
+                if (type < 0 || type >= TYPE_COUNT) {
+                    throw new IOException(file + " holds an unknown vehicle type: " + type);
+                }
+                summary.counts[type]++;
+                summary.totalTravelTimes[type] += travelTime;
+                if (travelTime > summary.maxTravelTimes[type]) {
+                    summary.maxTravelTimes[type] = travelTime;
+                    summary.maxTravelTimeCompletions[type] = buf.getDouble(completionTimes + 8 * i);
+                }
+                double delay = buf.getDouble(delays + 8 * i);
+                if (!Double.isNaN(delay)) {
+                    summary.totalDelays[type] += delay;
+                    summary.delayCounts[type]++;
+                }
+                double stoppedTime = buf.getDouble(stoppedTimes + 8 * i);
+                summary.totalStoppedTimes[type] += stoppedTime;
+                if (stoppedTime > 0) {
+                    summary.stoppedCounts[type]++;
+                }
+            }
+            buf.position(start + n * VehicleResultLog.RECORD_BYTES);
+        }
+    }
+}
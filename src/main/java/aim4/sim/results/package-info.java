@@ -0,0 +1,5 @@
+/**
+ * This package contains the statistics of the outcomes of the completed
+ * vehicles of a simulation, and the log the outcomes can be written to.
+ */
+package aim4.sim.results;
@@ -40,11 +40,13 @@ import aim4.im.v2i.reservation.ReservationGridManager;
 import aim4.map.GridMap;
 import aim4.map.GridMapUtil;
 import aim4.map.actionmapping.ActionMappingFactory;
+import aim4.map.trafficbyturns.SyntheticDemand;
 import aim4.map.trafficbyturns.TrafficFlowReaderFactory;
-import aim4.map.trafficbyturns.TurnMovements;
+import aim4.map.trafficbyturns.AbstractTurnMovements;
 import aim4.sim.AutoDriverOnlySimulator;
 import aim4.sim.Simulator;
 import java.io.File;
+import java.util.Map;
 import expr.trb.DesignatedLanesExpr;
 
 /**
@@ -79,7 +81,7 @@ public class ApproxNPhasesTrafficSignalSimSetup extends BasicSimSetup implements
      */
     public ApproxNPhasesTrafficSignalSimSetup(BasicSimSetup basicSimSetup,
             String trafficSignalPhaseFileName) {
-        this(basicSimSetup, trafficSignalPhaseFileName, null, null);
+        this(basicSimSetup, trafficSignalPhaseFileName, (AbstractTurnMovements) null, null);
 
         this.trafficSignalPhaseFileName = trafficSignalPhaseFileName;
         this.trafficVolumeFileName = null;
@@ -97,7 +99,7 @@ public class ApproxNPhasesTrafficSignalSimSetup extends BasicSimSetup implements
      * architecture and turning policies.
      */
     public ApproxNPhasesTrafficSignalSimSetup(BasicSimSetup basicSimSetup,
-            String trafficSignalPhaseFileName, TurnMovements turnMovements, File architectureFile) {
+            String trafficSignalPhaseFileName, AbstractTurnMovements turnMovements, File architectureFile) {
         super(basicSimSetup);
 
         this.trafficSignalPhaseFileName = trafficSignalPhaseFileName;
@@ -110,6 +112,33 @@ public class ApproxNPhasesTrafficSignalSimSetup extends BasicSimSetup implements
         }
     }
 
+    /**
+     * Create the setup for the simulator in which the intersections are
+     * controlled by N-phases traffic signals, with vehicles drawn from a
+     * synthetic demand rather than read from a turn movements file. The
+     * vehicle type mix of the demand, if any, replaces the one of the
+     * experiment.
+     *
+     * @param basicSimSetup the basic simulator setup
+     * @param trafficSignalPhaseFileName the name of the file containing the
+     * traffic signal phase
+     * @param demand the synthetic demand
+     * @param architectureFile File that contains information about intersection
+     * architecture and turning policies.
+     */
+    public ApproxNPhasesTrafficSignalSimSetup(BasicSimSetup basicSimSetup,
+            String trafficSignalPhaseFileName, SyntheticDemand demand, File architectureFile) {
+        this(basicSimSetup, trafficSignalPhaseFileName, demand.generate(), architectureFile);
+
+        Map<SimConfig.VEHICLE_TYPE, Double> mix = demand.getVehicleTypeMix();
+        if (mix != null) {
+            DesignatedLanesExpr.ratioAV = mix.get(SimConfig.VEHICLE_TYPE.AUTO);
+            DesignatedLanesExpr.ratioH = mix.get(SimConfig.VEHICLE_TYPE.HUMAN);
+            DesignatedLanesExpr.ratioCC = mix.get(SimConfig.VEHICLE_TYPE.CRUISE);
+            DesignatedLanesExpr.ratioACC = mix.get(SimConfig.VEHICLE_TYPE.ADAPTIVE_CRUISE);
+        }
+    }
+
 //  public ApproxNPhasesTrafficSignalSimSetup(int columns, int rows,
 //                                     double laneWidth, double speedLimit,
 //                                     int lanesPerRoad,
@@ -171,6 +200,14 @@ public class ApproxNPhasesTrafficSignalSimSetup extends BasicSimSetup implements
         return new AutoDriverOnlySimulator(layout, turnMovements);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AbstractTurnMovements getTurnMovements() {
+        return turnMovements;
+    }
+
     /**
      * Set the traffic volume according to the specification in a file.
      *
@@ -40,7 +40,7 @@ import aim4.map.GridMap;
 import aim4.map.GridMapUtil;
 import aim4.map.actionmapping.ActionMappingFactory;
 import aim4.map.trafficbyturns.TrafficFlowReaderFactory;
-import aim4.map.trafficbyturns.TurnMovements;
+import aim4.map.trafficbyturns.AbstractTurnMovements;
 import aim4.sim.AutoDriverOnlySimulator;
 import aim4.sim.Simulator;
 import java.io.File;
@@ -86,7 +86,7 @@ public class ApproxSimpleTrafficSignalSimSetup extends BasicSimSetup implements
      * @param architectureFile File that contains information about intersection
      * architecture and turning policies.
      */
-    public ApproxSimpleTrafficSignalSimSetup(BasicSimSetup basicSimSetup, TurnMovements turnMovements, File architectureFile) {
+    public ApproxSimpleTrafficSignalSimSetup(BasicSimSetup basicSimSetup, AbstractTurnMovements turnMovements, File architectureFile) {
         super(basicSimSetup);
         this.turnMovements = turnMovements;
         if (architectureFile != null) {
@@ -144,7 +144,7 @@ public class ApproxSimpleTrafficSignalSimSetup extends BasicSimSetup implements
             double distanceBetween,
             double trafficLevel,
             double stopDistBeforeIntersection,
-            TurnMovements turnMovements) {
+            AbstractTurnMovements turnMovements) {
         super(columns, rows, laneWidth, speedLimit, lanesPerRoad,
                 medianSize, distanceBetween, trafficLevel,
                 stopDistBeforeIntersection, turnMovements);
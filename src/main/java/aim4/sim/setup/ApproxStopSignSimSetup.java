@@ -40,7 +40,7 @@ import aim4.map.GridMap;
 import aim4.map.GridMapUtil;
 import aim4.map.actionmapping.ActionMappingFactory;
 import aim4.map.trafficbyturns.TrafficFlowReaderFactory;
-import aim4.map.trafficbyturns.TurnMovements;
+import aim4.map.trafficbyturns.AbstractTurnMovements;
 import aim4.sim.AutoDriverOnlySimulator;
 import aim4.sim.Simulator;
 import java.io.File;
@@ -82,7 +82,7 @@ public class ApproxStopSignSimSetup extends BasicSimSetup implements SimSetup {
      * @param architectureFile File that contains information about intersection
      * architecture and turning policies.
      */
-    public ApproxStopSignSimSetup(BasicSimSetup basicSimSetup, TurnMovements turnMovements, File architectureFile) {
+    public ApproxStopSignSimSetup(BasicSimSetup basicSimSetup, AbstractTurnMovements turnMovements, File architectureFile) {
         super(basicSimSetup);
         this.turnMovements = turnMovements;
         if (architectureFile != null) {
@@ -139,7 +139,7 @@ public class ApproxStopSignSimSetup extends BasicSimSetup implements SimSetup {
             int lanesPerRoad,
             double medianSize, double distanceBetween,
             double trafficLevel,
-            double stopDistBeforeIntersection, TurnMovements turnMovements, File architectureFile) {
+            double stopDistBeforeIntersection, AbstractTurnMovements turnMovements, File architectureFile) {
         super(columns, rows, laneWidth, speedLimit, lanesPerRoad,
                 medianSize, distanceBetween, trafficLevel,
                 stopDistBeforeIntersection, turnMovements);
@@ -41,7 +41,7 @@ import aim4.map.GridMap;
 import aim4.map.GridMapUtil;
 import aim4.map.actionmapping.ActionMappingFactory;
 import aim4.map.trafficbyturns.TrafficFlowReaderFactory;
-import aim4.map.trafficbyturns.TurnMovements;
+import aim4.map.trafficbyturns.AbstractTurnMovements;
 import aim4.sim.AutoDriverOnlySimulator;
 import aim4.sim.Simulator;
 import java.io.File;
@@ -140,7 +140,7 @@ public class AutoDriverOnlySimSetup extends BasicSimSetup implements SimSetup {
      * @param architectureFile File that contains information about intersection
      * architecture and turning policies.
      */
-    public AutoDriverOnlySimSetup(BasicSimSetup basicSimSetup, TurnMovements turnMovements, File architectureFile) {
+    public AutoDriverOnlySimSetup(BasicSimSetup basicSimSetup, AbstractTurnMovements turnMovements, File architectureFile) {
         super(basicSimSetup);
         this.turnMovements = turnMovements;
         if (this.turnMovements != null) {
@@ -204,7 +204,7 @@ public class AutoDriverOnlySimSetup extends BasicSimSetup implements SimSetup {
             double medianSize,
             double distanceBetween,
             double trafficLevel,
-            double stopDistBeforeIntersection, TurnMovements turnMovements, File architectureFile) {
+            double stopDistBeforeIntersection, AbstractTurnMovements turnMovements, File architectureFile) {
         super(columns, rows, laneWidth, speedLimit, lanesPerRoad,
                 medianSize, distanceBetween, trafficLevel,
                 stopDistBeforeIntersection, turnMovements);
@@ -30,7 +30,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package aim4.sim.setup;
 
-import aim4.map.trafficbyturns.TurnMovements;
+import aim4.map.trafficbyturns.AbstractTurnMovements;
 import aim4.sim.Simulator;
 
 /**
@@ -77,7 +77,7 @@ public class BasicSimSetup implements SimSetup {
     /**
      * Specifies flow and turn movement information
      */
-    protected TurnMovements turnMovements;
+    protected AbstractTurnMovements turnMovements;
 
     /**
      * Create a copy of a given basic simulator setup.
@@ -119,7 +119,7 @@ public class BasicSimSetup implements SimSetup {
             double medianSize, double distanceBetween,
             double trafficLevel,
             double stopDistBeforeIntersection,
-            TurnMovements turnMovements) {
+            AbstractTurnMovements turnMovements) {
         this.numOfColumns = columns;
         this.numOfRows = rows;
         this.laneWidth = laneWidth;
@@ -281,7 +281,7 @@ public class BasicSimSetup implements SimSetup {
      *
      * @return the turn movements object, or null if none or not supported.
      */
-    public TurnMovements getTurnMovements() {
+    public AbstractTurnMovements getTurnMovements() {
         return null;
     }
 
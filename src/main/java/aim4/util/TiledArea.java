@@ -338,6 +338,19 @@ public class TiledArea {
   public List<Tile> findOccupiedTiles(Shape shape) {
     // A place to store the answer
     List<Tile> occupiedTiles = new ArrayList<Tile>();
+    findOccupiedTiles(shape, occupiedTiles);
+    return occupiedTiles;
+  }
+
+  /**
+   * Find the tiles that are occupied by the given Shape, replacing the
+   * content of the given list.
+   *
+   * @param shape          the Shape for which to find occupied tiles
+   * @param occupiedTiles  the list to fill with the occupied tiles
+   */
+  public void findOccupiedTiles(Shape shape, List<Tile> occupiedTiles) {
+    occupiedTiles.clear();
     // We only need to check the tiles that are within the bounding box
     Rectangle2D boundingBox = shape.getBounds2D();
     // Now find out the actual indices that this bounding box corresponds to.
@@ -373,7 +386,6 @@ public class TiledArea {
         }
       }
     }
-    return occupiedTiles;
   }
 
 }
@@ -30,76 +30,54 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.vehicle;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 
 import aim4.config.Constants;
 import aim4.util.Util;
 
 /**
- * The acceleration schedule
+ * The acceleration schedule.  The time-acceleration pairs are kept in
+ * parallel arrays together with the prefix sums of the velocity change and
+ * of the distance traveled from the first time point, so that the velocity
+ * and the distance at any time can be looked up by a binary search.  Pairs
+ * consumed by a moving vehicle are skipped rather than deleted, and a
+ * schedule can be cleared and refilled without reallocating its arrays.
  */
 public class AccelSchedule {
 
   /////////////////////////////////
-  // NESTED CLASSES
+  // PRIVATE FIELDS
   /////////////////////////////////
 
-  /**
-   * The time-acceleration pair.
-   */
-  public static class TimeAccel {
-    /** The time */
-    private double time;
-    /** The acceleration */
-    private double acceleration;
-
-    /**
-     * Create a time-acceleration pair.
-     *
-     * @param time          the time
-     * @param acceleration  the acceleration
-     */
-    public TimeAccel(double time, double acceleration) {
-      this.time = time;
-      this.acceleration = acceleration;
-    }
+  /** The initial capacity of the arrays */
+  private static final int INITIAL_CAPACITY = 4;
 
-    /**
-     * Get the time.
-     *
-     * @return the time
-     */
-    public double getTime() {
-      return time;
-    }
+  /** The times of the time-acceleration pairs */
+  private double[] times;
 
-    /**
-     * Get the acceleration.
-     *
-     * @return the acceleration
-     */
-    public double getAcceleration() {
-      return acceleration;
-    }
+  /** The accelerations of the time-acceleration pairs */
+  private double[] accels;
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public String toString() {
-      return "(" + Constants.TWO_DEC.format(acceleration) + " at time " +
-             Constants.TWO_DEC.format(time) + ")";
+  /**
+   * The velocity change from the time of the first pair to the time of each
+   * pair.
+   */
+  private double[] velocityChanges;
 
-    }
-  }
+  /**
+   * The distance traveled from the time of the first pair to the time of
+   * each pair, if the velocity at the time of the first pair were zero.
+   */
+  private double[] distances;
 
-  /////////////////////////////////
-  // PRIVATE FIELDS
-  /////////////////////////////////
+  /** The index of the first pair that has not been consumed */
+  private int first;
 
-  /** The list of time-acceleration pairs */
-  private List<TimeAccel> timeAccelList;
+  /** The index after the last pair */
+  private int last;
+
+  /** Whether the prefix sums are up to date */
+  private boolean isPrefixSumsValid;
 
   /////////////////////////////////
   // CONSTRUCTORS
@@ -109,7 +87,13 @@ public class AccelSchedule {
    * Create an acceleration schedule.
    */
   public AccelSchedule() {
-    timeAccelList = new LinkedList<TimeAccel>();
+    times = new double[INITIAL_CAPACITY];
+    accels = new double[INITIAL_CAPACITY];
+    velocityChanges = new double[INITIAL_CAPACITY];
+    distances = new double[INITIAL_CAPACITY];
+    first = 0;
+    last = 0;
+    isPrefixSumsValid = true;
   }
 
   /////////////////////////////////
@@ -123,7 +107,48 @@ public class AccelSchedule {
    * @param accel  the acceleration
    */
   public void add(double time, double accel) {
-    timeAccelList.add(new TimeAccel(time, accel));
+    if (last == times.length) {
+      int capacity = 2 * times.length;
+      times = Arrays.copyOf(times, capacity);
+      accels = Arrays.copyOf(accels, capacity);
+      velocityChanges = Arrays.copyOf(velocityChanges, capacity);
+      distances = Arrays.copyOf(distances, capacity);
+    }
+    times[last] = time;
+    accels[last] = accel;
+    last++;
+    isPrefixSumsValid = false;
+  }
+
+  /**
+   * Remove all time-acceleration pairs from the acceleration schedule.  The
+   * storage is kept so that the schedule can be refilled.
+   */
+  public void clear() {
+    first = 0;
+    last = 0;
+    isPrefixSumsValid = true;
+  }
+
+  /**
+   * Replace the time-acceleration pairs of this acceleration schedule with
+   * those of another acceleration schedule.
+   *
+   * @param as  the other acceleration schedule
+   */
+  public void copyFrom(AccelSchedule as) {
+    clear();
+    for(int i = as.first; i < as.last; i++) {
+      add(as.times[i], as.accels[i]);
+    }
+  }
+
+  /**
+   * Remove the first time-acceleration pair from the acceleration schedule.
+   */
+  public void removeFirst() {
+    assert first < last;
+    first++;
   }
 
   /**
@@ -132,14 +157,29 @@ public class AccelSchedule {
    * @return the number of time-acceleration pairs in the acceleration schedule.
    */
   public int size() {
-    return timeAccelList.size();
+    return last - first;
+  }
+
+  /**
+   * Get the time of a time-acceleration pair.
+   *
+   * @param i  the index of the pair
+   * @return the time
+   */
+  public double getTime(int i) {
+    assert 0 <= i && i < size();
+    return times[first + i];
   }
 
   /**
-   * Get the list of time-acceleration pairs.
+   * Get the acceleration of a time-acceleration pair.
+   *
+   * @param i  the index of the pair
+   * @return the acceleration
    */
-  public List<TimeAccel> getList() {
-    return timeAccelList;
+  public double getAcceleration(int i) {
+    assert 0 <= i && i < size();
+    return accels[first + i];
   }
 
   /**
@@ -151,14 +191,11 @@ public class AccelSchedule {
    * @return the velocity after executing the acceleration schedule
    */
   public double calcFinalVelocity(double v1) {
-    TimeAccel lastTa = null;
-    for(TimeAccel ta : timeAccelList) {
-      if (lastTa != null) {
-        v1 += (ta.getTime() - lastTa.getTime()) * lastTa.getAcceleration();
-      }
-      lastTa = ta;
+    if (first == last) {
+      return v1;
     }
-    return v1;
+    updatePrefixSums();
+    return v1 + velocityChanges[last - 1] - velocityChanges[first];
   }
 
   /**
@@ -175,15 +212,12 @@ public class AccelSchedule {
     if (!Util.isDoubleEqualOrLess(v1, vTop)) {
       return false;
     }
-    TimeAccel lastTa = null;
-    for(TimeAccel ta : timeAccelList) {
-      if (lastTa != null) {
-        v1 += (ta.getTime() - lastTa.getTime()) * lastTa.getAcceleration();
-        if (Util.isDoubleNotEqual(v1, vTop) && v1 > vTop) {
-          return false;
-        }
+    updatePrefixSums();
+    for(int i = first + 1; i < last; i++) {
+      double v = v1 + velocityChanges[i] - velocityChanges[first];
+      if (Util.isDoubleNotEqual(v, vTop) && v > vTop) {
+        return false;
       }
-      lastTa = ta;
     }
     return true;
   }
@@ -200,38 +234,10 @@ public class AccelSchedule {
    */
   public double calcTotalDistance(double time1, double v1, double timeEnd) {
     assert time1 < timeEnd;
-
-    int i = 0;
-    double accel = 0.0;
-
-    while(i<timeAccelList.size()) {
-      TimeAccel ta = timeAccelList.get(i);
-      if (time1 < ta.getTime()) break;
-      accel = ta.getAcceleration();
-      i++;
-    }
-
-    double time = time1;
-    double v = v1;
-    double dTotal = 0.0;
-
-    while(i<timeAccelList.size()) {
-      TimeAccel ta = timeAccelList.get(i);
-      if (timeEnd < ta.getTime()) break;  // can be <=
-      double t = ta.getTime() - time;
-      double v2 = v + accel * t;
-      dTotal += t * (v + v2) / 2.0;
-      time = ta.getTime();
-      v = v2;
-      accel = ta.getAcceleration();
-      i++;
-    }
-
-    double t = timeEnd - time;
-    double v2 = v + accel * t;
-    dTotal += t * (v + v2) / 2.0;
-
-    return dTotal;
+    updatePrefixSums();
+    return v1 * (timeEnd - time1)
+           + distanceAt(timeEnd) - distanceAt(time1)
+           - velocityChangeAt(time1) * (timeEnd - time1);
   }
 
 
@@ -250,43 +256,20 @@ public class AccelSchedule {
                                                double v1,
                                                double timeEnd) {
     assert time1 < timeEnd;
-
-    int i = 0;
-    double accel = 0.0;
-
-    while(i<timeAccelList.size()) {
-      TimeAccel ta = timeAccelList.get(i);
-      if (time1 < ta.getTime()) break;
-      accel = ta.getAcceleration();
-      i++;
-    }
-
-    double time = time1;
-    double v = v1;
-    double dTotal = 0.0;
-
-    while(i<timeAccelList.size()) {
-      TimeAccel ta = timeAccelList.get(i);
-      if (timeEnd < ta.getTime()) break;  // can be <=
-      double t = ta.getTime() - time;
-      double v2 = v + accel * t;
-      dTotal += t * (v + v2) / 2.0;
-      time = ta.getTime();
-      v = v2;
-      accel = ta.getAcceleration();
-      i++;
-    }
-
-    double t = timeEnd - time;
-    double v2 = v + accel * t;
-    dTotal += t * (v + v2) / 2.0;
-
+    updatePrefixSums();
+    double vChange1 = velocityChangeAt(time1);
+    double dTotal = v1 * (timeEnd - time1)
+                    + distanceAt(timeEnd) - distanceAt(time1)
+                    - vChange1 * (timeEnd - time1);
+    double v2 = v1 + velocityChangeAt(timeEnd) - vChange1;
     return new double[] { dTotal, v2 };
   }
 
   /**
    * Calculate the distance and velocity traveled by the vehicle starting at
-   * a given time and velocity and ending at a given time.
+   * a given time and velocity and ending at a given time.  The velocity is
+   * assumed to never be negative, so that the distance traveled grows with
+   * time.
    *
    * @param time1    the initial time
    * @param v1       the initial velocity
@@ -298,32 +281,37 @@ public class AccelSchedule {
   public double[] calcFinalTimeAndVelocity(double time1,
                                            double v1,
                                            double dTotal) {
-    int i = 0;
-    double accel = 0.0;
-
-    while(i<timeAccelList.size()) {
-      TimeAccel ta = timeAccelList.get(i);
-      if (time1 < ta.getTime()) break;
-      accel = ta.getAcceleration();
-      i++;
+    updatePrefixSums();
+    int i = upperBound(time1);
+    double vChange1 = velocityChangeAt(time1);
+    double d1 = distanceAt(time1);
+
+    // find the first pair at which the distance traveled reaches dTotal
+    int lo = i;
+    int hi = last;
+    while(lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      double d = v1 * (times[mid] - time1) + distances[mid] - d1
+                 - vChange1 * (times[mid] - time1);
+      if (d >= dTotal) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
     }
 
-    double time = time1;
-    double v = v1;
-    double dSum = 0.0;
-
-    while(i<timeAccelList.size()) {
-      TimeAccel ta = timeAccelList.get(i);
-      double t = ta.getTime() - time;
-      double v2 = v + accel * t;
-      double d = t * (v + v2) / 2.0;
-      if (dSum + d >= dTotal) break;
-      dSum += d;
-      time = ta.getTime();
-      v = v2;
-      accel = ta.getAcceleration();
-      i++;
+    double time;
+    double accel;
+    if (lo > i) {
+      time = times[lo - 1];
+      accel = accels[lo - 1];
+    } else {
+      time = time1;
+      accel = (i > first) ? accels[i - 1] : 0.0;
     }
+    double v = v1 + velocityChangeAt(time) - vChange1;
+    double dSum = v1 * (time - time1) + distanceAt(time) - d1
+                  - vChange1 * (time - time1);
 
     // Solving:
     //   vEnd = v + accel * t
@@ -359,6 +347,89 @@ public class AccelSchedule {
   }
 
 
+  /////////////////////////////////
+  // PRIVATE METHODS
+  /////////////////////////////////
+
+  /**
+   * Recompute the prefix sums if pairs have been added since they were last
+   * computed.
+   */
+  private void updatePrefixSums() {
+    if (!isPrefixSumsValid) {
+      if (last > 0) {
+        velocityChanges[0] = 0.0;
+        distances[0] = 0.0;
+      }
+      for(int i = 1; i < last; i++) {
+        double t = times[i] - times[i - 1];
+        velocityChanges[i] = velocityChanges[i - 1] + accels[i - 1] * t;
+        distances[i] = distances[i - 1]
+                       + t * (velocityChanges[i - 1] + velocityChanges[i])
+                         / 2.0;
+      }
+      isPrefixSumsValid = true;
+    }
+  }
+
+  /**
+   * Find the index of the first remaining pair whose time is later than the
+   * given time.
+   *
+   * @param time  the time
+   * @return the index of the first pair whose time is later than the given
+   *         time, or the index after the last pair if there is none
+   */
+  private int upperBound(double time) {
+    int lo = first;
+    int hi = last;
+    while(lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (time < times[mid]) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Get the velocity change from the time of the first pair to the given
+   * time.  The acceleration before the first remaining pair is zero.
+   *
+   * @param time  the time
+   * @return the velocity change
+   */
+  private double velocityChangeAt(double time) {
+    int i = upperBound(time);
+    if (i == first) {
+      return (first < last) ? velocityChanges[first] : 0.0;
+    }
+    return velocityChanges[i - 1] + accels[i - 1] * (time - times[i - 1]);
+  }
+
+  /**
+   * Get the distance traveled from the time of the first pair to the given
+   * time, if the velocity at the time of the first pair were zero.  The
+   * acceleration before the first remaining pair is zero.
+   *
+   * @param time  the time
+   * @return the distance
+   */
+  private double distanceAt(double time) {
+    int i = upperBound(time);
+    if (i == first) {
+      return (first < last) ?
+             distances[first]
+             + velocityChanges[first] * (time - times[first]) : 0.0;
+    }
+    double t = time - times[i - 1];
+    return distances[i - 1]
+           + t * (velocityChanges[i - 1] + accels[i - 1] * t / 2.0);
+  }
+
+
   /////////////////////////////////
   // DEBUG
   /////////////////////////////////
@@ -368,18 +439,15 @@ public class AccelSchedule {
    */
   @Override
   public String toString() {
-    String s = "";
-    boolean isFirst = true;
-    for(TimeAccel ta : timeAccelList) {
-      if (isFirst) {
-        s += "[";
-        isFirst = false;
-      } else {
-        s += ",";
+    StringBuilder sb = new StringBuilder("[");
+    for(int i = first; i < last; i++) {
+      if (i > first) {
+        sb.append(",");
       }
-      s += ta.toString();
+      sb.append("(" + Constants.TWO_DEC.format(accels[i]) + " at time " +
+                Constants.TWO_DEC.format(times[i]) + ")");
     }
-    s += "]";
-    return s;
+    sb.append("]");
+    return sb.toString();
   }
 }
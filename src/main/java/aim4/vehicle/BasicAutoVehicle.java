@@ -589,6 +589,34 @@ public class BasicAutoVehicle extends BasicVehicle
         vehicleNum++;
     }
 
+    /**
+     * Put the vehicle in a new initial state, as the constructor does, without
+     * counting a new vehicle. The specification is kept, though its values may
+     * have been changed in place beforehand.
+     *
+     * @param pos the initial position of the Vehicle
+     * @param heading the initial heading of the Vehicle
+     * @param steeringAngle the initial steering angle of the Vehicle
+     * @param velocity the initial velocity of the Vehicle
+     * @param targetVelocity the initial target velocity
+     * @param acceleration the initial acceleration of the Vehicle
+     * @param currentTime the current time
+     * @param vehicleType the type of vehicle
+     */
+    public void reset(Point2D pos,
+            double heading,
+            double steeringAngle,
+            double velocity,
+            double targetVelocity,
+            double acceleration,
+            double currentTime,
+            VEHICLE_TYPE vehicleType) {
+        reset(pos, heading, velocity, steeringAngle, acceleration,
+                targetVelocity, currentTime);
+        this.vehicleType = vehicleType;
+        this.stopped = false;
+    }
+
     @Override
     public VEHICLE_TYPE getVehicleType() {
         // TODO Auto-generated method stub
@@ -33,7 +33,6 @@ package aim4.vehicle;
 import java.awt.Shape;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
-import java.util.Iterator;
 import java.util.List;
 
 import aim4.config.Constants;
@@ -915,6 +914,12 @@ public abstract class BasicVehicle implements VehicleSimView {
     /** The acceleration schedule */
     private AccelSchedule accelSchedule;
 
+    /**
+     * The storage the acceleration schedules are copied into, so that a new
+     * reservation does not allocate a new schedule for the movement.
+     */
+    private AccelSchedule scheduleBuffer;
+
 
     /////////////////////////////////
     // CONSTRUCTORS
@@ -939,7 +944,8 @@ public abstract class BasicVehicle implements VehicleSimView {
     public AccelScheduleMovement(MovementWithAccel baseMovement,
                                  AccelSchedule accelSchedule) {
       this.baseMovement = baseMovement;
-      this.accelSchedule = accelSchedule;
+      this.scheduleBuffer = new AccelSchedule();
+      setAccelSchedule(accelSchedule);
     }
 
     /////////////////////////////////
@@ -1005,12 +1011,20 @@ public abstract class BasicVehicle implements VehicleSimView {
     // control
 
     /**
-     * Set the acceleration schedule.
+     * Set the acceleration schedule.  The time-acceleration pairs are copied,
+     * so the given schedule is not consumed by the movement.
      *
      * @param accelSchedule  the acceleration schedule
      */
     public void setAccelSchedule(AccelSchedule accelSchedule) {
-      this.accelSchedule = accelSchedule;
+      if (accelSchedule == null) {
+        this.accelSchedule = null;
+      } else {
+        if (accelSchedule != scheduleBuffer) {
+          scheduleBuffer.copyFrom(accelSchedule);
+        }
+        this.accelSchedule = scheduleBuffer;
+      }
     }
 
 
@@ -1026,31 +1040,29 @@ public abstract class BasicVehicle implements VehicleSimView {
     @Override
     public void move(double currentTime, double timeStep) {
       if (accelSchedule != null) {
-        List<AccelSchedule.TimeAccel> tas = accelSchedule.getList();
-        Iterator<AccelSchedule.TimeAccel> iter = tas.iterator();
+        if (accelSchedule.size() > 0) {
+          double taTime = accelSchedule.getTime(0);
 
-        if (iter.hasNext()) {
-          AccelSchedule.TimeAccel ta = iter.next();
-
-          if (ta.getTime() > currentTime) {
+          if (taTime > currentTime) {
             // It means that the next acceleration update is in the future yet.
             // keep using the existing acceleration
-            double dur = ta.getTime() - currentTime;
+            double dur = taTime - currentTime;
             if (dur < timeStep) {
               baseMovement.move(currentTime, dur);
               move(currentTime + dur, timeStep - dur); // recursive call
             } else {
               baseMovement.move(currentTime, timeStep);  // and then exit
             }
-          } else if (Util.isDoubleEqual(ta.getTime(), currentTime)) {
+          } else if (Util.isDoubleEqual(taTime, currentTime)) {
             // update the acceleration
-            baseMovement.setAccelerationWithBound(ta.getAcceleration());
-            iter.remove();  // remove it since it has been consumed
+            baseMovement.setAccelerationWithBound(
+                accelSchedule.getAcceleration(0));
+            accelSchedule.removeFirst();  // remove it since it has been consumed
 
             // check to see if there is next acceleration update
-            if (iter.hasNext()) {
-              ta = iter.next();  // don't remove it, just look at the time.
-              double dur = ta.getTime() - currentTime;
+            if (accelSchedule.size() > 0) {
+              // don't remove it, just look at the time.
+              double dur = accelSchedule.getTime(0) - currentTime;
               if (dur < timeStep) {
                 baseMovement.move(currentTime, dur);
                 move(currentTime + dur, timeStep - dur); // recursive call
@@ -1064,7 +1076,8 @@ public abstract class BasicVehicle implements VehicleSimView {
               baseMovement.move(currentTime, timeStep);  // and then exit
             }
           } else {
-            iter.remove();  // remove it since the acceleration is in the past.
+            // remove it since the acceleration is in the past.
+            accelSchedule.removeFirst();
             move(currentTime, timeStep);  // recursive call
           }
         } else {
@@ -1160,13 +1173,21 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   private Point2D memoGaugePointBetweenFrontWheels;
   /**
-   * Memoization cache for {@link #getShape()}.
+   * Memoization cache for {@link #getShape()}, computed on the first call
+   * after a move.
    */
   private Shape memoGetShape;
   /**
-   * Memoization cache for {@link #gaugeShape()}.
+   * Memoization cache for {@link #gaugeShape()}, computed on the first call
+   * after a move.
    */
   private Shape memoGaugeShape;
+  /**
+   * The position and the heading of the vehicle at the last move, from which
+   * {@link #memoGetShape} is computed.
+   */
+  private Point2D memoShapePosition;
+  private double memoShapeHeading;
 
   /////////////////////////////////
   // CONSTRUCTORS
@@ -1194,6 +1215,34 @@ public abstract class BasicVehicle implements VehicleSimView {
     this.vin = -1;    // no vin by default
     this.spec = spec;  // assume spec is a constant and will not change
 
+    reset(pos, heading, velocity, steeringAngle, acceleration, targetVelocity,
+          currentTime);
+  }
+
+  /////////////////////////////////
+  // PROTECTED METHODS
+  /////////////////////////////////
+
+  /**
+   * Put the vehicle in a new initial state, as the constructor does. The
+   * specification is kept, though its values may have been changed in place
+   * beforehand.
+   *
+   * @param pos             the initial position of the Vehicle
+   * @param heading         the initial heading of the Vehicle
+   * @param velocity        the initial velocity of the Vehicle
+   * @param steeringAngle   the initial steering angle of the Vehicle
+   * @param acceleration    the initial acceleration of the Vehicle
+   * @param targetVelocity  the initial target velocity
+   * @param currentTime     the current time
+   */
+  protected final void reset(Point2D pos,
+                             double heading,
+                             double velocity,
+                             double steeringAngle,
+                             double acceleration,
+                             double targetVelocity,
+                             double currentTime) {
     movement = new MoveToTargetVelocityMovement(spec,
                                                 pos,
                                                 heading,
@@ -1203,10 +1252,9 @@ public abstract class BasicVehicle implements VehicleSimView {
                                                 targetVelocity);
 
     // Update all the gauges and memos
-    updateGaugesAndMemos();
     this.spawnTime = currentTime;
     this.currentTime = currentTime;
-    clock.record(currentTime);
+    updateGaugesAndMemos();
   }
 
   /////////////////////////////////
@@ -1388,6 +1436,10 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public Shape getShape() {
+    if (memoGetShape == null) {
+      memoGetShape = GeomUtil.convertPointsToShape(
+          spec.getCornerPoints(memoShapePosition, memoShapeHeading));
+    }
     return memoGetShape;
   }
 
@@ -1396,6 +1448,9 @@ public abstract class BasicVehicle implements VehicleSimView {
    */
   @Override
   public Shape gaugeShape() {
+    if (memoGaugeShape == null) {
+      memoGaugeShape = GeomUtil.convertPointsToShape(gaugeCornerPoints());
+    }
     return memoGaugeShape;
   }
 
@@ -1719,8 +1774,12 @@ public abstract class BasicVehicle implements VehicleSimView {
     speedometer.record(movement.getVelocity());
 
     memoGaugePosition = new Point2D.Double(xometer.read(), yometer.read());
-    memoGetShape = GeomUtil.convertPointsToShape(getCornerPoints());
-    memoGaugeShape = GeomUtil.convertPointsToShape(gaugeCornerPoints());
+    // the shapes are only computed when asked for, as the internal simulation
+    // of the intersection managers moves its test vehicles without them
+    memoShapePosition = movement.getPosition();
+    memoShapeHeading = movement.getHeading();
+    memoGetShape = null;
+    memoGaugeShape = null;
     memoGaugePointBetweenFrontWheels =
         spec.getPointBetweenFrontWheels(gaugePosition(), gaugeHeading());
   }
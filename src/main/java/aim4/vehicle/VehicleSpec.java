@@ -182,6 +182,31 @@ public class VehicleSpec {
                      double wheelWidth,
                      double maxSteeringAngle,
                      double maxTurnPerSecond) {
+    assign(name, maxAcceleration, maxDeceleration, maxVelocity, minVelocity,
+           length, width, frontAxleDisplacement, rearAxleDisplacement,
+           wheelSpan, wheelRadius, wheelWidth, maxSteeringAngle,
+           maxTurnPerSecond);
+  }
+
+
+  /**
+   * Update all values in this specification to the given values, as the
+   * constructor sets them.
+   */
+  public void assign(String name,
+                     double maxAcceleration,
+                     double maxDeceleration,
+                     double maxVelocity,
+                     double minVelocity,
+                     double length,
+                     double width,
+                     double frontAxleDisplacement,
+                     double rearAxleDisplacement,
+                     double wheelSpan,
+                     double wheelRadius,
+                     double wheelWidth,
+                     double maxSteeringAngle,
+                     double maxTurnPerSecond) {
     this.name = name;
     this.maxAcceleration = maxAcceleration;
     this.maxDeceleration = maxDeceleration;
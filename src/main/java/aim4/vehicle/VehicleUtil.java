@@ -30,6 +30,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package aim4.vehicle;
 
+import java.awt.Shape;
 import java.awt.geom.Area;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -564,10 +565,15 @@ public class VehicleUtil {
     if (area.contains(v.getPosition()) || area.contains(v.getPointAtRear())) {
       return true;
     } else {
+      Shape vehicleShape = v.getShape();
+      // The areas cannot intersect if their bounding boxes do not
+      if (!vehicleShape.getBounds2D().intersects(area.getBounds2D())) {
+        return false;
+      }
       // We actually have to check to see if the Area of the
       // Vehicle and the Area of the IntersectionManager have a nonempty
       // intersection
-      Area vehicleArea = new Area(v.getShape());
+      Area vehicleArea = new Area(vehicleShape);
       // Important that it is in this order, as it is destructive to the caller
       vehicleArea.intersect(area);
       return !vehicleArea.isEmpty();
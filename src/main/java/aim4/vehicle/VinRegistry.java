@@ -36,6 +36,8 @@ import java.util.Map;
 
 import aim4.map.Road;
 import aim4.map.SpawnPoint;
+import aim4.sim.jfr.FlightEvents;
+import aim4.sim.jfr.VehicleSpawnEvent;
 
 /**
  * The Vehicle Registry, the class that issues VIN to vehicles.
@@ -108,6 +110,9 @@ public class VinRegistry {
     vinToDestRoad.put(vin, vehicle.getDriver().getDestination());
 
     vehicle.setVIN(vin);
+    if (FlightEvents.AVAILABLE) {
+      VehicleSpawnEvent.emit(vehicle);
+    }
 
     vinGenerator++;
     return vin;
@@ -18,13 +18,18 @@ import aim4.map.Road;
 import aim4.map.SpawnPoint;
 import aim4.map.actionmapping.ActionMappingFactory;
 import aim4.map.lane.Lane;
+import aim4.map.trafficbyturns.SyntheticDemand;
 import aim4.map.trafficbyturns.TrafficFlowReaderFactory;
+import aim4.map.trafficbyturns.AbstractTurnMovements;
 import aim4.map.trafficbyturns.TurnMovements;
 import aim4.vehicle.VehicleSimView;
 import aim4.vehicle.VinRegistry;
 import java.util.List;
 import aim4.sim.AutoDriverOnlySimulator;
 import aim4.sim.Simulator;
+import aim4.sim.SpawnScheduler;
+import aim4.sim.results.OutcomeStatistics;
+import aim4.sim.results.QuantileSketch;
 import aim4.sim.setup.ApproxNPhasesTrafficSignalSimSetup;
 import aim4.sim.setup.BasicSimSetup;
 import aim4.util.LimitedPairImplementation;
@@ -119,6 +124,8 @@ public class DesignatedLanesExpr {
     public static double MAX_MISS_MEASURE = 2.0;
 
     // For output tracking purposes
+    //whether the lists below are filled. The simulator keeps constant-size statistics of the same outcomes regardless, see AutoDriverOnlySimulator.getOutcomeStatistics
+    public static boolean KEEP_VEHICLE_TIMES = false;
     //array lists by time slot, by direction (mapped with timingIndexMap)
     public static ArrayList<ArrayList<ArrayList<Double>>> autoVehicleTimesByDirection = new ArrayList<ArrayList<ArrayList<Double>>>();
     public static ArrayList<ArrayList<ArrayList<Double>>> humanVehicleTimesByDirection = new ArrayList<ArrayList<ArrayList<Double>>>();
@@ -254,13 +261,22 @@ public class DesignatedLanesExpr {
 
     }
 
-    public static void spawnVehiclesWithInterArch(double timeStep, AutoDriverOnlySimulator sim) {
+    public static void spawnVehiclesWithInterArch(double timeStep, final AutoDriverOnlySimulator sim) {
         double humanProb = ratioH;
         double CCProb = ratioCC;
         double ACCProb = ratioCC;
         double AVProb = ratioAV;
 
-        double[] typeProbs = {AVProb, humanProb, CCProb, ACCProb};
+        final double[] typeProbs = {AVProb, humanProb, CCProb, ACCProb};
+        if (SimConfig.SCHEDULE_SPAWNS && sim.spawnScheduled(timeStep, new SpawnScheduler.Spawner() {
+            @Override
+            public void spawn(SpawnPoint spawnPoint, double timeStep) {
+                int type = proportionalPick(typeProbs);
+                spawnVehicle(VEHICLE_TYPE.values()[type], spawnPoint, timeStep, sim);
+            }
+        })) {
+            return;
+        }
         //For each road
         for (Road road : sim.getMap().getRoads()) {
             List<Lane> lanes = new ArrayList<Lane>(road.getLanes());
@@ -315,11 +331,11 @@ public class DesignatedLanesExpr {
             vinToSpawnDirection.put(vehicle.getVIN(), Util.getDirectionFromHeadingCardinalOrIntercardinal(sp.getHeading()));
 
             //ensure lists are ready for elements for timing tracking
-            while (vehicle.gaugeTime() >= timeForNextIndex) {
+            while (KEEP_VEHICLE_TIMES && vehicle.gaugeTime() >= timeForNextIndex) {
                 currentTimeIndex++;
                 timeForNextIndex += vehicleTimesSecondsIndexStep;
             }
-            while (autoVehicleTimesByDirection.size() <= currentTimeIndex) {
+            while (KEEP_VEHICLE_TIMES && autoVehicleTimesByDirection.size() <= currentTimeIndex) {
                 ArrayList<ArrayList<Double>> listOfListsByDirectionIndex = new ArrayList<ArrayList<Double>>();
                 ArrayList<ArrayList<Double>> listOfListsByDirectionIndexDelay = new ArrayList<ArrayList<Double>>();
                 ArrayList<ArrayList<Double>> listOfListsByDirectionIndexDelayNoInter = new ArrayList<ArrayList<Double>>();
@@ -335,7 +351,7 @@ public class DesignatedLanesExpr {
                     listOfListsByDirectionIndexNoStops.add(new ArrayList<Double>());
                 }
             }
-            while (humanVehicleTimesByDirection.size() <= currentTimeIndex) {
+            while (KEEP_VEHICLE_TIMES && humanVehicleTimesByDirection.size() <= currentTimeIndex) {
                 ArrayList<ArrayList<Double>> listOfListsByDirectionIndex = new ArrayList<ArrayList<Double>>();
                 ArrayList<ArrayList<Double>> listOfListsByDirectionIndexDelay = new ArrayList<ArrayList<Double>>();
                 ArrayList<ArrayList<Double>> listOfListsByDirectionIndexDelayNoInter = new ArrayList<ArrayList<Double>>();
@@ -351,7 +367,9 @@ public class DesignatedLanesExpr {
                     listOfListsByDirectionIndexNoStops.add(new ArrayList<Double>());
                 }
             }
-            vinToTimeIndex.put(vehicle.getVIN(), currentTimeIndex);
+            if (KEEP_VEHICLE_TIMES) {
+                vinToTimeIndex.put(vehicle.getVIN(), currentTimeIndex);
+            }
 
             sim.vinToVehicles.put(vehicle.getVIN(), vehicle);
             spawnPoint.vehicleGenerated(); // so it knows a platooning vehicle is generated.
@@ -734,6 +752,7 @@ public class DesignatedLanesExpr {
                 nextProgressReport += 50;
             }
         }
+        sim.dispose();
         /////////////////////////////////
         // Generate data files
         /////////////////////////////////
@@ -911,10 +930,23 @@ public class DesignatedLanesExpr {
 
         BasicSimSetup basicSimSetup2 = null;
 
-        TurnMovements turnMovements = TrafficFlowReaderFactory.getMovementsFromFile(new File(args[TRAFFIC_FILE_ARGS.TURNING_COUNT_FILE_PATH.toint()]), ActionMappingFactory.getUDOTActionMapping());
-        ApproxNPhasesTrafficSignalSimSetup approxNPhasesTrafficSignalSimSetup
-                = new ApproxNPhasesTrafficSignalSimSetup(basicSimSetup,
-                        args[TRAFFIC_FILE_ARGS.SIGNAL_PHASE_FILE.toint()], turnMovements, new File(args[TRAFFIC_FILE_ARGS.ARCHITECTURE_FILE_PATH.toint()]));
+        String turnMovementsPath = args[TRAFFIC_FILE_ARGS.TURNING_COUNT_FILE_PATH.toint()];
+        ApproxNPhasesTrafficSignalSimSetup approxNPhasesTrafficSignalSimSetup;
+        if (SyntheticDemand.isSpec(turnMovementsPath)) {
+            //stress scenarios describe their demand in place of the turn movements file
+            approxNPhasesTrafficSignalSimSetup
+                    = new ApproxNPhasesTrafficSignalSimSetup(basicSimSetup,
+                            args[TRAFFIC_FILE_ARGS.SIGNAL_PHASE_FILE.toint()], SyntheticDemand.parse(turnMovementsPath), new File(args[TRAFFIC_FILE_ARGS.ARCHITECTURE_FILE_PATH.toint()]));
+        } else {
+            File turnMovementsFile = new File(turnMovementsPath);
+            AbstractTurnMovements fileTurnMovements = (SimConfig.STREAM_TURN_MOVEMENTS
+                    ? TrafficFlowReaderFactory.getStreamingMovementsFromFile(turnMovementsFile, ActionMappingFactory.getUDOTActionMapping())
+                    : TrafficFlowReaderFactory.getMovementsFromFile(turnMovementsFile, ActionMappingFactory.getUDOTActionMapping()));
+            approxNPhasesTrafficSignalSimSetup
+                    = new ApproxNPhasesTrafficSignalSimSetup(basicSimSetup,
+                            args[TRAFFIC_FILE_ARGS.SIGNAL_PHASE_FILE.toint()], fileTurnMovements, new File(args[TRAFFIC_FILE_ARGS.ARCHITECTURE_FILE_PATH.toint()]));
+        }
+        AbstractTurnMovements turnMovements = approxNPhasesTrafficSignalSimSetup.getTurnMovements();
         approxNPhasesTrafficSignalSimSetup.setTrafficLevel(0);
         basicSimSetup2 = approxNPhasesTrafficSignalSimSetup;
 
@@ -946,6 +978,9 @@ public class DesignatedLanesExpr {
             //prioritizes timestamp updates
             if (currentTime >= nextTimestampUpdate) {
                 System.out.print("[" + currentTime + "]\n");
+                if (sim instanceof AutoDriverOnlySimulator && ((AutoDriverOnlySimulator) sim).getStepProfiler() != null) {
+                    System.out.print(((AutoDriverOnlySimulator) sim).getStepProfiler().getReport());
+                }
                 System.out.flush();
                 nextUpdate += secondsForMinorTickUpdate;
                 nextTimestampUpdate += secondsForUpdate;
@@ -970,6 +1005,7 @@ public class DesignatedLanesExpr {
                         + "Number currently spawned and/or scheduled: " + (sim.getGeneratedVehiclesNum() + sim.getScheduledVehiclesRemaining()));
             }
         }
+        sim.dispose();
         /////////////////////////////////
         // Generate data files
         /////////////////////////////////
@@ -1017,8 +1053,24 @@ public class DesignatedLanesExpr {
 //AVG delay all, MAX time H, MAX time CC, MAX time ACC, MAX time AV, Rejections H,
 //Rejections SAV, Rejections AV, Max queue, Time MAX H Completion, Time MAX CC Completion, 
 //Time MAX ACC Completion, Time MAX AV Completion, Late Spawns\n";
-        LimitedPairImplementation<Double, Integer> avPair = calcDelay(autoVehicleDelaysByDirection);
-        LimitedPairImplementation<Double, Integer> hvPair = calcDelay(humanVehicleDelaysByDirection);
+        LimitedPairImplementation<Double, Integer> avPair;
+        LimitedPairImplementation<Double, Integer> hvPair;
+        if (sim instanceof AutoDriverOnlySimulator) {
+            AutoDriverOnlySimulator autoSim = (AutoDriverOnlySimulator) sim;
+            if (autoSim.getResultLog() != null) {
+                autoSim.getResultLog().close();
+            }
+            if (autoSim.getTrajectoryRecorder() != null) {
+                autoSim.getTrajectoryRecorder().close();
+            }
+            OutcomeStatistics stats = autoSim.getOutcomeStatistics();
+            avPair = delayPair(stats.get(VEHICLE_TYPE.AUTO, null, null, -1));
+            hvPair = delayPair(stats.get(VEHICLE_TYPE.HUMAN, null, null, -1));
+            printDelayQuantiles(stats);
+        } else {
+            avPair = calcDelay(autoVehicleDelaysByDirection);
+            hvPair = calcDelay(humanVehicleDelaysByDirection);
+        }
 
         output
                 += Htotal + ","
@@ -1132,6 +1184,26 @@ public class DesignatedLanesExpr {
         return new LimitedPairImplementation(val, count);
     }
 
+    private static LimitedPairImplementation<Double, Integer> delayPair(OutcomeStatistics.Cell cell) {
+        return new LimitedPairImplementation<Double, Integer>(cell.getDelay().getSum(), (int) cell.getDelay().getCount());
+    }
+
+    /**
+     * Print the median, 90th and 99th percentile delay of every vehicle type
+     * with a delay.
+     *
+     * @param stats the statistics of the completed vehicles
+     */
+    private static void printDelayQuantiles(OutcomeStatistics stats) {
+        for (VEHICLE_TYPE type : VEHICLE_TYPE.values()) {
+            QuantileSketch delays = stats.get(type, null, null, -1).getDelaySketch();
+            if (delays.getCount() > 0) {
+                System.out.printf("Delay %s: p50 %.2f, p90 %.2f, p99 %.2f (%d vehicles)%n", type,
+                        delays.getQuantile(0.5), delays.getQuantile(0.9), delays.getQuantile(0.99), delays.getCount());
+            }
+        }
+    }
+
     public static void outputVehicleTimeCounts(ArrayList<ArrayList<ArrayList<Double>>> timings, String outputPath, String ident) {
         //todo ineffecient way of building the string by repeatedly concating
         String fileOutHead = "Index,veh count,total time,avg time,,data\n";
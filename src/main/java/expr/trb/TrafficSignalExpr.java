@@ -258,6 +258,7 @@ public class TrafficSignalExpr {
                 sim.step(SimConfig.TIME_STEP);
                 currentTime += SimConfig.TIME_STEP;
             }
+            sim.dispose();
 
             /*
              // Print how many vehicles are inhibited
@@ -294,7 +295,7 @@ public class TrafficSignalExpr {
         int instances = 5;
         SimConfig.TOTAL_SIMULATION_TIME = timeLimit;
         
-        String header = "%Configuration,H,%CC,%ACC,%A,lanes,Cars/houre,Cars completed,AVG time,Time STD\n";
+        String header = "%Configuration,H,%CC,%ACC,%A,lanes,Cars/houre,Cars completed,AVG time,Time STD,Time SD\n";
         System.out.print(header);
 
         //double[] H = {1, 0.95, 0.9, 0.8, 0.6, 0.35, 0.2, 0.1, 0.05, 0, 0, 0};
@@ -477,6 +478,7 @@ public class TrafficSignalExpr {
                             sim.step(SimConfig.TIME_STEP);
                             currentTime += SimConfig.TIME_STEP;
                         }
+                        sim.dispose();
 
                         /*
                          // Print how many vehicles are inhibited
@@ -519,7 +521,8 @@ public class TrafficSignalExpr {
                                 + "," + noc + ","
                                 + sim.getNumCompletedVehicles() + ","
                                 + sim.getAvgTravelTime()
-                                + "," + sim.getTimeSTD() + "\n";
+                                + "," + sim.getTimeSTD()
+                                + "," + sim.getTravelTimeStandardDeviation() + "\n";
 
                         //System.gc();
                         System.out.print(output);
@@ -735,6 +738,7 @@ public class TrafficSignalExpr {
                     nextProgressReport += 50;
                 }
             }
+            sim.dispose();
 
             /*
              // Print how many vehicles are inhibited
@@ -0,0 +1,151 @@
+package aim4.sim;
+
+import aim4.config.SimConfig;
+import aim4.config.SimConfig.VEHICLE_TYPE;
+import aim4.driver.pilot.V2IPilot;
+import aim4.map.trafficbyturns.SyntheticDemand;
+import aim4.sim.setup.ApproxNPhasesTrafficSignalSimSetup;
+import aim4.sim.setup.BasicSimSetup;
+import expr.trb.DesignatedLanesExpr;
+import expr.trb.TrafficSignalExpr;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * A check of the bytes the simulation thread allocates in a steady state step,
+ * a step in which no vehicle is spawned and none completes. The simulation of
+ * the intersection of the exp folder is run on a fixed seed under a Poisson
+ * synthetic demand. After a warm up, the bytes of every steady state step are
+ * measured, and the test fails when their mean is over the budget.
+ */
+public class SteadyStateAllocationTest {
+
+    /////////////////////////////////
+    // CONSTANTS
+    /////////////////////////////////
+    /**
+     * The mean bytes a steady state step may allocate. The run allocates
+     * about 712 KB per steady state step, most of it in the shapes of the test
+     * vehicle in the internal simulations of the intersection manager and in
+     * the bookkeeping of the reservations it accepts; lower the budget as the
+     * steady state step gets leaner.
+     */
+    private static final long BUDGET = 768 * 1024;
+    /**
+     * The seed and the safety buffers of the run, the ones of the README
+     * example.
+     */
+    private static final int SEED = -1069075740;
+    private static final double SAFETY_BUFFER_SECONDS = 0.1;
+    private static final double EXIT_TILE_SAFETY_BUFFER_SECONDS = 0.3;
+    /**
+     * The vehicles per hour per lane and the share of autonomous vehicles.
+     */
+    private static final double DEMAND = 450;
+    private static final double RATIO_AV = 0.5;
+    /**
+     * The simulated seconds run before measuring, and the steps measured.
+     */
+    private static final double WARM_UP_TIME = 120;
+    private static final int STEPS = 3000;
+
+    /////////////////////////////////
+    // TESTS
+    /////////////////////////////////
+    @Test
+    public void steadyStateStepStaysWithinBudget() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+        counter.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        SimConfig.PROFILE_STEPS = true;
+        SimConfig.PROFILE_ALLOCATIONS = true;
+        AutoDriverOnlySimulator sim = createSimulator();
+        while (sim.getSimulationTime() < WARM_UP_TIME) {
+            step(sim);
+        }
+        sim.getStepProfiler().reset();
+
+        long steadyBytes = 0;
+        int steadySteps = 0;
+        for (int i = 0; i < STEPS; ++i) {
+            int generated = sim.getGeneratedVehiclesNum();
+            int completed = sim.getNumCompletedVehicles();
+            long start = counter.getThreadAllocatedBytes(threadId);
+            step(sim);
+            long bytes = counter.getThreadAllocatedBytes(threadId) - start;
+            if (generated == sim.getGeneratedVehiclesNum() && completed == sim.getNumCompletedVehicles()) {
+                steadyBytes += bytes;
+                steadySteps++;
+            }
+        }
+        assertTrue("No steady state step in " + STEPS + " steps", steadySteps > 0);
+
+        double mean = (double) steadyBytes / steadySteps;
+        System.out.println(String.format("%d of %d steps in a steady state: mean %.1f KB, budget %.1f KB",
+                steadySteps, STEPS, mean / 1024, BUDGET / 1024.0));
+        assertTrue(String.format("A steady state step allocates %.1f KB, over the budget of %.1f KB:%n%s",
+                mean / 1024, BUDGET / 1024.0, sim.getStepProfiler().getReport()),
+                mean <= BUDGET);
+    }
+
+    /////////////////////////////////
+    // PRIVATE METHODS
+    /////////////////////////////////
+    /**
+     * Set up the simulation as the command line does, with actuation and
+     * adaptive timing and no dropped messages.
+     *
+     * @return the simulator
+     */
+    private static AutoDriverOnlySimulator createSimulator() {
+        SimConfig.ALLOW_ACTUATION = true;
+        SimConfig.USE_ADAPTIVE_TIMING = true;
+        SimConfig.signalType = SimConfig.SIGNAL_TYPE.FULLY_ACTUATED;
+        SimConfig.TOTAL_SIMULATION_TIME = 0;
+        DesignatedLanesExpr.SEED = SEED;
+        DesignatedLanesExpr.ratioAV = RATIO_AV;
+        DesignatedLanesExpr.ratioCC = 0;
+        DesignatedLanesExpr.ratioACC = 0;
+        DesignatedLanesExpr.SAFETY_BUFFER_SECONDS = SAFETY_BUFFER_SECONDS;
+        DesignatedLanesExpr.EXIT_TILE_SAFETY_BUFFER_SECONDS = EXIT_TILE_SAFETY_BUFFER_SECONDS;
+        TrafficSignalExpr.dropMessageProb = 0;
+        TrafficSignalExpr.droppedTimeToDetect = 0;
+        DesignatedLanesExpr.initWithArchAndTurnCounts();
+        V2IPilot.DEFAULT_STOP_DISTANCE_BEFORE_INTERSECTION = 1.0;
+        BasicSimSetup basicSimSetup = new BasicSimSetup(1, 1, 4, DesignatedLanesExpr.SPEED_LIMIT,
+                DesignatedLanesExpr.NUMBER_OF_LANES, 1, 250, 0, 1.0, null);
+
+        SyntheticDemand syntheticDemand = new SyntheticDemand(SyntheticDemand.ArrivalProcess.POISSON, DEMAND,
+                basicSimSetup.getLanesPerRoad(), WARM_UP_TIME + STEPS * SimConfig.TIME_STEP + 60);
+        Map<VEHICLE_TYPE, Double> mix = new EnumMap<VEHICLE_TYPE, Double>(VEHICLE_TYPE.class);
+        mix.put(VEHICLE_TYPE.AUTO, RATIO_AV);
+        mix.put(VEHICLE_TYPE.HUMAN, 1 - RATIO_AV);
+        syntheticDemand.setVehicleTypeMix(mix);
+        syntheticDemand.setSeed(SEED);
+        ApproxNPhasesTrafficSignalSimSetup setup = new ApproxNPhasesTrafficSignalSimSetup(basicSimSetup,
+                "exp/signal.xml", syntheticDemand, new File("exp/intersection.xml"));
+        setup.setTrafficLevel(0);
+        return (AutoDriverOnlySimulator) setup.getSimulator();
+    }
+
+    /**
+     * Advance a simulation by a time step, as the command line does.
+     *
+     * @param sim the simulation
+     */
+    private static void step(Simulator sim) {
+        sim.step(SimConfig.TIME_STEP);
+        SimConfig.TOTAL_SIMULATION_TIME = sim.getSimulationTime();
+    }
+}
@@ -0,0 +1,100 @@
+#!/usr/bin/env python3
+
+import sys
+import getopt
+import json
+
+#===============================================================================
+# Variables
+#===============================================================================
+
+threshold = 0.10
+
+#===============================================================================
+# Core functions
+#===============================================================================
+
+def read_results(infilename):
+    # the scores of a JMH JSON result file (-rf json), by benchmark and params
+    results = dict()
+    with open(infilename) as infile:
+        for r in json.load(infile):
+            params = r.get('params', {})
+            key = r['benchmark'] + ''.join(
+                ':%s=%s' % (k, params[k]) for k in sorted(params))
+            m = r['primaryMetric']
+            # JMH writes a NaN error, as "NaN", when it cannot estimate one
+            error = float(m.get('scoreError', 0.0))
+            if error != error:
+                error = 0.0
+            results[key] = (r['mode'], float(m['score']), error,
+                            m['scoreUnit'])
+    return results
+
+def is_higher_better(mode):
+    return mode == 'thrpt'
+
+def compare(baseline, current):
+    regressions = 0
+    for key in sorted(set(baseline) | set(current)):
+        if key not in current:
+            print('%-70s missing' % key)
+            continue
+        mode, score, error, unit = current[key]
+        if key not in baseline:
+            print('%-70s %12.3f %-8s new' % (key, score, unit))
+            continue
+        bmode, bscore, berror, bunit = baseline[key]
+        if bmode != mode or bunit != unit:
+            print('%-70s %s %s vs %s %s, not compared'
+                  % (key, bmode, bunit, mode, unit))
+            continue
+        change = (score - bscore) / bscore if bscore != 0 else 0.0
+        worse = -change if is_higher_better(mode) else change
+        # a change within the error bars of the two runs is noise
+        significant = abs(score - bscore) > error + berror
+        status = ''
+        if worse > threshold and significant:
+            status = 'REGRESSION'
+            regressions += 1
+        elif -worse > threshold and significant:
+            status = 'improvement'
+        print('%-70s %12.3f -> %12.3f %-8s %+7.1f%% %s'
+              % (key, bscore, score, unit, 100 * change, status))
+    return regressions
+
+#===============================================================================
+# Main
+#===============================================================================
+
+def usage():
+    print(sys.argv[0], "[-t threshold] baseline.json results.json")
+    print(sys.argv[0], "[-h|--help]")
+
+def main():
+    global threshold
+    try:
+        opts, args = getopt.getopt(sys.argv[1:], "ht:", ["help", "threshold="])
+    except getopt.GetoptError as err:
+        print(err)
+        usage()
+        exit(2)
+    for o, a in opts:
+        if o in ("-h", "--help"):
+            usage()
+            sys.exit()
+        elif o in ("-t", "--threshold"):
+            threshold = float(a)
+        else:
+            assert False, "unhandled option"
+    if len(args) != 2:
+        usage()
+        exit(2)
+    regressions = compare(read_results(args[0]), read_results(args[1]))
+    if regressions > 0:
+        print(regressions, "benchmark(s) regressed by more than",
+              format(100 * threshold, '.0f') + "%")
+        exit(1)
+
+if __name__ == "__main__":
+    main()